@@ -8,6 +8,7 @@ import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.lighting.Lighting;
 import gov.nasa.arc.dert.raster.proj.Proj4;
 import gov.nasa.arc.dert.render.BasicScene;
+import gov.nasa.arc.dert.render.FrameRecorder;
 import gov.nasa.arc.dert.render.SceneCanvas;
 import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
@@ -33,6 +34,7 @@ import gov.nasa.arc.dert.state.ConfigurationManager;
 import gov.nasa.arc.dert.state.StateFactory;
 import gov.nasa.arc.dert.terrain.QuadTree;
 import gov.nasa.arc.dert.terrain.QuadTreeCache;
+import gov.nasa.arc.dert.terrain.TileDiskCache;
 import gov.nasa.arc.dert.util.ColorMap;
 import gov.nasa.arc.dert.util.StringUtil;
 import gov.nasa.arc.dert.view.Console;
@@ -316,11 +318,16 @@ public class Dert {
 
 			version = dertProperties.getProperty("Dert.Version");
 			SceneFramework.millisBetweenFrames = StringUtil.getIntegerValue(dertProperties, "MillisBetweenFrames", true, 33, false);
+			SceneFramework.minMillisBetweenFrames = StringUtil.getIntegerValue(dertProperties, "MinMillisBetweenFrames", true, SceneFramework.minMillisBetweenFrames, false);
+			SceneFramework.logFrameTiming = StringUtil.getBooleanValue(dertProperties, "SceneFramework.LogFrameTiming", SceneFramework.logFrameTiming, false);
 			World.defaultStereoEyeSeparation = StringUtil.getDoubleValue(dertProperties, "Stereo.eyeSeparation", false, World.defaultStereoEyeSeparation, false);
 			World.defaultStereoFocalDistance = StringUtil.getDoubleValue(dertProperties, "Stereo.focalDistance", false, World.defaultStereoFocalDistance, false);
 			//RasterText.setFont(StringUtil.getIntegerValue(dertProperties, "RasterText.Font", true, 18, false));
 			Lighting.loadProperties(dertProperties);
 			QuadTreeCache.MAX_CACHE_MEMORY = (long)(Runtime.getRuntime().maxMemory()*0.75);
+			TileDiskCache.MAX_DISK_SIZE = StringUtil.getLongValue(dertProperties, "QuadTree.MaxDiskCacheSize", true,
+				TileDiskCache.MAX_DISK_SIZE, false);
+			TileDiskCache.CACHE_DIRECTORY = new File(userPath, "tilecache");
 			DerivativeLayer.defaultColorMapName = dertProperties.getProperty("ColorMap.Default", "default0");
 			FieldLayer.defaultColorMapName = DerivativeLayer.defaultColorMapName;
 			QuadTree.CELL_SIZE = StringUtil.getIntegerValue(dertProperties, "MeshCellSize", true, QuadTree.CELL_SIZE,
@@ -331,6 +338,7 @@ public class Dert {
 			Landscape.MAX_LEVELS = StringUtil.getIntegerValue(dertProperties, "Landscape.MaximumLevels", true,
 				Landscape.MAX_LEVELS, false);
 			Axes.TIC_PIXELS = StringUtil.getIntegerValue(dertProperties, "Profile.tickInterval", true, 60, false);
+			FrameRecorder.setDefaultsFromProperties(dertProperties);
 
 			// Get map element preferences.
 			Placemark.setDefaultsFromProperties(dertProperties);
@@ -0,0 +1,189 @@
+package gov.nasa.arc.dert;
+
+import gov.nasa.arc.dert.render.BatchRenderer;
+import gov.nasa.arc.dert.scene.World;
+import gov.nasa.arc.dert.scene.tool.Path;
+import gov.nasa.arc.dert.scenegraph.Marker;
+import gov.nasa.arc.dert.scenegraph.text.BitmapFont;
+import gov.nasa.arc.dert.scenegraph.text.Text;
+import gov.nasa.arc.dert.state.Configuration;
+import gov.nasa.arc.dert.state.ConfigurationManager;
+import gov.nasa.arc.dert.state.PathState;
+import gov.nasa.arc.dert.state.ViewpointState;
+import gov.nasa.arc.dert.util.StringUtil;
+import gov.nasa.arc.dert.view.Console;
+import gov.nasa.arc.dert.viewpoint.Animator;
+import gov.nasa.arc.dert.viewpoint.FlyThroughParameters;
+import gov.nasa.arc.dert.viewpoint.ViewpointStore;
+
+import java.awt.Font;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Renders an image sequence from a saved configuration without opening any
+ * windows. Intended for long fly through renders on machines without a
+ * display.
+ *
+ * Usage: DertBatch -config configPath [-path pathName | -viewpoints] [-frames
+ * n] [-size widthxheight] [-samples n] [-output directory]
+ *
+ */
+public class DertBatch extends Dert {
+
+	// Screen resolution used for font and marker sizes
+	public static int DOTS_PER_INCH = 96;
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		DertBatch dert = new DertBatch(args);
+		dert.initialize();
+		System.exit(dert.run());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param args
+	 */
+	public DertBatch(String[] args) {
+		super(args);
+	}
+
+	@Override
+	protected void createMainWindows(String[] args) {
+		// no windows in batch mode
+	}
+
+	@Override
+	protected void createFont() {
+		int fontSize = StringUtil.getIntegerValue(dertProperties, "RasterText.FontSize", true, 0, false);
+		if (fontSize == 0) {
+			fontSize = (int)Math.ceil(DOTS_PER_INCH/10.0);
+			if (fontSize%2 == 1)
+				fontSize ++;
+		}
+		Text.FONT_SIZE = fontSize;
+		Marker.PIXEL_SIZE = DOTS_PER_INCH/7.5;
+		String fName = StringUtil.getStringValue(dertProperties, "RasterText.Font", "Courier New", false);
+		BitmapFont.createInstance(fName, Font.BOLD, fontSize);
+	}
+
+	/**
+	 * Load the configuration and render the frames.
+	 *
+	 * @return the exit status
+	 */
+	protected int run() {
+		String configPath = getArgument("-config");
+		if ((configPath == null) || !new File(configPath).exists()) {
+			System.out.println("Usage: DertBatch -config configPath [-path pathName | -viewpoints] [-frames n] [-size widthxheight] [-samples n] [-output directory]");
+			return (1);
+		}
+		Configuration config = ConfigurationManager.getInstance().loadConfiguration(configPath);
+		if (config == null) {
+			return (1);
+		}
+		World world = ConfigurationManager.getInstance().setBatchConfiguration(config);
+		if (world == null) {
+			return (1);
+		}
+
+		int width = 1920;
+		int height = 1080;
+		String str = getArgument("-size");
+		if (str != null) {
+			String[] token = str.toLowerCase().split("x");
+			width = Integer.parseInt(token[0].trim());
+			height = Integer.parseInt(token[1].trim());
+		}
+		str = getArgument("-samples");
+		int samples = (str == null) ? 0 : Integer.parseInt(str);
+		str = getArgument("-frames");
+		int numFrames = (str == null) ? 0 : Integer.parseInt(str);
+		String output = getArgument("-output");
+
+		BatchRenderer batchRenderer = new BatchRenderer(width, height, samples);
+		List<ViewpointStore> flyList = null;
+		String pathName = getArgument("-path");
+		if (pathName != null) {
+			Path path = null;
+			ArrayList<Path> pathList = world.getTools().getFlyablePaths();
+			for (int i = 0; i < pathList.size(); ++i) {
+				if (pathList.get(i).getName().equals(pathName)) {
+					path = pathList.get(i);
+				}
+			}
+			if (path == null) {
+				Console.println("No path named " + pathName + " with at least 2 waypoints.");
+				return (1);
+			}
+			FlyThroughParameters flyParams = ((PathState)path.getState()).flyParams;
+			if (numFrames > 1) {
+				flyParams.numFrames = numFrames;
+			}
+			if (output == null) {
+				output = flyParams.imageSequencePath;
+			}
+			// use the projection of the current viewpoint
+			batchRenderer.setCamera(getCurrentViewpoint(config, batchRenderer));
+			flyList = Animator.createPathFlyList(path, flyParams, batchRenderer.getCamera(), batchRenderer.getSceneBounds());
+		}
+		else if (hasArgument("-viewpoints")) {
+			Vector<ViewpointStore> vpList = ((ViewpointState)config.getState("ViewpointState")).viewpointList;
+			if (vpList.isEmpty()) {
+				Console.println("No viewpoints in " + configPath + ".");
+				return (1);
+			}
+			// interpolate between the viewpoints or show each one once
+			if ((numFrames > 1) && (vpList.size() > 1))
+				flyList = Animator.createFlyList(vpList, numFrames);
+			else
+				flyList = vpList;
+		}
+		else {
+			flyList = new ArrayList<ViewpointStore>();
+			flyList.add(getCurrentViewpoint(config, batchRenderer));
+		}
+		if (output == null) {
+			output = new File(userPath, "batch").getAbsolutePath();
+		}
+
+		int count = batchRenderer.render(flyList, new File(output));
+		batchRenderer.cleanup();
+		System.out.println(count + " of " + flyList.size() + " frames written to " + output);
+		return ((count == flyList.size()) ? 0 : 1);
+	}
+
+	private ViewpointStore getCurrentViewpoint(Configuration config, BatchRenderer batchRenderer) {
+		ViewpointStore vps = config.worldState.currentViewpoint;
+		if (vps == null)
+			vps = batchRenderer.getOverheadViewpoint();
+		return (vps);
+	}
+
+	private boolean hasArgument(String name) {
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].toLowerCase().equals(name)) {
+				return (true);
+			}
+		}
+		return (false);
+	}
+
+	private String getArgument(String name) {
+		for (int i = 0; i < args.length - 1; ++i) {
+			if (args[i].toLowerCase().equals(name)) {
+				return (args[i + 1]);
+			}
+		}
+		return (null);
+	}
+
+}
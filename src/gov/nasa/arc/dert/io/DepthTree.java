@@ -1,5 +1,6 @@
 package gov.nasa.arc.dert.io;
 
+import gov.nasa.arc.dert.terrain.TileKey;
 import gov.nasa.arc.dert.view.Console;
 
 import java.io.IOException;
@@ -10,18 +11,37 @@ import java.util.Collections;
 import java.util.Comparator;
 
 /**
- * Provides a data structure to record a landscape tile path/id in a quad tree
- * structure.
+ * Provides a data structure to record a landscape tile key in a quad tree
+ * structure. Keys are stored as tile paths in the depth tree file.
  *
  */
 public class DepthTree implements Serializable {
 
-	public String id;
+	// The packed tile key (see TileKey)
+	public long key;
 	public DepthTree[] child;
 
 	@Override
 	public String toString() {
-		return (id);
+		return (TileKey.toString(key));
+	}
+
+	/**
+	 * Find the node for a tile, starting at this node which must be the root.
+	 * 
+	 * @param key
+	 * @return null if the tile does not exist
+	 */
+	public DepthTree find(long key) {
+		DepthTree dTree = this;
+		int level = TileKey.getLevel(key);
+		for (int i = 1; i <= level; ++i) {
+			if (dTree.child == null) {
+				return (null);
+			}
+			dTree = dTree.child[TileKey.getQuadrant(key, i) - 1];
+		}
+		return (dTree);
 	}
 	
 	public static DepthTree load(String filePath)
@@ -85,7 +105,9 @@ public class DepthTree implements Serializable {
 	
 	protected static DepthTree createLeaf(int index, String[][] token) {
 		DepthTree dt = new DepthTree();
-		dt.id = token[index][1].trim();
+		dt.key = TileKey.parse(token[index][1].trim());
+		if (dt.key == TileKey.NONE)
+			throw new IllegalArgumentException("Invalid depth tree id "+token[index][1]+".");
 		for (int i=0; i<4; ++i) {
 			int ii = Integer.valueOf(token[index][i+2]);
 			if (ii >= 0) {
@@ -125,7 +147,7 @@ public class DepthTree implements Serializable {
 	private static int addLeaf(DepthTree depthTree, int index, ArrayList<String[]> leafList) {
 		String[] token = new String[6];
 		token[0] = Integer.toString(index);
-		token[1] = depthTree.id;
+		token[1] = TileKey.toString(depthTree.key);
 		leafList.add(token);
 		if (depthTree.child == null) {
 			token[2] = "-1";
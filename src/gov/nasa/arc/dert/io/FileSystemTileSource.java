@@ -2,6 +2,7 @@ package gov.nasa.arc.dert.io;
 
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
 import gov.nasa.arc.dert.terrain.QuadTreeTile;
+import gov.nasa.arc.dert.terrain.TileKey;
 import gov.nasa.arc.dert.util.ImageUtil;
 import gov.nasa.arc.dert.view.Console;
 
@@ -26,8 +27,8 @@ import com.ardor3d.image.Image;
  */
 public class FileSystemTileSource implements TileSource {
 
-	// Quad tree structure of existing tile ids
-	private DepthTree depthTree;
+	// Index of existing tiles, not changed once assigned
+	private volatile TileIndex tileIndex;
 
 	// Landscape directory
 	private String dirName;
@@ -100,7 +101,7 @@ public class FileSystemTileSource implements TileSource {
 				if (type != null) {
 					layers.add(new String[] { filename, type, null });
 					if (type.equals("elevation"))
-						getDepthTree();
+						getTileIndex();
 				}
 			}
 		}
@@ -139,9 +140,17 @@ public class FileSystemTileSource implements TileSource {
 		return (dirName);
 	}
 
-	private boolean tileExists(String layerName, String id) {
-		if (depthTree != null) {
-			return (tileExists(id, depthTree));
+	/**
+	 * Determine if a tile exists in a layer.
+	 * 
+	 * @param layerName
+	 * @param id
+	 * @return
+	 */
+	protected boolean tileExists(String layerName, String id) {
+		TileIndex index = tileIndex;
+		if (index != null) {
+			return (index.contains(TileKey.parse(id)));
 		}
 		String fileName = layerPath(layerName) + id + "/0.png";
 		File file = new File(fileName);
@@ -156,32 +165,19 @@ public class FileSystemTileSource implements TileSource {
 	}
 
 	/**
-	 * Determine if a tile exists.
+	 * Determine if a tile exists. Without a tile index this falls back to
+	 * checking for the elevation tile file.
 	 * 
-	 * @param id
-	 *            the tile id
+	 * @param key
+	 *            the packed tile key
 	 */
 	@Override
-	public boolean tileExists(String id) {
-		return (tileExists(id, depthTree));
-	}
-
-	private boolean tileExists(String id, DepthTree dTree) {
-		if (id.equals(dTree.id)) {
-			return (true);
-		}
-		if (!id.startsWith(dTree.id)) {
-			return (false);
-		}
-		if (dTree.child == null) {
-			return (false);
-		}
-		for (int i = 0; i < dTree.child.length; ++i) {
-			if (tileExists(id, dTree.child[i])) {
-				return (true);
-			}
+	public boolean tileExists(long key) {
+		TileIndex index = tileIndex;
+		if (index != null) {
+			return (index.contains(key));
 		}
-		return (false);
+		return (tileExists("elevation", TileKey.toString(key)));
 	}
 
 	@Override
@@ -202,9 +198,10 @@ public class FileSystemTileSource implements TileSource {
 			BufferedImage bImage = ImageIO.read(file);
 			if (bImage != null) {
 				// System.err.println("FileSystemTileSource.getTilePng "+layerName+" "+dataType+" "+bImage.getWidth()+" "+bImage.getHeight());
-				int numBands = bImage.getData().getNumBands();
+				// use the image raster directly, getData() returns a copy
+				int numBands = bImage.getRaster().getNumBands();
 				if (dataType == DataType.Float) {
-					DataBufferByte dBuf = (DataBufferByte) bImage.getData().getDataBuffer();
+					DataBufferByte dBuf = (DataBufferByte) bImage.getRaster().getDataBuffer();
 					byte[] bytes = dBuf.getData();
 					ByteBuffer bBuf = ByteBuffer.wrap(bytes);
 					QuadTreeTile tile = new QuadTreeTile(bBuf, id, bImage.getWidth(), bImage.getHeight(), dataType,
@@ -234,27 +231,34 @@ public class FileSystemTileSource implements TileSource {
 			// if one child exists they should all exist
 			dTree.child = new DepthTree[] { new DepthTree(), new DepthTree(), new DepthTree(), new DepthTree() };
 			for (int i = 0; i < dTree.child.length; ++i) {
-				dTree.child[i].id = id + (i + 1);
+				dTree.child[i].key = TileKey.getChild(dTree.key, i + 1);
 				fillDepthTree(dTree.child[i], id + (i + 1), layerName);
 			}
 		}
 	}
 
-	public synchronized String getMaxLevel(String id) {
-		String[] token = id.split("/");
-		DepthTree dTree = depthTree;
-		String newId = "";
-		for (int i = 0; i < token.length; ++i) {
-			if (!token[i].isEmpty()) {
-				if (dTree.child == null) {
-					return (newId);
-				}
-				int index = Integer.valueOf(token[i]) - 1;
-				dTree = dTree.child[index];
-				newId += "/" + token[i];
+	/**
+	 * Given a tile key, find the key of the highest level tile that exists
+	 * along the path to it.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public long getMaxLevel(long key) {
+		TileIndex index = tileIndex;
+		if (index != null) {
+			return (index.getMaxLevel(key));
+		}
+		int level = TileKey.getLevel(key);
+		long newKey = TileKey.ROOT;
+		for (int i = 1; i <= level; ++i) {
+			long childKey = TileKey.getChild(newKey, TileKey.getQuadrant(key, i));
+			if (!tileExists(childKey)) {
+				break;
 			}
+			newKey = childKey;
 		}
-		return (newId);
+		return (newKey);
 	}
 
 	/**
@@ -265,12 +269,11 @@ public class FileSystemTileSource implements TileSource {
 	 *            , y the coordinate
 	 * @param worldWidth
 	 *            , worldHeight the physical dimensions of the source
-	 * @return the key string
+	 * @return the packed tile key
 	 */
 	@Override
-	public synchronized String getKey(double x, double y, double worldWidth, double worldLength) {
-		String key = "";
-		return (getKey(depthTree, x, y, key, worldWidth / 2, worldLength / 2, -1));
+	public long getKey(double x, double y, double worldWidth, double worldLength) {
+		return (getKey(x, y, worldWidth, worldLength, -1));
 	}
 
 	/**
@@ -281,66 +284,87 @@ public class FileSystemTileSource implements TileSource {
 	 *            , y the coordinate
 	 * @param worldWidth
 	 *            , worldHeight the physical dimensions of the source
-	 * @return the key string
+	 * @param lvl
+	 *            the level, -1 for the highest level
+	 * @return the packed tile key, TileKey.NONE if there is no tile at the level
 	 */
 	@Override
-	public synchronized String getKey(double x, double y, double worldWidth, double worldLength, int lvl) {
-		String key = "";
-		return (getKey(depthTree, x, y, key, worldWidth / 2, worldLength / 2, lvl));
-	}
-
-	private String getKey(DepthTree depthTree, double x, double y, String key, double width, double length, int lvl) {
-		if (depthTree.child == null) {
-			if (lvl > 0)
-				return(null);
-			else
-				return (key);
-		}
-		if (lvl == 0)
-			return(key);	
-		double w = width / 2;
-		double l = length / 2;
-		if (x < 0) {
-			if (y >= 0) {
-				depthTree = depthTree.child[0];
-				return (getKey(depthTree, x + w, y - l, key + "/" + 1, w, l, lvl-1));
+	public long getKey(double x, double y, double worldWidth, double worldLength, int lvl) {
+		TileIndex index = tileIndex;
+		int node = 0;
+		long key = TileKey.ROOT;
+		double w = worldWidth / 2;
+		double l = worldLength / 2;
+		while ((lvl != 0) && hasChildren(index, node, key)) {
+			w /= 2;
+			l /= 2;
+			int q;
+			if (x < 0) {
+				if (y >= 0) {
+					q = 1;
+					y -= l;
+				} else {
+					q = 3;
+					y += l;
+				}
+				x += w;
 			} else {
-				depthTree = depthTree.child[2];
-				return (getKey(depthTree, x + w, y + l, key + "/" + 3, w, l, lvl-1));
+				if (y >= 0) {
+					q = 2;
+					y -= l;
+				} else {
+					q = 4;
+					y += l;
+				}
+				x -= w;
 			}
-		} else {
-			if (y >= 0) {
-				depthTree = depthTree.child[1];
-				return (getKey(depthTree, x - w, y - l, key + "/" + 2, w, l, lvl-1));
-			} else {
-				depthTree = depthTree.child[3];
-				return (getKey(depthTree, x - w, y + l, key + "/" + 4, w, l, lvl-1));
+			if (index != null) {
+				node = index.getChild(node, q);
 			}
+			key = TileKey.getChild(key, q);
+			lvl--;
+		}
+		if (lvl > 0) {
+			return (TileKey.NONE);
 		}
+		return (key);
+	}
+
+	private boolean hasChildren(TileIndex index, int node, long key) {
+		if (index != null) {
+			return (index.hasChildren(node));
+		}
+		// without an index, look for the first child tile
+		return (tileExists(TileKey.getChild(key, 1)));
 	}
 
 	protected final String layerPath(String layerName) {
 		return (dirName + "/" + layerName);
 	}
 
-	protected DepthTree getDepthTree() {
-		if (depthTree != null) {
-			return (depthTree);
+	/**
+	 * Get the index of existing tiles. It is read from the file written when
+	 * the pyramid was built. Older landscapes have a depth tree file or
+	 * nothing, in which case the index is created from that and saved.
+	 * 
+	 * @return null if there is no elevation layer
+	 */
+	protected TileIndex getTileIndex() {
+		if (tileIndex != null) {
+			return (tileIndex);
+		}
+		final File indexFile = new File(dirName + "/dert/" + TileIndex.FILE_NAME);
+		if (indexFile.exists()) {
+			try {
+				tileIndex = TileIndex.read(indexFile);
+				return (tileIndex);
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.out.println("Error reading tile index file.");
+			}
 		}
-//		String depthFileName = dirName + "/dert/depth.obj";
-//		final File depthFile = new File(depthFileName);
-//		if (depthFile.exists()) {
-//			try {
-//				ObjectInputStream inStream = new ObjectInputStream(new FileInputStream(depthFile));
-//				depthTree = (DepthTree) inStream.readObject();
-//				inStream.close();
-//			} catch (Exception e) {
-//				e.printStackTrace();
-//				System.out.println("Error reading depth tree file.");
-//				depthTree = null;
-//			}
-//		}
-		final String depthFileName = dirName + "/dert/depthtree.txt";
+		DepthTree depthTree = null;
+		String depthFileName = dirName + "/dert/depthtree.txt";
 		File depthFile = new File(depthFileName);
 		if (depthFile.exists()) {
 			try {
@@ -355,28 +379,31 @@ public class FileSystemTileSource implements TileSource {
 			// assign after filling so tileExists method will work
 			if (tileExists("elevation", "")) {
 				Console.print("Filling depth tree. This may take a bit for large landscapes . . .");
-				DepthTree dTree = new DepthTree();
-				dTree.id = "";
-				fillDepthTree(dTree, "", "elevation");
-				depthTree = dTree;
+				depthTree = new DepthTree();
+				depthTree.key = TileKey.ROOT;
+				fillDepthTree(depthTree, "", "elevation");
 				Console.println(" complete.");
-				Thread thread = new Thread(new Runnable() {
-					@Override
-					public void run() {
-						Thread.yield();
-						try {
-							DepthTree.store(depthTree, depthFileName);
-						} catch (Exception e) {
-							e.printStackTrace();
-							Console.println("Error writing depth tree file.");
-							depthTree = null;
-						}
-					}
-				});
-				thread.start();
 			}
 		}
-		return (depthTree);
+		if (depthTree != null) {
+			tileIndex = TileIndex.create(depthTree);
+			// save the index so the landscape opens quickly next time
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Thread.yield();
+					try {
+						tileIndex.write(indexFile);
+					} catch (Exception e) {
+						e.printStackTrace();
+						Console.println("Error writing tile index file.");
+						indexFile.delete();
+					}
+				}
+			});
+			thread.start();
+		}
+		return (tileIndex);
 	}
 
 }
@@ -0,0 +1,171 @@
+package gov.nasa.arc.dert.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+
+/**
+ * Reads tiles from a container file written by PackedTileWriter. The file is
+ * memory mapped in regions of PackedTileWriter.REGION_SIZE bytes and each tile
+ * is returned as a read-only slice of its region, so no tile data is copied
+ * onto the Java heap.
+ *
+ */
+public class PackedTileReader {
+
+	// Tile dimensions
+	private int tileWidth, tileLength, bytesPerPixel;
+
+	// Offset and length of each tile keyed by quad tree id
+	private HashMap<String, long[]> index;
+
+	// Memory mapped regions of the file
+	private MappedByteBuffer[] region;
+
+	// The file
+	private File file;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 */
+	public PackedTileReader(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Map the file and load the index.
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size < PackedTileWriter.HEADER_SIZE + 12) {
+				throw new IOException(file + " is not a packed tile file.");
+			}
+
+			// map the file
+			int numRegions = (int) ((size + PackedTileWriter.REGION_SIZE - 1) / PackedTileWriter.REGION_SIZE);
+			region = new MappedByteBuffer[numRegions];
+			for (int i = 0; i < numRegions; ++i) {
+				long start = i * PackedTileWriter.REGION_SIZE;
+				region[i] = channel.map(MapMode.READ_ONLY, start, Math.min(PackedTileWriter.REGION_SIZE, size - start));
+			}
+
+			// header
+			ByteBuffer header = region[0].duplicate();
+			byte[] magic = new byte[PackedTileWriter.MAGIC.length()];
+			header.get(magic);
+			if (!PackedTileWriter.MAGIC.equals(new String(magic, "US-ASCII"))) {
+				throw new IOException(file + " is not a packed tile file.");
+			}
+			int version = header.getInt();
+			if (version != PackedTileWriter.VERSION) {
+				throw new IOException(file + " has unsupported version " + version + ".");
+			}
+			tileWidth = header.getInt();
+			tileLength = header.getInt();
+			bytesPerPixel = header.getInt();
+
+			// index, read through the channel since it may span regions
+			ByteBuffer trailer = ByteBuffer.allocate(8);
+			channel.read(trailer, size - 8);
+			trailer.flip();
+			long indexOffset = trailer.getLong();
+			channel.position(indexOffset);
+			// buffered so each field is not a separate read from the file
+			DataInputStream inStream = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel),
+				65536));
+			int count = inStream.readInt();
+			index = new HashMap<String, long[]>(count * 2);
+			for (int i = 0; i < count; ++i) {
+				String id = inStream.readUTF();
+				long offset = inStream.readLong();
+				int length = inStream.readInt();
+				index.put(id, new long[] { offset, length });
+			}
+		} finally {
+			// mappings remain valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Determine if a tile exists.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public boolean tileExists(String id) {
+		return (index.containsKey(id));
+	}
+
+	/**
+	 * Get the contents of a tile.
+	 *
+	 * @param id
+	 * @return a read-only buffer, empty if the tile only has missing values, or
+	 *         null if the tile does not exist
+	 */
+	public ByteBuffer getTile(String id) {
+		long[] entry = index.get(id);
+		if (entry == null) {
+			return (null);
+		}
+		int r = (int) (entry[0] / PackedTileWriter.REGION_SIZE);
+		int start = (int) (entry[0] % PackedTileWriter.REGION_SIZE);
+		ByteBuffer buffer = region[r].duplicate();
+		buffer.position(start);
+		buffer.limit(start + (int) entry[1]);
+		return (buffer.slice());
+	}
+
+	/**
+	 * Get the tile width including the extra edge pixels.
+	 *
+	 * @return
+	 */
+	public int getTileWidth() {
+		return (tileWidth);
+	}
+
+	/**
+	 * Get the tile length including the extra edge pixels.
+	 *
+	 * @return
+	 */
+	public int getTileLength() {
+		return (tileLength);
+	}
+
+	/**
+	 * Get the number of bytes per pixel.
+	 *
+	 * @return
+	 */
+	public int getBytesPerPixel() {
+		return (bytesPerPixel);
+	}
+
+	/**
+	 * Get the number of tiles.
+	 *
+	 * @return
+	 */
+	public int getTileCount() {
+		return (index.size());
+	}
+
+}
@@ -0,0 +1,108 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.terrain.QuadTreeTile;
+import gov.nasa.arc.dert.view.Console;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+
+/**
+ * Provides a TileSource for landscapes on the local file system where layers
+ * may be stored in a single packed tile file (see PackedTileWriter). Layers
+ * without a packed tile file are read from PNG tiles as before.
+ *
+ */
+public class PackedTileSource extends FileSystemTileSource {
+
+	// Packed tile readers, keyed by layer name
+	private HashMap<String, PackedTileReader> readerMap;
+
+	// Layers known to have no packed tile file
+	private HashMap<String, Boolean> pngMap;
+
+	/**
+	 * Constructor
+	 */
+	public PackedTileSource() {
+		readerMap = new HashMap<String, PackedTileReader>();
+		pngMap = new HashMap<String, Boolean>();
+	}
+
+	/**
+	 * Get the packed tile reader for a layer.
+	 *
+	 * @param layerName
+	 * @return null if the layer is stored as PNG tiles
+	 */
+	protected synchronized PackedTileReader getReader(String layerName) {
+		PackedTileReader reader = readerMap.get(layerName);
+		if (reader != null) {
+			return (reader);
+		}
+		if (pngMap.containsKey(layerName)) {
+			return (null);
+		}
+		File file = new File(layerPath(layerName), PackedTileWriter.FILE_NAME);
+		if (file.exists()) {
+			try {
+				reader = new PackedTileReader(file);
+				reader.open();
+				readerMap.put(layerName, reader);
+				return (reader);
+			} catch (Exception e) {
+				Console.println("Unable to open packed tiles for layer " + layerName + ", reading PNG tiles.");
+				e.printStackTrace();
+			}
+		}
+		pngMap.put(layerName, Boolean.TRUE);
+		return (null);
+	}
+
+	@Override
+	protected boolean tileExists(String layerName, String id) {
+		PackedTileReader reader = getReader(layerName);
+		if (reader == null) {
+			return (super.tileExists(layerName, id));
+		}
+		return (reader.tileExists(id));
+	}
+
+	@Override
+	public QuadTreeTile getTile(String layerName, String id, DataType dataType) {
+		PackedTileReader reader = getReader(layerName);
+		if (reader == null) {
+			return (super.getTile(layerName, id, dataType));
+		}
+		ByteBuffer bBuf = reader.getTile(id);
+		// missing or empty tile
+		if ((bBuf == null) || (bBuf.limit() == 0)) {
+			return (null);
+		}
+		int width = reader.getTileWidth();
+		int length = reader.getTileLength();
+		int bytesPerPixel = bBuf.limit() / (width * length);
+		if (dataType == DataType.Float) {
+			return (new QuadTreeTile(bBuf, id, width, length, dataType, bytesPerPixel));
+		}
+		// Spurious gray tile in the midst of a color landscape.
+		ImageDataFormat format = ImageDataFormat.BGRA;
+		if (bytesPerPixel == 1) {
+			format = ImageDataFormat.Luminance;
+			dataType = DataType.UnsignedByte;
+		} else {
+			dataType = DataType.UnsignedInteger;
+		}
+		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+		list.add(bBuf);
+		Image image = new Image(format, PixelDataType.UnsignedByte, width, length, list, null);
+		return (new QuadTreeTile(image, id, dataType));
+	}
+
+}
@@ -0,0 +1,187 @@
+package gov.nasa.arc.dert.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Writes all tiles of a layer to a single indexed container file. This avoids
+ * creating one small PNG file per tile which is slow to open on network file
+ * systems.
+ *
+ * The file consists of a header, the tile payloads, an index, and a trailer.
+ * The header holds a magic string, the format version, the tile width and
+ * length (including the extra edge pixels), and the number of bytes per
+ * pixel. Each payload holds the tile in the byte layout of a decoded tile:
+ * big-endian floats for elevation and field layers, BGRA bytes for color
+ * images, and luminance bytes for gray images. An empty tile has a payload
+ * length of 0. The index lists the quad tree id, offset, and length of each
+ * tile. The trailer is the offset of the index. Payloads never cross a
+ * REGION_SIZE boundary so each can be read from a single memory mapped
+ * region.
+ *
+ */
+public class PackedTileWriter {
+
+	// Name of the container file in the layer directory
+	public static final String FILE_NAME = "tiles.pack";
+
+	// Identifies the file format
+	public static final String MAGIC = "DERTPACK";
+
+	// Format version
+	public static final int VERSION = 1;
+
+	// Size of a memory mapped region of the file
+	public static final long REGION_SIZE = 1l << 30;
+
+	// Header size in bytes
+	public static final int HEADER_SIZE = 24;
+
+	// The output stream
+	private DataOutputStream outStream;
+
+	// Current position in the file
+	private long position;
+
+	// The index
+	private ArrayList<String> idList;
+	private ArrayList<long[]> entryList;
+	private HashSet<String> idSet;
+
+	// Tile dimensions
+	private int tileWidth, tileLength, bytesPerPixel;
+
+	// The file
+	private File file;
+
+	/**
+	 * Constructor
+	 *
+	 * @param dirPath
+	 *            the layer directory
+	 * @param tileWidth
+	 *            the tile width including the extra edge pixels
+	 * @param tileLength
+	 *            the tile length including the extra edge pixels
+	 * @param bytesPerPixel
+	 */
+	public PackedTileWriter(String dirPath, int tileWidth, int tileLength, int bytesPerPixel) {
+		file = new File(dirPath, FILE_NAME);
+		this.tileWidth = tileWidth;
+		this.tileLength = tileLength;
+		this.bytesPerPixel = bytesPerPixel;
+		idList = new ArrayList<String>();
+		entryList = new ArrayList<long[]>();
+		idSet = new HashSet<String>();
+	}
+
+	/**
+	 * Open the file and write the header.
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		file.getParentFile().mkdirs();
+		outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+		outStream.write(MAGIC.getBytes("US-ASCII"));
+		outStream.writeInt(VERSION);
+		outStream.writeInt(tileWidth);
+		outStream.writeInt(tileLength);
+		outStream.writeInt(bytesPerPixel);
+		position = HEADER_SIZE;
+	}
+
+	/**
+	 * Write a tile.
+	 *
+	 * @param id
+	 *            the quad tree id of the tile (such as /1/3/2)
+	 * @param bytes
+	 *            the tile contents (empty if the tile only has missing values)
+	 * @param length
+	 *            the number of bytes to write
+	 * @throws IOException
+	 */
+	public synchronized void writeTile(String id, byte[] bytes, int length) throws IOException {
+		if (idSet.contains(id)) {
+			throw new IllegalArgumentException("Tile " + id + " already written to " + file);
+		}
+		if (length > REGION_SIZE) {
+			throw new IllegalArgumentException("Tile " + id + " is larger than " + REGION_SIZE + " bytes.");
+		}
+		// keep the payload inside one region
+		if ((length > 0) && ((position / REGION_SIZE) != ((position + length - 1) / REGION_SIZE))) {
+			long pad = REGION_SIZE - (position % REGION_SIZE);
+			for (long i = 0; i < pad; ++i) {
+				outStream.write(0);
+			}
+			position += pad;
+		}
+		outStream.write(bytes, 0, length);
+		idList.add(id);
+		idSet.add(id);
+		entryList.add(new long[] { position, length });
+		position += length;
+	}
+
+	/**
+	 * Write the index and trailer and close the file.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		long indexOffset = position;
+		outStream.writeInt(idList.size());
+		for (int i = 0; i < idList.size(); ++i) {
+			outStream.writeUTF(idList.get(i));
+			long[] entry = entryList.get(i);
+			outStream.writeLong(entry[0]);
+			outStream.writeInt((int) entry[1]);
+		}
+		outStream.writeLong(indexOffset);
+		outStream.flush();
+		outStream.close();
+		outStream = null;
+	}
+
+	/**
+	 * Get the number of tiles written.
+	 *
+	 * @return
+	 */
+	public synchronized int getTileCount() {
+		return (idList.size());
+	}
+
+	/**
+	 * Get the container file.
+	 *
+	 * @return
+	 */
+	public File getFile() {
+		return (file);
+	}
+
+	/**
+	 * Convert ABGR pixels (as stored in a TYPE_4BYTE_ABGR BufferedImage) to
+	 * BGRA in place.
+	 *
+	 * @param bytes
+	 * @param length
+	 */
+	public static void abgrToBgra(byte[] bytes, int length) {
+		for (int i = 0; i < length; i += 4) {
+			byte a = bytes[i];
+			bytes[i] = bytes[i + 1];
+			bytes[i + 1] = bytes[i + 2];
+			bytes[i + 2] = bytes[i + 3];
+			bytes[i + 3] = a;
+		}
+	}
+
+}
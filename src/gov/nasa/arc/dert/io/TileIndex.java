@@ -0,0 +1,271 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.terrain.TileKey;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * An immutable index of the tiles that exist in a landscape. Each tile is a
+ * node numbered in breadth first order, with the root as node 0, and has one
+ * bit that is set if the tile has children. A tile has either no children or
+ * all 4, so the children of node n are numbered 4 * r + 1 to 4 * r + 4 where r
+ * is the number of set bits before n. The counts of set bits before each word
+ * are kept so finding a tile only takes a few operations per level.
+ *
+ * The index is written to the dert directory of the landscape when the
+ * elevation pyramid is built. It is safe to use from any thread without
+ * locking.
+ *
+ */
+public class TileIndex {
+
+	// Name of the index file in the dert directory of the landscape
+	public static final String FILE_NAME = "tileindex.dat";
+
+	// File identifier
+	public static final String MAGIC = "DERTTIDX";
+
+	// File format version
+	public static final int VERSION = 1;
+
+	// Node returned when there is no tile
+	public static final int NONE = -1;
+
+	// Bit n is set if node n has children
+	private final long[] bits;
+
+	// Number of set bits before each word of bits
+	private final int[] rank;
+
+	// Number of nodes
+	private final int nodeCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bits
+	 * @param nodeCount
+	 */
+	private TileIndex(long[] bits, int nodeCount) {
+		this.bits = bits;
+		this.nodeCount = nodeCount;
+		rank = new int[bits.length];
+		int count = 0;
+		for (int i = 0; i < bits.length; ++i) {
+			rank[i] = count;
+			count += Long.bitCount(bits[i]);
+		}
+		if (nodeCount != 4 * count + 1) {
+			throw new IllegalArgumentException("Tile index has " + nodeCount + " nodes and " + count + " parents.");
+		}
+	}
+
+	/**
+	 * Create the index for a complete pyramid, where every tile of every level
+	 * exists.
+	 *
+	 * @param numLevels
+	 *            the number of levels in the pyramid
+	 * @return
+	 */
+	public static TileIndex createComplete(int numLevels) {
+		if ((numLevels < 1) || (numLevels > 16)) {
+			throw new IllegalArgumentException("Invalid number of levels " + numLevels + ".");
+		}
+		// all nodes above the last level have children
+		long parentCount = ((1l << (2 * (numLevels - 1))) - 1) / 3;
+		long nodeCount = 4 * parentCount + 1;
+		if (nodeCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many tiles for " + numLevels + " levels.");
+		}
+		long[] bits = new long[(int) ((nodeCount + 63) / 64)];
+		for (int i = 0; i < parentCount; ++i) {
+			bits[i >>> 6] |= 1l << (i & 63);
+		}
+		return (new TileIndex(bits, (int) nodeCount));
+	}
+
+	/**
+	 * Create the index from a depth tree.
+	 *
+	 * @param depthTree
+	 * @return
+	 */
+	public static TileIndex create(DepthTree depthTree) {
+		ArrayList<DepthTree> queue = new ArrayList<DepthTree>();
+		queue.add(depthTree);
+		long[] bits = new long[1];
+		for (int n = 0; n < queue.size(); ++n) {
+			DepthTree dTree = queue.get(n);
+			if (dTree.child != null) {
+				if ((n >>> 6) >= bits.length) {
+					long[] tmp = new long[bits.length * 2];
+					System.arraycopy(bits, 0, tmp, 0, bits.length);
+					bits = tmp;
+				}
+				bits[n >>> 6] |= 1l << (n & 63);
+				for (int i = 0; i < 4; ++i) {
+					queue.add(dTree.child[i]);
+				}
+			}
+		}
+		int nodeCount = queue.size();
+		long[] result = new long[(nodeCount + 63) / 64];
+		System.arraycopy(bits, 0, result, 0, result.length);
+		return (new TileIndex(result, nodeCount));
+	}
+
+	/**
+	 * Read an index file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static TileIndex read(File file) throws IOException {
+		DataInputStream inStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			byte[] magic = new byte[MAGIC.length()];
+			inStream.readFully(magic);
+			if (!MAGIC.equals(new String(magic, "US-ASCII"))) {
+				throw new IOException(file + " is not a tile index file.");
+			}
+			int version = inStream.readInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported version " + version + ".");
+			}
+			int nodeCount = inStream.readInt();
+			if (nodeCount < 1) {
+				throw new IOException(file + " has an invalid node count.");
+			}
+			long[] bits = new long[(nodeCount + 63) / 64];
+			for (int i = 0; i < bits.length; ++i) {
+				bits[i] = inStream.readLong();
+			}
+			try {
+				return (new TileIndex(bits, nodeCount));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(file + " is corrupt.", e);
+			}
+		} finally {
+			inStream.close();
+		}
+	}
+
+	/**
+	 * Write this index to a file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			outStream.write(MAGIC.getBytes("US-ASCII"));
+			outStream.writeInt(VERSION);
+			outStream.writeInt(nodeCount);
+			for (int i = 0; i < bits.length; ++i) {
+				outStream.writeLong(bits[i]);
+			}
+		} finally {
+			outStream.close();
+		}
+	}
+
+	/**
+	 * Get the number of tiles.
+	 *
+	 * @return
+	 */
+	public int getNodeCount() {
+		return (nodeCount);
+	}
+
+	/**
+	 * Determine if a node has children.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public boolean hasChildren(int node) {
+		return ((bits[node >>> 6] & (1l << (node & 63))) != 0);
+	}
+
+	/**
+	 * Get a child of a node.
+	 *
+	 * @param node
+	 * @param quadrant
+	 *            1 to 4
+	 * @return NONE if the node has no children
+	 */
+	public int getChild(int node, int quadrant) {
+		int word = node >>> 6;
+		long mask = 1l << (node & 63);
+		if ((bits[word] & mask) == 0) {
+			return (NONE);
+		}
+		int r = rank[word] + Long.bitCount(bits[word] & (mask - 1));
+		return (4 * r + quadrant);
+	}
+
+	/**
+	 * Find the node for a tile.
+	 *
+	 * @param key
+	 * @return NONE if the tile does not exist
+	 */
+	public int find(long key) {
+		if (key == TileKey.NONE) {
+			return (NONE);
+		}
+		int node = 0;
+		int level = TileKey.getLevel(key);
+		for (int i = 1; (i <= level) && (node != NONE); ++i) {
+			node = getChild(node, TileKey.getQuadrant(key, i));
+		}
+		return (node);
+	}
+
+	/**
+	 * Determine if a tile exists.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean contains(long key) {
+		return (find(key) != NONE);
+	}
+
+	/**
+	 * Given a tile key, find the key of the highest level tile that exists
+	 * along the path to it.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long getMaxLevel(long key) {
+		int node = 0;
+		int level = TileKey.getLevel(key);
+		long newKey = TileKey.ROOT;
+		for (int i = 1; i <= level; ++i) {
+			int q = TileKey.getQuadrant(key, i);
+			node = getChild(node, q);
+			if (node == NONE) {
+				break;
+			}
+			newKey = TileKey.getChild(newKey, q);
+		}
+		return (newKey);
+	}
+
+}
@@ -31,12 +31,13 @@ public interface TileSource {
 	public Properties getProperties(String layerName);
 
 	/**
-	 * Given the tile id, return if it exists.
+	 * Given the tile key, return if it exists.
 	 * 
-	 * @param id
+	 * @param key
+	 *            the packed tile key (see TileKey)
 	 * @return
 	 */
-	public boolean tileExists(String id);
+	public boolean tileExists(long key);
 
 	/**
 	 * Get a tile.
@@ -64,9 +65,9 @@ public interface TileSource {
 	 *            , y the coordinate
 	 * @param worldWidth
 	 *            , worldLength the physical dimensions of the raster
-	 * @return
+	 * @return the packed tile key (see TileKey)
 	 */
-	public String getKey(double x, double y, double worldWidth, double worldLength);
+	public long getKey(double x, double y, double worldWidth, double worldLength);
 
 	/**
 	 * Given a coordinate and level, get the id of the tile at that level
@@ -75,11 +76,10 @@ public interface TileSource {
 	 *            , y the coordinate
 	 * @param worldWidth
 	 *            , worldLength the physical dimensions of the raster
-	 * @return
+	 * @return the packed tile key, TileKey.NONE if there is no tile at the level
 	 */
-	public String getKey(double x, double y, double worldWidth, double worldLength, int lvl);
+	public long getKey(double x, double y, double worldWidth, double worldLength, int lvl);
 
-	// public String getMaxLevel(String id);
 
 	/**
 	 * Get the landscape path
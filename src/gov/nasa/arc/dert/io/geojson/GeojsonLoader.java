@@ -2,7 +2,9 @@ package gov.nasa.arc.dert.io.geojson;
 
 import gov.nasa.arc.dert.io.geojson.json.GeoJsonFeature;
 import gov.nasa.arc.dert.io.geojson.json.GeoJsonFeatureCollection;
+import gov.nasa.arc.dert.io.geojson.json.GeoJsonFeatureHandler;
 import gov.nasa.arc.dert.io.geojson.json.GeoJsonObject;
+import gov.nasa.arc.dert.io.geojson.json.GeoJsonStreamReader;
 import gov.nasa.arc.dert.io.geojson.json.Geometry;
 import gov.nasa.arc.dert.io.geojson.json.GeometryCollection;
 import gov.nasa.arc.dert.io.geojson.json.Json;
@@ -33,26 +35,36 @@ import java.awt.Color;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.scenegraph.Node;
-import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.scenegraph.hint.LightCombineMode;
 import com.ardor3d.util.geom.BufferUtils;
 
 /**
  * Provides a file loader for GeoJSON format.
+ * 
+ * Large files are loaded with loadFeatureSet. The file is parsed by a
+ * GeoJsonStreamReader on a separate thread while the features are converted
+ * to Ardor3D in batches, so only a bounded number of parsed features are held
+ * in memory at a time.
  *
  */
 public class GeojsonLoader {
 
+	// Number of features converted at a time
+	public static int BATCH_SIZE = 256;
+
 	private String filePath;
 	private double minZ, maxZ;
 	private Vector3 coord = new Vector3();
@@ -158,11 +170,7 @@ public class GeojsonLoader {
 		Color color = root.getColor();
 		if (labelProp == null)
 			labelProp = ((FeatureSetState)root.getState()).labelProp;
-					
-		// Minimum landscape elevation
-		landscapeMinZ = 0;
-		if ((elevAttrName == null) && ground)
-			landscapeMinZ = Landscape.getInstance().getMinimumElevation();
+		initLandscapeMinZ();
 
 		int count = 0;
 		Node result = null;
@@ -170,7 +178,7 @@ public class GeojsonLoader {
 			GeoJsonFeature gjFeature = (GeoJsonFeature) gjRoot;
 			Feature feature = geojsonFeatureToArdor3D(gjFeature, color, labelProp, count);
 			if (feature != null) {
-				root.attachChild(feature);
+				root.addFeature(feature);
 				count++;
 			}
 			result = feature;
@@ -181,26 +189,131 @@ public class GeojsonLoader {
 				GeoJsonFeature gjFeature = featureList.get(i);
 				Feature feature = geojsonFeatureToArdor3D(gjFeature, color, labelProp, count);
 				if (feature != null) {
-					root.attachChild(feature);
+					root.addFeature(feature);
 					count++;
 				}
 			}
 			result = root;
 		}
-		Collections.sort(root.getChildren(), new Comparator<Spatial>() {
-			public int compare(Spatial spat1, Spatial spat2) {
-				return(spat1.getName().compareTo(spat2.getName()));
+		finishFeatureSet(root, count);
+		return (result);
+	}
+
+	/**
+	 * Load a GeoJSON file directly into a FeatureSet. The file is parsed on a
+	 * separate thread and the features are converted in batches as they
+	 * arrive.
+	 * 
+	 * @param filePath
+	 *            path to the file
+	 * @param root
+	 *            the FeatureSet
+	 * @param labelProp
+	 *            the property to use for feature labels
+	 * @return the number of features
+	 */
+	public int loadFeatureSet(final String filePath, FeatureSet root, String labelProp) {
+		this.filePath = filePath;
+		Color color = root.getColor();
+		if (labelProp == null)
+			labelProp = ((FeatureSetState)root.getState()).labelProp;
+		initLandscapeMinZ();
+
+		// the queue bounds the number of parsed features waiting for conversion
+		final ArrayBlockingQueue<GeoJsonFeature> queue = new ArrayBlockingQueue<GeoJsonFeature>(2 * BATCH_SIZE);
+		final GeoJsonFeature end = new GeoJsonFeature(null, null, null);
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+		// set when this thread stops taking features from the queue
+		final AtomicBoolean stopped = new AtomicBoolean();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				GeoJsonStreamReader reader = null;
+				try {
+					reader = new GeoJsonStreamReader(new InputStreamReader(new FileInputStream(filePath), "UTF-8"));
+					reader.read(new GeoJsonFeatureHandler() {
+						@Override
+						public boolean feature(GeoJsonFeature feature) {
+							try {
+								while (!stopped.get()) {
+									if (queue.offer(feature, 100, TimeUnit.MILLISECONDS))
+										return (true);
+								}
+							} catch (InterruptedException e) {
+								// loading was stopped
+							}
+							return (false);
+						}
+					});
+				} catch (Exception e) {
+					error.set(e);
+				} finally {
+					if (reader != null)
+						reader.close();
+					// don't wait forever if the features are no longer taken
+					try {
+						while (!stopped.get() && !queue.offer(end, 100, TimeUnit.MILLISECONDS))
+							;
+					} catch (InterruptedException e) {
+						// loading was stopped
+					}
+				}
 			}
-			public boolean equals(Object obj) {
-				return(this == obj);
+		}, "GeoJSON reader");
+		thread.setDaemon(true);
+		thread.start();
+
+		int count = 0;
+		ArrayList<GeoJsonFeature> batch = new ArrayList<GeoJsonFeature>(BATCH_SIZE);
+		try {
+			boolean done = false;
+			while (!done) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				for (int i = 0; i < batch.size(); ++i) {
+					GeoJsonFeature gjFeature = batch.get(i);
+					if (gjFeature == end) {
+						done = true;
+						break;
+					}
+					Feature feature = geojsonFeatureToArdor3D(gjFeature, color, labelProp, count);
+					if (feature != null) {
+						root.addFeature(feature);
+						count++;
+					}
+				}
+				batch.clear();
 			}
-		});
+		} catch (InterruptedException e) {
+			thread.interrupt();
+			Thread.currentThread().interrupt();
+		} finally {
+			// release the reader if conversion failed
+			stopped.set(true);
+			queue.clear();
+		}
+		if (error.get() != null) {
+			Console.println("Unable to load GeoJSON file " + filePath + ", see log.");
+			error.get().printStackTrace();
+		}
+		finishFeatureSet(root, count);
+		return (count);
+	}
+
+	private void initLandscapeMinZ() {
+		// Minimum landscape elevation
+		landscapeMinZ = 0;
+		if ((elevAttrName == null) && ground)
+			landscapeMinZ = Landscape.getInstance().getMinimumElevation();
+	}
+
+	private void finishFeatureSet(FeatureSet root, int count) {
+		root.sortFeatures();
 		root.setLabelVisible(true);
 		if (Console.getInstance() != null)
 			Console.println("Found " + count + " features for GeoJSON file " + filePath + ".");
 		else
 			System.out.println("Found " + count + " features for GeoJSON file " + filePath + ".");
-		return (result);
 	}
 
 	private Feature geojsonFeatureToArdor3D(GeoJsonFeature gjFeature, Color color, String labelProp, int count) {
@@ -393,38 +506,49 @@ public class GeojsonLoader {
 	}
 
 	private ReadOnlyVector3 toWorld(double[] coordinate, boolean getZ) {
+		toLocal(coordinate);
+		if (getZ)
+			coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
+		if (Double.isNaN(coord.getZ())) {
+			return (null);
+		} else {
+			return (coord);
+		}
+	}
+
+	private void toLocal(double[] coordinate) {
 		if (coordinate.length == 3) {
 			translate(coordinate);
 			coord.set(coordinate[0], coordinate[1], coordinate[2]);
 			srs.getProjection().worldToLocal(coord);
-			if (getZ)
-				coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
-			else
-				coord.setZ(coord.getZ() - landscapeMinZ);
+			coord.setZ(coord.getZ() - landscapeMinZ);
 		} else if (coordinate.length == 2) {
 			translate(coordinate);
 			coord.set(coordinate[0], coordinate[1], 0);
 			srs.getProjection().worldToLocal(coord);
-			if (getZ)
-				coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
 		} else {
 			throw new IllegalArgumentException("GeoJSON Position has < 2 elements.");
 		}
-		if (Double.isNaN(coord.getZ())) {
-			return (null);
-		} else {
-			return (coord);
-		}
 	}
 	
 	private LineStrip createLineStrip(String name, double[][] coord, Color color) {
+		// convert all of the coordinates, then get the elevations at once
+		double[] xy = new double[2 * coord.length];
+		float[] z = new float[coord.length];
+		for (int i = 0; i < coord.length; ++i) {
+			toLocal(coord[i]);
+			xy[2 * i] = this.coord.getX();
+			xy[2 * i + 1] = this.coord.getY();
+			z[i] = this.coord.getZf();
+		}
+		if (ground)
+			Landscape.getInstance().getZ(xy, z);
 		FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(3 * coord.length);
 		for (int i = 0; i < coord.length; ++i) {
-			ReadOnlyVector3 pos = toWorld(coord[i], ground);
-			if (pos != null) {
-				vertexBuffer.put(pos.getXf()).put(pos.getYf()).put(pos.getZf());
-				minZ = Math.min(minZ, pos.getZ());
-				maxZ = Math.max(maxZ, pos.getZ());
+			if (!Float.isNaN(z[i])) {
+				vertexBuffer.put((float) xy[2 * i]).put((float) xy[2 * i + 1]).put(z[i]);
+				minZ = Math.min(minZ, z[i]);
+				maxZ = Math.max(maxZ, z[i]);
 			}
 		}
 		vertexBuffer.flip();
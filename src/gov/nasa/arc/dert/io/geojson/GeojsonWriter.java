@@ -0,0 +1,103 @@
+package gov.nasa.arc.dert.io.geojson;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Write a GeoJSON FeatureCollection of LineString features, one feature per
+ * line with a single numeric property.
+ *
+ */
+public class GeojsonWriter {
+
+	// The file to be written to.
+	protected String filename;
+
+	// The writer
+	protected PrintWriter writer;
+
+	// The number of features written
+	protected int count;
+
+	/**
+	 * Constructor
+	 *
+	 * @param filename
+	 */
+	public GeojsonWriter(String filename) {
+		this.filename = filename;
+	}
+
+	/**
+	 * Open the file and start the feature collection.
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		writer = new PrintWriter(new BufferedWriter(new FileWriter(filename)));
+		writer.println("{\"type\":\"FeatureCollection\",\"features\":[");
+		count = 0;
+	}
+
+	/**
+	 * End the feature collection and close the file. Does nothing if the
+	 * file is not open.
+	 *
+	 * @throws IOException
+	 *             if any write to the file failed
+	 */
+	public void close() throws IOException {
+		if (writer == null) {
+			return;
+		}
+		writer.println();
+		writer.println("]}");
+		// the PrintWriter keeps its errors, check them before closing
+		boolean error = writer.checkError();
+		writer.close();
+		writer = null;
+		if (error) {
+			throw new IOException("Error writing " + filename);
+		}
+	}
+
+	/**
+	 * Write a LineString feature
+	 *
+	 * @param xyz
+	 *            the coordinates, 3 per point
+	 * @param n
+	 *            the number of points
+	 * @param propertyName
+	 * @param value
+	 */
+	public void writeLineString(double[] xyz, int n, String propertyName, double value) {
+		if (count > 0) {
+			writer.println(",");
+		}
+		StringBuilder str = new StringBuilder();
+		str.append("{\"type\":\"Feature\",\"properties\":{\"");
+		str.append(propertyName);
+		str.append("\":");
+		str.append(value);
+		str.append("},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+		for (int i = 0; i < n; ++i) {
+			if (i > 0) {
+				str.append(',');
+			}
+			str.append('[');
+			str.append(xyz[3 * i]);
+			str.append(',');
+			str.append(xyz[3 * i + 1]);
+			str.append(',');
+			str.append(xyz[3 * i + 2]);
+			str.append(']');
+		}
+		str.append("]}}");
+		writer.print(str.toString());
+		count++;
+	}
+
+}
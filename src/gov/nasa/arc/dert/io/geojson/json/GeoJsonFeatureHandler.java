@@ -0,0 +1,17 @@
+package gov.nasa.arc.dert.io.geojson.json;
+
+/**
+ * Interface for receiving features from a GeoJsonStreamReader.
+ *
+ */
+public interface GeoJsonFeatureHandler {
+
+	/**
+	 * A feature was read.
+	 *
+	 * @param feature
+	 * @return false to stop reading
+	 */
+	public boolean feature(GeoJsonFeature feature);
+
+}
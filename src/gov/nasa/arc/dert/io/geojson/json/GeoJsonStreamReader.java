@@ -0,0 +1,611 @@
+package gov.nasa.arc.dert.io.geojson.json;
+
+import gov.nasa.arc.dert.io.geojson.json.Geometry.GeojsonType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Streaming reader for GeoJSON. Features are handed to a GeoJsonFeatureHandler
+ * as soon as they are read, the document is never held in memory as a whole.
+ * Coordinates are parsed directly into primitive arrays.
+ *
+ * The root may be a FeatureCollection or a single Feature. Members that are not
+ * used by DERT (bbox, crs, foreign members) are skipped.
+ *
+ */
+public class GeoJsonStreamReader {
+
+	// Size of the character buffer
+	public static int BUFFER_SIZE = 65536;
+
+	// Powers of 10 that are exact as doubles
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+		1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// Largest mantissa that is exact as a double
+	private static final long MAX_EXACT_MANTISSA = 1l << 53;
+
+	private Reader reader;
+
+	// Character buffer
+	private char[] buffer;
+	private int position, limit;
+
+	// The current character, -1 at the end of the input
+	private int currentChar;
+
+	// Number of characters read
+	private long offset;
+
+	// Scratch space for strings, numbers, and positions
+	private StringBuilder sBuilder;
+	private char[] numberChars;
+	private double[] pos;
+
+	// The last number read was an integer that fits in a long
+	private boolean numberIsLong;
+	private long longValue;
+
+	/**
+	 * Constructor
+	 *
+	 * @param reader
+	 */
+	public GeoJsonStreamReader(Reader reader) {
+		this.reader = reader;
+		buffer = new char[BUFFER_SIZE];
+		sBuilder = new StringBuilder();
+		numberChars = new char[32];
+		pos = new double[4];
+	}
+
+	/**
+	 * Read the GeoJSON document.
+	 *
+	 * @param handler
+	 *            receives the features
+	 * @return the number of features read
+	 * @throws IOException
+	 */
+	public int read(GeoJsonFeatureHandler handler) throws IOException {
+		next();
+		expect('{');
+		String type = null;
+		String id = null;
+		HashMap<String, Object> properties = null;
+		Geometry geometry = null;
+		int count = 0;
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				if (key.equals("type")) {
+					type = toString(readValue());
+				} else if (key.equals("features")) {
+					expect('[');
+					if (!isEmpty(']')) {
+						do {
+							GeoJsonFeature feature = readFeature();
+							if (feature != null) {
+								count++;
+								if (!handler.feature(feature)) {
+									return (count);
+								}
+							}
+						} while (nextMember(']'));
+					}
+				} else if (key.equals("id")) {
+					id = toString(readValue());
+				} else if (key.equals("properties")) {
+					properties = readProperties();
+				} else if (key.equals("geometry")) {
+					geometry = readGeometry();
+				} else {
+					readValue();
+				}
+			} while (nextMember('}'));
+		}
+		// the root is a single feature
+		if ("Feature".equals(type)) {
+			count++;
+			handler.feature(new GeoJsonFeature(id, properties, geometry));
+		}
+		return (count);
+	}
+
+	/**
+	 * Close the underlying reader.
+	 */
+	public void close() {
+		try {
+			reader.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private GeoJsonFeature readFeature() throws IOException {
+		expect('{');
+		String type = null;
+		String id = null;
+		HashMap<String, Object> properties = null;
+		Geometry geometry = null;
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				if (key.equals("type")) {
+					type = toString(readValue());
+				} else if (key.equals("id")) {
+					id = toString(readValue());
+				} else if (key.equals("properties")) {
+					properties = readProperties();
+				} else if (key.equals("geometry")) {
+					geometry = readGeometry();
+				} else {
+					readValue();
+				}
+			} while (nextMember('}'));
+		}
+		if (!"Feature".equals(type)) {
+			return (null);
+		}
+		return (new GeoJsonFeature(id, properties, geometry));
+	}
+
+	private HashMap<String, Object> readProperties() throws IOException {
+		if (skipWhitespace() == 'n') {
+			readValue();
+			return (null);
+		}
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		expect('{');
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				Object value = readValue();
+				// arrays are not supported as properties
+				if (!(value instanceof Object[])) {
+					properties.put(key, value);
+				}
+			} while (nextMember('}'));
+		}
+		return (properties);
+	}
+
+	private Geometry readGeometry() throws IOException {
+		if (skipWhitespace() == 'n') {
+			readValue();
+			return (null);
+		}
+		expect('{');
+		String type = null;
+		Object coordinates = null;
+		ArrayList<Geometry> geometryList = null;
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				if (key.equals("type")) {
+					type = toString(readValue());
+				} else if (key.equals("coordinates")) {
+					coordinates = readCoordinates();
+				} else if (key.equals("geometries")) {
+					geometryList = new ArrayList<Geometry>();
+					expect('[');
+					if (!isEmpty(']')) {
+						do {
+							Geometry geometry = readGeometry();
+							if (geometry != null) {
+								geometryList.add(geometry);
+							}
+						} while (nextMember(']'));
+					}
+				} else {
+					readValue();
+				}
+			} while (nextMember('}'));
+		}
+		if (type == null) {
+			throw new IOException("GeoJSON Geometry has no type near character " + offset + ".");
+		}
+		// the type may follow the coordinates, so they are converted here
+		switch (GeojsonType.valueOf(type)) {
+		case Point:
+			return (new Point((double[]) toDepth(coordinates, 1)));
+		case MultiPoint:
+			return (new MultiPoint((double[][]) toDepth(coordinates, 2)));
+		case LineString:
+			return (new LineString((double[][]) toDepth(coordinates, 2)));
+		case MultiLineString:
+			return (new MultiLineString((double[][][]) toDepth(coordinates, 3)));
+		case Polygon:
+			return (new Polygon((double[][][]) toDepth(coordinates, 3)));
+		case MultiPolygon:
+			return (new MultiPolygon((double[][][][]) toDepth(coordinates, 4)));
+		case GeometryCollection:
+			if (geometryList == null) {
+				geometryList = new ArrayList<Geometry>();
+			}
+			return (new GeometryCollection(geometryList));
+		}
+		return (null);
+	}
+
+	/**
+	 * Read a coordinate array. Returns double[] for a position, double[][]
+	 * for an array of positions, and so on.
+	 */
+	private Object readCoordinates() throws IOException {
+		if (skipWhitespace() == 'n') {
+			readValue();
+			return (null);
+		}
+		expect('[');
+		int c = skipWhitespace();
+		if (c == ']') {
+			next();
+			return (new double[0]);
+		}
+		if (c == '[') {
+			ArrayList<Object> list = new ArrayList<Object>();
+			do {
+				list.add(readCoordinates());
+			} while (nextMember(']'));
+			return (toArray(list));
+		}
+		int n = 0;
+		do {
+			if (n == pos.length) {
+				pos = Arrays.copyOf(pos, n * 2);
+			}
+			pos[n++] = readNumber();
+		} while (nextMember(']'));
+		return (Arrays.copyOf(pos, n));
+	}
+
+	private Object toArray(ArrayList<Object> list) throws IOException {
+		Object first = list.get(0);
+		int n = list.size();
+		try {
+			if (first instanceof double[]) {
+				double[][] array = new double[n][];
+				for (int i = 0; i < n; ++i) {
+					array[i] = (double[]) list.get(i);
+				}
+				return (array);
+			} else if (first instanceof double[][]) {
+				double[][][] array = new double[n][][];
+				for (int i = 0; i < n; ++i) {
+					array[i] = (double[][]) list.get(i);
+				}
+				return (array);
+			} else if (first instanceof double[][][]) {
+				double[][][][] array = new double[n][][][];
+				for (int i = 0; i < n; ++i) {
+					array[i] = (double[][][]) list.get(i);
+				}
+				return (array);
+			}
+		} catch (ClassCastException e) {
+			throw new IOException("Inconsistent GeoJSON coordinates near character " + offset + ".");
+		}
+		throw new IOException("GeoJSON coordinates nested too deeply near character " + offset + ".");
+	}
+
+	private Object toDepth(Object coordinates, int depth) throws IOException {
+		// an empty array reads as an empty position
+		if ((coordinates == null) || ((coordinates instanceof double[]) && (((double[]) coordinates).length == 0))) {
+			switch (depth) {
+			case 1:
+				return (new double[0]);
+			case 2:
+				return (new double[0][]);
+			case 3:
+				return (new double[0][][]);
+			default:
+				return (new double[0][][][]);
+			}
+		}
+		boolean valid = false;
+		switch (depth) {
+		case 1:
+			valid = (coordinates instanceof double[]);
+			break;
+		case 2:
+			valid = (coordinates instanceof double[][]);
+			break;
+		case 3:
+			valid = (coordinates instanceof double[][][]);
+			break;
+		default:
+			valid = (coordinates instanceof double[][][][]);
+			break;
+		}
+		if (!valid) {
+			throw new IOException("GeoJSON coordinates have the wrong depth near character " + offset + ".");
+		}
+		return (coordinates);
+	}
+
+	private Object readValue() throws IOException {
+		switch (skipWhitespace()) {
+		case '"':
+			return (readString());
+		case '{':
+			JsonObject jObject = new JsonObject();
+			next();
+			if (!isEmpty('}')) {
+				do {
+					String key = readKey();
+					jObject.add(key, readValue());
+				} while (nextMember('}'));
+			}
+			return (jObject);
+		case '[':
+			ArrayList<Object> list = new ArrayList<Object>();
+			next();
+			if (!isEmpty(']')) {
+				do {
+					list.add(readValue());
+				} while (nextMember(']'));
+			}
+			return (list.toArray());
+		case 't':
+			readLiteral("true");
+			return (Boolean.TRUE);
+		case 'f':
+			readLiteral("false");
+			return (Boolean.FALSE);
+		case 'n':
+			readLiteral("null");
+			return (null);
+		default:
+			double value = readNumber();
+			if (numberIsLong) {
+				if ((longValue >= Integer.MIN_VALUE) && (longValue <= Integer.MAX_VALUE)) {
+					return (new Integer((int) longValue));
+				}
+				return (new Long(longValue));
+			}
+			return (new Double(value));
+		}
+	}
+
+	private String readKey() throws IOException {
+		if (skipWhitespace() != '"') {
+			throw new IOException("Expected a key near character " + offset + ".");
+		}
+		String key = readString();
+		expect(':');
+		return (key);
+	}
+
+	private String readString() throws IOException {
+		sBuilder.setLength(0);
+		next();
+		while (true) {
+			switch (currentChar) {
+			case -1:
+				throw new IOException("Unterminated string in GeoJSON.");
+			case '"':
+				next();
+				return (sBuilder.toString());
+			case '\\':
+				next();
+				switch (currentChar) {
+				case 'b':
+					sBuilder.append('\b');
+					break;
+				case 'f':
+					sBuilder.append('\f');
+					break;
+				case 'n':
+					sBuilder.append('\n');
+					break;
+				case 'r':
+					sBuilder.append('\r');
+					break;
+				case 't':
+					sBuilder.append('\t');
+					break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; ++i) {
+						next();
+						int digit = Character.digit(currentChar, 16);
+						if (digit < 0) {
+							throw new IOException("Invalid unicode escape near character " + offset + ".");
+						}
+						code = code * 16 + digit;
+					}
+					sBuilder.append((char) code);
+					break;
+				case -1:
+					throw new IOException("Unterminated string in GeoJSON.");
+				default:
+					// quote, backslash, and slash
+					sBuilder.append((char) currentChar);
+					break;
+				}
+				next();
+				break;
+			default:
+				sBuilder.append((char) currentChar);
+				next();
+				break;
+			}
+		}
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		for (int i = 0; i < literal.length(); ++i) {
+			if (currentChar != literal.charAt(i)) {
+				throw new IOException("Invalid literal near character " + offset + ".");
+			}
+			next();
+		}
+	}
+
+	/**
+	 * Read a number. Numbers with up to 15 or so significant digits are
+	 * computed from the digits directly, this is correctly rounded since the
+	 * mantissa and the power of 10 are exact. Others fall back to
+	 * Double.parseDouble.
+	 */
+	private double readNumber() throws IOException {
+		skipWhitespace();
+		int n = 0;
+		boolean negative = false;
+		boolean exact = true;
+		boolean isInteger = true;
+		long mantissa = 0;
+		int fraction = 0;
+		int exponent = 0;
+		if (currentChar == '-') {
+			negative = true;
+			n = append(n);
+		}
+		while ((currentChar >= '0') && (currentChar <= '9')) {
+			if (mantissa < MAX_EXACT_MANTISSA) {
+				mantissa = mantissa * 10 + (currentChar - '0');
+			} else {
+				exact = false;
+			}
+			n = append(n);
+		}
+		if (currentChar == '.') {
+			isInteger = false;
+			n = append(n);
+			while ((currentChar >= '0') && (currentChar <= '9')) {
+				if (mantissa < MAX_EXACT_MANTISSA) {
+					mantissa = mantissa * 10 + (currentChar - '0');
+					fraction++;
+				} else {
+					exact = false;
+				}
+				n = append(n);
+			}
+		}
+		if ((currentChar == 'e') || (currentChar == 'E')) {
+			isInteger = false;
+			n = append(n);
+			boolean negativeExponent = false;
+			if ((currentChar == '-') || (currentChar == '+')) {
+				negativeExponent = (currentChar == '-');
+				n = append(n);
+			}
+			while ((currentChar >= '0') && (currentChar <= '9')) {
+				if (exponent < 10000) {
+					exponent = exponent * 10 + (currentChar - '0');
+				}
+				n = append(n);
+			}
+			if (negativeExponent) {
+				exponent = -exponent;
+			}
+		}
+		if ((n == 0) || ((n == 1) && negative)) {
+			throw new IOException("Invalid number near character " + offset + ".");
+		}
+		exact = exact && (mantissa <= MAX_EXACT_MANTISSA);
+		numberIsLong = isInteger && exact;
+		longValue = negative ? -mantissa : mantissa;
+		int e = exponent - fraction;
+		double value = 0;
+		if (exact && (e >= -22) && (e <= 22)) {
+			value = (e < 0) ? mantissa / POW10[-e] : mantissa * POW10[e];
+			if (negative) {
+				value = -value;
+			}
+		} else {
+			try {
+				value = Double.parseDouble(new String(numberChars, 0, n));
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid number near character " + offset + ".");
+			}
+		}
+		return (value);
+	}
+
+	private int append(int n) throws IOException {
+		if (n == numberChars.length) {
+			numberChars = Arrays.copyOf(numberChars, n * 2);
+		}
+		numberChars[n] = (char) currentChar;
+		next();
+		return (n + 1);
+	}
+
+	private String toString(Object obj) {
+		if (obj == null) {
+			return (null);
+		}
+		if ((obj instanceof Double) && (((Double) obj).doubleValue() == Math.rint((Double) obj))) {
+			return (Long.toString(((Double) obj).longValue()));
+		}
+		return (obj.toString());
+	}
+
+	/**
+	 * Determine if an object or array is empty, consuming the closing bracket
+	 * if it is.
+	 */
+	private boolean isEmpty(char close) throws IOException {
+		if (skipWhitespace() == close) {
+			next();
+			return (true);
+		}
+		return (false);
+	}
+
+	/**
+	 * Move to the next member of an object or array.
+	 *
+	 * @return false if the closing bracket was reached
+	 */
+	private boolean nextMember(char close) throws IOException {
+		int c = skipWhitespace();
+		if (c == ',') {
+			next();
+			return (true);
+		}
+		if (c == close) {
+			next();
+			return (false);
+		}
+		throw new IOException("Expected ',' or '" + close + "' near character " + offset + ".");
+	}
+
+	private void expect(char c) throws IOException {
+		if (skipWhitespace() != c) {
+			throw new IOException("Expected '" + c + "' near character " + offset + ".");
+		}
+		next();
+	}
+
+	private int skipWhitespace() throws IOException {
+		while ((currentChar == ' ') || (currentChar == '\n') || (currentChar == '\r') || (currentChar == '\t')
+			|| (currentChar == '\uFEFF')) {
+			next();
+		}
+		return (currentChar);
+	}
+
+	private int next() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				currentChar = -1;
+				return (currentChar);
+			}
+		}
+		currentChar = buffer[position++];
+		offset++;
+		return (currentChar);
+	}
+
+}
@@ -29,6 +29,11 @@ public class GeometryCollection extends Geometry {
 		}
 	}
 
+	public GeometryCollection(ArrayList<Geometry> geometryList) {
+		super(GeojsonType.GeometryCollection);
+		this.geometryList = geometryList;
+	}
+
 	/**
 	 * Get the list of geometry objects in the collection.
 	 * 
@@ -0,0 +1,770 @@
+package gov.nasa.arc.dert.landscape;
+
+import gov.nasa.arc.dert.io.TileSource;
+import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.terrain.QuadTreeMesh;
+import gov.nasa.arc.dert.terrain.TileKey;
+import gov.nasa.arc.dert.util.MathUtil;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Extracts contour lines of the difference between the landscape and a plane
+ * inside a polygon. The vertices of the tiles at one level of the pyramid are
+ * used directly as the grid for marching squares, so the landscape is not
+ * resampled. Each tile is processed by a separate task in a fork/join pool and
+ * the pieces of line that end on a tile border are joined afterwards.
+ *
+ * The elevations of the tiles and the differences from the plane are kept
+ * between calls. When only the contour interval changes no tiles are read and
+ * the differences are reused. When the plane or polygon changes only the tiles
+ * that were not already loaded are read.
+ *
+ * Lines are oriented so the landscape above the contour is on the left.
+ *
+ */
+public class ContourEngine {
+
+	// Number of threads processing tiles
+	public static int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Maximum number of contour levels in one extraction
+	public static int MAX_CONTOURS = 1000;
+
+	private static ForkJoinPool pool;
+
+	/**
+	 * A contour line.
+	 */
+	public static class Contour {
+
+		// Elevation difference of the contour
+		public double value;
+
+		// The line is a loop, the last point is the same as the first
+		public boolean closed;
+
+		// X,Y coordinates of the points
+		public double[] xy;
+
+		// Number of points
+		public int count;
+
+		// Edges of the grid at the start and end of the line
+		protected long start, end;
+
+		// Index of the contour level
+		protected int level;
+
+		protected Contour(int level, double value, long start, long end, int capacity) {
+			this.level = level;
+			this.value = value;
+			this.start = start;
+			this.end = end;
+			xy = new double[2 * capacity];
+		}
+
+		/**
+		 * Add a point, unless it is the same as the last one.
+		 */
+		protected void add(double x, double y) {
+			if ((count > 0) && (xy[2 * count - 2] == x) && (xy[2 * count - 1] == y)) {
+				return;
+			}
+			if (2 * count == xy.length) {
+				double[] newXY = new double[2 * xy.length];
+				System.arraycopy(xy, 0, newXY, 0, xy.length);
+				xy = newXY;
+			}
+			xy[2 * count] = x;
+			xy[2 * count + 1] = y;
+			count++;
+		}
+
+		/**
+		 * Add the points of a contour that starts where this one ends.
+		 */
+		protected void append(Contour that) {
+			for (int i = 1; i < that.count; ++i) {
+				add(that.xy[2 * i], that.xy[2 * i + 1]);
+			}
+			end = that.end;
+		}
+	}
+
+	// The landscape
+	private Landscape landscape;
+
+	// Level of the pyramid that is used
+	private int level = -1;
+
+	// Tiles at the level, by key
+	private HashMap<Long, Tile> tileMap;
+
+	// Tiles inside the polygon
+	private ArrayList<Tile> tileList;
+
+	// Polygon and plane
+	private ReadOnlyVector3[] vertex;
+	private double[] planeEq;
+
+	// Range of the elevation difference
+	private float[] minMaxDiff;
+
+	// Tasks stop if the calling thread is interrupted
+	private Thread caller;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landscape
+	 */
+	public ContourEngine(Landscape landscape) {
+		this.landscape = landscape;
+		tileMap = new HashMap<Long, Tile>();
+		tileList = new ArrayList<Tile>();
+		minMaxDiff = new float[] { Float.NaN, Float.NaN };
+	}
+
+	/**
+	 * Set the polygon and plane. The level is the first one with pixels no
+	 * larger than the sample size, or the highest level where the tile at the
+	 * center of the polygon exists.
+	 *
+	 * @param vertex
+	 *            the vertices of the polygon, the last must be the same as the
+	 *            first
+	 * @param lowerBound
+	 *            the lower bound of the polygon
+	 * @param upperBound
+	 *            the upper bound of the polygon
+	 * @param planeEq
+	 *            the plane equation, elevation differences are measured from
+	 *            this plane
+	 * @param sampleSize
+	 *            the largest pixel size wanted
+	 * @return false if the calling thread was interrupted
+	 */
+	public synchronized boolean setRegion(ReadOnlyVector3[] vertex, ReadOnlyVector3 lowerBound,
+		ReadOnlyVector3 upperBound, double[] planeEq, double sampleSize) {
+		caller = Thread.currentThread();
+		cancelled = false;
+		this.vertex = vertex;
+		this.planeEq = planeEq;
+
+		// choose the level
+		TileSource source = landscape.getSource();
+		double xC = (lowerBound.getX() + upperBound.getX()) / 2;
+		double yC = (lowerBound.getY() + upperBound.getY()) / 2;
+		double pixelSize = Math.max(landscape.getTerrainWidth(), landscape.getTerrainLength());
+		QuadTree root = landscape.getFactory().getQuadTree(TileKey.ROOT);
+		if ((root != null) && (root.getMesh() != null)) {
+			pixelSize = Math.max(root.getMesh().getPixelWidth(), root.getMesh().getPixelLength());
+		}
+		int newLevel = 0;
+		while ((newLevel < TileKey.MAX_LEVEL) && (pixelSize > sampleSize)) {
+			long key = getKey(xC, yC, newLevel + 1);
+			if ((key == TileKey.NONE) || !source.tileExists(key)) {
+				break;
+			}
+			newLevel++;
+			pixelSize /= 2;
+		}
+		if (newLevel != level) {
+			tileMap.clear();
+			level = newLevel;
+		}
+
+		// find the tiles, keeping those already loaded
+		int n = 1 << level;
+		int c0 = getIndex(lowerBound.getX(), landscape.getTerrainWidth(), n, false);
+		int c1 = getIndex(upperBound.getX(), landscape.getTerrainWidth(), n, false);
+		int r0 = getIndex(upperBound.getY(), landscape.getTerrainLength(), n, true);
+		int r1 = getIndex(lowerBound.getY(), landscape.getTerrainLength(), n, true);
+		HashMap<Long, Tile> newMap = new HashMap<Long, Tile>();
+		tileList.clear();
+		for (int r = r0; r <= r1; ++r) {
+			for (int c = c0; c <= c1; ++c) {
+				long key = TileKey.fromColumnRow(level, c, r);
+				Tile tile = tileMap.get(key);
+				if (tile == null) {
+					if (!source.tileExists(key)) {
+						continue;
+					}
+					tile = new Tile(key);
+				}
+				newMap.put(key, tile);
+				tileList.add(tile);
+			}
+		}
+		tileMap = newMap;
+		return (computeDifferences());
+	}
+
+	/**
+	 * Set the polygon and plane with elevation grids in place of the landscape
+	 * tiles. Each grid is a tile at the given level of a pyramid whose root
+	 * tile is centered on the origin. Neighboring grids share their border
+	 * vertices, as the tile meshes do.
+	 *
+	 * @param vertex
+	 *            the vertices of the polygon, the last must be the same as the
+	 *            first
+	 * @param planeEq
+	 *            the plane equation
+	 * @param level
+	 *            the level of the tiles
+	 * @param key
+	 *            the tile keys
+	 * @param z
+	 *            the elevations of each tile, row 0 at the top, NaN where
+	 *            missing
+	 * @param tileWidth
+	 *            , tileLength the tile dimensions in cells
+	 * @param pixelWidth
+	 *            , pixelLength the cell dimensions
+	 * @return false if the calling thread was interrupted
+	 */
+	public synchronized boolean setRegion(ReadOnlyVector3[] vertex, double[] planeEq, int level, long[] key,
+		float[][] z, int tileWidth, int tileLength, double pixelWidth, double pixelLength) {
+		caller = Thread.currentThread();
+		cancelled = false;
+		this.vertex = vertex;
+		this.planeEq = planeEq;
+		this.level = level;
+		int n = 1 << level;
+		tileMap.clear();
+		tileList.clear();
+		for (int i = 0; i < key.length; ++i) {
+			Tile tile = new Tile(key[i]);
+			double x0 = (TileKey.getColumn(key[i]) - n / 2.0) * tileWidth * pixelWidth;
+			double y0 = (n / 2.0 - TileKey.getRow(key[i])) * tileLength * pixelLength;
+			tile.setGrid(tileWidth, tileLength, pixelWidth, pixelLength, x0, y0);
+			tile.z = z[i];
+			tileMap.put(key[i], tile);
+			tileList.add(tile);
+		}
+		return (computeDifferences());
+	}
+
+	private boolean computeDifferences() {
+		// load the new tiles and compute the differences
+		List<Callable<Tile>> taskList = new ArrayList<Callable<Tile>>(tileList.size());
+		for (int i = 0; i < tileList.size(); ++i) {
+			final Tile tile = tileList.get(i);
+			taskList.add(new Callable<Tile>() {
+				@Override
+				public Tile call() {
+					if (isCancelled()) {
+						return (tile);
+					}
+					if (tile.z == null) {
+						tile.load();
+					}
+					tile.computeDifference();
+					return (tile);
+				}
+			});
+		}
+		if (!invokeAll(taskList)) {
+			// loaded tiles are kept, the differences are incomplete
+			tileList.clear();
+			minMaxDiff[0] = Float.NaN;
+			minMaxDiff[1] = Float.NaN;
+			return (false);
+		}
+
+		minMaxDiff[0] = Float.MAX_VALUE;
+		minMaxDiff[1] = -Float.MAX_VALUE;
+		for (int i = 0; i < tileList.size(); ++i) {
+			Tile tile = tileList.get(i);
+			minMaxDiff[0] = Math.min(minMaxDiff[0], tile.minDiff);
+			minMaxDiff[1] = Math.max(minMaxDiff[1], tile.maxDiff);
+		}
+		if (minMaxDiff[0] > minMaxDiff[1]) {
+			minMaxDiff[0] = Float.NaN;
+			minMaxDiff[1] = Float.NaN;
+		}
+		return (!cancelled && !caller.isInterrupted());
+	}
+
+	/**
+	 * Extract the contour lines from the current region.
+	 *
+	 * @param interval
+	 *            the difference between contour levels, levels are multiples
+	 *            of the interval
+	 * @return the contour lines, null if the calling thread was interrupted
+	 * @throws IllegalArgumentException
+	 *             if the interval gives more than MAX_CONTOURS levels
+	 */
+	public synchronized List<Contour> getContours(final double interval) {
+		caller = Thread.currentThread();
+		cancelled = false;
+		ArrayList<Contour> contourList = new ArrayList<Contour>();
+		if (!(interval > 0) || tileList.isEmpty() || Float.isNaN(minMaxDiff[0])) {
+			return (contourList);
+		}
+		if ((Math.floor(minMaxDiff[1] / interval) - Math.ceil(minMaxDiff[0] / interval)) >= MAX_CONTOURS) {
+			throw new IllegalArgumentException("Contour interval " + interval + " gives more than " + MAX_CONTOURS
+				+ " contours.");
+		}
+
+		// trace the contours in each tile
+		List<Callable<List<Contour>>> taskList = new ArrayList<Callable<List<Contour>>>(tileList.size());
+		for (int i = 0; i < tileList.size(); ++i) {
+			final Tile tile = tileList.get(i);
+			taskList.add(new Callable<List<Contour>>() {
+				@Override
+				public List<Contour> call() {
+					return (tile.trace(interval));
+				}
+			});
+		}
+		List<Future<List<Contour>>> futureList = getPool().invokeAll(taskList);
+
+		// join the pieces that meet at tile borders
+		TreeMap<Integer, ArrayList<Contour>> levelMap = new TreeMap<Integer, ArrayList<Contour>>();
+		for (int i = 0; i < futureList.size(); ++i) {
+			List<Contour> pieceList = get(futureList.get(i));
+			if (pieceList == null) {
+				return (null);
+			}
+			for (int j = 0; j < pieceList.size(); ++j) {
+				Contour piece = pieceList.get(j);
+				ArrayList<Contour> list = levelMap.get(piece.level);
+				if (list == null) {
+					list = new ArrayList<Contour>();
+					levelMap.put(piece.level, list);
+				}
+				list.add(piece);
+			}
+		}
+		ArrayList<Contour> lineList = new ArrayList<Contour>();
+		for (ArrayList<Contour> list : levelMap.values()) {
+			lineList.clear();
+			join(list, lineList);
+			// drop lines that are a single point
+			for (int i = 0; i < lineList.size(); ++i) {
+				if (lineList.get(i).count > 1) {
+					contourList.add(lineList.get(i));
+				}
+			}
+		}
+		if (cancelled || caller.isInterrupted()) {
+			return (null);
+		}
+		return (contourList);
+	}
+
+	/**
+	 * Get the range of the elevation difference in the current region.
+	 *
+	 * @return the minimum and maximum, NaN if there is no landscape in the
+	 *         region
+	 */
+	public synchronized float[] getDifferenceRange() {
+		return (new float[] { minMaxDiff[0], minMaxDiff[1] });
+	}
+
+	/**
+	 * Get the plane equation of the current region. A contour lies on the
+	 * landscape at its value above the plane.
+	 *
+	 * @return a copy of the plane equation
+	 */
+	public synchronized double[] getPlaneEquation() {
+		return ((planeEq == null) ? null : planeEq.clone());
+	}
+
+	/**
+	 * Get the level of the pyramid used for the current region.
+	 *
+	 * @return
+	 */
+	public synchronized int getLevel() {
+		return (level);
+	}
+
+	/**
+	 * Forget the loaded tiles.
+	 */
+	public synchronized void clear() {
+		tileMap.clear();
+		tileList.clear();
+		level = -1;
+		minMaxDiff[0] = Float.NaN;
+		minMaxDiff[1] = Float.NaN;
+	}
+
+	/**
+	 * Join pieces of line where the end of one is the start of another. Each
+	 * grid edge is crossed by a contour at most once, so it is the start of at
+	 * most one piece and the end of at most one piece.
+	 *
+	 * @param pieceList
+	 *            the pieces, all at the same contour level
+	 * @param result
+	 *            the joined lines are added to this list
+	 */
+	protected static void join(List<Contour> pieceList, List<Contour> result) {
+		HashMap<Long, Contour> startMap = new HashMap<Long, Contour>();
+		HashSet<Long> endSet = new HashSet<Long>();
+		ArrayList<Contour> openList = new ArrayList<Contour>();
+		for (int i = 0; i < pieceList.size(); ++i) {
+			Contour piece = pieceList.get(i);
+			if (piece.closed) {
+				result.add(piece);
+			} else {
+				startMap.put(piece.start, piece);
+				endSet.add(piece.end);
+				openList.add(piece);
+			}
+		}
+		HashSet<Contour> used = new HashSet<Contour>();
+		// lines with a free start first, then the loops
+		for (int pass = 0; pass < 2; ++pass) {
+			for (int i = 0; i < openList.size(); ++i) {
+				Contour piece = openList.get(i);
+				if (used.contains(piece) || ((pass == 0) && endSet.contains(piece.start))) {
+					continue;
+				}
+				used.add(piece);
+				Contour line = new Contour(piece.level, piece.value, piece.start, piece.end, piece.count);
+				line.add(piece.xy[0], piece.xy[1]);
+				line.append(piece);
+				Contour next = startMap.get(line.end);
+				while ((next != null) && !used.contains(next)) {
+					used.add(next);
+					line.append(next);
+					next = startMap.get(line.end);
+				}
+				if (line.end == line.start) {
+					line.closed = true;
+				}
+				result.add(line);
+			}
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(NUMBER_OF_THREADS);
+		}
+		return (pool);
+	}
+
+	private boolean isCancelled() {
+		if (caller.isInterrupted()) {
+			cancelled = true;
+		}
+		return (cancelled);
+	}
+
+	private boolean invokeAll(List<Callable<Tile>> taskList) {
+		List<Future<Tile>> futureList = getPool().invokeAll(taskList);
+		for (int i = 0; i < futureList.size(); ++i) {
+			if (get(futureList.get(i)) == null) {
+				return (false);
+			}
+		}
+		return (!isCancelled());
+	}
+
+	private <T> T get(Future<T> future) {
+		try {
+			return (future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancelled = true;
+			return (null);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private long getKey(double x, double y, int lvl) {
+		int n = 1 << lvl;
+		return (TileKey.fromColumnRow(lvl, getIndex(x, landscape.getTerrainWidth(), n, false),
+			getIndex(y, landscape.getTerrainLength(), n, true)));
+	}
+
+	/**
+	 * Given a coordinate, find the tile column (or row) in a grid of n tiles.
+	 */
+	private static int getIndex(double v, double size, int n, boolean fromTop) {
+		int index = (int) Math.floor((v + size / 2) * n / size);
+		index = Math.max(0, Math.min(n - 1, index));
+		return (fromTop ? n - 1 - index : index);
+	}
+
+	/**
+	 * The grid of one tile.
+	 */
+	private class Tile {
+
+		private long key;
+
+		// Grid dimensions in vertices
+		private int tWidth, tLength;
+
+		// Column and row of the first vertex in the grid of the whole level
+		private long column0, row0;
+
+		// Coordinates of the upper left vertex and the vertex spacing
+		private double x0, y0, pixelWidth, pixelLength;
+
+		// Elevation in the contents frame, NaN where missing
+		private float[] z;
+
+		// Difference from the plane, NaN where missing or outside the polygon
+		private float[] diff;
+		private float minDiff, maxDiff;
+
+		public Tile(long key) {
+			this.key = key;
+		}
+
+		/**
+		 * Copy the elevations from the tile mesh. Stitching changes the edges
+		 * of meshes that are in use, so the original edges are used.
+		 */
+		public void load() {
+			QuadTree quadTree = landscape.getFactory().getQuadTree(key);
+			QuadTreeMesh mesh = (quadTree == null) ? null : quadTree.getMesh();
+			// the tile could not be loaded
+			if ((mesh == null) || mesh.isEmpty()) {
+				z = new float[0];
+				return;
+			}
+			// keep the mesh buffers while copying, the tile may be evicted
+			if (!mesh.pin()) {
+				z = new float[0];
+				return;
+			}
+			try {
+				copyElevations(quadTree, mesh);
+			} finally {
+				mesh.unpin();
+			}
+		}
+
+		private void copyElevations(QuadTree quadTree, QuadTreeMesh mesh) {
+			int tileWidth = mesh.getTileWidth();
+			int tileLength = mesh.getTileLength();
+			Vector3[] corner = quadTree.getCornerPoints();
+			setGrid(tileWidth, tileLength, mesh.getPixelWidth(), mesh.getPixelLength(), corner[3].getX(),
+				corner[3].getY());
+			float offset = (float) (landscape.getMinimumElevation() * landscape.getPixelScale());
+			FloatBuffer vertexBuffer = mesh.getMeshData().getVertexBuffer();
+			FloatBuffer colorBuffer = mesh.getMeshData().getColorBuffer();
+			float[] left = mesh.getEdge(0);
+			float[] top = mesh.getEdge(1);
+			float[] right = mesh.getEdge(2);
+			float[] bottom = mesh.getEdge(3);
+			float[] el = new float[tWidth * tLength];
+			for (int r = 0; r < tLength; ++r) {
+				for (int c = 0; c < tWidth; ++c) {
+					int i = r * tWidth + c;
+					// missing vertices are transparent
+					if ((colorBuffer != null) && (colorBuffer.get(i * 4 + 3) == 0)) {
+						el[i] = Float.NaN;
+						continue;
+					}
+					float e;
+					if (c == 0) {
+						e = left[r];
+					} else if (r == 0) {
+						e = top[c];
+					} else if (c == tileWidth) {
+						e = right[r];
+					} else if (r == tileLength) {
+						e = bottom[c];
+					} else {
+						e = vertexBuffer.get(i * 3 + 2);
+					}
+					el[i] = e - offset;
+				}
+			}
+			z = el;
+		}
+
+		/**
+		 * Set the dimensions and position of the grid.
+		 */
+		private void setGrid(int tileWidth, int tileLength, double pixelWidth, double pixelLength, double x0,
+			double y0) {
+			tWidth = tileWidth + 1;
+			tLength = tileLength + 1;
+			column0 = (long) TileKey.getColumn(key) * tileWidth;
+			row0 = (long) TileKey.getRow(key) * tileLength;
+			this.pixelWidth = pixelWidth;
+			this.pixelLength = pixelLength;
+			this.x0 = x0;
+			this.y0 = y0;
+		}
+
+		/**
+		 * Compute the difference from the plane inside the polygon.
+		 */
+		public void computeDifference() {
+			minDiff = Float.MAX_VALUE;
+			maxDiff = -Float.MAX_VALUE;
+			if (z.length == 0) {
+				diff = z;
+				return;
+			}
+			if (diff == null) {
+				diff = new float[z.length];
+			}
+			Vector3 vert = new Vector3();
+			for (int r = 0; r < tLength; ++r) {
+				double y = y0 - r * pixelLength;
+				for (int c = 0; c < tWidth; ++c) {
+					int i = r * tWidth + c;
+					double x = x0 + c * pixelWidth;
+					vert.set(x, y, 0);
+					if (Float.isNaN(z[i]) || !MathUtil.isInsidePolygon(vert, vertex)) {
+						diff[i] = Float.NaN;
+					} else {
+						diff[i] = (float) (z[i] - MathUtil.getPlaneZ(x, y, planeEq));
+						minDiff = Math.min(minDiff, diff[i]);
+						maxDiff = Math.max(maxDiff, diff[i]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Trace the contours with marching squares and join the segments
+		 * inside the tile.
+		 *
+		 * The corners of a cell are visited clockwise (upper left, upper
+		 * right, lower right, lower left) and a crossing is where the
+		 * difference goes from below to above the level (entering) or above to
+		 * below (leaving). Each segment goes from an entering crossing to a
+		 * leaving crossing. A cell with 4 crossings is split using the
+		 * difference at its center.
+		 */
+		public List<Contour> trace(double interval) {
+			ArrayList<Contour> result = new ArrayList<Contour>();
+			if ((diff.length == 0) || (minDiff > maxDiff) || isCancelled()) {
+				return (result);
+			}
+			int kMin = (int) Math.ceil(minDiff / interval);
+			int kMax = (int) Math.floor(maxDiff / interval);
+			ArrayList<Contour> segmentList = new ArrayList<Contour>();
+			int[] corner = new int[4];
+			int[] cc = { 0, 1, 1, 0 };
+			int[] cr = { 0, 0, 1, 1 };
+			float[] v = new float[4];
+			long[] edgeKey = new long[4];
+			double[] px = new double[4];
+			double[] py = new double[4];
+			boolean[] entering = new boolean[4];
+			for (int k = kMin; k <= kMax; ++k) {
+				if (isCancelled()) {
+					return (result);
+				}
+				double value = k * interval;
+				segmentList.clear();
+				for (int r = 0; r < tLength - 1; ++r) {
+					for (int c = 0; c < tWidth - 1; ++c) {
+						boolean missing = false;
+						float vMin = Float.MAX_VALUE;
+						float vMax = -Float.MAX_VALUE;
+						for (int m = 0; m < 4; ++m) {
+							corner[m] = (r + cr[m]) * tWidth + c + cc[m];
+							v[m] = diff[corner[m]];
+							if (Float.isNaN(v[m])) {
+								missing = true;
+								break;
+							}
+							vMin = Math.min(vMin, v[m]);
+							vMax = Math.max(vMax, v[m]);
+						}
+						if (missing || (vMin >= value) || (vMax < value)) {
+							continue;
+						}
+						// find the crossings clockwise
+						int n = 0;
+						for (int m = 0; m < 4; ++m) {
+							int m1 = (m + 1) % 4;
+							boolean above0 = v[m] >= value;
+							boolean above1 = v[m1] >= value;
+							if (above0 == above1) {
+								continue;
+							}
+							entering[n] = above1;
+							getCrossing(c, r, m, v[m], v[m1], value, n, edgeKey, px, py);
+							n++;
+						}
+						for (int i = 0; i < n; ++i) {
+							if (!entering[i]) {
+								continue;
+							}
+							int j = (i + 1) % n;
+							// above at the center, keep the above corners
+							// connected
+							if ((n == 4) && ((v[0] + v[1] + v[2] + v[3]) / 4 >= value)) {
+								j = (i + 3) % n;
+							}
+							Contour segment = new Contour(k, value, edgeKey[i], edgeKey[j], 2);
+							segment.add(px[i], py[i]);
+							segment.add(px[j], py[j]);
+							segmentList.add(segment);
+						}
+					}
+				}
+				join(segmentList, result);
+			}
+			return (result);
+		}
+
+		/**
+		 * Find where the level crosses an edge of a cell. The position is
+		 * always interpolated from the upper or left vertex of the edge so
+		 * neighboring cells and tiles get the same point. The key identifies
+		 * the edge in the grid of the whole level.
+		 */
+		private void getCrossing(int c, int r, int side, float v0, float v1, double value, int n, long[] edgeKey,
+			double[] px, double[] py) {
+			// side 0 is the top, 1 the right, 2 the bottom, 3 the left
+			int ec = (side == 1) ? c + 1 : c;
+			int er = (side == 2) ? r + 1 : r;
+			boolean horizontal = (side == 0) || (side == 2);
+			// the top and right sides go from the upper or left vertex
+			if (side >= 2) {
+				float tmp = v0;
+				v0 = v1;
+				v1 = tmp;
+			}
+			double t = (value - v0) / (v1 - v0);
+			if (horizontal) {
+				px[n] = x0 + (ec + t) * pixelWidth;
+				py[n] = y0 - er * pixelLength;
+			} else {
+				px[n] = x0 + ec * pixelWidth;
+				py[n] = y0 - (er + t) * pixelLength;
+			}
+			edgeKey[n] = ((row0 + er) << 32) | ((column0 + ec) << 1) | (horizontal ? 0 : 1);
+		}
+	}
+
+}
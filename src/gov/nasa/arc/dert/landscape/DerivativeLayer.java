@@ -1,30 +1,26 @@
 package gov.nasa.arc.dert.landscape;
 
+import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.terrain.Layer;
 import gov.nasa.arc.dert.terrain.LayerInfo;
 import gov.nasa.arc.dert.terrain.QuadTreeTile;
 import gov.nasa.arc.dert.terrain.RasterLayer;
 import gov.nasa.arc.dert.util.ColorMap;
 import gov.nasa.arc.dert.util.ColorMapListener;
-import gov.nasa.arc.dert.util.MathUtil;
 
-import java.nio.FloatBuffer;
 import java.util.Properties;
 
 import com.ardor3d.image.Texture;
-import com.ardor3d.image.Texture2D;
-import com.ardor3d.math.Vector2;
-import com.ardor3d.math.Vector3;
-import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.image.Texture1D;
 import com.ardor3d.scenegraph.event.DirtyType;
-import com.ardor3d.util.geom.BufferUtils;
 
 /**
  * A layer that provides derivatives of the height map as color maps.
  * Derivatives include elevation contour map, slope map, and aspect map. Colors
- * are applied via a texture map color map. Texture coordinates determine which
- * part of the color map texture is applied at a given vertex in the landscape
- * mesh.
+ * are applied via a texture map color map. The derivative is computed for each
+ * fragment by the LayerEffects shader from the tile height map texture, and
+ * mapped to the color map range with uniforms. Changing the range or the color
+ * map does not touch the tile meshes.
  *
  */
 public class DerivativeLayer extends Layer implements ColorMapListener {
@@ -42,7 +38,7 @@ public class DerivativeLayer extends Layer implements ColorMapListener {
 	private RasterLayer dataSource;
 
 	// The texture holding the color map
-	private Texture2D colorMapTexture;
+	private Texture1D colorMapTexture;
 
 	// The color map
 	private ColorMap colorMap;
@@ -61,7 +57,8 @@ public class DerivativeLayer extends Layer implements ColorMapListener {
 		dataSource = source;
 		numLevels = dataSource.getNumberOfLevels();
 		numTiles = dataSource.getNumberOfTiles();
-		bytesPerTile = (dataSource.getTileWidth() + 1) * (dataSource.getTileLength() + 1) * 8;
+		// the height map texture
+		bytesPerTile = (dataSource.getTileWidth() + 1) * (dataSource.getTileLength() + 1) * 4;
 	}
 
 	@Override
@@ -139,64 +136,12 @@ public class DerivativeLayer extends Layer implements ColorMapListener {
 	}
 
 	/**
-	 * The range of the color map changed.
+	 * The range of the color map changed. The shader reads the range when the
+	 * tiles are drawn so only a redraw is needed.
 	 */
 	@Override
 	public void rangeChanged(ColorMap cMap) {
-		Landscape.getInstance().markDirty(DirtyType.RenderState);
-	}
-
-	/**
-	 * Create the color map texture coordinates for a tile mesh.
-	 * 
-	 * @param mesh
-	 * @param textureUnit
-	 */
-	public void createColorMapTextureCoords(Mesh mesh, int textureUnit) {
-		FloatBuffer vertex = mesh.getMeshData().getVertexBuffer();
-		FloatBuffer normals = mesh.getMeshData().getNormalBuffer();
-		FloatBuffer colors = mesh.getMeshData().getColorBuffer();
-		FloatBuffer texCoords = mesh.getMeshData().getTextureBuffer(textureUnit);
-		if (texCoords == null) {
-			texCoords = BufferUtils.createFloatBuffer(colors.limit() / 2);
-		}
-		int dataSize = colors.limit() / 4;
-		Vector2 coord = new Vector2();
-		Vector3 normal = new Vector3();
-		int k = 0;
-		float pixelScale = Landscape.getInstance().getPixelScale();
-		for (int i = 0; i < dataSize; ++i) {
-			k = i * 2;
-			float alpha = colors.get(i * 4 + 3);
-			float z = 0;
-			if (alpha != 0) {
-				switch (type) {
-				case Elevation:
-					z = vertex.get(i * 3 + 2);
-					colorMap.getTextureCoordinate(z/pixelScale, coord);
-					texCoords.put(k, coord.getXf()).put(k + 1, coord.getYf());
-					break;
-				case Slope:
-					normal.set(normals.get(i * 3), normals.get(i * 3 + 1), normals.get(i * 3 + 2));
-					z = (float) MathUtil.getSlopeFromNormal(normal);
-					colorMap.getTextureCoordinate(z/pixelScale, coord);
-					texCoords.put(k, coord.getXf()).put(k + 1, coord.getYf());
-					break;
-				case Aspect:
-					normal.set(normals.get(i * 3), normals.get(i * 3 + 1), normals.get(i * 3 + 2));
-					z = (float) MathUtil.getAspectFromNormal(normal);
-					colorMap.getTextureCoordinate(z/pixelScale, coord);
-					texCoords.put(k, coord.getXf()).put(k + 1, coord.getYf());
-					break;
-				}
-			} else {
-				texCoords.put(k, 0).put(k + 1, -1);
-			}
-		}
-		k += 2;
-		texCoords.limit(k);
-		texCoords.rewind();
-		mesh.getMeshData().setTextureBuffer(texCoords, textureUnit);
+		World.getInstance().getDirtyEventHandler().markChanged();
 	}
 
 	@Override
@@ -1,8 +1,10 @@
 package gov.nasa.arc.dert.landscape;
 
 import gov.nasa.arc.dert.io.TileSource;
+import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.terrain.Layer;
 import gov.nasa.arc.dert.terrain.LayerInfo;
+import gov.nasa.arc.dert.terrain.MeshBufferPool;
 import gov.nasa.arc.dert.terrain.QuadTreeTile;
 import gov.nasa.arc.dert.terrain.RasterLayer;
 import gov.nasa.arc.dert.util.ColorMap;
@@ -13,18 +15,16 @@ import java.nio.FloatBuffer;
 import java.util.Properties;
 
 import com.ardor3d.image.Texture;
-import com.ardor3d.image.Texture2D;
-import com.ardor3d.math.Vector2;
+import com.ardor3d.image.Texture1D;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.event.DirtyType;
-import com.ardor3d.util.geom.BufferUtils;
 
 /**
- * A layer that provides derivatives of the height map as color maps.
- * Derivatives include elevation contour map, slope map, and aspect map. Colors
- * are applied via a texture map color map. Texture coordinates determine which
- * part of the color map texture is applied at a given vertex in the landscape
- * mesh.
+ * A layer that provides a field of values as a color map. The field values are
+ * passed to the LayerEffects shader as texture coordinates and mapped to the
+ * color map texture with the color map range uniforms. The texture coordinates
+ * do not depend on the color map so changing the range or the color map does
+ * not touch the tile meshes.
  *
  */
 public class FieldLayer extends Layer implements ColorMapListener {
@@ -35,7 +35,7 @@ public class FieldLayer extends Layer implements ColorMapListener {
 	private RasterLayer dataSource;
 
 	// The texture holding the color map
-	private Texture2D colorMapTexture;
+	private Texture1D colorMapTexture;
 
 	// The color map
 	private ColorMap colorMap;
@@ -122,13 +122,23 @@ public class FieldLayer extends Layer implements ColorMapListener {
 	}
 
 	/**
-	 * The range of the color map changed.
+	 * The range of the color map changed. The shader reads the range when the
+	 * tiles are drawn so only a redraw is needed.
 	 */
 	@Override
 	public void rangeChanged(ColorMap cMap) {
-		Landscape.getInstance().markDirty(DirtyType.RenderState);
+		World.getInstance().getDirtyEventHandler().markChanged();
 	}
-	
+
+	/**
+	 * Set the field values of a tile in a texture coordinate buffer of the
+	 * mesh. The s coordinate is the value and the t coordinate is 0 where there
+	 * is no value.
+	 * 
+	 * @param key
+	 * @param mesh
+	 * @param tUnit
+	 */
 	public void createColorMapTextureCoords(String key, Mesh mesh, int tUnit) {
 		FloatBuffer texCoords = getFloatTexCoords(key);
 		if (texCoords != null)
@@ -136,18 +146,20 @@ public class FieldLayer extends Layer implements ColorMapListener {
 	}
 	
 	private FloatBuffer getFloatTexCoords(String key) {
-		Vector2 coord = new Vector2();
 		QuadTreeTile tile = dataSource.getTile(key);
 		FloatBuffer data = tile.raster.asFloatBuffer();
 		int tWidth = tileWidth + 1;
 		int tLength = tileLength + 1;
 		int size = tWidth * tLength * 2;
-		FloatBuffer texCoords = BufferUtils.createFloatBuffer(size);
+		FloatBuffer texCoords = MeshBufferPool.getInstance().getFloatBuffer(size);
 		for (int r = 0; r < tLength; ++r) {
 			for (int c = 0; c < tWidth; ++c) {
-				double val = data.get();
-				colorMap.getTextureCoordinate(val, coord);
-				texCoords.put(coord.getXf()).put(coord.getYf());
+				float val = data.get();
+				if (Float.isNaN(val)) {
+					texCoords.put(0).put(0);
+				} else {
+					texCoords.put(val).put(1);
+				}
 			}
 		}
 		texCoords.limit(size);
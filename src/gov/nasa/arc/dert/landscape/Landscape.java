@@ -5,9 +5,12 @@ import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
 import gov.nasa.arc.dert.scene.tool.CartesianGrid;
 import gov.nasa.arc.dert.scene.tool.RadialGrid;
 import gov.nasa.arc.dert.scene.tool.ScaleBar;
+import gov.nasa.arc.dert.terrain.HeightBounds;
 import gov.nasa.arc.dert.terrain.LayerManager;
 import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.terrain.QuadTreeMesh;
 import gov.nasa.arc.dert.terrain.Terrain;
+import gov.nasa.arc.dert.terrain.TileKey;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.view.Console;
 
@@ -20,6 +23,8 @@ import com.ardor3d.intersection.PickingUtil;
 import com.ardor3d.intersection.PrimitivePickResults;
 import com.ardor3d.math.Ray3;
 import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyRay3;
+import com.ardor3d.math.type.ReadOnlyTransform;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.scenegraph.Spatial;
 
@@ -273,6 +278,51 @@ public class Landscape extends Terrain {
 		return (qTree.getElevation(x, y) - minZ * pixelScale);
 	}
 
+	/**
+	 * Intersect a ray with the landscape tiles currently in use. The quad tree
+	 * is descended through the tiles under the ray and each tile is searched
+	 * with its minimum and maximum elevations, so only the cells the ray
+	 * passes close to are tested.
+	 * 
+	 * @param ray
+	 *            the ray in world coordinates
+	 * @param position
+	 *            the intersection in world coordinates
+	 * @param normal
+	 *            the surface normal at the intersection in world coordinates,
+	 *            may be null
+	 * @return the mesh that was hit, null if the ray misses the landscape
+	 */
+	public QuadTreeMesh pick(ReadOnlyRay3 ray, Vector3 position, Vector3 normal) {
+		if (quadTree == null) {
+			return (null);
+		}
+		// cast the ray in the frame of the quad tree
+		ReadOnlyTransform transform = quadTree.getWorldTransform();
+		Vector3 origin = transform.applyInverse(ray.getOrigin(), null);
+		Vector3 direction = transform.applyInverseVector(ray.getDirection(), null);
+		HeightBounds.Hit hit = new HeightBounds.Hit();
+		if (!quadTree.intersect(new double[] { origin.getX(), origin.getY(), origin.getZ(), direction.getX(),
+			direction.getY(), direction.getZ() }, hit)) {
+			return (null);
+		}
+		direction.multiplyLocal(hit.t);
+		origin.addLocal(direction);
+		transform.applyForward(origin, position);
+		if (normal != null) {
+			Vector3[] vertex = hit.vertex;
+			for (int i = 0; i < vertex.length; ++i) {
+				transform.applyForward(vertex[i]);
+			}
+			MathUtil.createNormal(normal, vertex[0], vertex[1], vertex[2], direction);
+			// face up
+			if (normal.dot(transform.applyForwardVector(Vector3.UNIT_Z, direction)) < 0) {
+				normal.negateLocal();
+			}
+		}
+		return (hit.mesh);
+	}
+
 	/**
 	 * Get the elevation at the given X,Y coordinate from the highest level tile
 	 * that can be found.
@@ -282,8 +332,8 @@ public class Landscape extends Terrain {
 	 * @return
 	 */
 	public double getElevationAtHighestLevel(double x, double y) {
-		String key = source.getKey(x, y, terrainWidth, terrainLength);
-		if (key == null) {
+		long key = source.getKey(x, y, terrainWidth, terrainLength);
+		if (key == TileKey.NONE) {
 			return (Double.NaN);
 		}
 		QuadTree qt = factory.getQuadTree(key);
@@ -294,6 +344,103 @@ public class Landscape extends Terrain {
 		return (qt.getElevation(x, y));
 	}
 
+	/**
+	 * Get the elevations at a group of X,Y coordinates from the highest level
+	 * tiles that can be found. The points are sorted by tile so each tile is
+	 * only looked up once.
+	 *
+	 * @param xy
+	 *            the X,Y coordinates
+	 * @param out
+	 *            the elevations, NaN where there is no tile
+	 */
+	public void getElevations(double[] xy, float[] out) {
+		int n = xy.length / 2;
+		if (n == 0) {
+			return;
+		}
+		// find the tile for each point
+		long[] key = new long[n];
+		for (int i = 0; i < n; ++i) {
+			key[i] = source.getKey(xy[2 * i], xy[2 * i + 1], terrainWidth, terrainLength);
+		}
+		long[] tile = Arrays.copyOf(key, n);
+		Arrays.sort(tile);
+		int tileCount = 0;
+		for (int i = 0; i < n; ++i) {
+			if ((tileCount == 0) || (tile[i] != tile[tileCount - 1])) {
+				tile[tileCount++] = tile[i];
+			}
+		}
+		// group the points by tile
+		int[] tileIndex = new int[n];
+		int[] start = new int[tileCount + 1];
+		for (int i = 0; i < n; ++i) {
+			tileIndex[i] = Arrays.binarySearch(tile, 0, tileCount, key[i]);
+			start[tileIndex[i] + 1]++;
+		}
+		for (int t = 0; t < tileCount; ++t) {
+			start[t + 1] += start[t];
+		}
+		int[] index = new int[n];
+		int[] next = Arrays.copyOf(start, tileCount);
+		for (int i = 0; i < n; ++i) {
+			index[next[tileIndex[i]]++] = i;
+		}
+		// interpolate the points in each tile
+		for (int t = 0; t < tileCount; ++t) {
+			QuadTree qt = null;
+			if (tile[t] != TileKey.NONE) {
+				qt = factory.getQuadTree(tile[t]);
+			}
+			if ((qt == null) || (qt.getMesh() == null)) {
+				for (int i = start[t]; i < start[t + 1]; ++i) {
+					out[index[i]] = Float.NaN;
+				}
+			} else {
+				qt.getElevations(xy, index, start[t], start[t + 1], out);
+			}
+		}
+	}
+
+	/**
+	 * Get the Z coordinates in the contents object frame at a group of X,Y
+	 * coordinates.
+	 *
+	 * @param xy
+	 *            the X,Y coordinates
+	 * @param out
+	 *            the Z coordinates, NaN if outside the landscape
+	 */
+	public void getZ(double[] xy, float[] out) {
+		getCurrentElevations(xy, out);
+		int n = xy.length / 2;
+		float offset = (float) (minZ * pixelScale);
+		for (int i = 0; i < n; ++i) {
+			out[i] -= offset;
+		}
+	}
+
+	/**
+	 * Get the elevations at a group of X,Y coordinates from the tiles
+	 * currently in the landscape.
+	 */
+	private void getCurrentElevations(double[] xy, float[] out) {
+		int n = xy.length / 2;
+		int[] index = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; ++i) {
+			if (quadTree.contains(xy[2 * i], xy[2 * i + 1])) {
+				index[count++] = i;
+			} else {
+				out[i] = Float.NaN;
+			}
+		}
+		if (count > 0) {
+			quadTree.getElevations(xy, index, 0, count, out);
+		}
+	}
+
 	/**
 	 * Get the elevation at the given X,Y coordinate from the specified level
 	 * 
@@ -302,8 +449,8 @@ public class Landscape extends Terrain {
 	 * @return
 	 */
 	public double getElevation(double x, double y, int level) {
-		String key = source.getKey(x, y, terrainWidth, terrainLength, level);
-		if (key == null) {
+		long key = source.getKey(x, y, terrainWidth, terrainLength, level);
+		if (key == TileKey.NONE) {
 			return (Double.NaN);
 		}
 		QuadTree qt = factory.getQuadTree(key);
@@ -324,8 +471,8 @@ public class Landscape extends Terrain {
 	 * @return
 	 */
 	public boolean getNormalAtHighestLevel(double x, double y, Vector3 store) {
-		String key = source.getKey(x, y, terrainWidth, terrainLength);
-		if (key == null) {
+		long key = source.getKey(x, y, terrainWidth, terrainLength);
+		if (key == TileKey.NONE) {
 			return (false);
 		}
 		QuadTree qt = factory.getQuadTree(key);
@@ -414,29 +561,12 @@ public class Landscape extends Terrain {
 	 */
 	public double getSampledMeanElevationOfRegion(Vector3[] vertex, ReadOnlyVector3 lowerBound,
 		ReadOnlyVector3 upperBound) {
-		double xMin = lowerBound.getX();
-		double yMin = lowerBound.getY();
-		int cSampleSize = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
-		int rSampleSize = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
-		Vector3 vert = new Vector3();
-		double meanElevation = 0;
-		int count = 0;
-		for (int i = 0; i < rSampleSize; ++i) {
-			for (int j = 0; j < cSampleSize; ++j) {
-				if (Thread.currentThread().isInterrupted())
-					return(Double.NaN);
-				vert.set(xMin + j * pixelWidth, yMin + i * pixelLength, 0);
-				if (MathUtil.isInsidePolygon(vert, vertex)) {
-					double el = getElevationAtHighestLevel(vert.getX(), vert.getY());
-					if (!Double.isNaN(el)) {
-						meanElevation += el;
-						count++;
-					}
-				}
-			}
+		RegionStatistics stats = new RegionStatistics(this, vertex, lowerBound, upperBound,
+			RegionStatistics.MEAN_ELEVATION);
+		if (!stats.compute()) {
+			return (Double.NaN);
 		}
-		meanElevation /= count;
-		return (meanElevation);
+		return (stats.getMeanElevation());
 	}
 
 	/**
@@ -448,31 +578,12 @@ public class Landscape extends Terrain {
 	 * @return
 	 */
 	public double getSampledMeanSlopeOfRegion(Vector3[] vertex, ReadOnlyVector3 lowerBound, ReadOnlyVector3 upperBound) {
-		double xMin = lowerBound.getX();
-		double yMin = lowerBound.getY();
-		int cSampleSize = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
-		int rSampleSize = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
-		Vector3 vert = new Vector3();
-		Vector3 meanNormal = new Vector3();
-		Vector3 store = new Vector3();
-		int count = 0;
-		for (int i = 0; i < rSampleSize; ++i) {
-			for (int j = 0; j < cSampleSize; ++j) {
-				if (Thread.currentThread().isInterrupted())
-					return(Double.NaN);
-				vert.set((float) (xMin + j * pixelWidth), (float) (yMin + i * pixelLength), 0);
-				if (MathUtil.isInsidePolygon(vert, vertex)) {
-					boolean success = getNormalAtHighestLevel(vert.getX(), vert.getY(), store);
-					if (success) {
-						meanNormal.addLocal(store);
-						count++;
-					}
-				}
-			}
+		RegionStatistics stats = new RegionStatistics(this, vertex, lowerBound, upperBound,
+			RegionStatistics.MEAN_SLOPE);
+		if (!stats.compute()) {
+			return (Double.NaN);
 		}
-		vert.set(meanNormal);
-		vert.multiplyLocal(1.0 / count);
-		return (MathUtil.getSlopeFromNormal(vert));
+		return (stats.getMeanSlope());
 	}
 
 	/**
@@ -522,69 +633,28 @@ public class Landscape extends Terrain {
 //	}
 
 	public double[] getSampledVolumeOfRegion(Vector3[] vertex, ReadOnlyVector3 lowerBound, ReadOnlyVector3 upperBound, Spatial polygon) {
-		int cSampleSize = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
-		int rSampleSize = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
-		Vector3 vert = new Vector3();
-		double volumeAbove = 0;
-		double volumeBelow = 0;
-		// sample the landscape for elevation
-		for (int i = 0; i < rSampleSize; ++i) {
-			for (int j = 0; j < cSampleSize; ++j) {
-				if (Thread.currentThread().isInterrupted())
-					return(null);
-				vert.set((float) (lowerBound.getX() + j * pixelWidth), (float) (lowerBound.getY() + i * pixelLength), 0);
-				if (MathUtil.isInsidePolygon(vert, vertex)) {
-					double el = getElevationAtHighestLevel(vert.getX(), vert.getY())-minZ * pixelScale;
-					if (!Double.isNaN(el)) {
-						vert.setZ(upperBound.getZ()+1);
-						double pZ = sampleSpatial(vert, Vector3.NEG_UNIT_Z, polygon);
-//							System.err.println("Landscape.getSampledVolumeOfRegion "+el+" "+maxZ+" "+minZ+" "+pZ+" "+vert);
-						if (!Double.isNaN(pZ)) {
-							if (el < pZ) {
-								volumeBelow += (pZ-el);
-							}
-							else {
-								volumeAbove += (el-pZ);
-							}
-						}
-					}
-				}
-			}
+		RegionStatistics stats = new RegionStatistics(this, vertex, lowerBound, upperBound, RegionStatistics.VOLUME);
+		stats.setReferenceSurface(polygon, upperBound.getZ() + 1);
+		if (!stats.compute()) {
+			return (null);
 		}
-		return (new double[] {volumeAbove*pixelWidth*pixelLength, volumeBelow*pixelWidth*pixelLength});
+		return (stats.getVolume());
 	}
 
 	public double[] getSampledVolumeOfRegion(Vector3[] vertex, ReadOnlyVector3 lowerBound, ReadOnlyVector3 upperBound, double elev) {
-		int cSampleSize = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
-		int rSampleSize = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
-		Vector3 vert = new Vector3();
-		double volumeAbove = 0;
-		double volumeBelow = 0;
-		// sample the landscape for elevation
-		for (int i = 0; i < rSampleSize; ++i) {
-			for (int j = 0; j < cSampleSize; ++j) {
-				if (Thread.currentThread().isInterrupted())
-					return(null);
-				vert.set((float) (lowerBound.getX() + j * pixelWidth), (float) (lowerBound.getY() + i * pixelLength), 0);
-				if (MathUtil.isInsidePolygon(vert, vertex)) {
-					double el = getElevationAtHighestLevel(vert.getX(), vert.getY());
-					if (!Double.isNaN(el)) {
-						if (el < elev)
-							volumeBelow += (elev-el);
-						else
-							volumeAbove += (el-elev);
-					}
-				}
-			}
+		RegionStatistics stats = new RegionStatistics(this, vertex, lowerBound, upperBound, RegionStatistics.VOLUME);
+		stats.setReferenceElevation(elev);
+		if (!stats.compute()) {
+			return (null);
 		}
-		return (new double[] {volumeAbove*pixelWidth*pixelLength, volumeBelow*pixelWidth*pixelLength});
+		return (stats.getVolume());
 	}
 
-	private double sampleSpatial(Vector3 p0, ReadOnlyVector3 dir, Spatial node) {
+	double sampleSpatial(Vector3 p0, ReadOnlyVector3 dir, Spatial node) {
 		// Create a ray starting from the point, and going in the given
 		// direction
-		PrimitivePickResults pr = new PrimitivePickResults();
 		final Ray3 ray = new Ray3(p0, dir);
+		PrimitivePickResults pr = new PrimitivePickResults();
 		pr.setCheckDistance(true);
 //		System.err.println("Landscape.sampleSpatial "+ray+" "+node.getWorldBound());
 		PickingUtil.findPick(node, ray, pr, false);
@@ -683,58 +753,12 @@ public class Landscape extends Terrain {
 	 * @return
 	 */
 	public double getSampledSurfaceAreaOfRegion(Vector3[] vertex, ReadOnlyVector3 lowerBound, ReadOnlyVector3 upperBound) {
-		Vector3 vert = new Vector3();
-		int cSampleSize = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
-		int rSampleSize = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
-		double surfaceArea = 0;
-		for (int i = 0; i < rSampleSize; ++i) {
-			for (int j = 0; j < cSampleSize; ++j) {
-				if (Thread.currentThread().isInterrupted())
-					return(Double.NaN);
-				vert.set((float) (lowerBound.getX() + (j+0.5) * pixelWidth), (float) (lowerBound.getY() + (i+0.5) * pixelLength), 0);
-				if (MathUtil.isInsidePolygon(vert, vertex)) {
-					double sa = getSurfaceArea(vert);
-					if (!Double.isNaN(sa)) {
-						surfaceArea += sa;
-					}
-				}
-			}
-		}
-		return (surfaceArea);
-	}
-
-	private double getSurfaceArea(ReadOnlyVector3 point) {
-		double xd = pixelWidth / 2;
-		double yd = pixelLength / 2;
-		double x = point.getX();
-		double y = point.getY();
-		double surfaceArea = 0;
-		surfaceArea += getAreaOfTriangle(x, y, x - xd, y + yd, x, y + yd);
-		surfaceArea += getAreaOfTriangle(x, y, x + xd, y + yd, x, y + yd);
-		surfaceArea += getAreaOfTriangle(x, y, x - xd, y, x - xd, y + yd);
-		surfaceArea += getAreaOfTriangle(x, y, x + xd, y, x + xd, y + yd);
-		surfaceArea += getAreaOfTriangle(x, y, x - xd, y, x - xd, y - yd);
-		surfaceArea += getAreaOfTriangle(x, y, x + xd, y, x + xd, y - yd);
-		surfaceArea += getAreaOfTriangle(x, y, x - xd, y - yd, x, y - yd);
-		surfaceArea += getAreaOfTriangle(x, y, x + xd, y - yd, x, y - yd);
-		return (surfaceArea);
-	}
-
-	private double getAreaOfTriangle(double x0, double y0, double x1, double y1, double x2, double y2) {
-		double z0 = getElevationAtHighestLevel(x0, y0);
-		if (Double.isNaN(z0)) {
-			return (0);
-		}
-		double z1 = getElevationAtHighestLevel(x1, y1);
-		if (Double.isNaN(z1)) {
-			return (0);
-		}
-		double z2 = getElevationAtHighestLevel(x2, y2);
-		if (Double.isNaN(z2)) {
-			return (0);
+		RegionStatistics stats = new RegionStatistics(this, vertex, lowerBound, upperBound,
+			RegionStatistics.SURFACE_AREA);
+		if (!stats.compute()) {
+			return (Double.NaN);
 		}
-		double area = MathUtil.getAreaOfTriangle(x0, y0, z0, x1, y1, z1, x2, y2, z2);
-		return(area);
+		return (stats.getSurfaceArea());
 	}
 
 	/**
@@ -756,47 +780,39 @@ public class Landscape extends Terrain {
 		double lineLength = Math.sqrt(dx * dx + dy * dy);
 		double step = Math.min(stepWidth, stepLength);
 		int n = (int) (lineLength / step);
+		double[] xy;
 		if (n == 0) {
-			vertex[0] = p0.getXf();
-			vertex[1] = p0.getYf();
-			if (maxLevel) {
-				vertex[2] = (float) getElevationAtHighestLevel(p0.getX(), p0.getY());
-			} else {
-				vertex[2] = (float) getElevation(p0.getX(), p0.getY());
+			n = 2;
+			xy = new double[] { p0.getX(), p0.getY(), p1.getX(), p1.getY() };
+		} else {
+			dx = stepWidth * dx / lineLength;
+			dy = stepLength * dy / lineLength;
+			if (n * step < lineLength) {
+				n++;
 			}
-			vertex[3] = p1.getXf();
-			vertex[4] = p1.getYf();
-			if (maxLevel) {
-				vertex[5] = (float) getElevationAtHighestLevel(p1.getX(), p1.getY());
-			} else {
-				vertex[5] = (float) getElevation(p1.getX(), p1.getY());
+			xy = new double[2 * n];
+			double x = p0.getX();
+			double y = p0.getY();
+			for (int i = 0; i < n - 1; ++i) {
+				xy[i * 2] = x;
+				xy[i * 2 + 1] = y;
+				x += dx;
+				y += dy;
 			}
-			return (6);
-		}
-		dx = stepWidth * dx / lineLength;
-		dy = stepLength * dy / lineLength;
-		if (n * step < lineLength) {
-			n++;
-		}
-		double x = p0.getX();
-		double y = p0.getY();
-		for (int i = 0; i < n - 1; ++i) {
-			vertex[i * 3] = (float) x;
-			vertex[i * 3 + 1] = (float) y;
-			if (maxLevel) {
-				vertex[i * 3 + 2] = (float) getElevationAtHighestLevel(x, y);
-			} else {
-				vertex[i * 3 + 2] = (float) getElevation(x, y);
-			}
-			x += dx;
-			y += dy;
+			xy[(n - 1) * 2] = p1.getX();
+			xy[(n - 1) * 2 + 1] = p1.getY();
 		}
-		vertex[(n - 1) * 3] = p1.getXf();
-		vertex[(n - 1) * 3 + 1] = p1.getYf();
+		// get all of the elevations at once
+		float[] elev = new float[n];
 		if (maxLevel) {
-			vertex[(n - 1) * 3 + 2] = (float) getElevationAtHighestLevel(p1.getX(), p1.getY());
+			getElevations(xy, elev);
 		} else {
-			vertex[(n - 1) * 3 + 2] = (float) getElevation(p1.getX(), p1.getY());
+			getCurrentElevations(xy, elev);
+		}
+		for (int i = 0; i < n; ++i) {
+			vertex[i * 3] = (float) xy[i * 2];
+			vertex[i * 3 + 1] = (float) xy[i * 2 + 1];
+			vertex[i * 3 + 2] = elev[i];
 		}
 		return (n * 3);
 	}
@@ -0,0 +1,789 @@
+package gov.nasa.arc.dert.landscape;
+
+import gov.nasa.arc.dert.io.TileSource;
+import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.terrain.QuadTreeMesh;
+import gov.nasa.arc.dert.terrain.TileKey;
+import gov.nasa.arc.dert.util.MathUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Computes statistics of the landscape inside a polygon in one pass. The
+ * landscape is sampled at the pixel size of the base layer on a lattice that
+ * starts at the lower bound of the polygon. Elevations, normals and volumes
+ * are sampled at the lattice points and surface area is computed for the
+ * pixel centered between them.
+ *
+ * The polygon is converted once into spans of lattice columns for each row
+ * using the same rule as MathUtil.isInsidePolygon. The lattice points are
+ * then grouped by the highest level tile that contains them (the tile that
+ * TileSource.getKey would return) and each tile is processed by a separate
+ * task in a fork/join pool, so each tile is only looked up once.
+ *
+ */
+public class RegionStatistics {
+
+	// Statistics that can be requested
+	public static final int MEAN_ELEVATION = 1;
+	public static final int MEAN_SLOPE = 2;
+	public static final int VOLUME = 4;
+	public static final int SURFACE_AREA = 8;
+
+	// Number of threads processing tiles
+	public static int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Level of the tile column and row computed for each lattice coordinate
+	private static final int INDEX_LEVEL = TileKey.MAX_LEVEL;
+
+	private static final int[] NO_SPANS = new int[0];
+
+	private static ForkJoinPool pool;
+
+	// The landscape
+	private Landscape landscape;
+
+	// The polygon vertices, the last is the same as the first
+	private ReadOnlyVector3[] vertex;
+
+	// The requested statistics
+	private int statistics;
+
+	// Volume is measured against this elevation or surface
+	private double referenceElevation = Double.NaN;
+	private Spatial referenceSpatial;
+	private TriangleSurface referenceSurface;
+	private double referenceTop;
+
+	// Pixel dimensions
+	private double pixelWidth, pixelLength;
+
+	// Lattice of sample points and lattice of pixel centers
+	private Lattice sampleLattice, centerLattice;
+
+	// Tasks stop if the calling thread is interrupted
+	private Thread caller;
+	private volatile boolean cancelled;
+
+	// Results
+	private int elevationCount, normalCount;
+	private double elevationSum, volumeAbove, volumeBelow, surfaceArea;
+	private Vector3 normalSum;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landscape
+	 * @param vertex
+	 *            the vertices of the polygon, the last must be the same as the
+	 *            first
+	 * @param lowerBound
+	 *            the lower bound of the polygon
+	 * @param upperBound
+	 *            the upper bound of the polygon
+	 * @param statistics
+	 *            the statistics to compute (MEAN_ELEVATION, MEAN_SLOPE, VOLUME,
+	 *            SURFACE_AREA)
+	 */
+	public RegionStatistics(Landscape landscape, ReadOnlyVector3[] vertex, ReadOnlyVector3 lowerBound,
+		ReadOnlyVector3 upperBound, int statistics) {
+		this.landscape = landscape;
+		this.vertex = vertex;
+		this.statistics = statistics;
+		pixelWidth = landscape.getPixelWidth();
+		pixelLength = landscape.getPixelLength();
+		int columns = (int) ((upperBound.getX() - lowerBound.getX()) / pixelWidth);
+		int rows = (int) ((upperBound.getY() - lowerBound.getY()) / pixelLength);
+		if ((statistics & (MEAN_ELEVATION | MEAN_SLOPE | VOLUME)) != 0) {
+			sampleLattice = new Lattice(lowerBound.getX(), lowerBound.getY(), 0, columns, rows);
+		}
+		if ((statistics & SURFACE_AREA) != 0) {
+			centerLattice = new Lattice(lowerBound.getX(), lowerBound.getY(), 1, columns, rows);
+		}
+		normalSum = new Vector3();
+	}
+
+	/**
+	 * Measure volume against an elevation.
+	 *
+	 * @param elevation
+	 */
+	public void setReferenceElevation(double elevation) {
+		referenceElevation = elevation;
+		referenceSpatial = null;
+		referenceSurface = null;
+	}
+
+	/**
+	 * Measure volume against a surface. The landscape elevation is taken
+	 * relative to the minimum elevation. The surface is sampled looking down
+	 * from the given height.
+	 *
+	 * @param spatial
+	 * @param top
+	 */
+	public void setReferenceSurface(Spatial spatial, double top) {
+		referenceElevation = Double.NaN;
+		referenceSpatial = spatial;
+		referenceTop = top;
+		referenceSurface = null;
+		if (spatial instanceof Mesh) {
+			referenceSurface = new TriangleSurface((Mesh) spatial, top);
+			if (referenceSurface.isEmpty()) {
+				referenceSurface = null;
+			}
+		}
+	}
+
+	/**
+	 * Compute the statistics.
+	 *
+	 * @return false if the calling thread was interrupted
+	 */
+	public boolean compute() {
+		caller = Thread.currentThread();
+		cancelled = false;
+
+		// find the tiles
+		ArrayList<Long> keyList = new ArrayList<Long>();
+		addTiles(landscape.getSource(), TileKey.ROOT, keyList);
+		List<Callable<TileTask>> taskList = new ArrayList<Callable<TileTask>>(keyList.size());
+		for (int i = 0; i < keyList.size(); ++i) {
+			taskList.add(new TileTask(keyList.get(i)));
+		}
+
+		// process them and combine the results
+		List<Future<TileTask>> futureList = getPool().invokeAll(taskList);
+		for (int i = 0; i < futureList.size(); ++i) {
+			TileTask task = null;
+			try {
+				task = futureList.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return (false);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			elevationCount += task.elevationCount;
+			elevationSum += task.elevationSum;
+			normalCount += task.normalCount;
+			normalSum.addLocal(task.normalSum);
+			volumeAbove += task.volumeAbove;
+			volumeBelow += task.volumeBelow;
+			surfaceArea += task.surfaceArea;
+		}
+		return (!cancelled && !caller.isInterrupted());
+	}
+
+	/**
+	 * Get the mean elevation.
+	 *
+	 * @return NaN if there were no samples
+	 */
+	public double getMeanElevation() {
+		return (elevationSum / elevationCount);
+	}
+
+	/**
+	 * Get the slope of the mean surface normal.
+	 *
+	 * @return
+	 */
+	public double getMeanSlope() {
+		Vector3 normal = new Vector3(normalSum);
+		normal.multiplyLocal(1.0 / normalCount);
+		return (MathUtil.getSlopeFromNormal(normal));
+	}
+
+	/**
+	 * Get the volume above and below the reference.
+	 *
+	 * @return
+	 */
+	public double[] getVolume() {
+		return (new double[] { volumeAbove * pixelWidth * pixelLength, volumeBelow * pixelWidth * pixelLength });
+	}
+
+	/**
+	 * Get the surface area.
+	 *
+	 * @return
+	 */
+	public double getSurfaceArea() {
+		return (surfaceArea);
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(NUMBER_OF_THREADS);
+		}
+		return (pool);
+	}
+
+	private boolean isCancelled() {
+		if (caller.isInterrupted()) {
+			cancelled = true;
+		}
+		return (cancelled);
+	}
+
+	/**
+	 * Find the highest level tiles that contain lattice points.
+	 */
+	private void addTiles(TileSource source, long key, ArrayList<Long> keyList) {
+		if (!intersects(sampleLattice, key) && !intersects(centerLattice, key)) {
+			return;
+		}
+		long child = TileKey.getChild(key, 1);
+		if ((TileKey.getLevel(key) == INDEX_LEVEL) || !source.tileExists(child)) {
+			keyList.add(key);
+			return;
+		}
+		for (int i = 1; i <= 4; ++i) {
+			addTiles(source, TileKey.getChild(key, i), keyList);
+		}
+	}
+
+	private boolean intersects(Lattice lattice, long key) {
+		if ((lattice == null) || (lattice.x.length == 0) || (lattice.y.length == 0)) {
+			return (false);
+		}
+		int shift = INDEX_LEVEL - TileKey.getLevel(key);
+		int column = TileKey.getColumn(key);
+		int row = TileKey.getRow(key);
+		if ((column < (lattice.column[0] >>> shift)) || (column > (lattice.column[lattice.x.length - 1] >>> shift))) {
+			return (false);
+		}
+		// rows are counted from the top
+		if ((row < (lattice.row[lattice.y.length - 1] >>> shift)) || (row > (lattice.row[0] >>> shift))) {
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Given a coordinate, find the tile column (or row) at INDEX_LEVEL using
+	 * the same steps as FileSystemTileSource.getKey.
+	 */
+	private static int getTileIndex(double v, double size, boolean fromTop) {
+		double w = size / 2;
+		int index = 0;
+		for (int i = 0; i < INDEX_LEVEL; ++i) {
+			w /= 2;
+			int bit;
+			if (v < 0) {
+				v += w;
+				bit = 0;
+			} else {
+				v -= w;
+				bit = 1;
+			}
+			index = (index << 1) | (fromTop ? 1 - bit : bit);
+		}
+		return (index);
+	}
+
+	/**
+	 * Lattice of points. Coordinates are x0 + (2 * column + offset) *
+	 * pixelWidth / 2 and the same for rows.
+	 */
+	private class Lattice {
+
+		// Coordinates of the columns and rows
+		protected double[] x, y;
+
+		// Tile column and row at INDEX_LEVEL of each lattice column and row
+		protected int[] column, row;
+
+		// Columns inside the polygon for each row, pairs of start (inclusive)
+		// and end (exclusive)
+		protected int[][] span;
+
+		public Lattice(double x0, double y0, int offset, int columns, int rows) {
+			x = new double[Math.max(columns, 0)];
+			column = new int[x.length];
+			for (int j = 0; j < x.length; ++j) {
+				x[j] = x0 + (2 * j + offset) * (pixelWidth / 2);
+				column[j] = getTileIndex(x[j], landscape.getTerrainWidth(), false);
+			}
+			y = new double[Math.max(rows, 0)];
+			row = new int[y.length];
+			span = new int[y.length][];
+			int[] end = new int[vertex.length];
+			int[] dir = new int[vertex.length];
+			for (int i = 0; i < y.length; ++i) {
+				y[i] = y0 + (2 * i + offset) * (pixelLength / 2);
+				row[i] = getTileIndex(y[i], landscape.getTerrainLength(), true);
+				span[i] = getSpans(x, y[i], end, dir);
+			}
+		}
+
+		/**
+		 * Find the columns where the winding number of the polygon is not
+		 * zero. An edge crossing the row adds its direction to the winding
+		 * number of the points to its left. These are a run of columns
+		 * starting at 0 and the end of the run is found with the same test
+		 * used by MathUtil.isInsidePolygon.
+		 */
+		private int[] getSpans(double[] x, double y, int[] end, int[] dir) {
+			int m = 0;
+			for (int k = 0; k < vertex.length - 1; ++k) {
+				ReadOnlyVector3 v0 = vertex[k];
+				ReadOnlyVector3 v1 = vertex[k + 1];
+				int d;
+				if (v0.getY() <= y) {
+					if (v1.getY() <= y) {
+						continue;
+					}
+					d = 1;
+				} else {
+					if (v1.getY() > y) {
+						continue;
+					}
+					d = -1;
+				}
+				// binary search for the first column not to the left
+				int lo = 0;
+				int hi = x.length;
+				while (lo < hi) {
+					int mid = (lo + hi) >>> 1;
+					double isLeft = (v1.getX() - v0.getX()) * (y - v0.getY()) - (x[mid] - v0.getX())
+						* (v1.getY() - v0.getY());
+					if ((d > 0) ? (isLeft > 0) : (isLeft < 0)) {
+						lo = mid + 1;
+					} else {
+						hi = mid;
+					}
+				}
+				// insertion sort by end column
+				int n = m++;
+				while ((n > 0) && (end[n - 1] > lo)) {
+					end[n] = end[n - 1];
+					dir[n] = dir[n - 1];
+					n--;
+				}
+				end[n] = lo;
+				dir[n] = d;
+			}
+			if (m == 0) {
+				return (NO_SPANS);
+			}
+			int winding = 0;
+			for (int k = 0; k < m; ++k) {
+				winding += dir[k];
+			}
+			int[] spans = new int[2 * m + 2];
+			int count = 0;
+			int start = 0;
+			for (int k = 0; k <= m; ++k) {
+				int stop = (k < m) ? end[k] : x.length;
+				if ((winding != 0) && (stop > start)) {
+					// join with the previous span if they touch
+					if ((count > 0) && (spans[count - 1] == start)) {
+						spans[count - 1] = stop;
+					} else {
+						spans[count++] = start;
+						spans[count++] = stop;
+					}
+				}
+				if (k < m) {
+					winding -= dir[k];
+					start = Math.max(start, stop);
+				}
+			}
+			if (count == 0) {
+				return (NO_SPANS);
+			}
+			int[] result = new int[count];
+			System.arraycopy(spans, 0, result, 0, count);
+			return (result);
+		}
+
+		/**
+		 * Get the first lattice column in a tile column at the given level.
+		 */
+		public int getFirstColumn(int tileColumn, int shift) {
+			int lo = 0;
+			int hi = x.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if ((column[mid] >>> shift) < tileColumn) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return (lo);
+		}
+
+		/**
+		 * Get the first lattice row in a tile row at the given level. Tile rows
+		 * decrease as lattice rows increase.
+		 */
+		public int getFirstRow(int tileRow, int shift) {
+			int lo = 0;
+			int hi = y.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if ((row[mid] >>> shift) > tileRow) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return (lo);
+		}
+	}
+
+	/**
+	 * Computes the statistics for the lattice points in one tile.
+	 */
+	private class TileTask implements Callable<TileTask> {
+
+		private long key;
+		private QuadTree quadTree;
+		private Vector3 store;
+
+		// Partial results
+		protected int elevationCount, normalCount;
+		protected double elevationSum, volumeAbove, volumeBelow, surfaceArea;
+		protected Vector3 normalSum;
+
+		public TileTask(long key) {
+			this.key = key;
+			store = new Vector3();
+			normalSum = new Vector3();
+		}
+
+		@Override
+		public TileTask call() {
+			if (isCancelled()) {
+				return (this);
+			}
+			quadTree = landscape.getFactory().getQuadTree(key);
+			// the tile could not be loaded
+			if (quadTree == null) {
+				return (this);
+			}
+			// keep the mesh buffers while sampling, the tile may be evicted
+			QuadTreeMesh mesh = quadTree.getMesh();
+			if ((mesh == null) || !mesh.pin()) {
+				return (this);
+			}
+			try {
+				int shift = INDEX_LEVEL - TileKey.getLevel(key);
+				int column = TileKey.getColumn(key);
+				int row = TileKey.getRow(key);
+				if (sampleLattice != null) {
+					Lattice lattice = sampleLattice;
+					sample(lattice.getFirstColumn(column, shift), lattice.getFirstColumn(column + 1, shift),
+						lattice.getFirstRow(row, shift), lattice.getFirstRow(row - 1, shift));
+				}
+				if (centerLattice != null) {
+					Lattice lattice = centerLattice;
+					sampleSurfaceArea(lattice.getFirstColumn(column, shift), lattice.getFirstColumn(column + 1, shift),
+						lattice.getFirstRow(row, shift), lattice.getFirstRow(row - 1, shift));
+				}
+			} finally {
+				mesh.unpin();
+			}
+			return (this);
+		}
+
+		private void sample(int j0, int j1, int i0, int i1) {
+			boolean elevation = (statistics & (MEAN_ELEVATION | VOLUME)) != 0;
+			boolean meanElevation = (statistics & MEAN_ELEVATION) != 0;
+			boolean volume = (statistics & VOLUME) != 0;
+			boolean slope = (statistics & MEAN_SLOPE) != 0;
+			double offset = landscape.getMinimumElevation() * landscape.getPixelScale();
+			for (int i = i0; i < i1; ++i) {
+				if (isCancelled()) {
+					return;
+				}
+				double y = sampleLattice.y[i];
+				int[] span = sampleLattice.span[i];
+				for (int k = 0; k < span.length; k += 2) {
+					int end = Math.min(span[k + 1], j1);
+					for (int j = Math.max(span[k], j0); j < end; ++j) {
+						double x = sampleLattice.x[j];
+						if (elevation) {
+							double el = getElevation(x, y);
+							if (!Double.isNaN(el)) {
+								if (meanElevation) {
+									elevationSum += el;
+									elevationCount++;
+								}
+								if (volume) {
+									addVolume(x, y, el, offset);
+								}
+							}
+						}
+						if (slope && getNormal(x, y)) {
+							normalSum.addLocal(store);
+							normalCount++;
+						}
+					}
+				}
+			}
+		}
+
+		private void addVolume(double x, double y, double el, double offset) {
+			double ref = referenceElevation;
+			if (referenceSpatial != null) {
+				el -= offset;
+				if (referenceSurface != null) {
+					ref = referenceSurface.getZ(x, y);
+				} else {
+					// picking is not thread safe
+					synchronized (referenceSpatial) {
+						ref = landscape.sampleSpatial(new Vector3(x, y, referenceTop), Vector3.NEG_UNIT_Z,
+							referenceSpatial);
+					}
+				}
+			}
+			if (Double.isNaN(ref)) {
+				return;
+			}
+			if (el < ref) {
+				volumeBelow += (ref - el);
+			} else {
+				volumeAbove += (el - ref);
+			}
+		}
+
+		/**
+		 * Each pixel is divided into 8 triangles around its center with
+		 * vertices on a lattice of half the pixel size. Elevations on that
+		 * lattice are kept for 3 rows so they are shared between neighboring
+		 * pixels.
+		 */
+		private void sampleSurfaceArea(int j0, int j1, int i0, int i1) {
+			if ((j1 <= j0) || (i1 <= i0)) {
+				return;
+			}
+			double xMin = centerLattice.x[0] - pixelWidth / 2;
+			double yMin = centerLattice.y[0] - pixelLength / 2;
+			int width = 2 * (j1 - j0) + 1;
+			float[][] z = new float[3][width];
+			int[][] stamp = new int[3][width];
+			for (int s = 0; s < 3; ++s) {
+				for (int a = 0; a < width; ++a) {
+					stamp[s][a] = -1;
+				}
+			}
+			double[] hx = new double[3];
+			double[] hy = new double[3];
+			double[] hz = new double[9];
+			for (int i = i0; i < i1; ++i) {
+				if (isCancelled()) {
+					return;
+				}
+				int[] span = centerLattice.span[i];
+				for (int k = 0; k < span.length; k += 2) {
+					int end = Math.min(span[k + 1], j1);
+					for (int j = Math.max(span[k], j0); j < end; ++j) {
+						for (int b = 0; b < 3; ++b) {
+							int hRow = 2 * i + b;
+							int slot = hRow % 3;
+							hy[b] = yMin + hRow * (pixelLength / 2);
+							for (int a = 0; a < 3; ++a) {
+								int hCol = 2 * (j - j0) + a;
+								hx[a] = xMin + (2 * j + a) * (pixelWidth / 2);
+								if (stamp[slot][hCol] != hRow) {
+									z[slot][hCol] = (float) getElevation(hx[a], hy[b]);
+									stamp[slot][hCol] = hRow;
+								}
+								hz[b * 3 + a] = z[slot][hCol];
+							}
+						}
+						// 8 triangles around the center (1,1), b is the row
+						// from the bottom and a is the column from the left
+						surfaceArea += getArea(hx, hy, hz, 0, 2, 1, 2);
+						surfaceArea += getArea(hx, hy, hz, 2, 2, 1, 2);
+						surfaceArea += getArea(hx, hy, hz, 0, 1, 0, 2);
+						surfaceArea += getArea(hx, hy, hz, 2, 1, 2, 2);
+						surfaceArea += getArea(hx, hy, hz, 0, 1, 0, 0);
+						surfaceArea += getArea(hx, hy, hz, 2, 1, 2, 0);
+						surfaceArea += getArea(hx, hy, hz, 0, 0, 1, 0);
+						surfaceArea += getArea(hx, hy, hz, 2, 0, 1, 0);
+					}
+				}
+			}
+		}
+
+		private double getArea(double[] hx, double[] hy, double[] hz, int a1, int b1, int a2, int b2) {
+			double z0 = hz[4];
+			double z1 = hz[b1 * 3 + a1];
+			double z2 = hz[b2 * 3 + a2];
+			if (Double.isNaN(z0) || Double.isNaN(z1) || Double.isNaN(z2)) {
+				return (0);
+			}
+			return (MathUtil.getAreaOfTriangle(hx[1], hy[1], z0, hx[a1], hy[b1], z1, hx[a2], hy[b2], z2));
+		}
+
+		private double getElevation(double x, double y) {
+			if (quadTree.contains(x, y)) {
+				return (quadTree.getElevation(x, y));
+			}
+			// on the far side of a tile edge
+			return (landscape.getElevationAtHighestLevel(x, y));
+		}
+
+		private boolean getNormal(double x, double y) {
+			if (quadTree.contains(x, y)) {
+				return (quadTree.getNormal(x, y, store));
+			}
+			return (landscape.getNormalAtHighestLevel(x, y, store));
+		}
+	}
+
+	/**
+	 * A surface made of the triangles of a mesh, sampled by looking straight
+	 * down. Triangles are binned in a grid so each sample only tests the
+	 * triangles near it.
+	 */
+	private static class TriangleSurface {
+
+		// Triangle vertices, 9 coordinates per triangle
+		private double[] tri;
+		private int count;
+
+		// Grid of triangle indices
+		private double xMin, yMin, cellWidth, cellLength;
+		private int columns, rows;
+		private int[][] cell;
+
+		// Height the surface is viewed from
+		private double top;
+
+		public TriangleSurface(Mesh mesh, double top) {
+			this.top = top;
+			MeshData meshData = mesh.getMeshData();
+			tri = new double[9 * Math.max(meshData.getTotalPrimitiveCount(), 0)];
+			Vector3[] store = null;
+			for (int s = 0; s < meshData.getSectionCount(); ++s) {
+				IndexMode mode = meshData.getIndexMode(s);
+				if ((mode != IndexMode.Triangles) && (mode != IndexMode.TriangleStrip)
+					&& (mode != IndexMode.TriangleFan)) {
+					continue;
+				}
+				for (int p = 0; p < meshData.getPrimitiveCount(s); ++p) {
+					store = meshData.getPrimitiveVertices(p, s, store);
+					for (int v = 0; v < 3; ++v) {
+						mesh.getWorldTransform().applyForward(store[v]);
+						tri[count * 9 + v * 3] = store[v].getX();
+						tri[count * 9 + v * 3 + 1] = store[v].getY();
+						tri[count * 9 + v * 3 + 2] = store[v].getZ();
+					}
+					count++;
+				}
+			}
+			if (count == 0) {
+				return;
+			}
+			xMin = Double.MAX_VALUE;
+			yMin = Double.MAX_VALUE;
+			double xMax = -Double.MAX_VALUE;
+			double yMax = -Double.MAX_VALUE;
+			for (int t = 0; t < count; ++t) {
+				for (int v = 0; v < 3; ++v) {
+					xMin = Math.min(xMin, tri[t * 9 + v * 3]);
+					xMax = Math.max(xMax, tri[t * 9 + v * 3]);
+					yMin = Math.min(yMin, tri[t * 9 + v * 3 + 1]);
+					yMax = Math.max(yMax, tri[t * 9 + v * 3 + 1]);
+				}
+			}
+			columns = Math.max(1, Math.min(256, (int) Math.sqrt(count)));
+			rows = columns;
+			cellWidth = Math.max(xMax - xMin, Double.MIN_NORMAL) / columns;
+			cellLength = Math.max(yMax - yMin, Double.MIN_NORMAL) / rows;
+			int[] cellCount = new int[columns * rows];
+			for (int pass = 0; pass < 2; ++pass) {
+				for (int t = 0; t < count; ++t) {
+					double tx0 = Math.min(tri[t * 9], Math.min(tri[t * 9 + 3], tri[t * 9 + 6]));
+					double tx1 = Math.max(tri[t * 9], Math.max(tri[t * 9 + 3], tri[t * 9 + 6]));
+					double ty0 = Math.min(tri[t * 9 + 1], Math.min(tri[t * 9 + 4], tri[t * 9 + 7]));
+					double ty1 = Math.max(tri[t * 9 + 1], Math.max(tri[t * 9 + 4], tri[t * 9 + 7]));
+					for (int r = getRow(ty0); r <= getRow(ty1); ++r) {
+						for (int c = getColumn(tx0); c <= getColumn(tx1); ++c) {
+							if (pass == 0) {
+								cellCount[r * columns + c]++;
+							} else {
+								cell[r * columns + c][--cellCount[r * columns + c]] = t;
+							}
+						}
+					}
+				}
+				if (pass == 0) {
+					cell = new int[columns * rows][];
+					for (int i = 0; i < cell.length; ++i) {
+						cell[i] = new int[cellCount[i]];
+					}
+				}
+			}
+		}
+
+		public boolean isEmpty() {
+			return (count == 0);
+		}
+
+		private int getColumn(double x) {
+			return (Math.max(0, Math.min(columns - 1, (int) ((x - xMin) / cellWidth))));
+		}
+
+		private int getRow(double y) {
+			return (Math.max(0, Math.min(rows - 1, (int) ((y - yMin) / cellLength))));
+		}
+
+		/**
+		 * Get the Z coordinate of the highest triangle below the top at a
+		 * point.
+		 *
+		 * @param x
+		 * @param y
+		 * @return NaN if no triangle is under the point
+		 */
+		public double getZ(double x, double y) {
+			int[] list = cell[getRow(y) * columns + getColumn(x)];
+			double z = Double.NaN;
+			for (int i = 0; i < list.length; ++i) {
+				int t = list[i] * 9;
+				double x0 = tri[t], y0 = tri[t + 1];
+				double x1 = tri[t + 3], y1 = tri[t + 4];
+				double x2 = tri[t + 6], y2 = tri[t + 7];
+				double d = (y1 - y2) * (x0 - x2) + (x2 - x1) * (y0 - y2);
+				// seen edge on
+				if (Math.abs(d) < 1e-12) {
+					continue;
+				}
+				double l0 = ((y1 - y2) * (x - x2) + (x2 - x1) * (y - y2)) / d;
+				double l1 = ((y2 - y0) * (x - x2) + (x0 - x2) * (y - y2)) / d;
+				double l2 = 1 - l0 - l1;
+				if ((l0 < -1e-9) || (l1 < -1e-9) || (l2 < -1e-9)) {
+					continue;
+				}
+				double tz = l0 * tri[t + 2] + l1 * tri[t + 5] + l2 * tri[t + 8];
+				if ((tz <= top) && (Double.isNaN(z) || (tz > z))) {
+					z = tz;
+				}
+			}
+			return (z);
+		}
+	}
+
+}
@@ -68,6 +68,12 @@ public class LayerFactory {
 	private Color color;
 	private String elevAttrName;
 
+	// Write raster tiles to a single packed tile file
+	private boolean packed;
+
+	// Build raster pyramids without the padded temporary raster
+	private boolean streaming;
+
 	// This is a vector file so it needs to be rendered
 	private boolean isVector;
 
@@ -94,7 +100,8 @@ public class LayerFactory {
 			if (args[0].equals("-usage")) {
 				System.out.println("layerfactory -landscape=landscapePath -file=inputFilePath -tilesize=tileSize -type=layerType "+
 						"[-globe=globename] [-missing=missingValue] [-name=layerName] [-leftmargin=numPixels] [-rightmargin=numPixels]"+
-						" [-bottommargin=numPixels] [-topmargin=numPixels] [-color=R,G,B,A] [-elevattrname=elevation attribute name]");
+						" [-bottommargin=numPixels] [-topmargin=numPixels] [-color=R,G,B,A] [-elevattrname=elevation attribute name]"+
+						" [-tileformat=png|packed] [-streaming]");
 				System.exit(0);
 			}
 		}
@@ -168,6 +175,8 @@ public class LayerFactory {
 						tmpPath = System.getProperty(tmpPath.substring(1));
 
 					RasterPyramidLayerFactory factory = new RasterPyramidLayerFactory(rf, tmpPath);
+					factory.setPacked(packed);
+					factory.setStreaming(streaming);
 					factory.buildPyramid(landscapePath, globe, layerType, layerName, tileSize, missing, margin, null);
 				}
 			} catch (Exception e) {
@@ -257,6 +266,8 @@ public class LayerFactory {
 		globe = PyramidLayerFactory.defaultGlobe;
 		color = Color.white;
 		elevAttrName = null;
+		packed = false;
+		streaming = false;
 		for (int i = 0; i < args.length; ++i) {
 			if (args[i].startsWith("-landscape=")) {
 				landscapePath = args[i].substring(11);
@@ -339,6 +350,10 @@ public class LayerFactory {
 				margin[3] = Integer.parseInt(str, 0);
 			} else if (args[i].startsWith("-elevattrname=")) {
 				elevAttrName = args[i].substring(14);
+			} else if (args[i].startsWith("-tileformat=")) {
+				packed = args[i].substring(12).equalsIgnoreCase("packed");
+			} else if (args[i].equals("-streaming")) {
+				streaming = true;
 			}
 		}
 		if ((landscapePath == null) || (filePath == null)) {
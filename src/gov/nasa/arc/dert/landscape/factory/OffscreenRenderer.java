@@ -31,7 +31,7 @@ import com.jogamp.opengl.GLProfile;
  */
 public class OffscreenRenderer {
 
-	// Orthographic camera used to render each image
+	// Camera used to render each image, orthographic by default
 	private Camera camera;
 
 	// Background color
@@ -58,6 +58,9 @@ public class OffscreenRenderer {
 	private ByteBuffer rgbaBuffer;
 	private int size;
 
+	// RGB buffer
+	private ByteBuffer rgbBuffer;
+
 	public OffscreenRenderer(final DisplaySettings settings, final Renderer renderer, ReadOnlyColorRGBA backgroundColor) {
 		this.renderer = renderer;
 		this.settings = settings;
@@ -98,6 +101,25 @@ public class OffscreenRenderer {
 		return camera;
 	}
 
+	/**
+	 * Set the camera used to render each image. The camera should have the
+	 * same dimensions as this renderer.
+	 * 
+	 * @param camera
+	 */
+	public void setCamera(Camera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Get the renderer
+	 * 
+	 * @return
+	 */
+	public Renderer getRenderer() {
+		return renderer;
+	}
+
 	public int getWidth() {
 		return width;
 	}
@@ -114,27 +136,11 @@ public class OffscreenRenderer {
 	 */
 	public void render(final Spatial toDrawB, final int clear) {
 		try {
-			if (offscreenDrawable == null) {
-				initPbuffer();
-			}
-
-			context.makeCurrent();
-			ContextManager.switchContext(context);
-
-			// clear the scene
-			if (clear != 0) {
-				final GL gl = GLContext.getCurrentGL();
-				gl.glDisable(GL.GL_SCISSOR_TEST);
-				renderer.clearBuffers(clear);
-			}
-
-			camera.update();
-			camera.apply(renderer);
+			begin(clear);
 
 			doDraw(toDrawB);
 
-			renderer.flushFrame(false);
-			renderer.finishGraphics();
+			end();
 
 			saveRGBABuffer();
 
@@ -143,6 +149,66 @@ public class OffscreenRenderer {
 		}
 	}
 
+	/**
+	 * Make the pbuffer context current. Other render passes, such as shadow
+	 * maps, may be done after this and before begin.
+	 */
+	public void makeCurrent() {
+		if (offscreenDrawable == null) {
+			initPbuffer();
+		}
+
+		context.makeCurrent();
+		ContextManager.switchContext(context);
+	}
+
+	/**
+	 * Start an image. Makes the context current, clears the buffers, and
+	 * applies the camera. Spatials may then be drawn with the renderer.
+	 * 
+	 * @param clear
+	 */
+	public void begin(final int clear) {
+		makeCurrent();
+
+		// clear the scene
+		if (clear != 0) {
+			final GL gl = GLContext.getCurrentGL();
+			gl.glDisable(GL.GL_SCISSOR_TEST);
+			renderer.clearBuffers(clear);
+		}
+
+		camera.update();
+		camera.apply(renderer);
+	}
+
+	/**
+	 * Finish an image. Renders the queued buckets and waits for OpenGL.
+	 */
+	public void end() {
+		renderer.flushFrame(false);
+		renderer.finishGraphics();
+	}
+
+	/**
+	 * Read the image as packed RGB bytes with the bottom row first, as
+	 * expected by the FrameRecorder.
+	 * 
+	 * @param store
+	 *            array of width*height*3 bytes
+	 */
+	public void readRGB(byte[] store) {
+		final GL gl = GLContext.getCurrentGL();
+		if (rgbBuffer == null) {
+			rgbBuffer = BufferUtils.createByteBuffer(width * height * 3);
+		}
+		rgbBuffer.clear();
+		gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+		gl.glReadPixels(0, 0, width, height, GL.GL_RGB, GL.GL_UNSIGNED_BYTE, rgbBuffer);
+		rgbBuffer.rewind();
+		rgbBuffer.get(store, 0, width * height * 3);
+	}
+
 	protected void saveRGBABuffer() {
 		final GL gl = GLContext.getCurrentGL();
 		if (rgbaBuffer == null) {
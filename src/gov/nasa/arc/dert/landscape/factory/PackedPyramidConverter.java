@@ -0,0 +1,174 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.io.PackedTileWriter;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.terrain.QuadTreeTile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+/**
+ * Converts the PNG tiles of existing landscape layers to a single packed tile
+ * file per layer (see PackedTileWriter). Tiles are decoded the same way they
+ * are when loaded into DERT so the packed layer renders identically. The PNG
+ * tiles are left in place.
+ *
+ */
+public class PackedPyramidConverter {
+
+	// Landscape directory
+	private String landscapePath;
+
+	// Reads the PNG tiles
+	private FileSystemTileSource tileSource;
+
+	/**
+	 * Main
+	 *
+	 * @param args
+	 *            the landscape path followed by optional layer names
+	 */
+	public static void main(String[] args) {
+		if ((args.length == 0) || args[0].equals("-usage")) {
+			System.out.println("packedpyramidconverter landscapePath [layerName ...]");
+			System.exit(0);
+		}
+		PackedPyramidConverter converter = new PackedPyramidConverter(args[0]);
+		try {
+			if (args.length == 1) {
+				converter.convertAll();
+			} else {
+				for (int i = 1; i < args.length; ++i) {
+					converter.convertLayer(args[i]);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param landscapePath
+	 */
+	public PackedPyramidConverter(String landscapePath) {
+		this.landscapePath = landscapePath;
+		tileSource = new FileSystemTileSource();
+		if (!tileSource.connect(landscapePath, null, null)) {
+			throw new IllegalArgumentException("Landscape " + landscapePath + " does not exist.");
+		}
+	}
+
+	/**
+	 * Convert all raster layers in the landscape.
+	 *
+	 * @throws IOException
+	 */
+	public void convertAll() throws IOException {
+		File[] file = new File(landscapePath).listFiles();
+		if (file == null) {
+			return;
+		}
+		for (int i = 0; i < file.length; ++i) {
+			if (file[i].isDirectory() && !file[i].getName().startsWith(".")
+				&& new File(file[i], "layer.properties").exists()) {
+				convertLayer(file[i].getName());
+			}
+		}
+	}
+
+	/**
+	 * Convert a layer.
+	 *
+	 * @param layerName
+	 * @return the number of tiles written, -1 if the layer type has no tiles
+	 * @throws IOException
+	 */
+	public int convertLayer(String layerName) throws IOException {
+		File dir = new File(landscapePath, layerName);
+		File propFile = new File(dir, "layer.properties");
+		Properties properties = new Properties();
+		FileInputStream inStream = new FileInputStream(propFile);
+		properties.load(inStream);
+		inStream.close();
+
+		// data types as requested by RasterLayer
+		String type = properties.getProperty("LayerType", "");
+		DataType dataType = null;
+		int bytesPerPixel = 0;
+		if (type.equals("elevation") || type.equals("field")) {
+			dataType = DataType.Float;
+			bytesPerPixel = 4;
+		} else if (type.equals("colorimage")) {
+			dataType = DataType.UnsignedInteger;
+			bytesPerPixel = 4;
+		} else if (type.equals("grayimage")) {
+			dataType = DataType.UnsignedByte;
+			bytesPerPixel = 1;
+		} else {
+			System.out.println("Skipping " + layerName + " layer of type " + type + ".");
+			return (-1);
+		}
+		int tileWidth = Integer.parseInt(properties.getProperty("TileWidth")) + 1;
+		int tileLength = Integer.parseInt(properties.getProperty("TileLength")) + 1;
+
+		System.out.println("Packing tiles for " + layerName);
+		long t = System.currentTimeMillis();
+		PackedTileWriter writer = new PackedTileWriter(dir.getAbsolutePath(), tileWidth, tileLength, bytesPerPixel);
+		writer.open();
+		try {
+			packTiles(writer, dir, "", layerName, dataType, tileWidth, tileLength);
+		} finally {
+			writer.close();
+		}
+
+		properties.setProperty("TileFormat", "Packed");
+		FileOutputStream outStream = new FileOutputStream(propFile);
+		properties.store(outStream, LayerFactory.VERSION);
+		outStream.close();
+
+		System.out.println("Packed " + writer.getTileCount() + " tiles for " + layerName + " in "
+			+ (float) ((System.currentTimeMillis() - t) / 1000.0) + " seconds.");
+		return (writer.getTileCount());
+	}
+
+	private void packTiles(PackedTileWriter writer, File dir, String id, String layerName, DataType dataType,
+		int tileWidth, int tileLength) throws IOException {
+		File file = new File(dir, "0.png");
+		if (file.exists()) {
+			// empty tile
+			if (file.length() == 0) {
+				writer.writeTile(id, new byte[0], 0);
+			} else {
+				QuadTreeTile tile = tileSource.getTilePng(layerName, id, dataType);
+				if (tile == null) {
+					throw new IllegalStateException("Unable to read tile " + id + " of layer " + layerName + ".");
+				}
+				if ((tile.width != tileWidth) || (tile.length != tileLength)) {
+					throw new IllegalStateException("Tile " + id + " of layer " + layerName + " is " + tile.width + " x "
+						+ tile.length + ", expected " + tileWidth + " x " + tileLength + ".");
+				}
+				ByteBuffer bBuf = tile.getImage() == null ? tile.raster : tile.getImage().getData(0);
+				bBuf = bBuf.duplicate();
+				bBuf.rewind();
+				byte[] bytes = new byte[bBuf.remaining()];
+				bBuf.get(bytes);
+				writer.writeTile(id, bytes, bytes.length);
+			}
+		}
+		for (int i = 1; i <= 4; ++i) {
+			File child = new File(dir, Integer.toString(i));
+			if (child.isDirectory()) {
+				packTiles(writer, child, id + "/" + i, layerName, dataType, tileWidth, tileLength);
+			}
+		}
+	}
+
+}
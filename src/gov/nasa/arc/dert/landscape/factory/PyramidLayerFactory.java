@@ -1,5 +1,6 @@
 package gov.nasa.arc.dert.landscape.factory;
 
+import gov.nasa.arc.dert.io.PackedTileWriter;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
 import gov.nasa.arc.dert.terrain.LayerInfo.LayerType;
 
@@ -13,10 +14,13 @@ import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 /**
  * Base class for factories that create a multi-resolution tiled pyramid. The
@@ -40,6 +44,9 @@ public abstract class PyramidLayerFactory {
 	
 	public static String defaultGlobe;
 
+	// Minimum time between progress reports (in milliseconds)
+	public static long PROGRESS_INTERVAL = 250;
+
 	// Projection information from source file or destination landscape
 	protected ProjectionInfo projInfo;
 
@@ -56,7 +63,19 @@ public abstract class PyramidLayerFactory {
 	protected float edgeFillValue;
 
 	// flag for cancellation
-	protected boolean doIt;
+	protected volatile boolean doIt;
+
+	// Write tiles to a single packed tile file instead of PNG files
+	protected boolean packed;
+
+	// Writer for packed tiles (null when writing PNG files)
+	protected PackedTileWriter packedWriter;
+
+	// Receives progress reports
+	protected PyramidProgressListener progressListener;
+
+	// Time of the last progress report
+	private AtomicLong progressTime = new AtomicLong();
 
 	/**
 	 * Constructor
@@ -78,7 +97,7 @@ public abstract class PyramidLayerFactory {
 		properties.setProperty("Source", sourceFilePath);
 		properties.setProperty("MinimumValue", Double.toString(minimumSampleValue[0]));
 		properties.setProperty("MaximumValue", Double.toString(maximumSampleValue[0]));
-		properties.setProperty("TileFormat", "PNG");
+		properties.setProperty("TileFormat", packed ? "Packed" : "PNG");
 		projInfo.saveToProperties(properties, defaultGlobe);
 		if (layerType == LayerType.elevation) {
 			properties.setProperty("EdgeFillValue", Float.toString(edgeFillValue));
@@ -132,7 +151,7 @@ public abstract class PyramidLayerFactory {
 	}
 
 	/**
-	 * Determine the path for a tile.
+	 * Determine the quad tree id for a tile (such as /1/3/2).
 	 * 
 	 * @param column
 	 *            the tile column
@@ -142,15 +161,13 @@ public abstract class PyramidLayerFactory {
 	 *            the number of tiles on a side
 	 * @param level
 	 *            the pyramid level
-	 * @param dirPath
-	 *            the directory for the tiles
 	 * @return
 	 */
-	protected String getTileFilePath(int column, int row, int numTiles, int level, String dirPath) {
+	protected String getTileId(int column, int row, int numTiles, int level) {
 		numTiles /= 2;
 		int xLine = numTiles;
 		int yLine = numTiles;
-		byte[] id = new byte[level + 1];
+		byte[] id = new byte[level];
 		int l = 0;
 		while (numTiles > 0) {
 			if ((column < xLine) && (row < yLine)) {
@@ -176,15 +193,189 @@ public abstract class PyramidLayerFactory {
 			}
 			l++;
 		}
-		id[l] = 0;
-		String fileName = "";
+		String tileId = "";
 		for (int i = 0; i < id.length; ++i) {
-			fileName += File.separator + id[i];
+			tileId += "/" + id[i];
 		}
+		return (tileId);
+	}
+
+	/**
+	 * Determine the path for a tile.
+	 * 
+	 * @param column
+	 *            the tile column
+	 * @param row
+	 *            the tile row
+	 * @param numTiles
+	 *            the number of tiles on a side
+	 * @param level
+	 *            the pyramid level
+	 * @param dirPath
+	 *            the directory for the tiles
+	 * @return
+	 */
+	protected String getTileFilePath(int column, int row, int numTiles, int level, String dirPath) {
+		return (getTileFilePath(getTileId(column, row, numTiles, level), dirPath));
+	}
+
+	/**
+	 * Determine the path for a tile.
+	 * 
+	 * @param tileId
+	 *            the quad tree id of the tile
+	 * @param dirPath
+	 *            the directory for the tiles
+	 * @return
+	 */
+	protected String getTileFilePath(String tileId, String dirPath) {
+		String fileName = tileId.replace("/", File.separator) + File.separator + 0;
 		File file = new File(dirPath + fileName);
 		return (file.getAbsolutePath());
 	}
 
+	/**
+	 * Write tiles to a single packed tile file instead of PNG files.
+	 * 
+	 * @param packed
+	 */
+	public void setPacked(boolean packed) {
+		this.packed = packed;
+	}
+
+	/**
+	 * Prepare the layer directory for writing tiles. Opens the packed tile file
+	 * or removes a stale one if writing PNG files.
+	 * 
+	 * @param dirPath
+	 *            the layer directory
+	 * @param width
+	 *            the tile width including the extra edge pixels
+	 * @param height
+	 *            the tile height including the extra edge pixels
+	 * @param bytesPerPixel
+	 * @throws IOException
+	 */
+	protected void openTiles(String dirPath, int width, int height, int bytesPerPixel) throws IOException {
+		if (packed) {
+			packedWriter = new PackedTileWriter(dirPath, width, height, bytesPerPixel);
+			packedWriter.open();
+		} else {
+			File file = new File(dirPath, PackedTileWriter.FILE_NAME);
+			if (file.exists()) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Finish writing tiles.
+	 * 
+	 * @throws IOException
+	 */
+	protected void closeTiles() throws IOException {
+		if (packedWriter != null) {
+			packedWriter.close();
+			packedWriter = null;
+		}
+	}
+
+	/**
+	 * Write a tile out to the pyramid, either to the packed tile file or to a
+	 * PNG file.
+	 * 
+	 * @param tileId
+	 *            the quad tree id of the tile
+	 * @param dirPath
+	 *            the layer directory
+	 * @param bbArray
+	 * @param width
+	 * @param height
+	 * @param layerType
+	 * @throws IOException
+	 */
+	protected void writeTile(String tileId, String dirPath, byte[] bbArray, int width, int height, LayerType layerType)
+		throws IOException {
+		if (packedWriter == null) {
+			writeTile(getTileFilePath(tileId, dirPath), bbArray, width, height, layerType);
+			return;
+		}
+		// store pixels in the order they are presented to OpenGL
+		if (layerType == LayerType.colorimage) {
+			PackedTileWriter.abgrToBgra(bbArray, bbArray.length);
+		}
+		packedWriter.writeTile(tileId, bbArray, bbArray.length);
+	}
+
+	/**
+	 * Set the listener for progress reports.
+	 * 
+	 * @param listener
+	 */
+	public void setProgressListener(PyramidProgressListener listener) {
+		progressListener = listener;
+	}
+
+	/**
+	 * Create a listener that shows progress in a UI text field, or on the
+	 * console if headless.
+	 * 
+	 * @param messageText
+	 *            UI text field for messages (null if headless)
+	 * @return
+	 */
+	protected PyramidProgressListener createProgressListener(final JTextField messageText) {
+		if (messageText == null) {
+			return (new PyramidProgressListener() {
+				@Override
+				public void progress(String layerName, int level, int numLevels, int tilesDone, int tileCount) {
+					System.out.println("Writing " + layerName + " level " + (level + 1) + " of " + numLevels + ", "
+						+ tilesDone + " of " + tileCount + " tiles");
+				}
+			});
+		}
+		return (new PyramidProgressListener() {
+			@Override
+			public void progress(String layerName, int level, int numLevels, int tilesDone, int tileCount) {
+				final String str = "Writing " + layerName + " level " + (level + 1) + " of " + numLevels + ", tile "
+					+ tilesDone + " of " + tileCount + " . . .";
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						messageText.setText(str);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Report progress to the listener. Reports are dropped if they come
+	 * sooner than PROGRESS_INTERVAL after the previous one, except for the
+	 * last tile of a level.
+	 * 
+	 * @param layerName
+	 * @param level
+	 * @param numLevels
+	 * @param tilesDone
+	 * @param tileCount
+	 */
+	protected void reportProgress(String layerName, int level, int numLevels, int tilesDone, int tileCount) {
+		if (progressListener == null) {
+			return;
+		}
+		long t = System.currentTimeMillis();
+		long last = progressTime.get();
+		if (tilesDone < tileCount) {
+			if ((t - last < PROGRESS_INTERVAL) || !progressTime.compareAndSet(last, t)) {
+				return;
+			}
+		} else {
+			progressTime.set(t);
+		}
+		progressListener.progress(layerName, level, numLevels, tilesDone, tileCount);
+	}
+
 	/**
 	 * User pressed the cancel button
 	 */
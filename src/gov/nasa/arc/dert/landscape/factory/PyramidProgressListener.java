@@ -0,0 +1,27 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+/**
+ * Receives progress reports while a pyramid is built. Reports may come from
+ * any of the threads writing tiles and are throttled by the factory (see
+ * PyramidLayerFactory.PROGRESS_INTERVAL).
+ *
+ */
+public interface PyramidProgressListener {
+
+	/**
+	 * Report the progress of a pyramid level.
+	 *
+	 * @param layerName
+	 *            the layer being built
+	 * @param level
+	 *            the pyramid level (0 is the lowest resolution)
+	 * @param numLevels
+	 *            the number of levels in the pyramid
+	 * @param tilesDone
+	 *            the number of tiles written for the level
+	 * @param tileCount
+	 *            the number of tiles in the level
+	 */
+	public void progress(String layerName, int level, int numLevels, int tilesDone, int tileCount);
+
+}
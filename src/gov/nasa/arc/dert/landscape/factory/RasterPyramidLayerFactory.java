@@ -1,5 +1,6 @@
 package gov.nasa.arc.dert.landscape.factory;
 
+import gov.nasa.arc.dert.io.TileIndex;
 import gov.nasa.arc.dert.raster.Raster;
 import gov.nasa.arc.dert.raster.RasterFile;
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
@@ -14,7 +15,15 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JTextField;
 
@@ -23,10 +32,30 @@ import javax.swing.JTextField;
  * multi-resolution tiled pyramid. Pixels for new levels are subsampled through
  * averaging. The raster is padded first to extend its size to a power of 2 on
  * each side.
+ * 
+ * The highest resolution tiles are cut from the padded raster. Each lower
+ * resolution level is then derived from the level above it by averaging 2x2
+ * blocks of pixels, so every source pixel is read once per level instead of
+ * once per level with a growing kernel. The tiles of a level and the rows of a
+ * reduction are processed in parallel on a work-stealing pool.
+ * 
+ * In streaming mode no copy of the source raster, padded raster or level
+ * rasters are written. The source file is read one band (a strip or a row of
+ * file tiles) at a time, and rows of the highest resolution level are
+ * assembled from the current band with the padding filled in. Each level keeps
+ * only the rows for its current row of tiles. Pairs of rows are reduced into
+ * the level below as they arrive, so all levels are written in a single pass
+ * over the source.
  *
  */
 public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 
+	// Number of threads building tiles
+	public static int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Number of rows in each reduction task
+	private static final int REDUCTION_ROWS = 64;
+
 	// Dimensions
 	protected int rasterWidth, rasterLength;
 	protected int tileWidth, tileLength;
@@ -53,6 +82,9 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 	// Location of temporary files
 	protected String tmpPath;
 
+	// Build without the padded raster
+	protected boolean streaming;
+
 	/**
 	 * Constructor
 	 * 
@@ -65,6 +97,16 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		this.tmpPath = tmpPath;
 	}
 
+	/**
+	 * Build the pyramid in a single pass over the source raster file, reading
+	 * it a band at a time, without writing a copy of it.
+	 * 
+	 * @param streaming
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
 	/**
 	 * Build a multi-resolution tiled pyramid to be used in a landscape.
 	 * 
@@ -145,62 +187,85 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		// Build the pyramid
 		try {
 
-			// First save the raster file in a quad with a size that is a power
-			// of 2
-			// Pad and center the raster
-			if (messageText != null) {
-				messageText.setText("Writing temporary "+paddedWidth+" x "+paddedLength+" file ");
-				Thread.yield();
+			Raster raster = null;
+			float missingValue = Float.NaN;
+			if (streaming) {
+				if (messageText != null) {
+					messageText.setText("Reading "+rasterWidth+" x "+rasterLength+" raster in bands of "+rasterFile.getBandLength()+" rows ");
+					Thread.yield();
+				}
+				else
+					System.out.println("Reading "+rasterWidth+" x "+rasterLength+" raster in bands of "+rasterFile.getBandLength()+" rows ");
+				missingValue = openSourceRaster(path, missing);
+			}
+			else {
+				// First save the raster file in a quad with a size that is a power
+				// of 2
+				// Pad and center the raster
+				if (messageText != null) {
+					messageText.setText("Writing temporary "+paddedWidth+" x "+paddedLength+" file ");
+					Thread.yield();
+				}
+				else
+					System.out.println("Writing temporary "+paddedWidth+" x "+paddedLength+" file ");
+				raster = createPaddedRaster(path, samplesPerPixel, missing);
+				rasterFile.close();
+				System.gc();
 			}
-			else
-				System.out.println("Writing temporary "+paddedWidth+" x "+paddedLength+" file ");
-			Raster raster = createPaddedRaster(path, samplesPerPixel, missing);
-			rasterFile.close();
-			System.gc();
 
 			// Create a sub-directory for the layer
 			File dirFile = new File(path, layerName);
 			dirFile.mkdirs();
 			String dirPath = dirFile.getAbsolutePath();
+			openTiles(dirPath, tileWidth + 1, tileLength + 1, bytesPerPixel);
 
-			// Write tiles for each level starting at highest resolution
-			int columnStep = tileWidth;
-			int rowStep = tileLength;
-			for (int level = maxLevel; level >= 0; level--) {
-				if (!doIt) {
-					break;
-				}
-				int kernelSize = (int) Math.pow(2, (maxLevel - level));
-				int rcnt = 0;
-				if (messageText == null)
-					System.out.println("Writing "+numTiles+" rows for level "+(level+1)+" of "+(maxLevel+1));
-				for (int r = 0; r < numTiles; ++r) {
-					if (messageText == null) {
-						if (rcnt%10 == 0)
-							System.out.print(rcnt);
-						else 
-							System.out.print(".");
-						rcnt ++;
+			if (progressListener == null) {
+				setProgressListener(createProgressListener(messageText));
+			}
+
+			// Write tiles for each level starting at highest resolution. Each
+			// level is a raster with the tiles laid out from its top left
+			// corner, followed by the padding needed for the edge pixels.
+			ForkJoinPool pool = new ForkJoinPool(NUMBER_OF_THREADS);
+			try {
+				if (streaming) {
+					try {
+						streamPyramid(pool, maxLevel, missingValue, layerName, dirPath);
+					} finally {
+						rasterFile.close();
 					}
-					for (int c = 0; c < numTiles; ++c) {
+				} else {
+					Raster levelRaster = raster;
+					int levelLeft = leftInset;
+					int levelTop = topInset;
+					int levelWidth = paddedWidth - leftInset;
+					int levelLength = paddedLength - topInset;
+					for (int level = maxLevel; level >= 0; level--) {
 						if (!doIt) {
 							break;
 						}
-						if (messageText != null) {
-							messageText.setText("Writing " + layerName + " level " + (level + 1) + " of "
-								+ (maxLevel + 1) + ", tile row " + (r + 1) + " of " + numTiles + " . . .");
-							Thread.yield();
+						if (level < maxLevel) {
+							levelWidth /= 2;
+							levelLength /= 2;
+							Raster coarser = reduceLevel(pool, levelRaster, levelLeft, levelTop, levelWidth,
+								levelLength);
+							levelRaster.dispose();
+							levelRaster = coarser;
+							levelLeft = 0;
+							levelTop = 0;
 						}
-						String filePath = getTileFilePath(c, r, numTiles, level, dirPath);
-						writeTile(raster, c * columnStep, r * rowStep, kernelSize, filePath, layerType);
+						writeLevel(pool, levelRaster, levelLeft, levelTop, level, maxLevel + 1, numTiles, layerName,
+							dirPath);
+						numTiles /= 2;
+					}
+					if (levelRaster != null) {
+						levelRaster.dispose();
 					}
 				}
-				if (messageText == null)
-					System.out.println();
-				numTiles /= 2;
-				columnStep *= 2;
-				rowStep *= 2;
+			} finally {
+				pool.shutdown();
 			}
+			closeTiles();
 			raster = null;
 			System.gc();
 
@@ -218,6 +283,13 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			if (doIt) {
 				writeProperties(new File(dirPath, "layer.properties").getAbsolutePath(), maxLevel + 1, tileWidth,
 					tileLength, numberOfTiles);
+				// every tile of every level exists, record them so the
+				// landscape does not need to search for them when opened
+				if (layerType == LayerType.elevation) {
+					File dertDir = new File(path, "dert");
+					TileIndex.createComplete(maxLevel + 1).write(new File(dertDir, TileIndex.FILE_NAME));
+					new File(dertDir, "depthtree.txt").delete();
+				}
 			}
 			System.out.println("Number of levels for " + layerName + " = " + (maxLevel + 1) + " with " + numberOfTiles
 				+ " tiles per side at the highest resolution level.");
@@ -310,27 +382,11 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 
 	protected Raster createPaddedRaster(String path, int samplesPerPixel, String missing) throws IOException {
 
-		if (!doIt) {
+		Raster raster = loadSourceRaster(path, missing);
+		if (raster == null) {
 			return (null);
 		}
 
-		projInfo = rasterFile.getProjectionInfo();
-		float missingValue = Float.NaN;
-		if (missing == null) {
-			missingValue = rasterFile.getMissingValue();
-		} else {
-			missingValue = new Float(missing);
-			rasterFile.setMissingValue(missingValue);
-		}
-
-		// Get the entire raster file contents
-		dataType = rasterFile.getDataType();
-		if (tmpPath == null)
-			tmpPath = path;
-		Raster raster = loadRasterFile(tmpPath);
-		minimumSampleValue = rasterFile.getMinimumSampleValue();
-		maximumSampleValue = rasterFile.getMaximumSampleValue();
-
 		Raster padded = new Raster(paddedWidth, paddedLength, bytesPerPixel, dataType, tmpPath);
 		byte[] bbArray = new byte[rasterWidth * bytesPerPixel];
 
@@ -343,7 +399,6 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			break;
 		case elevation:
 		case field:
-			raster.setMissingValuesToNaN(missingValue, minimumSampleValue, maximumSampleValue);
 			padded.set(Float.NaN);
 			break;
 		case colorimage:
@@ -351,7 +406,6 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			padded.set(0);
 			break;
 		}
-		raster.flush();
 		padded.flush();
 
 		// transfer raster to padded one row at a time
@@ -361,6 +415,77 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			padded.set(topMargin + i, leftMargin, rasterWidth, 1, bbArray);
 		}
 
+		raster.dispose();
+		return (padded);
+	}
+
+	/**
+	 * Load the source raster, setting the projection, sample range, and edge
+	 * fill value for the layer. Missing elevation and field values are
+	 * converted to NaN.
+	 * 
+	 * @param path
+	 *            the landscape path, used for temporary files if no other
+	 *            location was given
+	 * @param missing
+	 *            the missing value argument from the commandline/UI
+	 * @return the raster or null if cancelled
+	 * @throws IOException
+	 */
+	protected Raster loadSourceRaster(String path, String missing) throws IOException {
+
+		if (!doIt) {
+			return (null);
+		}
+
+		float missingValue = openSourceRaster(path, missing);
+
+		// Get the entire raster file contents
+		Raster raster = loadRasterFile(tmpPath);
+		setSampleRange();
+
+		if ((layerType == LayerType.elevation) || (layerType == LayerType.field)) {
+			raster.setMissingValuesToNaN(missingValue, minimumSampleValue, maximumSampleValue);
+		}
+		raster.flush();
+
+		return (raster);
+	}
+
+	/**
+	 * Get the projection, missing value, and data type of the source raster
+	 * before reading it.
+	 * 
+	 * @param path
+	 *            the landscape path, used for temporary files if no other
+	 *            location was given
+	 * @param missing
+	 *            the missing value argument from the commandline/UI
+	 * @return the missing value
+	 */
+	protected float openSourceRaster(String path, String missing) {
+		projInfo = rasterFile.getProjectionInfo();
+		float missingValue = Float.NaN;
+		if (missing == null) {
+			missingValue = rasterFile.getMissingValue();
+		} else {
+			missingValue = new Float(missing);
+			rasterFile.setMissingValue(missingValue);
+		}
+		dataType = rasterFile.getDataType();
+		if (tmpPath == null)
+			tmpPath = path;
+		return (missingValue);
+	}
+
+	/**
+	 * Set the sample range and edge fill value for the layer from the source
+	 * raster file. The range is known once the file has been read.
+	 */
+	protected void setSampleRange() {
+		minimumSampleValue = rasterFile.getMinimumSampleValue();
+		maximumSampleValue = rasterFile.getMaximumSampleValue();
+
 		if (layerType == LayerType.elevation) {
 			// If the terrain dips below the edge (that is the minimum value < edgeFillValue),
 			// the shadows don't work correctly (this is the case with the Victoria Crater landscape).
@@ -369,9 +494,25 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 //			edgeFillValue = padded.computeEdgeFill();
 			edgeFillValue = (float)minimumSampleValue[0];
 		}
+	}
 
-		raster.dispose();
-		return (padded);
+	/**
+	 * Get the data type the source raster is converted to for the layer.
+	 * 
+	 * @return
+	 */
+	protected DataType getLayerDataType() {
+		switch (layerType) {
+		case elevation:
+		case field:
+			return (DataType.Float);
+		case colorimage:
+			return (DataType.Integer);
+		case grayimage:
+			return (DataType.UnsignedByte);
+		default:
+			return (null);
+		}
 	}
 
 	/**
@@ -411,6 +552,55 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		return (null);
 	}
 
+	/**
+	 * Write the tiles for one level of the pyramid.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 * @param raster
+	 *            the raster for the level
+	 * @param left
+	 *            the column of the first tile in the raster
+	 * @param top
+	 *            the row of the first tile in the raster
+	 * @param level
+	 *            the pyramid level
+	 * @param numLevels
+	 *            the number of levels
+	 * @param numTiles
+	 *            the number of tiles on a side for this level
+	 * @param layerName
+	 *            the layer name
+	 * @param dirPath
+	 *            the layer directory
+	 * @throws IOException
+	 */
+	protected void writeLevel(ForkJoinPool pool, final Raster raster, final int left, final int top, final int level,
+		final int numLevels, final int numTiles, final String layerName, final String dirPath) throws IOException {
+		final int tileCount = numTiles * numTiles;
+		final AtomicInteger tilesDone = new AtomicInteger();
+		List<Callable<Object>> taskList = new ArrayList<Callable<Object>>(tileCount);
+		for (int r = 0; r < numTiles; ++r) {
+			for (int c = 0; c < numTiles; ++c) {
+				final int column = c;
+				final int row = r;
+				taskList.add(new Callable<Object>() {
+					@Override
+					public Object call() throws IOException {
+						if (!doIt) {
+							return (null);
+						}
+						String tileId = getTileId(column, row, numTiles, level);
+						writeTile(raster, left + column * tileWidth, top + row * tileLength, tileId, dirPath);
+						reportProgress(layerName, level, numLevels, tilesDone.incrementAndGet(), tileCount);
+						return (null);
+					}
+				});
+			}
+		}
+		runTasks(pool, taskList);
+	}
+
 	/**
 	 * Write out a tile.
 	 * 
@@ -420,33 +610,98 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 	 *            the column start in the array
 	 * @param row
 	 *            the row start in the array
-	 * @param size
-	 *            the tile size (width and height)
-	 * @param filePath
-	 *            the path for the file
-	 * @param layerType
-	 *            the type of layer
+	 * @param tileId
+	 *            the quad tree id of the tile
+	 * @param dirPath
+	 *            the layer directory
 	 * @throws IOException
 	 */
-	protected void writeTile(Raster raster, int column, int row, int kernelSize, String filePath, LayerType layerType)
-		throws IOException {
-
+	protected void writeTile(Raster raster, int column, int row, String tileId, String dirPath) throws IOException {
 		int tWidth = tileWidth + 1;
 		int tLength = tileLength + 1;
-		int tSize = tLength * tWidth * bytesPerPixel;
-		int tileTop = 0;
-		int tileLeft = 0;
+		byte[] bbArray = new byte[tLength * tWidth * bytesPerPixel];
+		raster.get(row, column, tWidth, tLength, bbArray);
+		toTileOrder(bbArray);
+		writeTile(tileId, dirPath, bbArray, tWidth, tLength, layerType);
+	}
 
-		int rasterLeft = leftInset + column;
-		int rasterTop = topInset + row;
-		int rasterTWidth = tWidth * kernelSize;
-		int rasterTLength = tLength * kernelSize;
+	/**
+	 * Convert raster pixels to the order used in tiles. Tiles hold color
+	 * pixels as native order integers, other types are unchanged.
+	 * 
+	 * @param bbArray
+	 */
+	protected void toTileOrder(byte[] bbArray) {
+		if ((layerType != LayerType.colorimage) || (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN)) {
+			return;
+		}
+		for (int i = 0; i < bbArray.length; i += 4) {
+			byte b = bbArray[i];
+			bbArray[i] = bbArray[i + 3];
+			bbArray[i + 3] = b;
+			b = bbArray[i + 1];
+			bbArray[i + 1] = bbArray[i + 2];
+			bbArray[i + 2] = b;
+		}
+	}
 
-		// allocate buffer for writing the file
-		byte[] bbArray = new byte[tSize];
-		ByteBuffer bbuf = ByteBuffer.wrap(bbArray);
+	/**
+	 * Create the raster for the next lower resolution level by averaging 2x2
+	 * blocks of pixels.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 * @param finer
+	 *            the raster for the higher resolution level
+	 * @param left
+	 *            the first column of the level in the finer raster
+	 * @param top
+	 *            the first row of the level in the finer raster
+	 * @param width
+	 *            the width of the new raster
+	 * @param length
+	 *            the length of the new raster
+	 * @return the new raster
+	 * @throws IOException
+	 */
+	protected Raster reduceLevel(ForkJoinPool pool, final Raster finer, final int left, final int top,
+		final int width, int length) throws IOException {
+		final Raster coarser = new Raster(width, length, bytesPerPixel, dataType, tmpPath);
+		List<Callable<Object>> taskList = new ArrayList<Callable<Object>>();
+		for (int r = 0; r < length; r += REDUCTION_ROWS) {
+			final int startRow = r;
+			final int endRow = Math.min(r + REDUCTION_ROWS, length);
+			taskList.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					byte[] row0 = new byte[2 * width * bytesPerPixel];
+					byte[] row1 = new byte[2 * width * bytesPerPixel];
+					byte[] result = new byte[width * bytesPerPixel];
+					for (int i = startRow; (i < endRow) && doIt; ++i) {
+						finer.get(top + 2 * i, left, 2 * width, 1, row0);
+						finer.get(top + 2 * i + 1, left, 2 * width, 1, row1);
+						reduceRow(row0, row1, result, width);
+						coarser.set(i, 0, width, 1, result);
+					}
+					return (null);
+				}
+			});
+		}
+		runTasks(pool, taskList);
+		return (coarser);
+	}
 
-		// fill the tile
+	/**
+	 * Average 2x2 blocks of pixels from two rows, the same way the Raster
+	 * computes its means.
+	 * 
+	 * @param row0
+	 * @param row1
+	 * @param result
+	 * @param width
+	 *            the number of pixels in the result
+	 */
+	protected void reduceRow(byte[] row0, byte[] row1, byte[] result, int width) {
 		switch (layerType) {
 		case none:
 		case footprint:
@@ -455,23 +710,269 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			break;
 		case elevation:
 		case field:
-		case grayimage:
-			raster.get(rasterTop, rasterLeft, rasterTWidth, rasterTLength, bbuf, tileTop, tileLeft, tWidth, kernelSize);
+			ByteBuffer bbuf0 = ByteBuffer.wrap(row0);
+			ByteBuffer bbuf1 = ByteBuffer.wrap(row1);
+			ByteBuffer rbuf = ByteBuffer.wrap(result);
+			for (int c = 0; c < width; ++c) {
+				int i = c * 8;
+				double sum = (double) bbuf0.getFloat(i) + bbuf0.getFloat(i + 4) + bbuf1.getFloat(i)
+					+ bbuf1.getFloat(i + 4);
+				rbuf.putFloat(c * 4, (float) (sum / 4));
+			}
 			break;
 		case colorimage:
-			bbuf.order(ByteOrder.nativeOrder());
-			bbuf.rewind();
-			raster.getRGBA(rasterTop, rasterLeft, rasterTWidth, rasterTLength, bbuf, tileTop, tileLeft, tWidth,
-				kernelSize);
+			// each sample separately
+			for (int c = 0; c < width * 4; ++c) {
+				int i = (c / 4) * 8 + (c % 4);
+				int sum = (row0[i] & 0xff) + (row0[i + 4] & 0xff) + (row1[i] & 0xff) + (row1[i + 4] & 0xff);
+				result[c] = (byte) ((sum + 2) / 4);
+			}
 			break;
+		case grayimage:
+			for (int c = 0; c < width; ++c) {
+				int i = c * 2;
+				double sum = (row0[i] & 0xff) + (row0[i + 1] & 0xff) + (row1[i] & 0xff) + (row1[i + 1] & 0xff);
+				result[c] = (byte) Math.round(sum / 4);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Run a list of tasks on the pool and wait for them to finish.
+	 * 
+	 * @param pool
+	 * @param taskList
+	 * @throws IOException
+	 *             if any task failed
+	 */
+	protected void runTasks(ForkJoinPool pool, List<Callable<Object>> taskList) throws IOException {
+		List<Future<Object>> resultList = pool.invokeAll(taskList);
+		for (int i = 0; i < resultList.size(); ++i) {
+			try {
+				resultList.get(i).get();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
 		}
+	}
 
-		// zero the file if it is only missing values
-		if (isEmpty(bbuf)) {
-			bbuf.limit(0);
+	/**
+	 * Write all levels of the pyramid in one pass over the source raster file.
+	 * Only the band of the file holding the current row is kept.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 * @param maxLevel
+	 *            the highest resolution level
+	 * @param missingValue
+	 *            source values to be converted to NaN
+	 * @param layerName
+	 *            the layer name
+	 * @param dirPath
+	 *            the layer directory
+	 * @throws IOException
+	 */
+	protected void streamPyramid(ForkJoinPool pool, int maxLevel, float missingValue, String layerName,
+		String dirPath) throws IOException {
+		StreamLevel[] streamLevel = new StreamLevel[maxLevel + 1];
+		int width = paddedWidth - leftInset;
+		int length = paddedLength - topInset;
+		int numTiles = numberOfTiles;
+		for (int level = maxLevel; level >= 0; level--) {
+			streamLevel[level] = new StreamLevel(level, width, length, numTiles);
+			width /= 2;
+			length /= 2;
+			numTiles /= 2;
 		}
 
-		writeTile(filePath, bbArray, tWidth, tLength, layerType);
+		// a row of padding
+		StreamLevel top = streamLevel[maxLevel];
+		byte[] fillRow = new byte[top.width * bytesPerPixel];
+		if ((layerType == LayerType.elevation) || (layerType == LayerType.field)) {
+			FloatBuffer fbuf = ByteBuffer.wrap(fillRow).asFloatBuffer();
+			while (fbuf.hasRemaining()) {
+				fbuf.put(Float.NaN);
+			}
+		}
+
+		// the source columns that fall within the level
+		int sourceLeft = leftInset - leftMargin;
+		int start = Math.max(0, -sourceLeft);
+		int end = Math.min(top.width, rasterWidth - sourceLeft);
+		byte[] sourceRow = new byte[rasterWidth * bytesPerPixel];
+
+		// the band of the source file holding the current row
+		DataType layerDataType = getLayerDataType();
+		dataType = layerDataType;
+		int bandLength = rasterFile.getBandLength();
+		Raster band = new Raster(rasterWidth, bandLength, bytesPerPixel, layerDataType, tmpPath);
+		int bandIndex = -1;
+
+		try {
+			for (int y = 0; (y < top.length) && doIt; ++y) {
+				byte[] row = top.nextRow();
+				int sourceRowIndex = y + topInset - topMargin;
+				if ((sourceRowIndex < 0) || (sourceRowIndex >= rasterLength) || (start >= end)) {
+					System.arraycopy(fillRow, 0, row, 0, fillRow.length);
+				} else {
+					int b = sourceRowIndex / bandLength;
+					if (b != bandIndex) {
+						rasterFile.loadBand(band, b, layerDataType);
+						if ((layerType == LayerType.elevation) || (layerType == LayerType.field)) {
+							band.setMissingValuesToNaN(missingValue, rasterFile.getMinimumSampleValue(),
+								rasterFile.getMaximumSampleValue());
+						}
+						bandIndex = b;
+					}
+					band.get(sourceRowIndex - b * bandLength, sourceRow);
+					System.arraycopy(fillRow, 0, row, 0, start * bytesPerPixel);
+					System.arraycopy(sourceRow, (start + sourceLeft) * bytesPerPixel, row, start * bytesPerPixel,
+						(end - start) * bytesPerPixel);
+					System.arraycopy(fillRow, end * bytesPerPixel, row, end * bytesPerPixel, (top.width - end)
+						* bytesPerPixel);
+				}
+				addRow(pool, streamLevel, maxLevel, maxLevel + 1, layerName, dirPath);
+			}
+		} finally {
+			band.dispose();
+		}
+		if (bandIndex >= 0) {
+			setSampleRange();
+		}
+	}
+
+	/**
+	 * Add the next row to a level. Completed pairs of rows are reduced into
+	 * the level below and completed rows of tiles are written.
+	 * 
+	 * @param pool
+	 * @param streamLevel
+	 * @param level
+	 * @param numLevels
+	 * @param layerName
+	 * @param dirPath
+	 * @throws IOException
+	 */
+	private void addRow(ForkJoinPool pool, StreamLevel[] streamLevel, int level, int numLevels, String layerName,
+		String dirPath) throws IOException {
+		StreamLevel sl = streamLevel[level];
+		int y = sl.rowCount++;
+		byte[] row = sl.window[y - sl.windowStart];
+
+		// reduce into the level below
+		if (level > 0) {
+			if ((y & 1) == 0) {
+				System.arraycopy(row, 0, sl.pending, 0, row.length);
+			} else {
+				StreamLevel coarser = streamLevel[level - 1];
+				if (coarser.rowCount < coarser.length) {
+					reduceRow(sl.pending, row, coarser.nextRow(), coarser.width);
+					addRow(pool, streamLevel, level - 1, numLevels, layerName, dirPath);
+				}
+			}
+		}
+
+		// the last row of a tile is the first row of the next one
+		if (y == sl.windowStart + tileLength) {
+			int tileRow = sl.windowStart / tileLength;
+			if (tileRow < sl.numTiles) {
+				writeTileRow(pool, sl, tileRow, numLevels, layerName, dirPath);
+			}
+			byte[] tmp = sl.window[0];
+			sl.window[0] = sl.window[tileLength];
+			sl.window[tileLength] = tmp;
+			sl.windowStart = y;
+		}
+	}
+
+	/**
+	 * Write a row of tiles from the rows held by a level.
+	 * 
+	 * @param pool
+	 * @param sl
+	 * @param tileRow
+	 * @param numLevels
+	 * @param layerName
+	 * @param dirPath
+	 * @throws IOException
+	 */
+	private void writeTileRow(ForkJoinPool pool, final StreamLevel sl, final int tileRow, final int numLevels,
+		final String layerName, final String dirPath) throws IOException {
+		final int tileCount = sl.numTiles * sl.numTiles;
+		final int tWidth = tileWidth + 1;
+		final int tLength = tileLength + 1;
+		List<Callable<Object>> taskList = new ArrayList<Callable<Object>>(sl.numTiles);
+		for (int c = 0; c < sl.numTiles; ++c) {
+			final int column = c;
+			taskList.add(new Callable<Object>() {
+				@Override
+				public Object call() throws IOException {
+					if (!doIt) {
+						return (null);
+					}
+					int rowBytes = tWidth * bytesPerPixel;
+					byte[] bbArray = new byte[tLength * rowBytes];
+					for (int i = 0; i < tLength; ++i) {
+						System.arraycopy(sl.window[i], column * tileWidth * bytesPerPixel, bbArray, i * rowBytes,
+							rowBytes);
+					}
+					toTileOrder(bbArray);
+					String tileId = getTileId(column, tileRow, sl.numTiles, sl.level);
+					writeTile(tileId, dirPath, bbArray, tWidth, tLength, layerType);
+					reportProgress(layerName, sl.level, numLevels, sl.tilesDone.incrementAndGet(), tileCount);
+					return (null);
+				}
+			});
+		}
+		runTasks(pool, taskList);
+	}
+
+	/**
+	 * The rows of one level held while streaming. The window holds the rows
+	 * for the current row of tiles, including the row shared with the next.
+	 */
+	private class StreamLevel {
+
+		private int level, width, length, numTiles;
+
+		// Rows for the current row of tiles
+		private byte[][] window;
+
+		// Level row held in window[0]
+		private int windowStart;
+
+		// Number of rows added so far
+		private int rowCount;
+
+		// Even row waiting to be reduced with the next one
+		private byte[] pending;
+
+		private AtomicInteger tilesDone;
+
+		public StreamLevel(int level, int width, int length, int numTiles) {
+			this.level = level;
+			this.width = width;
+			this.length = length;
+			this.numTiles = numTiles;
+			window = new byte[tileLength + 1][width * bytesPerPixel];
+			pending = new byte[width * bytesPerPixel];
+			tilesDone = new AtomicInteger();
+		}
+
+		/**
+		 * Get the array to be filled with the next row.
+		 * 
+		 * @return
+		 */
+		public byte[] nextRow() {
+			return (window[rowCount - windowStart]);
+		}
 	}
 
 	/**
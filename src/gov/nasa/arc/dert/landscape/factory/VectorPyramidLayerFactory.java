@@ -127,6 +127,7 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 
 		// Create a sub-directory for the layer
 		String dirPath = new File(landPath, layerName).getAbsolutePath();
+		openTiles(dirPath, tileWidth1, tileLength1, bytesPerPixel);
 
 		// Write tiles for each level starting at highest resolution
 		int numTiles = numberOfTiles;
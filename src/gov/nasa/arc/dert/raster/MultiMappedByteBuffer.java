@@ -109,10 +109,7 @@ public class MultiMappedByteBuffer {
 	 * @param bArray
 	 */
 	public void get(int row, byte[] bArray) {
-		int index = row / numRows;
-		row = row % numRows;
-		mbBuf[index].position(row * width);
-		mbBuf[index].get(bArray, 0, width);
+		get(row, 0, width, bArray, 0);
 	}
 
 	/**
@@ -124,10 +121,27 @@ public class MultiMappedByteBuffer {
 	 * @param bArray
 	 */
 	public void get(int row, int column, int wid, byte[] bArray) {
+		get(row, column, wid, bArray, 0);
+	}
+
+	/**
+	 * Fill a byte array at a given position starting at a given file row and
+	 * column with wid bytes. Each call works on its own view of the buffer so
+	 * different rows may be read and written from several threads at once.
+	 * 
+	 * @param row
+	 * @param column
+	 * @param wid
+	 * @param bArray
+	 * @param pos
+	 *            starting position in array
+	 */
+	public void get(int row, int column, int wid, byte[] bArray, int pos) {
 		int index = row / numRows;
 		row = row % numRows;
-		mbBuf[index].position(row * width + column);
-		mbBuf[index].get(bArray, 0, wid);
+		ByteBuffer buf = mbBuf[index].duplicate();
+		buf.position(row * width + column);
+		buf.get(bArray, pos, wid);
 	}
 
 	/**
@@ -178,10 +192,7 @@ public class MultiMappedByteBuffer {
 	 * @param bArray
 	 */
 	public void set(int row, byte[] bArray) {
-		int index = row / numRows;
-		row = row % numRows;
-		mbBuf[index].position(row * width);
-		mbBuf[index].put(bArray);
+		set(row, 0, width, 0, bArray);
 	}
 
 	/**
@@ -202,8 +213,9 @@ public class MultiMappedByteBuffer {
 		int index = row / numRows;
 		row = row % numRows;
 		// System.err.println("MultiMappedByteBuffer.set "+index+" "+row+" "+column+" "+width+" "+pos+" "+wid);
-		mbBuf[index].position(row * width + column);
-		mbBuf[index].put(bArray, pos, wid);
+		ByteBuffer buf = mbBuf[index].duplicate();
+		buf.position(row * width + column);
+		buf.put(bArray, pos, wid);
 	}
 
 	/**
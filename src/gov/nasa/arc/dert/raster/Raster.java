@@ -204,6 +204,23 @@ public class Raster {
 		bBuf.rewind();
 	}
 
+	/**
+	 * Copy a portion of the raster to a byte array without subsampling. Unlike
+	 * the other get methods this may be called from several threads at once.
+	 * 
+	 * @param rasterTop
+	 * @param rasterLeft
+	 * @param rasterWid
+	 * @param rasterHgt
+	 * @param bArray
+	 */
+	public void get(int rasterTop, int rasterLeft, int rasterWid, int rasterHgt, byte[] bArray) {
+		int rowBytes = rasterWid * numBytes;
+		for (int r = 0; r < rasterHgt; ++r) {
+			mmbBuf.get(rasterTop + r, rasterLeft * numBytes, rowBytes, bArray, r * rowBytes);
+		}
+	}
+
 	/**
 	 * Fill a color buffer with a portion of the raster
 	 * 
@@ -138,4 +138,29 @@ public interface RasterFile {
 	 */
 	public void loadGray(Raster raster) throws IOException;
 
+	/**
+	 * Get the number of rows in a band. A band is the unit the file is read
+	 * in, such as a strip or a row of tiles.
+	 * 
+	 * @return the band length in rows
+	 */
+	public int getBandLength();
+
+	/**
+	 * Load one band of rows from the raster file into the top of a raster,
+	 * converting the data the same way as the whole file load methods. The
+	 * minimum and maximum are computed on the first call if the file does not
+	 * provide them.
+	 * 
+	 * @param raster
+	 *            a raster the width of the file and at least a band long
+	 * @param band
+	 *            the band number
+	 * @param targetType
+	 *            Float to load as with load, Integer to load as RGBA, or
+	 *            UnsignedByte to load as gray scale
+	 * @return the number of rows loaded, shorter for the last band
+	 */
+	public int loadBand(Raster raster, int band, DataType targetType) throws IOException;
+
 }
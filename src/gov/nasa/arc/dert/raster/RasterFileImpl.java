@@ -227,6 +227,17 @@ public abstract class RasterFileImpl implements RasterFile {
 	@Override
 	public abstract void loadRGBA(Raster raster) throws IOException;
 
+	/**
+	 * Load one band of rows into the top of a raster.
+	 * 
+	 * @param raster
+	 * @param band
+	 * @param targetType
+	 * @return the number of rows loaded
+	 */
+	@Override
+	public abstract int loadBand(Raster raster, int band, DataType targetType) throws IOException;
+
 	protected void computeMinMax(ByteBuffer bBuf) {
 		int len = bBuf.limit();
 		switch (dataType) {
@@ -1570,6 +1570,137 @@ public class GTIF extends RasterFileImpl {
 		maximum = new double[] { 255 };
 	}
 
+	/**
+	 * Get the number of rows in a band, a strip or a row of tiles.
+	 * 
+	 * @return the band length
+	 */
+	@Override
+	public int getBandLength() {
+		if (isTiled()) {
+			return (Math.min(getTileLength(), rasterLength));
+		}
+		return (Math.min(getRowsPerStrip(), rasterLength));
+	}
+
+	/**
+	 * Load one strip, or one row of tiles, into the top of a raster.
+	 * 
+	 * @param raster
+	 * @param band
+	 * @param targetType
+	 *            Float, Integer (RGBA), or UnsignedByte (gray scale)
+	 * @return the number of rows loaded
+	 */
+	@Override
+	public int loadBand(Raster raster, int band, DataType targetType) {
+		boolean rgba = (targetType == DataType.Integer);
+		boolean gray = (targetType == DataType.UnsignedByte);
+		int top = band * getBandLength();
+		int hgt = Math.min(getBandLength(), rasterLength - top);
+
+		if (rgba) {
+			if (minimum == null) {
+				minimum = new double[] { 0, 0, 0, 1 };
+			}
+			if (maximum == null) {
+				maximum = new double[] { 255, 255, 255, 255 };
+			}
+		}
+
+		// TIFF is organized in tiles.
+		if (isTiled()) {
+			int w = getTileWidth();
+			int h = getTileLength();
+			long s = rgba ? (long) w * h * 4 : getTileSize(); // size of tile in bytes
+
+			// Java limits ByteBuffer sizes
+			if (s > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Cannot load TIFF file with tile size > " + Integer.MAX_VALUE + ".");
+			}
+
+			if (!rgba && ((minimum == null) || (maximum == null))) {
+				computeMinMaxFromTile(dataType, getTileCount(), (int) s);
+			}
+
+			ByteBuffer bbuf = ByteBuffer.allocateDirect((int) s);
+			bbuf.order(byteOrder);
+			byte[] bArray = rgba ? new byte[(int) s] : null;
+			int tilesAcross = (rasterWidth + w - 1) / w;
+			for (int i = 0; i < tilesAcross; ++i) {
+				int left = i * w;
+				int wid = Math.min(w, rasterWidth - left);
+				bbuf.rewind();
+				if (rgba) {
+					if (!readRGBATile(handle, left, top, bbuf)) {
+						throw new IllegalStateException(getTIFFError());
+					}
+					bbuf.rewind();
+					bbuf.get(bArray);
+					raster.set(0, left, wid, hgt, bArray);
+				} else {
+					if (readTile(band * tilesAcross + i, bbuf, s) == -1) {
+						throw new IllegalStateException(getTIFFError());
+					}
+					bbuf.rewind();
+					if (gray) {
+						raster.setAsGray(0, left, wid, hgt, bbuf, dataType, minimum, maximum, missing);
+					} else {
+						raster.setAsFloat(0, left, wid, hgt, bbuf, dataType, scalingFactor, minimum, maximum,
+							missing);
+					}
+				}
+			}
+		}
+
+		// TIFF is organized in strips.
+		else {
+			long s = rgba ? (long) rasterWidth * getBandLength() * 4 : getStripSize(); // size of strip in bytes
+
+			// Java limits ByteBuffer sizes
+			if (s > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Cannot load TIFF file with strip size > " + Integer.MAX_VALUE + ".");
+			}
+
+			if (!rgba && ((minimum == null) || (maximum == null))) {
+				computeMinMaxFromStrip(dataType, getStripCount(), (int) s);
+			}
+
+			ByteBuffer bbuf = ByteBuffer.allocateDirect((int) s);
+			bbuf.order(byteOrder);
+			if (rgba) {
+				if (!readRGBAStrip(handle, top, bbuf)) {
+					throw new IllegalStateException(getTIFFError());
+				}
+				bbuf.rewind();
+				// libtiff doesn't flip the RGBA image (only RGB) so we need to
+				if (samplesPerPixel == 4)
+					ImageUtil.doFlip(bbuf, rasterWidth * 4, getBandLength());
+				byte[] bArray = new byte[(int) s];
+				bbuf.get(bArray);
+				raster.set(0, hgt, bArray);
+			} else {
+				if (readStrip(band, bbuf, s) == -1) {
+					throw new IllegalStateException(getTIFFError());
+				}
+				bbuf.rewind();
+				if (gray) {
+					raster.setAsGray(0, 0, rasterWidth, hgt, bbuf, dataType, minimum, maximum, missing);
+				} else {
+					raster.setAsFloat(0, 0, rasterWidth, hgt, bbuf, dataType, scalingFactor, minimum, maximum,
+						missing);
+				}
+			}
+		}
+
+		// the same range as loadGray once the whole file has been read
+		if (gray && (top + hgt == rasterLength)) {
+			minimum = new double[] { 1 };
+			maximum = new double[] { 255 };
+		}
+		return (hgt);
+	}
+
 	/**
 	 * Load bytes from a strip into a raster.
 	 * 
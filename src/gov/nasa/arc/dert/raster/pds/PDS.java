@@ -808,6 +808,121 @@ public class PDS extends RasterFileImpl {
 
 	}
 
+	/**
+	 * Get the number of rows in a band.
+	 * 
+	 * @return the band length
+	 */
+	@Override
+	public int getBandLength() {
+		return (Math.min(STRIP_ROWS, rasterLength));
+	}
+
+	/**
+	 * Load one strip of STRIP_ROWS rows into the top of a raster.
+	 * 
+	 * @param raster
+	 * @param band
+	 * @param targetType
+	 *            Float, Integer (RGBA), or UnsignedByte (gray scale)
+	 * @return the number of rows loaded
+	 * @throws IOException
+	 */
+	@Override
+	public int loadBand(Raster raster, int band, DataType targetType) throws IOException {
+		boolean rgba = (targetType == DataType.Integer);
+		boolean gray = (targetType == DataType.UnsignedByte);
+		int stripHeight = getBandLength();
+		int stripWidth = rasterWidth * samplesPerPixel;
+		int top = band * stripHeight;
+		int h = Math.min(stripHeight, rasterLength - top); // strip height
+
+		if (rgba) {
+			if (bandStorageType == null) {
+				throw new IllegalArgumentException("Unable to find BAND_STORAGE_TYPE.");
+			}
+			if (samplesPerPixel < 3) {
+				throw new IllegalArgumentException("Cannot load RGBA with less than 3 color components.");
+			}
+			if (minimum == null) {
+				minimum = new double[] { 0, 0, 0, 1 };
+			}
+			if (maximum == null) {
+				maximum = new double[] { 255, 255, 255, 255 };
+			}
+		} else {
+			long stripSize = (long) stripWidth * stripHeight * bytesPerSample;
+
+			// Java limits ByteBuffer sizes
+			if (stripSize > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Cannot load PDS file with strip size > " + Integer.MAX_VALUE + ".");
+			}
+
+			if ((minimum == null) || (maximum == null)) {
+				int numStrips = (int) Math.ceil((double) rasterLength / stripHeight);
+				computeMinMaxFromStrip(dataType, numStrips, (int) stripSize, stripWidth, stripHeight);
+			}
+		}
+
+		if ((iStream == null) || (band == 0)) {
+			if (iStream != null) {
+				iStream.close();
+			}
+			iStream = new FileImageInputStream(new File(dataFilePath));
+		}
+
+		if (!rgba) {
+			int len = h * stripWidth * bytesPerSample;
+			byte[] bbArray = new byte[len];
+			iStream.seek(imageStart + (long) top * stripWidth * bytesPerSample);
+			iStream.readFully(bbArray, 0, len);
+			ByteBuffer bbuf = ByteBuffer.wrap(bbArray);
+			bbuf.order(byteOrder);
+			if (gray) {
+				raster.setAsGray(0, 0, rasterWidth, h, bbuf, dataType, minimum, maximum, missing);
+				// the same range as loadGray once the whole file has been read
+				if (top + h == rasterLength) {
+					minimum = new double[] { 0 };
+					maximum = new double[] { 255 };
+				}
+			} else {
+				raster.setAsFloat(0, 0, rasterWidth, h, bbuf, dataType, scalingFactor, minimum, maximum, missing);
+			}
+			return (h);
+		}
+
+		byte[] bArray = new byte[4 * rasterWidth * h];
+		// samples are grouped together for each pixel
+		if (bandStorageType.equals("SAMPLE_INTERLEAVED")) {
+			byte[] bbArray = new byte[h * stripWidth];
+			iStream.seek(imageStart + (long) top * stripWidth);
+			iStream.readFully(bbArray, 0, bbArray.length);
+			int n = Math.min(samplesPerPixel, 4);
+			for (int i = 0, p = 0; i < bbArray.length; i += samplesPerPixel, p += 4) {
+				for (int l = 0; l < n; ++l) {
+					bArray[p + l] = bbArray[i + l];
+				}
+				if (n == 3) {
+					bArray[p + 3] = (byte) 255;
+				}
+			}
+		}
+		// samples are separated into bands
+		else if (bandStorageType.equals("BAND_SEQUENTIAL")) {
+			Arrays.fill(bArray, (byte) 255);
+			byte[] bbArray = new byte[h * rasterWidth];
+			for (int k = 0; k < Math.min(samplesPerPixel, 4); ++k) {
+				iStream.seek(imageStart + ((long) k * rasterLength + top) * rasterWidth);
+				iStream.readFully(bbArray, 0, bbArray.length);
+				for (int i = 0; i < bbArray.length; ++i) {
+					bArray[i * 4 + k] = bbArray[i];
+				}
+			}
+		}
+		raster.set(0, h, bArray);
+		return (h);
+	}
+
 	/**
 	 * Write a raster to a file.
 	 * @param metadata
@@ -179,7 +179,7 @@ public abstract class BasicScene implements Scene {
 	public void resize(int width, int height) {
 		this.width = width;
 		this.height = height;
-		sceneChanged.set(true);
+		requestRender();
 	}
 	
 	public int getWidth() {
@@ -190,6 +190,14 @@ public abstract class BasicScene implements Scene {
 		return(height);
 	}
 	
+	/**
+	 * Mark this scene as changed and ask for a frame.
+	 */
+	public void requestRender() {
+		sceneChanged.set(true);
+		SceneFramework.requestFrame();
+	}
+
 	public boolean needsRender() {
 		return(sceneChanged.getAndSet(false));
 	}
@@ -0,0 +1,260 @@
+package gov.nasa.arc.dert.render;
+
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.landscape.factory.OffscreenRenderer;
+import gov.nasa.arc.dert.lighting.Lighting;
+import gov.nasa.arc.dert.scene.World;
+import gov.nasa.arc.dert.terrain.TilePrefetcher;
+import gov.nasa.arc.dert.view.Console;
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+import gov.nasa.arc.dert.viewpoint.ViewDependent;
+import gov.nasa.arc.dert.viewpoint.Viewpoint;
+import gov.nasa.arc.dert.viewpoint.ViewpointStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.framework.DisplaySettings;
+import com.ardor3d.image.util.awt.AWTImageLoader;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Matrix3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.TextureRendererFactory;
+import com.ardor3d.renderer.jogl.JoglTextureRendererProvider;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Renders the current World to an image sequence without a window. Each
+ * viewpoint is rendered into a pbuffer at any resolution and the frames are
+ * written with a FrameRecorder. There is no frame pacing, each frame is
+ * rendered as soon as the tiles it needs are loaded.
+ *
+ */
+public class BatchRenderer {
+
+	// Longest time to wait for the tiles of one frame
+	public static long MAX_TILE_WAIT = 120000;
+
+	// Time between checks for loaded tiles
+	public static int TILE_POLL_MILLIS = 5;
+
+	// Image dimensions
+	private int width, height;
+
+	// Offscreen renderer
+	private OffscreenRenderer offscreenRenderer;
+
+	// Camera for each frame
+	private BasicCamera camera;
+	private Matrix3 rotate, workRot;
+
+	// Objects updated from the camera
+	private ArrayList<ViewDependent> viewDependentList;
+
+	// Render derived layers and shadows on the first frame
+	private boolean firstFrame;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param samples
+	 *            number of multisamples for antialiasing, 0 for none
+	 */
+	public BatchRenderer(int width, int height, int samples) {
+		this.width = width;
+		this.height = height;
+		// normally done by the SceneFramework
+		TextureRendererFactory.INSTANCE.setProvider(new JoglTextureRendererProvider());
+		AWTImageLoader.registerLoader();
+		offscreenRenderer = new OffscreenRenderer(new DisplaySettings(width, height, 32, 0, 8, 24, 0, samples, false,
+			false), new JoglRendererDouble(), ColorRGBA.BLACK_NO_ALPHA);
+		camera = new BasicCamera(width, height);
+		offscreenRenderer.setCamera(camera);
+		rotate = new Matrix3();
+		workRot = new Matrix3();
+		viewDependentList = new ArrayList<ViewDependent>();
+		firstFrame = true;
+	}
+
+	/**
+	 * Get the camera
+	 *
+	 * @return
+	 */
+	public BasicCamera getCamera() {
+		return (camera);
+	}
+
+	/**
+	 * Get the bounds of the world contents
+	 *
+	 * @return
+	 */
+	public BoundingSphere getSceneBounds() {
+		BoundingVolume bounds = World.getInstance().getContents().getWorldBound();
+		return (new BoundingSphere(bounds.getRadius(), bounds.getCenter()));
+	}
+
+	/**
+	 * Get a viewpoint looking straight down on the whole landscape.
+	 *
+	 * @return
+	 */
+	public ViewpointStore getOverheadViewpoint() {
+		Landscape landscape = Landscape.getInstance();
+		Vector3 lookAt = new Vector3(landscape.getCenter());
+		Vector3 location = new Vector3(0, 0, landscape.getWorldBound().getRadius());
+		location.addLocal(lookAt);
+		rotate.setIdentity();
+		camera.setMagnification(BasicCamera.DEFAULT_MAGNIFICATION);
+		camera.setFrame(location, rotate);
+		camera.setLookAt(lookAt);
+		camera.setClippingPlanes(getSceneBounds(), true);
+		return (new ViewpointStore("Overhead", camera));
+	}
+
+	/**
+	 * Render a list of viewpoints to an image sequence.
+	 *
+	 * @param viewpointList
+	 *            one viewpoint per frame
+	 * @param directory
+	 *            where to write the images
+	 * @return the number of frames written
+	 */
+	public int render(List<ViewpointStore> viewpointList, File directory) {
+		Console.println("Rendering " + viewpointList.size() + " frames at " + width + "x" + height + " to " + directory);
+		long startTime = System.currentTimeMillis();
+		FrameRecorder recorder = new FrameRecorder(directory, width, height);
+		TilePrefetcher prefetcher = Landscape.getInstance().getPrefetcher();
+		try {
+			for (int i = 0; i < viewpointList.size(); ++i) {
+				setCamera(viewpointList.get(i));
+				// start loading tiles for the next frames
+				if (prefetcher != null) {
+					prefetcher.expect(viewpointList, i + 1, false);
+				}
+				if (!waitForTiles(camera)) {
+					Console.println("Timed out waiting for tiles for frame " + i + ".");
+				}
+				byte[] frame = recorder.acquire();
+				renderFrame(frame);
+				recorder.submit(frame);
+			}
+		} catch (InterruptedException e) {
+			Console.println("Batch rendering interrupted.");
+			Thread.currentThread().interrupt();
+		}
+		recorder.waitForCompletion(Long.MAX_VALUE);
+		double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+		Console.println(recorder.getWriteCount() + " of " + viewpointList.size() + " frames written in " + seconds
+			+ " seconds.");
+		return (recorder.getWriteCount());
+	}
+
+	/**
+	 * Set the camera from a viewpoint. The vertical field of view is kept and
+	 * the horizontal field of view is fit to the image dimensions.
+	 *
+	 * @param vps
+	 */
+	public void setCamera(ViewpointStore vps) {
+		double halfWidth = (vps.frustumTop - vps.frustumBottom) * width / (2.0 * height);
+		camera.setMagnification(vps.magIndex);
+		camera.setFrustum(vps.frustumNear, vps.frustumFar, -halfWidth, halfWidth, vps.frustumTop, vps.frustumBottom);
+		// same orientation as the Viewpoint
+		rotate.fromAngleNormalAxis(vps.azimuth, Vector3.NEG_UNIT_Z);
+		workRot.fromAngleNormalAxis(vps.elevation + Viewpoint.ELEV_HOME, Vector3.UNIT_X);
+		rotate.multiplyLocal(workRot);
+		camera.setFrame(vps.location, rotate);
+		camera.setLookAt(vps.lookAt);
+	}
+
+	/**
+	 * Update the landscape until every tile needed for the camera is loaded.
+	 * Call only while the SceneFramework is not updating the landscape.
+	 *
+	 * @param camera
+	 * @return false if the tiles did not load in time
+	 * @throws InterruptedException
+	 */
+	public static boolean waitForTiles(BasicCamera camera) throws InterruptedException {
+		Landscape landscape = Landscape.getInstance();
+		long t = System.currentTimeMillis();
+		// the landscape reports a change as long as a tile is waiting to be
+		// split
+		while (landscape.update(camera)) {
+			if (System.currentTimeMillis() - t > MAX_TILE_WAIT) {
+				return (false);
+			}
+			Thread.sleep(TILE_POLL_MILLIS);
+		}
+		return (true);
+	}
+
+	/**
+	 * Render the world with the current camera, the same way as the WorldScene.
+	 *
+	 * @param frame
+	 *            the RGB pixels
+	 */
+	private void renderFrame(byte[] frame) {
+		World world = World.getInstance();
+
+		// update the objects that depend on the viewpoint
+		viewDependentList.clear();
+		addViewDependents(world);
+		for (int i = 0; i < viewDependentList.size(); ++i) {
+			viewDependentList.get(i).update(camera);
+		}
+		boolean worldChanged = firstFrame || world.getDirtyEventHandler().changed.get();
+		boolean terrainChanged = firstFrame || world.getDirtyEventHandler().terrainChanged.get();
+		world.updateGeometricState(0);
+
+		Renderer renderer = offscreenRenderer.getRenderer();
+		offscreenRenderer.makeCurrent();
+		Lighting lighting = world.getLighting();
+		lighting.prerender(camera, renderer, worldChanged);
+		if (terrainChanged || worldChanged) {
+			Landscape.getInstance().getLayerManager().renderLayers(renderer);
+		}
+		renderer.setBackgroundColor(lighting.getBackgroundColor());
+
+		offscreenRenderer.begin(Renderer.BUFFER_COLOR_AND_DEPTH);
+		renderer.draw(world);
+		lighting.postrender(camera, renderer, worldChanged);
+		offscreenRenderer.end();
+		offscreenRenderer.readRGB(frame);
+
+		World.markClean();
+		firstFrame = false;
+	}
+
+	private void addViewDependents(Spatial spatial) {
+		if (spatial instanceof ViewDependent) {
+			viewDependentList.add((ViewDependent) spatial);
+		} else if (spatial instanceof Node) {
+			Node node = (Node) spatial;
+			for (int i = 0; i < node.getNumberOfChildren(); ++i) {
+				addViewDependents(node.getChild(i));
+			}
+		}
+	}
+
+	/**
+	 * Dispose of the pbuffer
+	 */
+	public void cleanup() {
+		offscreenRenderer.cleanup();
+	}
+
+}
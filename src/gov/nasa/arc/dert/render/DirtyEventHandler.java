@@ -20,7 +20,7 @@ public class DirtyEventHandler implements DirtyEventListener {
 	// Node to listen on
 	private GroupNode rootNode;
 
-	// Changed flag
+	// Changed flags, a frame is requested when they are set by an event
 	public final AtomicBoolean changed;
 	public final AtomicBoolean terrainChanged;
 
@@ -49,18 +49,23 @@ public class DirtyEventHandler implements DirtyEventListener {
 //			rootNode.updateGeometricState(0, true);
 			changed.set(true);
 			terrainChanged.set((spatial instanceof QuadTreeMesh) || terrainChanged.get());
+			SceneFramework.notifyDirty();
 			break;
 		case Detached:
 //			rootNode.updateGeometricState(0, true);
 			changed.set(true);
 			terrainChanged.set((spatial instanceof QuadTreeMesh) || terrainChanged.get());
+			SceneFramework.notifyDirty();
 			break;
 		case Bounding:
 //			rootNode.updateGeometricState(0, true);
 			break;
 		case RenderState:
 //			rootNode.updateGeometricState(0, true);
-			changed.set(!(spatial instanceof BillboardNode) || changed.get());
+			if (!(spatial instanceof BillboardNode)) {
+				changed.set(true);
+				SceneFramework.notifyDirty();
+			}
 			break;
 		case Transform:
 //			rootNode.updateGeometricState(0, true);
@@ -69,6 +74,7 @@ public class DirtyEventHandler implements DirtyEventListener {
 			}
 			changed.set(true);
 			terrainChanged.set((spatial instanceof QuadTreeMesh) || terrainChanged.get());
+			SceneFramework.notifyDirty();
 			break;
 		case Destroyed:
 			break;
@@ -76,6 +82,15 @@ public class DirtyEventHandler implements DirtyEventListener {
 		return (false);
 	}
 
+	/**
+	 * Mark the world as changed without a scene graph event, such as when a
+	 * shader parameter changes, and ask for a frame.
+	 */
+	public void markChanged() {
+		changed.set(true);
+		SceneFramework.requestFrame();
+	}
+
 	@Override
 	public boolean spatialClean(Spatial spatial, DirtyType type) {
 		return (false);
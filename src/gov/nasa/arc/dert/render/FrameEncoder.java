@@ -0,0 +1,235 @@
+package gov.nasa.arc.dert.render;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes grabbed frames for an image sequence. Frames are packed RGB with the
+ * bottom row first, as read from OpenGL, so each encoder writes the rows in
+ * reverse order instead of flipping the frame first.
+ *
+ */
+public class FrameEncoder {
+
+	/**
+	 * Image sequence codecs
+	 */
+	public static enum Codec {
+		// PNG with a configurable compression level
+		PNG("png"),
+		// Uncompressed binary PPM
+		RAW("ppm"),
+		// Fast lossless "Quite OK Image" format
+		QOI("qoi");
+
+		public final String extension;
+
+		private Codec(String extension) {
+			this.extension = extension;
+		}
+	}
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+	// QOI operations
+	private static final int QOI_OP_INDEX = 0x00;
+	private static final int QOI_OP_DIFF = 0x40;
+	private static final int QOI_OP_LUMA = 0x80;
+	private static final int QOI_OP_RUN = 0xc0;
+	private static final int QOI_OP_RGB = 0xfe;
+
+	private Codec codec;
+	private int pngLevel;
+
+	/**
+	 * Constructor
+	 *
+	 * @param codec
+	 * @param pngLevel
+	 *            deflate level for PNG (0-9)
+	 */
+	public FrameEncoder(Codec codec, int pngLevel) {
+		this.codec = codec;
+		this.pngLevel = Math.max(0, Math.min(9, pngLevel));
+	}
+
+	/**
+	 * Get the codec
+	 *
+	 * @return
+	 */
+	public Codec getCodec() {
+		return (codec);
+	}
+
+	/**
+	 * Encode a frame.
+	 *
+	 * @param rgb
+	 *            the pixels, bottom row first
+	 * @param width
+	 * @param height
+	 * @return the encoded image
+	 * @throws IOException
+	 */
+	public byte[] encode(byte[] rgb, int width, int height) throws IOException {
+		switch (codec) {
+		case PNG:
+			return (encodePng(rgb, width, height));
+		case RAW:
+			return (encodePpm(rgb, width, height));
+		case QOI:
+			return (encodeQoi(rgb, width, height));
+		}
+		throw new IllegalArgumentException("Unknown codec " + codec);
+	}
+
+	private byte[] encodePng(byte[] rgb, int width, int height) throws IOException {
+		int rowBytes = width * 3;
+		// scan lines use the Sub filter, which costs little and helps deflate
+		ByteArrayOutputStream idat = new ByteArrayOutputStream(rgb.length / 2 + 1024);
+		Deflater deflater = new Deflater(pngLevel);
+		DeflaterOutputStream dos = new DeflaterOutputStream(idat, deflater, 65536);
+		byte[] line = new byte[rowBytes + 1];
+		line[0] = 1;
+		for (int r = height - 1; r >= 0; --r) {
+			int offset = r * rowBytes;
+			for (int i = 0; i < rowBytes; i += 3) {
+				int s = offset + i;
+				line[i + 1] = rgb[s];
+				line[i + 2] = rgb[s + 1];
+				line[i + 3] = rgb[s + 2];
+			}
+			for (int i = rowBytes; i > 3; --i) {
+				line[i] -= line[i - 3];
+			}
+			dos.write(line);
+		}
+		dos.finish();
+		deflater.end();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(idat.size() + 64);
+		out.write(PNG_SIGNATURE);
+		byte[] ihdr = new byte[13];
+		putInt(ihdr, 0, width);
+		putInt(ihdr, 4, height);
+		ihdr[8] = 8; // bit depth
+		ihdr[9] = 2; // truecolor
+		writeChunk(out, "IHDR", ihdr, ihdr.length);
+		writeChunk(out, "IDAT", idat.toByteArray(), idat.size());
+		writeChunk(out, "IEND", new byte[0], 0);
+		return (out.toByteArray());
+	}
+
+	private void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) throws IOException {
+		byte[] b = new byte[4];
+		putInt(b, 0, length);
+		out.write(b);
+		byte[] t = type.getBytes("US-ASCII");
+		out.write(t);
+		out.write(data, 0, length);
+		CRC32 crc = new CRC32();
+		crc.update(t);
+		crc.update(data, 0, length);
+		putInt(b, 0, (int) crc.getValue());
+		out.write(b);
+	}
+
+	private byte[] encodePpm(byte[] rgb, int width, int height) throws IOException {
+		byte[] header = ("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII");
+		int rowBytes = width * 3;
+		byte[] out = new byte[header.length + rgb.length];
+		System.arraycopy(header, 0, out, 0, header.length);
+		int k = header.length;
+		for (int r = height - 1; r >= 0; --r) {
+			System.arraycopy(rgb, r * rowBytes, out, k, rowBytes);
+			k += rowBytes;
+		}
+		return (out);
+	}
+
+	private byte[] encodeQoi(byte[] rgb, int width, int height) {
+		// worst case is 4 bytes per pixel
+		byte[] out = new byte[14 + width * height * 4 + 8];
+		out[0] = 'q';
+		out[1] = 'o';
+		out[2] = 'i';
+		out[3] = 'f';
+		putInt(out, 4, width);
+		putInt(out, 8, height);
+		out[12] = 3; // channels
+		out[13] = 0; // sRGB
+		int k = 14;
+		int[] index = new int[64];
+		int pr = 0, pg = 0, pb = 0;
+		int run = 0;
+		int rowBytes = width * 3;
+		int last = width * height - 1;
+		int n = 0;
+		for (int row = height - 1; row >= 0; --row) {
+			int offset = row * rowBytes;
+			for (int i = 0; i < rowBytes; i += 3, ++n) {
+				int s = offset + i;
+				int r = rgb[s] & 0xff;
+				int g = rgb[s + 1] & 0xff;
+				int b = rgb[s + 2] & 0xff;
+				if ((r == pr) && (g == pg) && (b == pb)) {
+					run++;
+					if ((run == 62) || (n == last)) {
+						out[k++] = (byte) (QOI_OP_RUN | (run - 1));
+						run = 0;
+					}
+					continue;
+				}
+				if (run > 0) {
+					out[k++] = (byte) (QOI_OP_RUN | (run - 1));
+					run = 0;
+				}
+				// alpha is always 255
+				int hash = (r * 3 + g * 5 + b * 7 + 255 * 11) & 63;
+				int px = (r << 16) | (g << 8) | b | 0xff000000;
+				if (index[hash] == px) {
+					out[k++] = (byte) (QOI_OP_INDEX | hash);
+				} else {
+					index[hash] = px;
+					int vr = (byte) (r - pr);
+					int vg = (byte) (g - pg);
+					int vb = (byte) (b - pb);
+					int vgr = vr - vg;
+					int vgb = vb - vg;
+					if ((vr > -3) && (vr < 2) && (vg > -3) && (vg < 2) && (vb > -3) && (vb < 2)) {
+						out[k++] = (byte) (QOI_OP_DIFF | ((vr + 2) << 4) | ((vg + 2) << 2) | (vb + 2));
+					} else if ((vgr > -9) && (vgr < 8) && (vg > -33) && (vg < 32) && (vgb > -9) && (vgb < 8)) {
+						out[k++] = (byte) (QOI_OP_LUMA | (vg + 32));
+						out[k++] = (byte) (((vgr + 8) << 4) | (vgb + 8));
+					} else {
+						out[k++] = (byte) QOI_OP_RGB;
+						out[k++] = (byte) r;
+						out[k++] = (byte) g;
+						out[k++] = (byte) b;
+					}
+				}
+				pr = r;
+				pg = g;
+				pb = b;
+			}
+		}
+		// end marker
+		k += 7;
+		out[k++] = 1;
+		byte[] result = new byte[k];
+		System.arraycopy(out, 0, result, 0, k);
+		return (result);
+	}
+
+	private static void putInt(byte[] b, int offset, int value) {
+		b[offset] = (byte) (value >>> 24);
+		b[offset + 1] = (byte) (value >>> 16);
+		b[offset + 2] = (byte) (value >>> 8);
+		b[offset + 3] = (byte) value;
+	}
+
+}
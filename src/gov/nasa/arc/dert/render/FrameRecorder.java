@@ -0,0 +1,288 @@
+package gov.nasa.arc.dert.render;
+
+import gov.nasa.arc.dert.render.FrameEncoder.Codec;
+import gov.nasa.arc.dert.util.StringUtil;
+import gov.nasa.arc.dert.view.Console;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records grabbed frames to an image sequence without holding up rendering.
+ *
+ * Frames are copied into a ring of pooled buffers. A pool of worker threads
+ * encodes them and a single writer thread writes the files in frame order.
+ * A buffer goes back to the ring only after its frame is written, so the ring
+ * size also bounds the number of encoded frames held in memory. The render
+ * thread only waits when every buffer in the ring is still being encoded or
+ * written.
+ *
+ */
+public class FrameRecorder {
+
+	// Image sequence codec
+	public static Codec CODEC = Codec.PNG;
+
+	// Deflate level for PNG
+	public static int PNG_LEVEL = 1;
+
+	// Number of frame buffers in the ring
+	public static int RING_SIZE = 8;
+
+	// Number of encoding threads
+	public static int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	// Destination directory
+	private File directory;
+
+	// Frame dimensions
+	private int width, height;
+
+	// Free frame buffers
+	private ArrayBlockingQueue<byte[]> ring;
+
+	// Encoder
+	private FrameEncoder encoder;
+
+	// Encoding and writing threads
+	private ExecutorService encodePool, writer;
+
+	// Number of frames submitted
+	private int frameCount;
+
+	// Encoded frames waiting for earlier frames, with their frame buffers
+	// (writer thread only)
+	private HashMap<Integer, byte[][]> pending;
+	private int nextFrame;
+
+	// Number of frames written
+	private AtomicInteger writeCount;
+
+	// First error
+	private volatile Exception error;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            where to write the image files
+	 * @param width
+	 * @param height
+	 */
+	public FrameRecorder(File directory, int width, int height) {
+		this.directory = directory;
+		this.width = width;
+		this.height = height;
+		if (!directory.exists())
+			directory.mkdirs();
+		encoder = new FrameEncoder(CODEC, PNG_LEVEL);
+		int n = Math.max(2, RING_SIZE);
+		ring = new ArrayBlockingQueue<byte[]>(n);
+		for (int i = 0; i < n; ++i)
+			ring.add(new byte[width * height * 3]);
+		encodePool = Executors.newFixedThreadPool(Math.max(1, THREADS), new RecorderThreadFactory("Frame encoder"));
+		writer = Executors.newSingleThreadExecutor(new RecorderThreadFactory("Frame writer"));
+		pending = new HashMap<Integer, byte[][]>();
+		writeCount = new AtomicInteger();
+	}
+
+	/**
+	 * Get the size in bytes of a frame buffer.
+	 *
+	 * @return
+	 */
+	public int getFrameSize() {
+		return (width * height * 3);
+	}
+
+	/**
+	 * Get a free frame buffer. Waits if all buffers are in use.
+	 *
+	 * @return the buffer
+	 * @throws InterruptedException
+	 */
+	public byte[] acquire() throws InterruptedException {
+		return (ring.take());
+	}
+
+	/**
+	 * Submit a frame for encoding. The buffer is returned to the ring after the
+	 * frame is written.
+	 *
+	 * @param frame
+	 *            packed RGB pixels, bottom row first
+	 */
+	public void submit(final byte[] frame) {
+		final int index = frameCount++;
+		encodePool.execute(new Runnable() {
+			@Override
+			public void run() {
+				byte[] data = null;
+				try {
+					data = encoder.encode(frame, width, height);
+				} catch (Exception e) {
+					setError(e);
+				}
+				final byte[] encoded = data;
+				writer.execute(new Runnable() {
+					@Override
+					public void run() {
+						write(index, encoded, frame);
+					}
+				});
+			}
+		});
+	}
+
+	private void write(int index, byte[] data, byte[] frame) {
+		pending.put(index, new byte[][] { data, frame });
+		while (pending.containsKey(nextFrame)) {
+			byte[][] entry = pending.remove(nextFrame);
+			byte[] encoded = entry[0];
+			if (encoded != null) {
+				File file = new File(directory, "frame" + String.format("%07d", nextFrame) + "." + encoder.getCodec().extension);
+				FileOutputStream out = null;
+				try {
+					out = new FileOutputStream(file);
+					out.write(encoded);
+					writeCount.incrementAndGet();
+				} catch (IOException e) {
+					setError(e);
+				} finally {
+					if (out != null) {
+						try {
+							out.close();
+						} catch (IOException e) {
+							setError(e);
+						}
+					}
+				}
+			}
+			// the frame buffer can be reused now
+			ring.offer(entry[1]);
+			nextFrame++;
+		}
+	}
+
+	private void setError(Exception e) {
+		if (error == null) {
+			error = e;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the number of frames submitted.
+	 *
+	 * @return
+	 */
+	public int getFrameCount() {
+		return (frameCount);
+	}
+
+	/**
+	 * Get the number of frames written.
+	 *
+	 * @return
+	 */
+	public int getWriteCount() {
+		return (writeCount.get());
+	}
+
+	/**
+	 * Get the first error that occurred while encoding or writing.
+	 *
+	 * @return
+	 */
+	public Exception getError() {
+		return (error);
+	}
+
+	/**
+	 * Stop accepting frames. Frames already submitted are still written and a
+	 * message is printed when they are done. Does not wait.
+	 */
+	public void finish() {
+		final int count = frameCount;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (waitForCompletion(Long.MAX_VALUE)) {
+					String msg = writeCount.get() + " of " + count + " frames written to " + directory;
+					if (Console.getInstance() != null)
+						Console.println(msg);
+					else
+						System.out.println(msg);
+				}
+			}
+		}, "Frame recorder finish");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Wait for all submitted frames to be written and stop the threads.
+	 *
+	 * @param millis
+	 *            maximum time to wait
+	 * @return true if all frames were processed
+	 */
+	public boolean waitForCompletion(long millis) {
+		try {
+			encodePool.shutdown();
+			if (!encodePool.awaitTermination(millis, TimeUnit.MILLISECONDS))
+				return (false);
+			writer.shutdown();
+			return (writer.awaitTermination(millis, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return (false);
+		}
+	}
+
+	/**
+	 * Set the recording options
+	 * 
+	 * @param properties
+	 */
+	public static void setDefaultsFromProperties(Properties properties) {
+		String str = properties.getProperty("FrameGrab.Codec");
+		if (str != null) {
+			try {
+				CODEC = Codec.valueOf(str.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				System.out.println("Unknown frame grab codec " + str + ", using " + CODEC + ".");
+			}
+		}
+		PNG_LEVEL = StringUtil.getIntegerValue(properties, "FrameGrab.PngLevel", false, PNG_LEVEL, false);
+		RING_SIZE = StringUtil.getIntegerValue(properties, "FrameGrab.RingSize", true, RING_SIZE, false);
+		THREADS = StringUtil.getIntegerValue(properties, "FrameGrab.Threads", true, THREADS, false);
+	}
+
+	private static class RecorderThreadFactory implements ThreadFactory {
+
+		private String name;
+
+		public RecorderThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return (thread);
+		}
+	}
+
+}
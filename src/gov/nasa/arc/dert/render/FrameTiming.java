@@ -0,0 +1,139 @@
+package gov.nasa.arc.dert.render;
+
+import java.text.DecimalFormat;
+
+/**
+ * Keeps timing statistics for the frames run by the SceneFramework. Used for
+ * diagnostics and for pacing frames during interaction.
+ *
+ */
+public class FrameTiming {
+
+	// Weight of the latest frame in the running averages
+	public static double SMOOTHING = 0.1;
+
+	// Number of frames
+	private long frameCount;
+
+	// Time to update and render the last frame, its running average, and the
+	// maximum
+	private double lastMillis, averageMillis, maxMillis;
+
+	// Time from the first request for the last frame until it started
+	private double lastLatencyMillis, averageLatencyMillis;
+
+	// Start time of the last frame
+	private long lastStart;
+
+	// Running average of the time between frame starts
+	private double averageIntervalMillis;
+
+	private DecimalFormat formatter = new DecimalFormat("0.00");
+
+	/**
+	 * Add a frame
+	 *
+	 * @param requestTime
+	 *            time of the first request for the frame (nanoseconds)
+	 * @param startTime
+	 *            time the frame started (nanoseconds)
+	 * @param endTime
+	 *            time the frame ended (nanoseconds)
+	 */
+	public synchronized void addFrame(long requestTime, long startTime, long endTime) {
+		lastMillis = (endTime - startTime) / 1000000.0;
+		lastLatencyMillis = Math.max(0, (startTime - requestTime) / 1000000.0);
+		if (frameCount == 0) {
+			averageMillis = lastMillis;
+			averageLatencyMillis = lastLatencyMillis;
+		} else {
+			averageMillis += SMOOTHING * (lastMillis - averageMillis);
+			averageLatencyMillis += SMOOTHING * (lastLatencyMillis - averageLatencyMillis);
+			double interval = (startTime - lastStart) / 1000000.0;
+			if (averageIntervalMillis == 0) {
+				averageIntervalMillis = interval;
+			} else {
+				averageIntervalMillis += SMOOTHING * (interval - averageIntervalMillis);
+			}
+		}
+		maxMillis = Math.max(maxMillis, lastMillis);
+		lastStart = startTime;
+		frameCount++;
+	}
+
+	/**
+	 * Clear the statistics
+	 */
+	public synchronized void reset() {
+		frameCount = 0;
+		lastMillis = 0;
+		averageMillis = 0;
+		maxMillis = 0;
+		lastLatencyMillis = 0;
+		averageLatencyMillis = 0;
+		averageIntervalMillis = 0;
+	}
+
+	/**
+	 * Get the number of frames
+	 *
+	 * @return
+	 */
+	public synchronized long getFrameCount() {
+		return (frameCount);
+	}
+
+	/**
+	 * Get the time to update and render the last frame
+	 *
+	 * @return milliseconds
+	 */
+	public synchronized double getLastMillis() {
+		return (lastMillis);
+	}
+
+	/**
+	 * Get the running average of the frame time
+	 *
+	 * @return milliseconds
+	 */
+	public synchronized double getAverageMillis() {
+		return (averageMillis);
+	}
+
+	/**
+	 * Get the longest frame time
+	 *
+	 * @return milliseconds
+	 */
+	public synchronized double getMaxMillis() {
+		return (maxMillis);
+	}
+
+	/**
+	 * Get the time the last frame waited after it was requested
+	 *
+	 * @return milliseconds
+	 */
+	public synchronized double getLastLatencyMillis() {
+		return (lastLatencyMillis);
+	}
+
+	/**
+	 * Get the running average of the time between frames. Includes idle time,
+	 * so it is only meaningful while frames are being requested continuously.
+	 *
+	 * @return milliseconds
+	 */
+	public synchronized double getAverageIntervalMillis() {
+		return (averageIntervalMillis);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return ("frame " + frameCount + " time=" + formatter.format(lastMillis) + " avg=" + formatter.format(averageMillis)
+			+ " max=" + formatter.format(maxMillis) + " latency=" + formatter.format(lastLatencyMillis) + " avg="
+			+ formatter.format(averageLatencyMillis) + " interval=" + formatter.format(averageIntervalMillis));
+	}
+
+}
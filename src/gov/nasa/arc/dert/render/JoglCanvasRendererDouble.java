@@ -1,19 +1,11 @@
 package gov.nasa.arc.dert.render;
 
-import gov.nasa.arc.dert.Dert;
-import gov.nasa.arc.dert.util.ImageUtil;
 import gov.nasa.arc.dert.view.Console;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
-
 import com.ardor3d.annotation.MainThread;
 import com.ardor3d.framework.DisplaySettings;
 import com.ardor3d.framework.Scene;
@@ -24,6 +16,8 @@ import com.ardor3d.image.PixelDataType;
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.type.ReadOnlyRectangle2;
 import com.ardor3d.renderer.Camera;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLPipelineFactory;
 
 /**
@@ -36,12 +30,16 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
     private static final Logger LOGGER = Logger.getLogger(JoglCanvasRendererDouble.class.getName());
 	
 	// Fields for frame grab
+	private FrameRecorder recorder;
 	private ByteBuffer store;
-	private int frameCount;
 	private boolean frameGrab;
 	private int grabX, grabY, grabWidth, grabHeight;
 	private String grabFilePath;
 	
+	// Pixel buffer objects for asynchronous read back
+	private int[] pbo;
+	private int pboFrame;
+	
 	// Fields that are not accessible in super class.
 	private boolean _contextDropAndReclaimOnDrawEnabled;
 	private boolean _useDebug;
@@ -148,48 +146,84 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
 		this.grabWidth = grabWidth;
 		this.grabHeight = grabHeight;
 		if (!frameGrab) {
-			if (store != null) {
-				Console.println(frameCount+" frames");
+			if (recorder != null) {
+				makeCurrentContext();
+				try {
+					if (pbo != null) {
+						// the last frame is still in a pixel buffer
+						final GL2 gl = _context.getGL().getGL2();
+						if (pboFrame > 0)
+							submitPixelBuffer(gl, pbo[(pboFrame - 1) % 2]);
+						gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+						gl.glDeleteBuffers(pbo.length, pbo, 0);
+						pbo = null;
+					}
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+				}
+				releaseCurrentContext();
+				// remaining frames are written in the background
+				recorder.finish();
+				recorder = null;
 				store = null;
-				System.gc();
 			}
 		}
 	}
 	
 	/**
-	 * Grab the current frame to a PNG file.
+	 * Grab the current frame to the image sequence. Pixels are read into
+	 * alternating pixel buffer objects, so the read for this frame completes
+	 * while the previous frame is copied out and handed to the FrameRecorder.
 	 */
-	public void grabRGBAFrame() {
+	public void grabRGBFrame() {
 		makeCurrentContext();
-		if (store == null) {
-			Console.println("Rendering image sequence to "+grabFilePath);
-			frameCount = 0;
-			int n = _renderer.getExpectedBufferSizeToGrabScreenContents(ImageDataFormat.RGBA, PixelDataType.Byte, grabWidth, grabHeight);
-			store = ByteBuffer.allocateDirect(n);
-			store.limit(n);
-		}
-		
 		try {
-			store.position(0);
-			_renderer.finishGraphics();
-			_renderer.grabScreenContents(store, ImageDataFormat.RGBA, PixelDataType.UnsignedByte, grabX, grabY, grabWidth, grabHeight);
-			if (Dert.isMac) {
-				ImageUtil.doSwap(store);
+			final GL2 gl = _context.getGL().getGL2();
+			if (recorder == null) {
+				Console.println("Rendering image sequence to "+grabFilePath);
+				recorder = new FrameRecorder(new File(grabFilePath), grabWidth, grabHeight);
+				pboFrame = 0;
+				if (gl.isExtensionAvailable("GL_ARB_pixel_buffer_object")) {
+					pbo = new int[2];
+					gl.glGenBuffers(pbo.length, pbo, 0);
+					for (int i=0; i<pbo.length; ++i) {
+						gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbo[i]);
+						gl.glBufferData(GL2.GL_PIXEL_PACK_BUFFER, recorder.getFrameSize(), null, GL2.GL_STREAM_READ);
+					}
+					gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+				}
+				else {
+					store = ByteBuffer.allocateDirect(recorder.getFrameSize());
+				}
+			}
+			// the renderer expects its own pack alignment
+			int[] alignment = new int[1];
+			gl.glGetIntegerv(GL.GL_PACK_ALIGNMENT, alignment, 0);
+			gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+			try {
+				if (pbo != null) {
+					gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbo[pboFrame % 2]);
+					gl.glReadPixels(grabX, grabY, grabWidth, grabHeight, GL.GL_RGB, GL.GL_UNSIGNED_BYTE, 0L);
+					if (pboFrame > 0)
+						submitPixelBuffer(gl, pbo[(pboFrame - 1) % 2]);
+					pboFrame ++;
+				}
+				else {
+					// synchronous read
+					store.clear();
+					_renderer.grabScreenContents(store, ImageDataFormat.RGB, PixelDataType.UnsignedByte, grabX, grabY, grabWidth, grabHeight);
+					byte[] frame = recorder.acquire();
+					store.rewind();
+					store.get(frame, 0, frame.length);
+					recorder.submit(frame);
+				}
+			}
+			finally {
+				if (pbo != null)
+					gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+				gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, alignment[0]);
 			}
-			ImageUtil.doFlip(store, grabWidth * 4, grabHeight);
-			BufferedImage bImage = new BufferedImage(grabWidth, grabHeight, BufferedImage.TYPE_4BYTE_ABGR);
-			byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-			store.get(iData, 0, iData.length);
-			String filePath = "frame"+String.format("%07d", frameCount)+".png";
-			File file = new File(grabFilePath);
-			if (!file.exists())
-				file.mkdirs();
-			file = new File(file, filePath);
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			ImageIO.write(bImage, "PNG", oStream);
-			oStream.flush();
-			oStream.close();
-			frameCount ++;
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -197,44 +231,16 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
 		releaseCurrentContext();
 	}
 	
-	/**
-	 * Grab the current frame to a PNG file.
-	 */
-	public void grabRGBFrame() {
-		makeCurrentContext();
-		if (store == null) {
-			Console.println("Rendering image sequence to "+grabFilePath);
-			frameCount = 0;
-			int n = _renderer.getExpectedBufferSizeToGrabScreenContents(ImageDataFormat.RGB, PixelDataType.Byte, grabWidth, grabHeight);
-			store = ByteBuffer.allocateDirect(n);
-			store.limit(n);
-		}
-		
-		try {
-			store.position(0);
-			_renderer.finishGraphics();
-			_renderer.grabScreenContents(store, ImageDataFormat.RGB, PixelDataType.UnsignedByte, grabX, grabY, grabWidth, grabHeight);
-			if (Dert.isMac)
-				ImageUtil.swapRGBBytes(store);
-			ImageUtil.doFlip(store, grabWidth * 3, grabHeight);
-			BufferedImage bImage = new BufferedImage(grabWidth, grabHeight, BufferedImage.TYPE_3BYTE_BGR);
-			byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-			store.get(iData, 0, iData.length);
-			String filePath = "frame"+String.format("%07d", frameCount)+".png";
-			File file = new File(grabFilePath);
-			if (!file.exists())
-				file.mkdirs();
-			file = new File(file, filePath);
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			ImageIO.write(bImage, "PNG", oStream);
-			oStream.flush();
-			oStream.close();
-			frameCount ++;
+	private void submitPixelBuffer(GL2 gl, int id) throws InterruptedException {
+		gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, id);
+		ByteBuffer buffer = gl.glMapBuffer(GL2.GL_PIXEL_PACK_BUFFER, GL2.GL_READ_ONLY);
+		if (buffer != null) {
+			byte[] frame = recorder.acquire();
+			buffer.rewind();
+			buffer.get(frame, 0, frame.length);
+			gl.glUnmapBuffer(GL2.GL_PIXEL_PACK_BUFFER);
+			recorder.submit(frame);
 		}
-		catch (Exception e) {
-			e.printStackTrace();
-		}
-		releaseCurrentContext();
 	}
 	
 	/**
@@ -1,16 +1,20 @@
 package gov.nasa.arc.dert.render;
 
+import gov.nasa.arc.dert.landscape.DerivativeLayer;
 import gov.nasa.arc.dert.landscape.FieldCameraLayer;
+import gov.nasa.arc.dert.landscape.FieldLayer;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.terrain.Layer;
 import gov.nasa.arc.dert.terrain.QuadTreeMesh;
 import gov.nasa.arc.dert.terrain.LayerInfo.LayerType;
+import gov.nasa.arc.dert.util.ColorMap;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 
+import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.state.GLSLShaderDataLogic;
@@ -20,10 +24,16 @@ import com.ardor3d.scenegraph.Mesh;
 /**
  * Provides a shader program for handling multi-layer effects including shadows,
  * layer blending, and surface grid. Shader program is generated on the fly.
+ * Derivative layers (elevation, slope, and aspect) are computed for each
+ * fragment from the tile height map texture. Color mapped values are looked up
+ * in the 1D color map texture with the color map range as a uniform.
  *
  */
 public class LayerEffects extends GLSLShaderObjectsState {
 
+	// Texture unit for the tile height map used by derivative layers
+	public static final int HEIGHT_MAP_UNIT = 8;
+
 	protected static final String top =
 		  "varying vec4 gl_TexCoord[8];\n"
 		+ "void main() {\n"
@@ -51,6 +61,46 @@ public class LayerEffects extends GLSLShaderObjectsState {
 		+ "uniform float gridColor[4];\n"
 		+ "uniform bool gridEnabled;\n";
 
+	// height map texel coordinates are offset by half a texel from the mesh
+	// texture coordinates, slope and aspect use central differences that are
+	// shortened at the tile border, where the height map is clamped
+	protected static final String heightMapFunctions =
+		  "uniform sampler2D heightMapUnit;\n"
+		+ "uniform float heightMapSize[2];\n"
+		+ "uniform float pixelSize[2];\n"
+		+ "uniform float pixelScale;\n"
+		+ "float getHeight(float dc, float dr) {\n"
+		+ "	float s = (gl_TexCoord[0].s*(heightMapSize[0]-1.0)+0.5+dc)/heightMapSize[0];\n"
+		+ "	float t = (gl_TexCoord[0].t*(heightMapSize[1]-1.0)+0.5+dr)/heightMapSize[1];\n"
+		+ "	return(texture2D(heightMapUnit, vec2(s, t)).r);\n"
+		+ "}\n"
+		+ "vec3 getHeightMapNormal() {\n"
+		+ "	float c = gl_TexCoord[0].s*(heightMapSize[0]-1.0);\n"
+		+ "	float r = gl_TexCoord[0].t*(heightMapSize[1]-1.0);\n"
+		+ "	float c0 = max(c-1.0, 0.0)-c;\n"
+		+ "	float c1 = min(c+1.0, heightMapSize[0]-1.0)-c;\n"
+		+ "	float r0 = max(r-1.0, 0.0)-r;\n"
+		+ "	float r1 = min(r+1.0, heightMapSize[1]-1.0)-r;\n"
+		+ "	float dzdx = (getHeight(c1, 0.0)-getHeight(c0, 0.0))/((c1-c0)*pixelSize[0]);\n"
+		+ "	float dzdy = (getHeight(0.0, r0)-getHeight(0.0, r1))/((r1-r0)*pixelSize[1]);\n"
+		+ "	return(normalize(vec3(-dzdx, -dzdy, 1.0)));\n"
+		+ "}\n"
+		+ "float getElevation() {\n"
+		+ "	return(getHeight(0.0, 0.0)/pixelScale);\n"
+		+ "}\n"
+		+ "float getSlope() {\n"
+		+ "	return(degrees(acos(abs(getHeightMapNormal().z))));\n"
+		+ "}\n"
+		+ "float getAspect() {\n"
+		+ "	vec3 n = getHeightMapNormal();\n"
+		+ "	if ((n.x == 0.0) && (n.y == 0.0))\n"
+		+ "		return(0.0);\n"
+		+ "	float a = 1.5707963-atan(n.y, n.x);\n"
+		+ "	if (a < 0.0)\n"
+		+ "		a += 6.2831853;\n"
+		+ "	return(degrees(a));\n"
+		+ "}\n";
+
 	protected static final String bottom =
 		  "		if (color.a > 0.0)\n"
 		+ "			color.a = 1.0;\n"
@@ -101,6 +151,15 @@ public class LayerEffects extends GLSLShaderObjectsState {
 	protected ArrayList<Object[]> intUniforms;
 	protected ArrayList<Object[]> floatArrayUniforms;
 
+	// color maps and their range uniforms
+	protected ArrayList<Object[]> colorMapRanges;
+
+	// derivative layers are present
+	protected boolean hasDerivative;
+
+	// height map uniforms for the current mesh
+	protected float[] heightMapSize, pixelSize;
+
 	// program text
 	protected byte[] fragmentProgram;
 
@@ -112,6 +171,8 @@ public class LayerEffects extends GLSLShaderObjectsState {
 	 */
 	public LayerEffects(Layer[] layers, LayerEffects oldEffects) {
 		blendFactor = new float[] { 0, 0, 0, 0, 0, 0, 0 };
+		heightMapSize = new float[] { 2, 2 };
+		pixelSize = new float[] { 1, 1 };
 		gridColor = new float[] { 1, 1, 1, 1 };
 		gridCell = Landscape.defaultCellSize;
 		if (oldEffects != null) {
@@ -145,6 +206,81 @@ public class LayerEffects extends GLSLShaderObjectsState {
 		for (int i = 0; i < floatArrayUniforms.size(); ++i) {
 			setUniform((String) floatArrayUniforms.get(i)[0], (float[]) floatArrayUniforms.get(i)[1]);
 		}
+
+		if (hasDerivative) {
+			setUniform("heightMapUnit", HEIGHT_MAP_UNIT);
+			setUniform("heightMapSize", heightMapSize);
+			setUniform("pixelSize", pixelSize);
+			setUniform("pixelScale", Landscape.getInstance().getPixelScale());
+		}
+		// the color map range is read on every draw so changing it costs
+		// nothing
+		for (int i = 0; i < colorMapRanges.size(); ++i) {
+			ColorMap colorMap = (ColorMap) colorMapRanges.get(i)[1];
+			float[] range = (float[]) colorMapRanges.get(i)[2];
+			range[0] = (float) colorMap.getMinimum();
+			range[1] = (float) (colorMap.getMaximum() - colorMap.getMinimum());
+			setUniform((String) colorMapRanges.get(i)[0], range);
+		}
+	}
+
+	protected void setupHeightMap(Mesh mesh) {
+		QuadTreeMesh qtm = (QuadTreeMesh) mesh;
+		heightMapSize[0] = qtm.getTileWidth() + 1;
+		heightMapSize[1] = qtm.getTileLength() + 1;
+		pixelSize[0] = (float) qtm.getPixelWidth();
+		pixelSize[1] = (float) qtm.getPixelLength();
+	}
+
+	/**
+	 * Compute the height map normal as the shader does. The height map is
+	 * sampled bilinearly with edge clamping, like the texture. Provided for
+	 * checking the shader math.
+	 * 
+	 * @param height
+	 *            the height map, one value per mesh vertex
+	 * @param width
+	 *            , length the height map dimensions
+	 * @param s
+	 *            , t the mesh texture coordinates
+	 * @param pixelWidth
+	 *            , pixelLength the mesh cell dimensions
+	 * @param store
+	 * @return store
+	 */
+	public static Vector3 getHeightMapNormal(float[] height, int width, int length, double s, double t,
+		double pixelWidth, double pixelLength, Vector3 store) {
+		double c = s * (width - 1);
+		double r = t * (length - 1);
+		double c0 = Math.max(c - 1, 0) - c;
+		double c1 = Math.min(c + 1, width - 1) - c;
+		double r0 = Math.max(r - 1, 0) - r;
+		double r1 = Math.min(r + 1, length - 1) - r;
+		double dzdx = (getHeight(height, width, length, c + c1, r) - getHeight(height, width, length, c + c0, r))
+			/ ((c1 - c0) * pixelWidth);
+		double dzdy = (getHeight(height, width, length, c, r + r0) - getHeight(height, width, length, c, r + r1))
+			/ ((r1 - r0) * pixelLength);
+		store.set(-dzdx, -dzdy, 1);
+		store.normalizeLocal();
+		return (store);
+	}
+
+	private static double getHeight(float[] height, int width, int length, double c, double r) {
+		int ic = (int) Math.floor(c);
+		int ir = (int) Math.floor(r);
+		double fc = c - ic;
+		double fr = r - ir;
+		double h0 = getTexel(height, width, length, ic, ir) * (1 - fc) + getTexel(height, width, length, ic + 1, ir)
+			* fc;
+		double h1 = getTexel(height, width, length, ic, ir + 1) * (1 - fc)
+			+ getTexel(height, width, length, ic + 1, ir + 1) * fc;
+		return (h0 * (1 - fr) + h1 * fr);
+	}
+
+	private static float getTexel(float[] height, int width, int length, int c, int r) {
+		c = Math.max(0, Math.min(c, width - 1));
+		r = Math.max(0, Math.min(r, length - 1));
+		return (height[r * width + c]);
 	}
 
 	protected void setupGrid(Mesh mesh) {
@@ -174,6 +310,8 @@ public class LayerEffects extends GLSLShaderObjectsState {
 	public void setLayers(Layer[] layers) {
 		intUniforms = new ArrayList<Object[]>();
 		floatArrayUniforms = new ArrayList<Object[]>();
+		colorMapRanges = new ArrayList<Object[]>();
+		hasDerivative = false;
 
 		String imageUniforms = "";
 		String colorMapUniforms = "";
@@ -191,7 +329,17 @@ public class LayerEffects extends GLSLShaderObjectsState {
 			if (layers[i] == null) {
 				continue;
 			}
-			if (layers[i].isImage()) {
+			if (layers[i] instanceof DerivativeLayer) {
+				DerivativeLayer dLayer = (DerivativeLayer) layers[i];
+				colorMapUniforms += "uniform sampler1D colorMap" + i + "Unit;\n";
+				colorMapUniforms += "uniform float colorMap" + i + "Range[2];\n";
+				intUniforms.add(new Object[] { "colorMap" + i + "Unit", new Integer(i) });
+				colorMapRanges.add(new Object[] { "colorMap" + i + "Range", dLayer.getColorMap(), new float[2] });
+				blendFactor[i] = (float) layers[i].getBlendFactor();
+				textureLayers += getDerivativeFunction(i, dLayer.getDerivativeType());
+				addHasTexture = true;
+				hasDerivative = true;
+			} else if (layers[i].isImage()) {
 				imageUniforms += "uniform sampler2D photo" + i + "Unit;\n";
 				intUniforms.add(new Object[] { "photo" + i + "Unit", new Integer(i) });
 				blendFactor[i] = (float) layers[i].getBlendFactor();
@@ -199,13 +347,14 @@ public class LayerEffects extends GLSLShaderObjectsState {
 				textureLayers += "		f = blendFactor["+i+"]*tcolor.a;\n";
 				textureLayers += "		color.rgb = color.rgb*(1-f)+tcolor.rgb*f;\n";
 				addHasTexture = true;
-			} else if (layers[i].hasColorMap()) {
-				colorMapUniforms += "uniform sampler2D colorMap" + i + "Unit;\n";
+			} else if (layers[i] instanceof FieldLayer) {
+				FieldLayer fLayer = (FieldLayer) layers[i];
+				colorMapUniforms += "uniform sampler1D colorMap" + i + "Unit;\n";
+				colorMapUniforms += "uniform float colorMap" + i + "Range[2];\n";
 				intUniforms.add(new Object[] { "colorMap" + i + "Unit", new Integer(i) });
+				colorMapRanges.add(new Object[] { "colorMap" + i + "Range", fLayer.getColorMap(), new float[2] });
 				blendFactor[i] = (float) layers[i].getBlendFactor();
-				textureLayers += "		tcolor = texture2D(colorMap" + i + "Unit, gl_TexCoord["+ i + "].st);\n";
-				textureLayers += "		f = blendFactor["+i+"]*tcolor.a;\n";
-				textureLayers += "		color.rgb = color.rgb*(1-f)+tcolor.rgb*f;\n";
+				textureLayers += getFieldFunction(i);
 				addHasTexture = true;
 			} else if (layers[i].getLayerType() == LayerType.footprint) {
 				footprintUniforms += "uniform sampler2D footprint" + i + "Unit;\n";
@@ -230,6 +379,9 @@ public class LayerEffects extends GLSLShaderObjectsState {
 		progStr += colorMapUniforms;
 		progStr += footprintUniforms;
 		progStr += viewshedUniforms;
+		if (hasDerivative) {
+			progStr += heightMapFunctions;
+		}
 		progStr += top;
 		if (addHasTexture) {
 			progStr += "		hasTexture = true;\n";
@@ -255,6 +407,7 @@ public class LayerEffects extends GLSLShaderObjectsState {
 						throw new IllegalStateException();
 					}
 					setupGrid(mesh);
+					setupHeightMap(mesh);
 					setUniforms();
 				}
 			});
@@ -271,6 +424,37 @@ public class LayerEffects extends GLSLShaderObjectsState {
 		}
 	}
 
+	private String getDerivativeFunction(int i, DerivativeLayer.DerivativeType type) {
+		// missing vertices have no color
+		String str =
+				  "		if (gl_Color.a > 0.0) {\n"
+				+ "			x = (get" + type + "()-colorMap" + i + "Range[0])/colorMap" + i + "Range[1];\n"
+				+ getColorMapLookup(i, "			")
+				+ "		}\n";
+			return (str);
+	}
+
+	private String getFieldFunction(int i) {
+		// the field value is in s, t is 0 where there is no value
+		String str =
+				  "		if (gl_TexCoord[" + i + "].t > 0.5) {\n"
+				+ "			x = (gl_TexCoord[" + i + "].s-colorMap" + i + "Range[0])/colorMap" + i + "Range[1];\n"
+				+ getColorMapLookup(i, "			")
+				+ "		}\n";
+			return (str);
+	}
+
+	private String getColorMapLookup(int i, String indent) {
+		// values outside of the range are transparent
+		String str =
+				  indent + "if ((x >= 0.0) && (x <= 1.0)) {\n"
+				+ indent + "	tcolor = texture1D(colorMap" + i + "Unit, x);\n"
+				+ indent + "	f = blendFactor["+i+"]*tcolor.a;\n"
+				+ indent + "	color.rgb = color.rgb*(1-f)+tcolor.rgb*f;\n"
+				+ indent + "}\n";
+			return (str);
+	}
+
 	private String getViewshedFunction(int i) {
 		String str =
 				  "		vec4 vscol" + i + " = vec4(viewshed" + i + "Color[0], viewshed" + i + "Color[1], viewshed"+i+"Color[2], viewshed"+i+"Color[3]);\n"
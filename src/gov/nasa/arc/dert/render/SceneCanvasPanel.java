@@ -81,7 +81,7 @@ public class SceneCanvasPanel extends Panel implements Updater {
 			@Override
 			public void display(GLAutoDrawable glautodrawable) {
 //				System.err.println("SceneCanvasPanel.display ");
-				SceneCanvasPanel.this.scene.sceneChanged.set(true);
+				SceneCanvasPanel.this.scene.requestRender();
 			}
 		};
 		canvas.addGLEventListener(listener);
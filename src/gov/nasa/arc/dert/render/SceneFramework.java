@@ -11,13 +11,26 @@ import com.ardor3d.renderer.jogl.JoglTextureRendererProvider;
 import com.ardor3d.util.Timer;
 
 /**
- * Provides continuous update of Ardor3D windows (SceneCanvasPanel).
+ * Provides on demand update of Ardor3D windows (SceneCanvasPanel).
+ *
+ * A frame is run on the AWT event queue only when something asks for one: a
+ * change to the scene graph, a change to a viewpoint, a tile that finished
+ * loading, or an animation. Requests that arrive while a frame is waiting or
+ * running are combined into the next frame. During interaction frames are
+ * paced by how long they take, so the event queue is left free for input.
  *
  */
 public class SceneFramework {
-	
+
+	// Delay of the follow up frames while tiles are loading
 	public static int millisBetweenFrames = 33;
 
+	// Shortest time between the start of two frames
+	public static int minMillisBetweenFrames = 10;
+
+	// Write the timing of each frame to the log
+	public static boolean logFrameTiming = false;
+
 	private static SceneFramework instance;
 
 	// Handles frame update
@@ -26,26 +39,60 @@ public class SceneFramework {
 	// Flag to stop running
 	private volatile boolean doit;
 
-	// Count of queued events
-	private int count = 0;
-	
 	// Framework is suspended
 	private boolean suspended;
-	
+
+	// Guards the scheduling fields
+	private final Object lock = new Object();
+
+	// Time the next frame is wanted, Long.MAX_VALUE if not wanted (nanoseconds)
+	private long dueTime = Long.MAX_VALUE;
+
+	// Time the frame in progress was wanted
+	private long frameDueTime;
+
+	// Earliest time the next frame may start
+	private long earliestStart;
+
+	// A frame is on the event queue or running
+	private boolean framePending;
+
+	// Thread running a frame, null between frames
+	private volatile Thread frameThread;
+
+	// Frame statistics
+	private FrameTiming frameTiming;
 
 	// Execute a single update on the AWT event queue.
 	private final Runnable runnable = new Runnable() {
 		@Override
 		public void run() {
-			frameHandler.updateFrame();
-			World.markClean();
-			count--;
+			long start = System.nanoTime();
+			frameThread = Thread.currentThread();
+			try {
+				frameHandler.updateFrame();
+				World.markClean();
+			} finally {
+				frameThread = null;
+				long end = System.nanoTime();
+				frameTiming.addFrame(frameDueTime, start, end);
+				if (logFrameTiming) {
+					System.err.println("SceneFramework " + frameTiming);
+				}
+				synchronized (lock) {
+					framePending = false;
+					// leave the event queue free for half of a frame time
+					earliestStart = Math.max(start + minMillisBetweenFrames * 1000000L,
+						end + (long) (frameTiming.getAverageMillis() * 500000));
+					lock.notifyAll();
+				}
+			}
 		}
 	};
 
 	/**
 	 * Create the framework singleton
-	 * 
+	 *
 	 * @return
 	 */
 	public static void createInstance() {
@@ -54,55 +101,89 @@ public class SceneFramework {
 
 	/**
 	 * Get the framework singleton
-	 * 
+	 *
 	 * @return
 	 */
 	public static SceneFramework getInstance() {
 		return (instance);
 	}
 
+	/**
+	 * Ask for a frame as soon as possible.
+	 */
+	public static void requestFrame() {
+		requestFrame(0);
+	}
+
+	/**
+	 * Ask for a frame after a delay.
+	 *
+	 * @param delayMillis
+	 */
+	public static void requestFrame(int delayMillis) {
+		if (instance != null) {
+			instance.request(delayMillis * 1000000L);
+		}
+	}
+
+	/**
+	 * The scene changed. Asks for a frame unless the change was made by the
+	 * frame in progress, which already includes it.
+	 */
+	public static void notifyDirty() {
+		if ((instance != null) && (Thread.currentThread() != instance.frameThread)) {
+			instance.request(0);
+		}
+	}
+
 	/**
 	 * Constructor
 	 */
 	public SceneFramework() {
 		frameHandler = new FrameHandler(new Timer());
+		frameTiming = new FrameTiming();
 		// initialize
 		TextureRendererFactory.INSTANCE.setProvider(new JoglTextureRendererProvider());
 		AWTImageLoader.registerLoader();
-		startFrameHandlerUpdate(millisBetweenFrames);
+		startFrameHandlerUpdate();
 	}
 
 	/**
-	 * Start the frame handler update
-	 * 
-	 * @param sleepTime
-	 *            time to sleep between update events
+	 * Start the thread that puts requested frames on the event queue.
 	 */
-	public void startFrameHandlerUpdate(int sleepTime) {
+	public void startFrameHandlerUpdate() {
 		doit = true;
-		if (sleepTime <= 0) {
-			sleepTime = millisBetweenFrames;
-		}
-		final int sleepyTime = sleepTime;
 		Thread t = new Thread(new Runnable() {
 			@Override
 			public void run() {
 				while (doit) {
 					try {
-						Thread.sleep(sleepyTime);
-						if ((count < 3) && !suspended) {
-							// single assignment should be thread safe - could
-							// make count atomic
-							count++;
-							EventQueue.invokeLater(runnable);
+						synchronized (lock) {
+							if (framePending || suspended || (dueTime == Long.MAX_VALUE)) {
+								lock.wait();
+								continue;
+							}
+							long start = Math.max(dueTime, earliestStart);
+							long wait = start - System.nanoTime();
+							if (wait > 0) {
+								lock.wait(Math.max(1, wait / 1000000));
+								continue;
+							}
+							frameDueTime = dueTime;
+							dueTime = Long.MAX_VALUE;
+							framePending = true;
 						}
+						EventQueue.invokeLater(runnable);
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
 				}
 			}
-		});
+		}, "Scene framework");
+		t.setDaemon(true);
 		t.start();
+		// draw the first frame
+		request(0);
 	}
 
 	/**
@@ -110,19 +191,48 @@ public class SceneFramework {
 	 */
 	public void stopFrameHandlerUpdate() {
 		doit = false;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private void request(long delayNanos) {
+		long due = System.nanoTime() + delayNanos;
+		synchronized (lock) {
+			if (due < dueTime) {
+				dueTime = due;
+				lock.notifyAll();
+			}
+		}
 	}
 
 	/**
 	 * Get the frame handler
-	 * 
+	 *
 	 * @return
 	 */
 	public FrameHandler getFrameHandler() {
 		return (frameHandler);
 	}
-	
+
+	/**
+	 * Get the frame statistics
+	 *
+	 * @return
+	 */
+	public FrameTiming getFrameTiming() {
+		return (frameTiming);
+	}
+
 	public void suspend(boolean val) {
-		suspended = val;
+		synchronized (lock) {
+			suspended = val;
+			lock.notifyAll();
+		}
+		// catch up with anything that changed while suspended
+		if (!val) {
+			request(0);
+		}
 	}
 
 }
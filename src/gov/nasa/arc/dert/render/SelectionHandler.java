@@ -1,5 +1,8 @@
 package gov.nasa.arc.dert.render;
 
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.scene.featureset.Feature;
+import gov.nasa.arc.dert.scene.featureset.FeatureBatch;
 import gov.nasa.arc.dert.terrain.QuadTreeMesh;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.util.SpatialPickResults;
@@ -27,8 +30,9 @@ public class SelectionHandler {
 	// data structure to hold results of a pick
 	private PickResults pickResults;
 	
-	// Helper
+	// Helpers
 	private Vector3 work = new Vector3();
+	private Vector3 terrainPosition = new Vector3(), terrainNormal = new Vector3();
 
 	/**
 	 * Constructor
@@ -63,6 +67,8 @@ public class SelectionHandler {
 		IntersectionRecord record = null;
 		int index = -1;
 		double dist = Double.MAX_VALUE;
+		Feature featureHit = null;
+		boolean terrainPicked = false;
 		for (int i = 0; i < mesh.length; ++i) {
 			if (terrainOnly) {
 				if (!(mesh[i] instanceof QuadTreeMesh))
@@ -78,6 +84,27 @@ public class SelectionHandler {
 				continue;
 			}
 
+			// the landscape is picked as a height field after the other meshes
+			if (mesh[i] instanceof QuadTreeMesh) {
+				terrainPicked = true;
+				continue;
+			}
+
+			// merged feature geometry is picked by proximity to the ray
+			if (mesh[i].getParent() instanceof FeatureBatch) {
+				Vector3 featurePos = new Vector3();
+				Feature feature = ((FeatureBatch) mesh[i].getParent()).pick(pickRay, featurePos);
+				if (feature != null) {
+					double d = featurePos.distance(pickRay.getOrigin());
+					if (d < dist) {
+						dist = d;
+						featureHit = feature;
+						position.set(featurePos);
+					}
+				}
+				continue;
+			}
+
 			pickResults = new PrimitivePickResults();
 			PickingUtil.findPick(mesh[i], pickRay, pickResults);
 			if (pickResults.getNumber() > 0) {
@@ -95,6 +122,31 @@ public class SelectionHandler {
 				}
 			}
 		}
+		// pick the landscape tiles using their elevation bounds
+		Spatial terrainHit = null;
+		if (terrainPicked) {
+			terrainHit = Landscape.getInstance().pick(pickRay, terrainPosition, terrainNormal);
+			if (terrainHit != null) {
+				double d = terrainPosition.distance(pickRay.getOrigin());
+				if (d < dist) {
+					dist = d;
+					record = null;
+				} else {
+					terrainHit = null;
+				}
+			}
+		}
+		if (featureHit != null) {
+			if (((record == null) && (terrainHit == null)) || (position.distance(pickRay.getOrigin()) <= dist)) {
+				normal.set(Vector3.UNIT_Z);
+				return (featureHit);
+			}
+		}
+		if (terrainHit != null) {
+			position.set(terrainPosition);
+			normal.set(terrainNormal);
+			return (terrainHit);
+		}
 		if (record == null) {
 			return (null);
 		}
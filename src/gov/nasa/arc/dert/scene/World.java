@@ -232,6 +232,10 @@ public class World extends GroupNode {
 	 * @return
 	 */
 	public Spatial select(Ray3 pickRay, Vector3 position, Vector3 normal, Node pickTop, boolean shiftDown) {
+		// only the landscape, no need to pick the bounds of the whole scene
+		if (shiftDown && (pickTop == null)) {
+			return (Landscape.getInstance().pick(pickRay, position, normal));
+		}
 		SpatialPickResults boundsPick = SpatialUtil.pickBounds(contents, pickRay, pickTop);
 		if (boundsPick != null) {
 			return (selectionHandler.doSelection(pickRay, position, normal, boundsPick, shiftDown));
@@ -16,6 +16,7 @@ import gov.nasa.arc.dert.viewpoint.BasicCamera;
 import gov.nasa.arc.dert.viewpoint.ViewDependent;
 
 import java.awt.Color;
+import java.nio.FloatBuffer;
 import java.util.HashMap;
 
 import javax.swing.Icon;
@@ -47,6 +48,13 @@ public class Feature
 	
 	private FeatureState state;
 	
+	// The FeatureSet this feature belongs to
+	private FeatureSet featureSet;
+	
+	// The merged geometry holding this feature, null if it has its own
+	private FeatureBatch batch;
+	private int batchIndex;
+	
 	public Feature(FeatureState state, HashMap<String,Object> properties) {
 		this(state.name, state.color, properties);
 		this.state = state;
@@ -93,7 +101,11 @@ public class Feature
 		} else {
 			getSceneHints().setCullHint(CullHint.Always);
 		}
-		markDirty(DirtyType.RenderState);
+		if (batch != null) {
+			batch.featureVisibilityChanged(this);
+		} else {
+			markDirty(DirtyType.RenderState);
+		}
 	}
 
 	/**
@@ -200,6 +212,9 @@ public class Feature
 	 */
 	@Override
 	public double getSeekPointAndDistance(Vector3 point) {
+		if (batch != null) {
+			return (batch.getSeekPointAndDistance(batchIndex, point));
+		}
 		Spatial child = getChild(0);
 		double distance = 1;
 		if (child instanceof Marker) {
@@ -336,11 +351,80 @@ public class Feature
 	}
 	
 	public FeatureSet getFeatureSet() {
-		Node parent = getParent();
-		while (parent != null) {
-			if (parent instanceof FeatureSet)
-				return((FeatureSet)parent);
+		return(featureSet);
+	}
+	
+	public void setFeatureSet(FeatureSet featureSet) {
+		this.featureSet = featureSet;
+	}
+	
+	/**
+	 * Set the merged geometry that draws this feature.
+	 * 
+	 * @param batch
+	 * @param batchIndex
+	 *            the index of this feature in the batch
+	 */
+	public void setBatch(FeatureBatch batch, int batchIndex) {
+		this.batch = batch;
+		this.batchIndex = batchIndex;
+	}
+	
+	/**
+	 * Get the merged geometry that draws this feature.
+	 * 
+	 * @return the batch or null if this feature has its own geometry
+	 */
+	public FeatureBatch getBatch() {
+		return(batch);
+	}
+	
+	int getBatchIndex() {
+		return(batchIndex);
+	}
+	
+	/**
+	 * Get the X,Y bounds of this feature.
+	 * 
+	 * @param bounds
+	 *            minimum X, minimum Y, maximum X, maximum Y
+	 * @return false if the feature has no vertices
+	 */
+	public boolean getFootprint(double[] bounds) {
+		if (batch != null)
+			return(batch.getFootprint(batchIndex, bounds));
+		bounds[0] = Double.MAX_VALUE;
+		bounds[1] = Double.MAX_VALUE;
+		bounds[2] = -Double.MAX_VALUE;
+		bounds[3] = -Double.MAX_VALUE;
+		getFootprint(this, bounds);
+		return(bounds[0] <= bounds[2]);
+	}
+
+	private void getFootprint(Node node, double[] bounds) {
+		int n = node.getNumberOfChildren();
+		for (int i = 0; i < n; ++i) {
+			Spatial child = node.getChild(i);
+			if (child instanceof LineStrip) {
+				FloatBuffer vertex = ((LineStrip) child).getMeshData().getVertexBuffer();
+				int m = vertex.limit() / 3;
+				for (int j = 0; j < m; ++j)
+					addToFootprint(vertex.get(3 * j), vertex.get(3 * j + 1), bounds);
+			}
+			else if (child instanceof FigureMarker) {
+				ReadOnlyVector3 loc = ((FigureMarker) child).getLocation();
+				addToFootprint(loc.getX(), loc.getY(), bounds);
+			}
+			else if (child instanceof Node) {
+				getFootprint((Node) child, bounds);
+			}
 		}
-		return(null);
+	}
+
+	private void addToFootprint(double x, double y, double[] bounds) {
+		bounds[0] = Math.min(bounds[0], x);
+		bounds[1] = Math.min(bounds[1], y);
+		bounds[2] = Math.max(bounds[2], x);
+		bounds[3] = Math.max(bounds[3], y);
 	}
 }
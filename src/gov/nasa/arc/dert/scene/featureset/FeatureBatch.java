@@ -0,0 +1,517 @@
+package gov.nasa.arc.dert.scene.featureset;
+
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.scenegraph.FigureMarker;
+import gov.nasa.arc.dert.scenegraph.LineStrip;
+import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.util.UIUtil;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.scenegraph.Line;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Point;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.hint.LightCombineMode;
+import com.ardor3d.scenegraph.hint.TextureCombineMode;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Merged geometry for a large FeatureSet. The line strips of all features are
+ * drawn as one line mesh and the points as one point mesh, so the scene graph
+ * size does not depend on the number of features.
+ *
+ * Each feature keeps its range of strips and points, which is used for hiding
+ * features, grounding them when tiles arrive, and finding the feature that was
+ * picked. The Feature objects remain as map elements but have no geometry of
+ * their own.
+ *
+ */
+public class FeatureBatch extends Node {
+
+	// Point size in pixels for a feature set size of 1
+	public static float POINT_PIXELS = 6;
+
+	// Pick tolerance as a fraction of the distance from the eye
+	public static double PICK_TOLERANCE = 0.005;
+
+	// Merged meshes
+	private Line lines;
+	private Point points;
+
+	// Line vertices and point vertices (x, y, z)
+	private float[] lineVertex, pointVertex;
+	private int lineVertexCount, pointVertexCount;
+
+	// Line strips (vertex start and vertex count)
+	private int[] strip;
+	private int stripCount;
+
+	// Per feature ranges: first strip, strip count, first point, point count
+	private int[] range;
+
+	// Per feature bounds in x and y (minX, minY, maxX, maxY)
+	private float[] bounds;
+
+	// Features
+	private ArrayList<Feature> featureList;
+
+	// Index buffers need to be rebuilt
+	private boolean indicesDirty;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 * @param color
+	 * @param lineWidth
+	 * @param size
+	 */
+	public FeatureBatch(String name, Color color, float lineWidth, float size) {
+		super(name);
+		featureList = new ArrayList<Feature>();
+		lineVertex = new float[3 * 1024];
+		pointVertex = new float[3 * 64];
+		strip = new int[2 * 256];
+		range = new int[4 * 256];
+		bounds = new float[4 * 256];
+
+		lines = new Line(name + "_lines");
+		lines.getMeshData().setIndexMode(IndexMode.Lines);
+		lines.setLineWidth(lineWidth);
+		lines.getSceneHints().setTextureCombineMode(TextureCombineMode.Off);
+		lines.getSceneHints().setLightCombineMode(LightCombineMode.Off);
+		lines.setModelBound(new BoundingBox());
+		attachChild(lines);
+
+		points = new Point();
+		points.setName(name + "_points");
+		points.getMeshData().setIndexMode(IndexMode.Points);
+		points.setPointSize(POINT_PIXELS * size);
+		points.getSceneHints().setTextureCombineMode(TextureCombineMode.Off);
+		points.getSceneHints().setLightCombineMode(LightCombineMode.Off);
+		points.setModelBound(new BoundingBox());
+		attachChild(points);
+
+		setColor(color);
+	}
+
+	/**
+	 * Add a feature. Its geometry is copied into the batch and removed from
+	 * the feature.
+	 *
+	 * @param feature
+	 */
+	public void addFeature(Feature feature) {
+		int index = featureList.size();
+		if (4 * index == range.length) {
+			range = Arrays.copyOf(range, 2 * range.length);
+			bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+		}
+		range[4 * index] = stripCount;
+		range[4 * index + 2] = pointVertexCount;
+		bounds[4 * index] = Float.MAX_VALUE;
+		bounds[4 * index + 1] = Float.MAX_VALUE;
+		bounds[4 * index + 2] = -Float.MAX_VALUE;
+		bounds[4 * index + 3] = -Float.MAX_VALUE;
+		addGeometry(feature, index);
+		range[4 * index + 1] = stripCount - range[4 * index];
+		range[4 * index + 3] = pointVertexCount - range[4 * index + 2];
+		feature.detachAllChildren();
+		feature.setBatch(this, index);
+		featureList.add(feature);
+		indicesDirty = true;
+	}
+
+	private void addGeometry(Node node, int index) {
+		for (int i = 0; i < node.getNumberOfChildren(); ++i) {
+			Spatial child = node.getChild(i);
+			if (child instanceof LineStrip) {
+				FloatBuffer vertex = ((LineStrip) child).getMeshData().getVertexBuffer();
+				int n = vertex.limit() / 3;
+				if (n < 2) {
+					continue;
+				}
+				if (2 * stripCount == strip.length) {
+					strip = Arrays.copyOf(strip, 2 * strip.length);
+				}
+				strip[2 * stripCount] = lineVertexCount;
+				strip[2 * stripCount + 1] = n;
+				stripCount++;
+				if (3 * (lineVertexCount + n) > lineVertex.length) {
+					lineVertex = Arrays.copyOf(lineVertex, Math.max(2 * lineVertex.length, 3 * (lineVertexCount + n)));
+				}
+				for (int j = 0; j < n; ++j) {
+					addVertex(lineVertex, lineVertexCount++, vertex.get(3 * j), vertex.get(3 * j + 1),
+						vertex.get(3 * j + 2), index);
+				}
+			} else if (child instanceof FigureMarker) {
+				ReadOnlyVector3 location = ((FigureMarker) child).getLocation();
+				if (3 * (pointVertexCount + 1) > pointVertex.length) {
+					pointVertex = Arrays.copyOf(pointVertex, 2 * pointVertex.length);
+				}
+				addVertex(pointVertex, pointVertexCount++, location.getXf(), location.getYf(), location.getZf(), index);
+			} else if (child instanceof Node) {
+				addGeometry((Node) child, index);
+			}
+		}
+	}
+
+	private void addVertex(float[] vertex, int i, float x, float y, float z, int index) {
+		vertex[3 * i] = x;
+		vertex[3 * i + 1] = y;
+		vertex[3 * i + 2] = z;
+		bounds[4 * index] = Math.min(bounds[4 * index], x);
+		bounds[4 * index + 1] = Math.min(bounds[4 * index + 1], y);
+		bounds[4 * index + 2] = Math.max(bounds[4 * index + 2], x);
+		bounds[4 * index + 3] = Math.max(bounds[4 * index + 3], y);
+	}
+
+	/**
+	 * Create the vertex buffers after all features are added.
+	 */
+	public void updateBuffers() {
+		FloatBuffer buffer = BufferUtils.createFloatBuffer(3 * lineVertexCount);
+		buffer.put(lineVertex, 0, 3 * lineVertexCount);
+		buffer.flip();
+		lines.getMeshData().setVertexBuffer(buffer);
+		buffer = BufferUtils.createFloatBuffer(3 * pointVertexCount);
+		buffer.put(pointVertex, 0, 3 * pointVertexCount);
+		buffer.flip();
+		points.getMeshData().setVertexBuffer(buffer);
+		updateIndices();
+		lines.updateModelBound();
+		points.updateModelBound();
+	}
+
+	/**
+	 * Rebuild the index buffers from the visible features.
+	 */
+	public synchronized void updateIndices() {
+		int lineCount = 0;
+		int pointCount = 0;
+		for (int i = 0; i < featureList.size(); ++i) {
+			if (!featureList.get(i).isVisible()) {
+				continue;
+			}
+			for (int s = range[4 * i]; s < range[4 * i] + range[4 * i + 1]; ++s) {
+				lineCount += 2 * (strip[2 * s + 1] - 1);
+			}
+			pointCount += range[4 * i + 3];
+		}
+		IntBuffer lineIndex = BufferUtils.createIntBuffer(Math.max(lineCount, 1));
+		IntBuffer pointIndex = BufferUtils.createIntBuffer(Math.max(pointCount, 1));
+		for (int i = 0; i < featureList.size(); ++i) {
+			if (!featureList.get(i).isVisible()) {
+				continue;
+			}
+			for (int s = range[4 * i]; s < range[4 * i] + range[4 * i + 1]; ++s) {
+				int start = strip[2 * s];
+				int end = start + strip[2 * s + 1] - 1;
+				for (int k = start; k < end; ++k) {
+					lineIndex.put(k).put(k + 1);
+				}
+			}
+			for (int p = range[4 * i + 2]; p < range[4 * i + 2] + range[4 * i + 3]; ++p) {
+				pointIndex.put(p);
+			}
+		}
+		lineIndex.flip();
+		pointIndex.flip();
+		lines.getMeshData().setIndexBuffer(lineIndex);
+		points.getMeshData().setIndexBuffer(pointIndex);
+		indicesDirty = false;
+	}
+
+	/**
+	 * A feature was hidden or shown.
+	 *
+	 * @param feature
+	 */
+	public void featureVisibilityChanged(Feature feature) {
+		indicesDirty = true;
+	}
+
+	@Override
+	public void updateGeometricState(double time, boolean initiator) {
+		if (indicesDirty) {
+			updateIndices();
+		}
+		super.updateGeometricState(time, initiator);
+	}
+
+	/**
+	 * Get the number of features.
+	 *
+	 * @return
+	 */
+	public int getNumberOfFeatures() {
+		return (featureList.size());
+	}
+
+	/**
+	 * Set the color of all features.
+	 *
+	 * @param color
+	 */
+	public void setColor(Color color) {
+		lines.setDefaultColor(UIUtil.colorToColorRGBA(color));
+		points.setDefaultColor(UIUtil.colorToColorRGBA(color));
+	}
+
+	/**
+	 * Set the line width.
+	 *
+	 * @param lineWidth
+	 */
+	public void setLineWidth(float lineWidth) {
+		lines.setLineWidth(lineWidth);
+	}
+
+	/**
+	 * Set the point size.
+	 *
+	 * @param size
+	 */
+	public void setPointSize(float size) {
+		points.setPointSize(POINT_PIXELS * size);
+	}
+
+	/**
+	 * Get the X,Y bounds of a feature.
+	 *
+	 * @param index
+	 * @param store
+	 *            minimum X, minimum Y, maximum X, maximum Y
+	 * @return false if the feature has no vertices
+	 */
+	public boolean getFootprint(int index, double[] store) {
+		for (int i = 0; i < 4; ++i) {
+			store[i] = bounds[4 * index + i];
+		}
+		return (store[0] <= store[2]);
+	}
+
+	/**
+	 * Update the elevation of the vertices that are in a QuadTree.
+	 *
+	 * @param quadTree
+	 * @param candidates
+	 *            the features that may overlap the QuadTree
+	 * @return true if any vertex was changed
+	 */
+	public synchronized boolean updateElevation(QuadTree quadTree, ArrayList<Feature> candidates) {
+		Vector3[] corner = quadTree.getCornerPoints();
+		float minX = (float) corner[0].getX();
+		float minY = (float) corner[0].getY();
+		float maxX = (float) corner[2].getX();
+		float maxY = (float) corner[2].getY();
+
+		// gather the vertices of the features that overlap the tile
+		int[] lineList = new int[64];
+		int lineN = 0;
+		int[] pointList = new int[16];
+		int pointN = 0;
+		for (int j = 0; j < candidates.size(); ++j) {
+			int i = candidates.get(j).getBatchIndex();
+			if ((bounds[4 * i] > maxX) || (bounds[4 * i + 2] < minX) || (bounds[4 * i + 1] > maxY)
+				|| (bounds[4 * i + 3] < minY)) {
+				continue;
+			}
+			for (int s = range[4 * i]; s < range[4 * i] + range[4 * i + 1]; ++s) {
+				int start = strip[2 * s];
+				for (int k = start; k < start + strip[2 * s + 1]; ++k) {
+					if (quadTree.contains(lineVertex[3 * k], lineVertex[3 * k + 1])) {
+						if (lineN == lineList.length) {
+							lineList = Arrays.copyOf(lineList, 2 * lineN);
+						}
+						lineList[lineN++] = k;
+					}
+				}
+			}
+			for (int p = range[4 * i + 2]; p < range[4 * i + 2] + range[4 * i + 3]; ++p) {
+				if (quadTree.contains(pointVertex[3 * p], pointVertex[3 * p + 1])) {
+					if (pointN == pointList.length) {
+						pointList = Arrays.copyOf(pointList, 2 * pointN);
+					}
+					pointList[pointN++] = p;
+				}
+			}
+		}
+		boolean modified = false;
+		if (lineN > 0) {
+			// lines are drawn slightly above the surface like LineStrip
+			modified |= updateElevation(lineVertex, lineList, lineN, 0.1f, lines);
+		}
+		if (pointN > 0) {
+			modified |= updateElevation(pointVertex, pointList, pointN, 0, points);
+		}
+		return (modified);
+	}
+
+	private boolean updateElevation(float[] vertex, int[] list, int n, float zOff, Mesh mesh) {
+		double[] xy = new double[2 * n];
+		float[] z = new float[n];
+		for (int i = 0; i < n; ++i) {
+			xy[2 * i] = vertex[3 * list[i]];
+			xy[2 * i + 1] = vertex[3 * list[i] + 1];
+		}
+		Landscape.getInstance().getZ(xy, z);
+		FloatBuffer buffer = mesh.getMeshData().getVertexBuffer();
+		boolean modified = false;
+		for (int i = 0; i < n; ++i) {
+			if (!Float.isNaN(z[i])) {
+				vertex[3 * list[i] + 2] = z[i] + zOff;
+				buffer.put(3 * list[i] + 2, z[i] + zOff);
+				modified = true;
+			}
+		}
+		if (modified) {
+			mesh.getMeshData().setVertexCoords(mesh.getMeshData().getVertexCoords());
+			mesh.updateModelBound();
+		}
+		return (modified);
+	}
+
+	/**
+	 * Get the point to seek for a feature (center of its bounds).
+	 *
+	 * @param index
+	 * @param point
+	 * @return the distance
+	 */
+	public double getSeekPointAndDistance(int index, Vector3 point) {
+		double minZ = Double.MAX_VALUE;
+		double maxZ = -Double.MAX_VALUE;
+		for (int s = range[4 * index]; s < range[4 * index] + range[4 * index + 1]; ++s) {
+			int start = strip[2 * s];
+			for (int k = start; k < start + strip[2 * s + 1]; ++k) {
+				minZ = Math.min(minZ, lineVertex[3 * k + 2]);
+				maxZ = Math.max(maxZ, lineVertex[3 * k + 2]);
+			}
+		}
+		for (int p = range[4 * index + 2]; p < range[4 * index + 2] + range[4 * index + 3]; ++p) {
+			minZ = Math.min(minZ, pointVertex[3 * p + 2]);
+			maxZ = Math.max(maxZ, pointVertex[3 * p + 2]);
+		}
+		if (minZ > maxZ) {
+			minZ = maxZ = 0;
+		}
+		point.set((bounds[4 * index] + bounds[4 * index + 2]) / 2, (bounds[4 * index + 1] + bounds[4 * index + 3]) / 2,
+			(minZ + maxZ) / 2);
+		ReadOnlyTransform transform = getWorldTransform();
+		transform.applyForward(point);
+		double dx = bounds[4 * index + 2] - bounds[4 * index];
+		double dy = bounds[4 * index + 3] - bounds[4 * index + 1];
+		return (Math.max(Math.sqrt(dx * dx + dy * dy) / 2, 20));
+	}
+
+	/**
+	 * Find the visible feature nearest to a pick ray.
+	 *
+	 * @param ray
+	 *            the pick ray in world coordinates
+	 * @param position
+	 *            the picked position
+	 * @return the feature or null if none is within the pick tolerance
+	 */
+	public synchronized Feature pick(Ray3 ray, Vector3 position) {
+		ReadOnlyTransform transform = getWorldTransform();
+		ReadOnlyVector3 origin = ray.getOrigin();
+		ReadOnlyVector3 direction = ray.getDirection();
+		Vector3 p0 = new Vector3();
+		Vector3 p1 = new Vector3();
+		Vector3 closest = new Vector3();
+		double best = Double.MAX_VALUE;
+		Feature result = null;
+		for (int i = 0; i < featureList.size(); ++i) {
+			Feature feature = featureList.get(i);
+			if (!feature.isVisible()) {
+				continue;
+			}
+			for (int s = range[4 * i]; s < range[4 * i] + range[4 * i + 1]; ++s) {
+				int start = strip[2 * s];
+				get(lineVertex, start, transform, p0);
+				for (int k = start + 1; k < start + strip[2 * s + 1]; ++k) {
+					get(lineVertex, k, transform, p1);
+					double d = distance(origin, direction, p0, p1, closest);
+					if (d < best) {
+						best = d;
+						result = feature;
+						position.set(closest);
+					}
+					p0.set(p1);
+				}
+			}
+			for (int p = range[4 * i + 2]; p < range[4 * i + 2] + range[4 * i + 3]; ++p) {
+				get(pointVertex, p, transform, p0);
+				double d = distance(origin, direction, p0, p0, closest);
+				if (d < best) {
+					best = d;
+					result = feature;
+					position.set(closest);
+				}
+			}
+		}
+		return (result);
+	}
+
+	private void get(float[] vertex, int i, ReadOnlyTransform transform, Vector3 store) {
+		store.set(vertex[3 * i], vertex[3 * i + 1], vertex[3 * i + 2]);
+		transform.applyForward(store);
+	}
+
+	/**
+	 * Get the distance between a ray and a segment relative to the distance
+	 * along the ray. Returns MAX_VALUE if it is not within the tolerance.
+	 */
+	private double distance(ReadOnlyVector3 origin, ReadOnlyVector3 direction, Vector3 p0, Vector3 p1, Vector3 closest) {
+		// closest point on the segment to the ray
+		double ux = p1.getX() - p0.getX();
+		double uy = p1.getY() - p0.getY();
+		double uz = p1.getZ() - p0.getZ();
+		double wx = p0.getX() - origin.getX();
+		double wy = p0.getY() - origin.getY();
+		double wz = p0.getZ() - origin.getZ();
+		double a = ux * ux + uy * uy + uz * uz;
+		double b = ux * direction.getX() + uy * direction.getY() + uz * direction.getZ();
+		double d = wx * direction.getX() + wy * direction.getY() + wz * direction.getZ();
+		double e = ux * wx + uy * wy + uz * wz;
+		double s = 0;
+		double denom = a - b * b;
+		if ((a > 0) && (denom > 1e-12)) {
+			s = (b * d - e) / denom;
+			s = Math.max(0, Math.min(1, s));
+		}
+		double cx = p0.getX() + s * ux;
+		double cy = p0.getY() + s * uy;
+		double cz = p0.getZ() + s * uz;
+		// distance along the ray
+		double t = (cx - origin.getX()) * direction.getX() + (cy - origin.getY()) * direction.getY()
+			+ (cz - origin.getZ()) * direction.getZ();
+		if (t <= 0) {
+			return (Double.MAX_VALUE);
+		}
+		double dx = cx - (origin.getX() + t * direction.getX());
+		double dy = cy - (origin.getY() + t * direction.getY());
+		double dz = cz - (origin.getZ() + t * direction.getZ());
+		double dist = Math.sqrt(dx * dx + dy * dy + dz * dz) / t;
+		if (dist > PICK_TOLERANCE) {
+			return (Double.MAX_VALUE);
+		}
+		closest.set(cx, cy, cz);
+		return (dist);
+	}
+
+}
@@ -2,7 +2,6 @@ package gov.nasa.arc.dert.scene.featureset;
 
 import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.io.geojson.GeojsonLoader;
-import gov.nasa.arc.dert.io.geojson.json.GeoJsonObject;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
 import gov.nasa.arc.dert.scene.MapElement;
@@ -11,6 +10,7 @@ import gov.nasa.arc.dert.state.FeatureSetState;
 import gov.nasa.arc.dert.state.MapElementState;
 import gov.nasa.arc.dert.state.MapElementState.Type;
 import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.util.GridIndex;
 import gov.nasa.arc.dert.util.SpatialUtil;
 import gov.nasa.arc.dert.util.StringUtil;
 import gov.nasa.arc.dert.view.world.GroundEdit;
@@ -18,7 +18,9 @@ import gov.nasa.arc.dert.viewpoint.BasicCamera;
 import gov.nasa.arc.dert.viewpoint.ViewDependent;
 
 import java.awt.Color;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Properties;
 
 import javax.swing.Icon;
@@ -26,13 +28,16 @@ import javax.swing.Icon;
 import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyVector3;
-import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.scenegraph.hint.CullHint;
 
 /**
  * Provides a MapElement that consists of a set of lines and/or points. Input is from a
- * GeoJSON file
+ * GeoJSON file.
+ * 
+ * Small sets have one node per feature. When the number of features exceeds the
+ * batch threshold the features are drawn from a FeatureBatch, which merges their
+ * geometry into a few large meshes. Labels are not shown in that mode.
  *
  */
 public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
@@ -40,6 +45,9 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public static final Icon icon = Icons.getImageIcon("lineset_16.png");
 	public static Color defaultColor = Color.white;
 	public static float defaultSize = 0.75f, defaultLineWidth = 2;
+	
+	// Number of features above which geometry is merged
+	public static int batchThreshold = 1000;
 
 	// Line color
 	private Color color;
@@ -58,6 +66,16 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	private boolean ground;
 	
 	private float size, lineWidth;
+	
+	// The features
+	private ArrayList<Feature> featureList;
+	
+	// Merged geometry, null if features have their own nodes
+	private FeatureBatch batch;
+	
+	// Index of feature footprints and the bounds of all features
+	private GridIndex<Feature> featureIndex;
+	private double[] footprint;
 
 	/**
 	 * Constructor
@@ -77,6 +95,7 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public FeatureSet(FeatureSetState state, String elevAttrName, SpatialReferenceSystem srs) {
 		super(state.name);
 		location = new Vector3();
+		featureList = new ArrayList<Feature>();
 		this.filePath = state.filePath;
 		ground = state.ground;
 		color = state.color;
@@ -88,9 +107,11 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 		// Load the vector file into an Ardor3D object.
 		if (filePath != null) {
 			GeojsonLoader jsonLoader = new GeojsonLoader(srs, elevAttrName, ground, size, lineWidth);
-			GeoJsonObject gjRoot = jsonLoader.load(filePath);
-			jsonLoader.geoJsonToArdor3D(gjRoot, this, state.labelProp);
-			if (getNumberOfChildren() == 0) {
+			jsonLoader.loadFeatureSet(filePath, this, state.labelProp);
+			if (batch != null) {
+				batch.updateBuffers();
+			}
+			if (featureList.size() == 0) {
 				throw new IllegalStateException("No vectors found.");
 			}
 		}
@@ -99,17 +120,74 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	}
 	
 	public Feature getFeature(int id) {
-		List<Spatial> child = getChildren();
-		for (int i=0; i<child.size(); ++i) {
-			Spatial spat = child.get(i);
-			if (spat instanceof Feature) {
-				Feature f = (Feature)spat;
-				if (f.getState().id == id)
-					return(f);
-			}
+		for (int i=0; i<featureList.size(); ++i) {
+			Feature f = featureList.get(i);
+			if (f.getState().id == id)
+				return(f);
 		}
 		return(null);
 	}
+	
+	/**
+	 * Add a feature. Switches to merged geometry when the number of features
+	 * exceeds the batch threshold.
+	 * 
+	 * @param feature
+	 */
+	public void addFeature(Feature feature) {
+		feature.setFeatureSet(this);
+		featureList.add(feature);
+		if (batch != null) {
+			batch.addFeature(feature);
+		} else if (featureList.size() > batchThreshold) {
+			batch = new FeatureBatch(getName() + "_batch", color, lineWidth, size);
+			for (int i = 0; i < featureList.size(); ++i) {
+				Feature f = featureList.get(i);
+				detachChild(f);
+				batch.addFeature(f);
+			}
+			attachChild(batch);
+		} else {
+			attachChild(feature);
+		}
+	}
+	
+	/**
+	 * Sort the features by name.
+	 */
+	public void sortFeatures() {
+		Collections.sort(featureList, new Comparator<Feature>() {
+			public int compare(Feature f1, Feature f2) {
+				return(f1.getName().compareTo(f2.getName()));
+			}
+			public boolean equals(Object obj) {
+				return(this == obj);
+			}
+		});
+		if (batch == null) {
+			detachAllChildren();
+			for (int i = 0; i < featureList.size(); ++i)
+				attachChild(featureList.get(i));
+		}
+	}
+	
+	/**
+	 * Get the features.
+	 * 
+	 * @return
+	 */
+	public ArrayList<Feature> getFeatures() {
+		return(featureList);
+	}
+	
+	/**
+	 * Get the merged geometry.
+	 * 
+	 * @return the batch or null if features have their own nodes
+	 */
+	public FeatureBatch getBatch() {
+		return(batch);
+	}
 
 	/**
 	 * Get the MapElement state
@@ -171,9 +249,13 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	public void setColor(Color color) {
 		this.color = color;
-		for (int i=0; i<getNumberOfChildren(); ++i) {
-			Feature feature = (Feature)getChild(i);
-			feature.setColor(color);
+		if (batch != null) {
+			batch.setColor(color);
+		}
+		else {
+			for (int i=0; i<featureList.size(); ++i) {
+				featureList.get(i).setColor(color);
+			}
 		}
 	}
 
@@ -193,28 +275,66 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public boolean updateElevation(QuadTree quadTree) {
 		if (!ground)
 			return(false);
+		Vector3[] corner = quadTree.getCornerPoints();
+		if (corner == null)
+			return(false);
+		ArrayList<Feature> candidates = new ArrayList<Feature>();
+		getFeatureIndex().query(corner[0].getX(), corner[0].getY(), corner[2].getX(), corner[2].getY(), candidates);
+		if (candidates.isEmpty())
+			return(false);
+		if (batch != null)
+			return(batch.updateElevation(quadTree, candidates));
 		boolean modified = false;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				modified |= feature.updateElevation(quadTree);
-			}
+		for (int i = 0; i < candidates.size(); ++i) {
+			modified |= candidates.get(i).updateElevation(quadTree);
 		}
 		return (modified);
 	}
+	
+	/**
+	 * Get the X,Y bounds of all the features.
+	 * 
+	 * @param bounds
+	 *            minimum X, minimum Y, maximum X, maximum Y
+	 * @return false if there are no vertices
+	 */
+	public boolean getFootprint(double[] bounds) {
+		getFeatureIndex();
+		System.arraycopy(footprint, 0, bounds, 0, 4);
+		return(bounds[0] <= bounds[2]);
+	}
+	
+	private synchronized GridIndex<Feature> getFeatureIndex() {
+		if (featureIndex != null)
+			return(featureIndex);
+		// features do not move, so the index is built once
+		featureIndex = new GridIndex<Feature>(Landscape.getInstance().getFootprintCellSize());
+		footprint = new double[] {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		double[] bounds = new double[4];
+		for (int i = 0; i < featureList.size(); ++i) {
+			Feature feature = featureList.get(i);
+			if (feature.getFootprint(bounds)) {
+				featureIndex.put(feature, bounds[0], bounds[1], bounds[2], bounds[3]);
+				footprint[0] = Math.min(footprint[0], bounds[0]);
+				footprint[1] = Math.min(footprint[1], bounds[1]);
+				footprint[2] = Math.max(footprint[2], bounds[2]);
+				footprint[3] = Math.max(footprint[3], bounds[3]);
+			}
+		}
+		return(featureIndex);
+	}
 
 	/**
 	 * Set the vertical exaggeration
 	 */
 	@Override
 	public void setVerticalExaggeration(double vertExag, double oldVertExag, double minZ) {
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				feature.setVerticalExaggeration(vertExag, oldVertExag, minZ);
-			}
+		if (batch != null) {
+			batch.setScale(1, 1, vertExag);
+			return;
+		}
+		for (int i = 0; i < featureList.size(); ++i) {
+			featureList.get(i).setVerticalExaggeration(vertExag, oldVertExag, minZ);
 		}
 	}
 
@@ -242,12 +362,10 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	@Override
 	public void setLabelVisible(boolean visible) {
 		labelVisible = visible;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				feature.setLabelVisible(visible);
-			}
+		if (batch != null)
+			return;
+		for (int i = 0; i < featureList.size(); ++i) {
+			featureList.get(i).setLabelVisible(visible);
 		}
 	}
 
@@ -264,12 +382,12 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	public void setPointSize(float size) {
 		this.size = size;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				feature.setSize(size);
-			}
+		if (batch != null) {
+			batch.setPointSize(size);
+			return;
+		}
+		for (int i = 0; i < featureList.size(); ++i) {
+			featureList.get(i).setSize(size);
 		}
 	}
 
@@ -286,12 +404,12 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	public void setLineWidth(float lineWidth) {
 		this.lineWidth = lineWidth;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				feature.setLineWidth(lineWidth);
-			}
+		if (batch != null) {
+			batch.setLineWidth(lineWidth);
+			return;
+		}
+		for (int i = 0; i < featureList.size(); ++i) {
+			featureList.get(i).setLineWidth(lineWidth);
 		}
 	}
 	
@@ -334,10 +452,10 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	}
 	
 	public void update(BasicCamera camera) {
-		if (!isVisible())
+		if (!isVisible() || (batch != null))
 			return;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Feature feature = (Feature)getChild(i);
+		for (int i = 0; i < featureList.size(); ++i) {
+			Feature feature = featureList.get(i);
 			if (feature.isVisible())
 				feature.update(camera);
 		}
@@ -352,6 +470,7 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 		defaultColor = StringUtil.getColorValue(properties, "MapElement.FeatureSet.defaultColor", defaultColor, false);
 		defaultSize = (float) StringUtil.getDoubleValue(properties, "MapElement.FeatureSet.defaultSize", true, defaultSize, false);
 		defaultLineWidth = (float) StringUtil.getDoubleValue(properties, "MapElement.FeatureSet.defaultLineWidth", true, defaultLineWidth, false);
+		batchThreshold = StringUtil.getIntegerValue(properties, "MapElement.FeatureSet.batchThreshold", true, batchThreshold, false);
 	}
 
 	/**
@@ -363,6 +482,7 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 		properties.setProperty("MapElement.FeatureSet.defaultColor", StringUtil.colorToString(defaultColor));
 		properties.setProperty("MapElement.FeatureSet.defaultSize", Float.toString(defaultSize));
 		properties.setProperty("MapElement.FeatureSet.defaultLineWidth", Float.toString(defaultLineWidth));
+		properties.setProperty("MapElement.FeatureSet.batchThreshold", Integer.toString(batchThreshold));
 	}
 
 }
@@ -2,7 +2,9 @@ package gov.nasa.arc.dert.scene.featureset;
 
 import gov.nasa.arc.dert.scenegraph.GroupNode;
 import gov.nasa.arc.dert.state.FeatureSetState;
+import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.util.GridIndex;
 import gov.nasa.arc.dert.view.Console;
 
 import java.awt.EventQueue;
@@ -13,9 +15,11 @@ import java.util.concurrent.Executors;
 
 import javax.swing.JTextField;
 
+import com.ardor3d.math.Vector3;
 import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.renderer.state.ZBufferState;
 import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.event.DirtyEventListener;
 import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.scenegraph.hint.CullHint;
 
@@ -32,6 +36,9 @@ public class FeatureSets extends GroupNode {
 	private ExecutorService executor;
 	
 	private ZBufferState zBufferState;
+	
+	// Index of FeatureSet footprints
+	private GridIndex<FeatureSet> index;
 
 	/**
 	 * Constructor
@@ -53,6 +60,22 @@ public class FeatureSets extends GroupNode {
 		setRenderState(ts);
 		getSceneHints().setCullHint(CullHint.Dynamic);
 		
+		index = new GridIndex<FeatureSet>(Landscape.getInstance().getFootprintCellSize());
+		setListener(new DirtyEventListener() {
+			@Override
+			public boolean spatialDirty(Spatial spatial, DirtyType dirtyType) {
+				if ((dirtyType == DirtyType.Detached) && (spatial instanceof FeatureSet) && (spatial.getParent() == null)) {
+					index.remove((FeatureSet) spatial);
+				}
+				return (false);
+			}
+
+			@Override
+			public boolean spatialClean(Spatial spatial, DirtyType dirtyType) {
+				return (false);
+			}
+		});
+		
 		for (int i = 0; i < featureSetList.size(); ++i) {
 			FeatureSetState state = featureSetList.get(i);
 			addFeatureSet(state, false, null);
@@ -70,13 +93,22 @@ public class FeatureSets extends GroupNode {
 	 * @param quadTree
 	 */
 	public void landscapeChanged(final QuadTree quadTree) {
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			final Spatial child = getChild(i);
+		Vector3[] corner = quadTree.getCornerPoints();
+		if (corner == null) {
+			return;
+		}
+		ArrayList<FeatureSet> list = new ArrayList<FeatureSet>();
+		index.query(corner[0].getX(), corner[0].getY(), corner[2].getX(), corner[2].getY(), list);
+		for (int i = 0; i < list.size(); ++i) {
+			final FeatureSet child = list.get(i);
+			if (child.getParent() != this) {
+				continue;
+			}
 			Runnable runnable = new Runnable() {
 				@Override
 				public void run() {
 					Thread.yield();
-					boolean modified = ((FeatureSet) child).updateElevation(quadTree);
+					boolean modified = child.updateElevation(quadTree);
 					if (modified) {
 						EventQueue.invokeLater(new Runnable() {
 							@Override
@@ -101,6 +133,10 @@ public class FeatureSets extends GroupNode {
 	public FeatureSet addFeatureSet(FeatureSetState state, boolean update, JTextField msgField) {
 		try {
 			FeatureSet featureSet = new FeatureSet(state);
+			double[] bounds = new double[4];
+			if (featureSet.getFootprint(bounds)) {
+				index.put(featureSet, bounds[0], bounds[1], bounds[2], bounds[3]);
+			}
 			attachChild(featureSet);
 			markDirty(DirtyType.RenderState);
 			if (update) {
@@ -6,21 +6,26 @@ import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.scene.Marble;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.GroupNode;
+import gov.nasa.arc.dert.scenegraph.Marker;
 import gov.nasa.arc.dert.state.FigureState;
 import gov.nasa.arc.dert.state.ImageBoardState;
 import gov.nasa.arc.dert.state.LandmarkState;
 import gov.nasa.arc.dert.state.PlacemarkState;
 import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.util.GridIndex;
 import gov.nasa.arc.dert.view.Console;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Properties;
 
+import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.renderer.state.ZBufferState;
 import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.event.DirtyEventListener;
 import com.ardor3d.scenegraph.event.DirtyType;
 
 /**
@@ -33,6 +38,12 @@ public class Landmarks extends GroupNode {
 	private ArrayList<LandmarkState> landmarkList;
 	
 	private ZBufferState zBufferState;
+	
+	// Index of landmark locations
+	private GridIndex<Landmark> index;
+	
+	// Landmarks added or moved since they were indexed
+	private HashSet<Landmark> movedSet;
 
 	/**
 	 * Constructor
@@ -42,6 +53,7 @@ public class Landmarks extends GroupNode {
 	public Landmarks(ArrayList<LandmarkState> landmarkList) {
 		super("Landmarks");
 		this.landmarkList = landmarkList;
+		movedSet = new HashSet<Landmark>();
 	}
 
 	/**
@@ -53,6 +65,32 @@ public class Landmarks extends GroupNode {
 		ts.setEnabled(false);
 		setRenderState(ts);
 
+		// keep the location index up to date as landmarks are added, moved, and removed
+		index = new GridIndex<Landmark>(Landscape.getInstance().getFootprintCellSize());
+		setListener(new DirtyEventListener() {
+			@Override
+			public boolean spatialDirty(Spatial spatial, DirtyType dirtyType) {
+				if (dirtyType == DirtyType.Detached) {
+					if ((spatial instanceof Landmark) && (spatial.getParent() == null)) {
+						landmarkRemoved((Landmark) spatial);
+					}
+				} else if ((dirtyType == DirtyType.Transform) || (dirtyType == DirtyType.Attached)) {
+					while ((spatial != null) && (spatial.getParent() != Landmarks.this)) {
+						spatial = spatial.getParent();
+					}
+					if (spatial instanceof Landmark) {
+						landmarkMoved((Landmark) spatial);
+					}
+				}
+				return (false);
+			}
+
+			@Override
+			public boolean spatialClean(Spatial spatial, DirtyType dirtyType) {
+				return (false);
+			}
+		});
+
 		// create landmark objects
 		for (int i = 0; i < landmarkList.size(); ++i) {
 			LandmarkState state = landmarkList.get(i);
@@ -71,12 +109,40 @@ public class Landmarks extends GroupNode {
 	 * @param quadTree
 	 */
 	public void landscapeChanged(final QuadTree quadTree) {
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			final Spatial child = getChild(i);
-			if (child instanceof Landmark) {
-				((Landmark) child).updateElevation(quadTree);
+		Vector3[] corner = quadTree.getCornerPoints();
+		if (corner == null) {
+			return;
+		}
+		ArrayList<Landmark> list = new ArrayList<Landmark>();
+		synchronized (this) {
+			updateIndex();
+			index.query(corner[0].getX(), corner[0].getY(), corner[2].getX(), corner[2].getY(), list);
+		}
+		for (int i = 0; i < list.size(); ++i) {
+			Landmark landmark = list.get(i);
+			if (((Spatial) landmark).getParent() == this) {
+				landmark.updateElevation(quadTree);
+			}
+		}
+	}
+
+	private synchronized void landmarkMoved(Landmark landmark) {
+		movedSet.add(landmark);
+	}
+
+	private synchronized void landmarkRemoved(Landmark landmark) {
+		movedSet.remove(landmark);
+		index.remove(landmark);
+	}
+
+	private void updateIndex() {
+		for (Landmark landmark : movedSet) {
+			if (((Spatial) landmark).getParent() == this) {
+				ReadOnlyVector3 loc = ((Marker) landmark).getLocation();
+				index.put(landmark, loc.getX(), loc.getY(), loc.getX(), loc.getY());
 			}
 		}
+		movedSet.clear();
 	}
 
 	/**
@@ -730,12 +730,20 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 			String[] value = new String[column.length];
 			Landscape landscape = Landscape.getInstance();
 			Vector3 coord = new Vector3();
+			// get the elevations of all the way points at once
+			double[] xy = new double[2 * n];
+			for (int i = 0; i < n; ++i) {
+				ReadOnlyVector3 trans = pointSet.getChild(i).getTranslation();
+				xy[2 * i] = trans.getX();
+				xy[2 * i + 1] = trans.getY();
+			}
+			float[] elev = new float[n];
+			landscape.getElevations(xy, elev);
 			for (int i = 0; i < n; ++i) {
 				Waypoint wp = (Waypoint) pointSet.getChild(i);
 				coord.set(wp.getTranslation());
-				double elev = landscape.getElevationAtHighestLevel(coord.getX(), coord.getY());
 				landscape.localToWorldCoordinate(coord);
-				coord.setZ(elev);
+				coord.setZ(elev[i]);
 				value[0] = Integer.toString(i);
 				value[1] = wp.getName();
 				value[2] = Double.toString(coord.getX());
@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.scene.tool;
 
 import gov.nasa.arc.dert.icon.Icons;
+import gov.nasa.arc.dert.landscape.ContourEngine;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.scenegraph.BillboardMarker;
 import gov.nasa.arc.dert.scenegraph.HiddenLine;
@@ -710,11 +711,41 @@ public class Plane extends Node implements Tool, ViewDependent {
 	 * @return
 	 */
 	public int[] getElevationDifference(int imageSize, float[][] diff, float[] minMaxElev) {
+		Vector3[] vertex = new Vector3[5];
+		double sampleSize = getRegion(imageSize, vertex);
+
+		// get elevation differences
+		double[] planeEqCopy = new double[planeEq.length];
+		System.arraycopy(planeEq, 0, planeEqCopy, 0, planeEq.length);
+		int[] result = Landscape.getInstance().getSampledDifferenceOfRegion(vertex, lowerBound, upperBound, planeEqCopy, sampleSize, diff, minMaxElev);
+		return (result);
+	}
+
+	/**
+	 * Give the region of the plane to a contour engine. The contours are
+	 * extracted at the same resolution as the elevation difference map.
+	 * 
+	 * @param engine
+	 * @param imageSize
+	 * @return false if the calling thread was interrupted
+	 */
+	public boolean setContourRegion(ContourEngine engine, int imageSize) {
+		Vector3[] vertex = new Vector3[5];
+		double sampleSize = getRegion(imageSize, vertex);
+		double[] planeEqCopy = new double[planeEq.length];
+		System.arraycopy(planeEq, 0, planeEqCopy, 0, planeEq.length);
+		return (engine.setRegion(vertex, new Vector3(lowerBound), new Vector3(upperBound), planeEqCopy, sampleSize));
+	}
+
+	/**
+	 * Get the polygon of the plane, update the bounds, and find the sample
+	 * size for an image of the region.
+	 */
+	private double getRegion(int imageSize, Vector3[] vertex) {
 		updatePlane();
 		updatePolygon();
 		
 		// get plane vertices
-		Vector3[] vertex = new Vector3[5];
 		vertex[0] = new Vector3(p0Loc);
 		vertex[1] = new Vector3(p1Loc);
 		vertex[2] = new Vector3(p2Loc);
@@ -738,13 +769,7 @@ public class Plane extends Node implements Tool, ViewDependent {
 		double sampleLength = (upperBound.getY() - lowerBound.getY()) / imageSize;
 		sampleWidth = Math.max(sampleWidth, Landscape.getInstance().getPixelWidth());
 		sampleLength = Math.max(sampleLength, Landscape.getInstance().getPixelLength());
-		double sampleSize = Math.max(sampleWidth, sampleLength);
-
-		// get elevation differences
-		double[] planeEqCopy = new double[planeEq.length];
-		System.arraycopy(planeEq, 0, planeEqCopy, 0, planeEq.length);
-		int[] result = Landscape.getInstance().getSampledDifferenceOfRegion(vertex, lowerBound, upperBound, planeEqCopy, sampleSize, diff, minMaxElev);
-		return (result);
+		return (Math.max(sampleWidth, sampleLength));
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.scene.tool.fieldcamera;
 
 import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.HiddenLine;
 import gov.nasa.arc.dert.util.MathUtil;
@@ -156,6 +157,8 @@ public class SyntheticCameraNode extends Node {
 	public void setCrosshairVisible(boolean visible) {
 		crosshairVisible = visible;
 		changed.set(true);
+		// the cross hair is drawn by the field camera view, not the scene graph
+		SceneFramework.requestFrame();
 	}
 	
 	public boolean isCrosshairVisible() {
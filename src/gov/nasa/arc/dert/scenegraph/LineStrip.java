@@ -47,14 +47,17 @@ public class LineStrip extends Line {
 	public synchronized void updateElevation(QuadTree quadTree) {
 		FloatBufferData vertexData = _meshData.getVertexCoords();
 		FloatBuffer vertex = vertexData.getBuffer();
-		int n = vertex.limit();
-		Landscape landscape = Landscape.getInstance();
-		for (int i = 0; i < n; i += 3) {
-			float x = vertex.get(i);
-			float y = vertex.get(i + 1);
-			double z = landscape.getZ(x, y) + 0.1;
-			if (!Double.isNaN(z)) {
-				vertex.put(i + 2, (float) z);
+		int n = vertex.limit() / 3;
+		double[] xy = new double[n * 2];
+		for (int i = 0; i < n; ++i) {
+			xy[i * 2] = vertex.get(i * 3);
+			xy[i * 2 + 1] = vertex.get(i * 3 + 1);
+		}
+		float[] z = new float[n];
+		Landscape.getInstance().getZ(xy, z);
+		for (int i = 0; i < n; ++i) {
+			if (!Float.isNaN(z[i])) {
+				vertex.put(i * 3 + 2, z[i] + 0.1f);
 			}
 		}
 		
@@ -354,6 +354,35 @@ public class ConfigurationManager {
 		}
 	}
 
+	/**
+	 * Set the current Configuration without opening any views. Used for batch
+	 * rendering. The world is created and initialized on the calling thread.
+	 * 
+	 * @param config
+	 * @return the world or null if it could not be created
+	 */
+	public World setBatchConfiguration(Configuration config) {
+		String landscapePath = config.getLandscapePath();
+		if (!setConfigHome(landscapePath)) {
+			Console.println("Unable to set the current configuration to "+config);
+			return (null);
+		}
+		currentConfig = config;
+		ColorMap.setConfigLocation(currentConfigHome);
+		FieldCameraInfoManager.getInstance().setConfigLocation(currentConfigHome);
+
+		// create the world
+		World world = currentConfig.worldState.createWorld(landscapePath, currentConfig);
+		if (world == null) {
+			Console.println("Unable to create world for " + currentConfig);
+			return (null);
+		}
+		world.initialize();
+		currentConfig.worldState.initWorld();
+		currentConfig.initializeActors();
+		return (world);
+	}
+
 	/**
 	 * Get the current Configuration
 	 * 
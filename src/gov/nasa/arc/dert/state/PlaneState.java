@@ -49,6 +49,9 @@ public class PlaneState extends ToolState {
 	public double minimum = Double.NaN;
 	public double maximum = Double.NaN;
 
+	// Interval between contour lines, NaN for automatic
+	public double contourInterval = Double.NaN;
+
 	// The display panel for the elevation difference map
 	protected transient ContourScenePanel panel;
 
@@ -98,6 +101,7 @@ public class PlaneState extends ToolState {
 		colorMapName = StateUtil.getString(map, "ColorMapName", Plane.defaultColorMap);
 		minimum = StateUtil.getDouble(map, "ColorMapMinimum", minimum);
 		maximum = StateUtil.getDouble(map, "ColorMapMaximum", maximum);
+		contourInterval = StateUtil.getDouble(map, "ContourInterval", contourInterval);
 		zOff0 = StateUtil.getDouble(map, "ZOffset0", 0);
 		zOff1 = StateUtil.getDouble(map, "ZOffset1", 0);
 		zOff2 = StateUtil.getDouble(map, "ZOffset2", 0);
@@ -120,6 +124,8 @@ public class PlaneState extends ToolState {
 			return(false);
 		if (this.maximum != that.maximum)
 			return(false);
+		if (Double.compare(this.contourInterval, that.contourInterval) != 0)
+			return(false);
 		if (this.zOff0 != that.zOff0)
 			return(false);
 		if (this.zOff1 != that.zOff1)
@@ -158,6 +164,7 @@ public class PlaneState extends ToolState {
 			gradient = colorMap.isGradient();
 			minimum = colorMap.getMinimum();
 			maximum = colorMap.getMaximum();
+			contourInterval = panel.getContourInterval();
 		}
 		
 		StateUtil.putVector3(map, "P0", p0);
@@ -169,6 +176,7 @@ public class PlaneState extends ToolState {
 		map.put("ColorMapName", colorMapName);
 		map.put("ColorMapMinimum", new Double(minimum));
 		map.put("ColorMapMaximum", new Double(maximum));
+		map.put("ContourInterval", new Double(contourInterval));
 		map.put("ZOffset0", new Double(zOff0));
 		map.put("ZOffset1", new Double(zOff1));
 		map.put("ZOffset2", new Double(zOff2));
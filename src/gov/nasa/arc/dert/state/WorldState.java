@@ -1,6 +1,6 @@
 package gov.nasa.arc.dert.state;
 
-import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.io.PackedTileSource;
 import gov.nasa.arc.dert.io.TileSource;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.lighting.Lighting;
@@ -61,7 +61,7 @@ public class WorldState extends State {
 		viewData.setVisible(true);
 		lighting = new Lighting();
 		layerManager = new LayerManager();
-		tileSource = new FileSystemTileSource();
+		tileSource = new PackedTileSource();
 		username = "dert";
 		password = "dert";
 	}
@@ -76,7 +76,7 @@ public class WorldState extends State {
 		lighting = new Lighting((HashMap<String,Object>)map.get("Lighting"));
 		layerManager = new LayerManager((HashMap<String,Object>)map.get("LayerManager"));
 		hiddenDashed = StateUtil.getBoolean(map, "HiddenDashed", World.defaultHiddenDashed);
-		tileSource = new FileSystemTileSource();
+		tileSource = new PackedTileSource();
 		username = "dert";
 		password = "dert";
 	}
@@ -0,0 +1,338 @@
+package gov.nasa.arc.dert.terrain;
+
+import java.nio.FloatBuffer;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * A pyramid of the minimum and maximum elevations of a QuadTreeMesh (a maximum
+ * mipmap). Level 0 is the mesh cells, each level above combines 2x2 blocks of
+ * the level below until a single block covers the mesh. A ray is intersected
+ * with the mesh by descending the pyramid through the blocks whose bounds it
+ * passes, so only the triangles of the cells under the ray are tested.
+ *
+ * Cells with a missing vertex are not drawn and are never hit.
+ *
+ */
+public class HeightBounds {
+
+	/**
+	 * The nearest intersection of a ray with the landscape.
+	 */
+	public static class Hit {
+
+		// Distance along the ray, only nearer intersections are accepted
+		public double t = Double.MAX_VALUE;
+
+		// QuadTree and mesh that was hit
+		public QuadTree quadTree;
+		public QuadTreeMesh mesh;
+
+		// Cell that was hit
+		public int column, row;
+
+		// Vertices of the triangle that was hit
+		public Vector3[] vertex = { new Vector3(), new Vector3(), new Vector3() };
+	}
+
+	// Mesh dimensions in cells
+	private int tileWidth, tileLength, tWidth;
+
+	// Cell dimensions
+	private double pixelWidth, pixelLength;
+
+	// Vertex and color buffers of the mesh
+	private FloatBuffer vertexBuffer, colorBuffer;
+
+	// Minimum and maximum elevation of each block, level 0 is computed from
+	// the vertices
+	private float[][] minZ, maxZ;
+
+	// Number of blocks across and down at each level
+	private int[] columns, rows;
+
+	// Allowance for rounding of the vertex coordinates
+	private double epsilon;
+
+	/**
+	 * Constructor
+	 *
+	 * @param mesh
+	 */
+	public HeightBounds(QuadTreeMesh mesh) {
+		tileWidth = mesh.getTileWidth();
+		tileLength = mesh.getTileLength();
+		tWidth = tileWidth + 1;
+		pixelWidth = mesh.getPixelWidth();
+		pixelLength = mesh.getPixelLength();
+		epsilon = Math.min(pixelWidth, pixelLength) * 0.001;
+		vertexBuffer = mesh.getMeshData().getVertexBuffer();
+		colorBuffer = mesh.getMeshData().getColorBuffer();
+
+		int levels = 1;
+		int w = tileWidth;
+		int l = tileLength;
+		while ((w > 1) || (l > 1)) {
+			w = (w + 1) / 2;
+			l = (l + 1) / 2;
+			levels++;
+		}
+		columns = new int[levels];
+		rows = new int[levels];
+		minZ = new float[levels][];
+		maxZ = new float[levels][];
+		columns[0] = tileWidth;
+		rows[0] = tileLength;
+		float[] zRange = new float[2];
+		for (int k = 1; k < levels; ++k) {
+			columns[k] = (columns[k - 1] + 1) / 2;
+			rows[k] = (rows[k - 1] + 1) / 2;
+			minZ[k] = new float[columns[k] * rows[k]];
+			maxZ[k] = new float[columns[k] * rows[k]];
+			for (int j = 0; j < rows[k]; ++j) {
+				for (int i = 0; i < columns[k]; ++i) {
+					float zMin = Float.MAX_VALUE;
+					float zMax = -Float.MAX_VALUE;
+					for (int jj = 2 * j; jj < Math.min(2 * j + 2, rows[k - 1]); ++jj) {
+						for (int ii = 2 * i; ii < Math.min(2 * i + 2, columns[k - 1]); ++ii) {
+							if (k == 1) {
+								getCellRange(ii, jj, zRange);
+							} else {
+								zRange[0] = minZ[k - 1][jj * columns[k - 1] + ii];
+								zRange[1] = maxZ[k - 1][jj * columns[k - 1] + ii];
+							}
+							zMin = Math.min(zMin, zRange[0]);
+							zMax = Math.max(zMax, zRange[1]);
+						}
+					}
+					minZ[k][j * columns[k] + i] = zMin;
+					maxZ[k][j * columns[k] + i] = zMax;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the minimum elevation of the mesh
+	 *
+	 * @return Float.MAX_VALUE if all cells are missing
+	 */
+	public float getMinimumElevation() {
+		float[] zRange = new float[2];
+		getBlockRange(minZ.length - 1, 0, 0, zRange);
+		return (zRange[0]);
+	}
+
+	/**
+	 * Get the maximum elevation of the mesh
+	 *
+	 * @return -Float.MAX_VALUE if all cells are missing
+	 */
+	public float getMaximumElevation() {
+		float[] zRange = new float[2];
+		getBlockRange(minZ.length - 1, 0, 0, zRange);
+		return (zRange[1]);
+	}
+
+	/**
+	 * Intersect a ray with the mesh.
+	 *
+	 * @param ray
+	 *            origin and direction in the mesh frame (x, y, z, dx, dy, dz)
+	 * @param hit
+	 *            updated if an intersection is found that is nearer than
+	 *            hit.t
+	 * @return true if a nearer intersection was found
+	 */
+	public boolean intersect(double[] ray, Hit hit) {
+		return (intersect(minZ.length - 1, 0, 0, ray, hit));
+	}
+
+	private boolean intersect(int level, int i, int j, double[] ray, Hit hit) {
+		int size = 1 << level;
+		int c0 = i * size;
+		int c1 = Math.min(c0 + size, tileWidth);
+		int r0 = j * size;
+		int r1 = Math.min(r0 + size, tileLength);
+		float[] zRange = new float[2];
+		getBlockRange(level, i, j, zRange);
+		if (zRange[0] > zRange[1]) {
+			return (false);
+		}
+		double x0 = -pixelWidth * tileWidth / 2;
+		double y0 = pixelLength * tileLength / 2;
+		double t = clip(ray, x0 + c0 * pixelWidth - epsilon, x0 + c1 * pixelWidth + epsilon, y0 - r1 * pixelLength
+			- epsilon, y0 - r0 * pixelLength + epsilon, zRange[0] - epsilon, zRange[1] + epsilon, hit.t);
+		if (Double.isNaN(t)) {
+			return (false);
+		}
+		if (level == 0) {
+			return (intersectCell(i, j, ray, hit));
+		}
+
+		// visit the child nearest the ray origin first, a later child is
+		// skipped if the hit is nearer than its bounds
+		int first = ((ray[3] >= 0) ? 0 : 1) | ((ray[4] <= 0) ? 0 : 2);
+		boolean found = false;
+		for (int n = 0; n < 4; ++n) {
+			int q = first ^ n;
+			int ci = 2 * i + (q & 1);
+			int cj = 2 * j + (q >> 1);
+			if ((ci < columns[level - 1]) && (cj < rows[level - 1])) {
+				found |= intersect(level - 1, ci, cj, ray, hit);
+			}
+		}
+		return (found);
+	}
+
+	/**
+	 * Intersect the ray with the 2 triangles of a cell. The diagonal runs from
+	 * the lower left to the upper right, the same as the triangle strips of
+	 * the mesh.
+	 */
+	private boolean intersectCell(int c, int r, double[] ray, Hit hit) {
+		if (isMissing(c, r) || isMissing(c + 1, r) || isMissing(c, r + 1) || isMissing(c + 1, r + 1)) {
+			return (false);
+		}
+		int upperLeft = (r * tWidth + c) * 3;
+		int upperRight = upperLeft + 3;
+		int lowerLeft = upperLeft + tWidth * 3;
+		int lowerRight = lowerLeft + 3;
+		double t0 = intersectTriangle(ray, upperLeft, lowerLeft, upperRight);
+		double t1 = intersectTriangle(ray, lowerLeft, lowerRight, upperRight);
+		boolean lower = t1 < t0;
+		double t = Math.min(t0, t1);
+		if (t >= hit.t) {
+			return (false);
+		}
+		hit.t = t;
+		hit.column = c;
+		hit.row = r;
+		getVertex(lower ? lowerLeft : upperLeft, hit.vertex[0]);
+		getVertex(lower ? lowerRight : lowerLeft, hit.vertex[1]);
+		getVertex(upperRight, hit.vertex[2]);
+		return (true);
+	}
+
+	/**
+	 * Moller-Trumbore ray triangle intersection, both sides.
+	 *
+	 * @return the distance along the ray, Double.MAX_VALUE if there is no
+	 *         intersection
+	 */
+	private double intersectTriangle(double[] ray, int i0, int i1, int i2) {
+		double v0x = vertexBuffer.get(i0);
+		double v0y = vertexBuffer.get(i0 + 1);
+		double v0z = vertexBuffer.get(i0 + 2);
+		double e1x = vertexBuffer.get(i1) - v0x;
+		double e1y = vertexBuffer.get(i1 + 1) - v0y;
+		double e1z = vertexBuffer.get(i1 + 2) - v0z;
+		double e2x = vertexBuffer.get(i2) - v0x;
+		double e2y = vertexBuffer.get(i2 + 1) - v0y;
+		double e2z = vertexBuffer.get(i2 + 2) - v0z;
+		double px = ray[4] * e2z - ray[5] * e2y;
+		double py = ray[5] * e2x - ray[3] * e2z;
+		double pz = ray[3] * e2y - ray[4] * e2x;
+		double det = e1x * px + e1y * py + e1z * pz;
+		if (det == 0) {
+			return (Double.MAX_VALUE);
+		}
+		double invDet = 1 / det;
+		double sx = ray[0] - v0x;
+		double sy = ray[1] - v0y;
+		double sz = ray[2] - v0z;
+		double u = (sx * px + sy * py + sz * pz) * invDet;
+		if ((u < 0) || (u > 1)) {
+			return (Double.MAX_VALUE);
+		}
+		double qx = sy * e1z - sz * e1y;
+		double qy = sz * e1x - sx * e1z;
+		double qz = sx * e1y - sy * e1x;
+		double v = (ray[3] * qx + ray[4] * qy + ray[5] * qz) * invDet;
+		if ((v < 0) || (u + v > 1)) {
+			return (Double.MAX_VALUE);
+		}
+		double t = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+		if (t < 0) {
+			return (Double.MAX_VALUE);
+		}
+		return (t);
+	}
+
+	private void getBlockRange(int level, int i, int j, float[] zRange) {
+		if (level == 0) {
+			getCellRange(i, j, zRange);
+		} else {
+			zRange[0] = minZ[level][j * columns[level] + i];
+			zRange[1] = maxZ[level][j * columns[level] + i];
+		}
+	}
+
+	private void getCellRange(int c, int r, float[] zRange) {
+		if (isMissing(c, r) || isMissing(c + 1, r) || isMissing(c, r + 1) || isMissing(c + 1, r + 1)) {
+			zRange[0] = Float.MAX_VALUE;
+			zRange[1] = -Float.MAX_VALUE;
+			return;
+		}
+		int i = (r * tWidth + c) * 3 + 2;
+		float z0 = vertexBuffer.get(i);
+		float z1 = vertexBuffer.get(i + 3);
+		float z2 = vertexBuffer.get(i + tWidth * 3);
+		float z3 = vertexBuffer.get(i + tWidth * 3 + 3);
+		zRange[0] = Math.min(Math.min(z0, z1), Math.min(z2, z3));
+		zRange[1] = Math.max(Math.max(z0, z1), Math.max(z2, z3));
+	}
+
+	private boolean isMissing(int c, int r) {
+		if (colorBuffer == null) {
+			return (false);
+		}
+		return (colorBuffer.get((r * tWidth + c) * 4 + 3) == 0);
+	}
+
+	private void getVertex(int i, Vector3 store) {
+		store.set(vertexBuffer.get(i), vertexBuffer.get(i + 1), vertexBuffer.get(i + 2));
+	}
+
+	/**
+	 * Clip a ray to a box.
+	 *
+	 * @param ray
+	 *            origin and direction (x, y, z, dx, dy, dz)
+	 * @param tMax
+	 *            the farthest distance along the ray
+	 * @return the distance along the ray where it enters the box, NaN if it
+	 *         misses the box before tMax
+	 */
+	public static double clip(double[] ray, double xMin, double xMax, double yMin, double yMax, double zMin,
+		double zMax, double tMax) {
+		double tNear = 0;
+		double tFar = tMax;
+		double[] lo = { xMin, yMin, zMin };
+		double[] hi = { xMax, yMax, zMax };
+		for (int a = 0; a < 3; ++a) {
+			double o = ray[a];
+			double d = ray[a + 3];
+			if (d == 0) {
+				if ((o < lo[a]) || (o > hi[a])) {
+					return (Double.NaN);
+				}
+			} else {
+				double t0 = (lo[a] - o) / d;
+				double t1 = (hi[a] - o) / d;
+				if (t0 > t1) {
+					double tmp = t0;
+					t0 = t1;
+					t1 = tmp;
+				}
+				tNear = Math.max(tNear, t0);
+				tFar = Math.min(tFar, t1);
+				if (tNear > tFar) {
+					return (Double.NaN);
+				}
+			}
+		}
+		return (tNear);
+	}
+
+}
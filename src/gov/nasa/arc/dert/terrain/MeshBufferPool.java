@@ -0,0 +1,191 @@
+package gov.nasa.arc.dert.terrain;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Pool of direct buffers for QuadTree meshes. All tiles of a landscape have the
+ * same dimensions, so the vertex, normal, color, and texture coordinate
+ * buffers of a disposed tile are kept in a free list for its size and handed
+ * to the next tile that is loaded instead of allocating new direct memory.
+ *
+ * The triangle strip indices only depend on the tile dimensions and are shared
+ * by all tiles. Each mesh gets a duplicate of the shared buffer so it has its
+ * own position and limit.
+ *
+ * All methods are safe to call from the loader threads.
+ *
+ */
+public class MeshBufferPool {
+
+	// The maximum amount of memory kept in the free lists (in bytes)
+	public static long MAX_POOL_MEMORY = 64000000l;
+
+	private static MeshBufferPool INSTANCE;
+
+	// Free buffers, keyed by capacity
+	private ConcurrentHashMap<Integer, ConcurrentLinkedQueue<FloatBuffer>> freeMap;
+
+	// Shared strip indices, keyed by tile width and length
+	private ConcurrentHashMap<Long, IntBuffer> indexMap;
+
+	// Memory in the free lists (in bytes)
+	private AtomicLong poolSize;
+
+	// Statistics
+	private AtomicLong allocationCount, reuseCount;
+
+	public static synchronized MeshBufferPool getInstance() {
+		if (INSTANCE == null)
+			INSTANCE = new MeshBufferPool();
+		return (INSTANCE);
+	}
+
+	/**
+	 * Constructor
+	 */
+	protected MeshBufferPool() {
+		freeMap = new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<FloatBuffer>>();
+		indexMap = new ConcurrentHashMap<Long, IntBuffer>();
+		poolSize = new AtomicLong();
+		allocationCount = new AtomicLong();
+		reuseCount = new AtomicLong();
+	}
+
+	/**
+	 * Get a float buffer. The contents are undefined, position is 0 and limit
+	 * is the capacity.
+	 *
+	 * @param size
+	 *            the number of floats
+	 * @return
+	 */
+	public FloatBuffer getFloatBuffer(int size) {
+		ConcurrentLinkedQueue<FloatBuffer> queue = freeMap.get(size);
+		if (queue != null) {
+			FloatBuffer buffer = queue.poll();
+			if (buffer != null) {
+				poolSize.addAndGet(-size * 4l);
+				reuseCount.incrementAndGet();
+				buffer.clear();
+				return (buffer);
+			}
+		}
+		allocationCount.incrementAndGet();
+		return (BufferUtils.createFloatBuffer(size));
+	}
+
+	/**
+	 * Return a float buffer to the pool. The buffer must not be used after
+	 * this.
+	 *
+	 * @param buffer
+	 */
+	public void release(FloatBuffer buffer) {
+		if ((buffer == null) || !buffer.isDirect()) {
+			return;
+		}
+		int size = buffer.capacity();
+		if (poolSize.addAndGet(size * 4l) > MAX_POOL_MEMORY) {
+			// pool is full, let the buffer be collected
+			poolSize.addAndGet(-size * 4l);
+			return;
+		}
+		ConcurrentLinkedQueue<FloatBuffer> queue = freeMap.get(size);
+		if (queue == null) {
+			queue = new ConcurrentLinkedQueue<FloatBuffer>();
+			ConcurrentLinkedQueue<FloatBuffer> old = freeMap.putIfAbsent(size, queue);
+			if (old != null) {
+				queue = old;
+			}
+		}
+		queue.offer(buffer);
+	}
+
+	/**
+	 * Get the triangle strip indices for a tile, one strip per row.
+	 *
+	 * @param tileWidth
+	 * @param tileLength
+	 * @return a duplicate of the shared indices, the contents must not be
+	 *         changed
+	 */
+	public IntBuffer getStripIndices(int tileWidth, int tileLength) {
+		long key = ((long) tileWidth << 32) | tileLength;
+		IntBuffer indices = indexMap.get(key);
+		if (indices == null) {
+			int tWidth = tileWidth + 1;
+			indices = BufferUtils.createIntBuffer(tileLength * tWidth * 2);
+			int i = 0;
+			for (int r = 0; r < tileLength; ++r) {
+				for (int c = 0; c < tWidth; ++c) {
+					indices.put(i);
+					indices.put(i + tWidth);
+					i++;
+				}
+			}
+			indices.flip();
+			IntBuffer old = indexMap.putIfAbsent(key, indices);
+			if (old != null) {
+				indices = old;
+			}
+		}
+		return (indices.duplicate());
+	}
+
+	/**
+	 * Get the lengths of the strips returned by getStripIndices.
+	 *
+	 * @param tileWidth
+	 * @param tileLength
+	 * @return
+	 */
+	public int[] getStripLengths(int tileWidth, int tileLength) {
+		int[] indexLengths = new int[tileLength];
+		for (int r = 0; r < tileLength; ++r) {
+			indexLengths[r] = (tileWidth + 1) * 2;
+		}
+		return (indexLengths);
+	}
+
+	/**
+	 * Empty the free lists.
+	 */
+	public void clear() {
+		freeMap.clear();
+		poolSize.set(0);
+	}
+
+	/**
+	 * Get the amount of memory in the free lists (in bytes).
+	 *
+	 * @return
+	 */
+	public long getPoolSize() {
+		return (poolSize.get());
+	}
+
+	/**
+	 * Get the number of buffers that were newly allocated.
+	 *
+	 * @return
+	 */
+	public long getAllocationCount() {
+		return (allocationCount.get());
+	}
+
+	/**
+	 * Get the number of buffers that were taken from the free lists.
+	 *
+	 * @return
+	 */
+	public long getReuseCount() {
+		return (reuseCount.get());
+	}
+
+}
@@ -31,14 +31,17 @@ public class QuadTree extends Node {
 	}
 
 	// This quad tree is in use
-	protected boolean inUse;
+	protected volatile boolean inUse;
 
-	// Last time this quad tree was pulled from the cache
-	protected long timestamp;
+	// Cache access count when this quad tree was last pulled from the cache
+	protected volatile long timestamp;
 
 	// The mesh that will be rendered
 	protected QuadTreeMesh mesh;
 
+	// The packed tile key (see TileKey)
+	protected long key;
+
 	// The level in the pyramid and the quadrant in the parent quad tree
 	protected int level, quadrant;
 
@@ -48,6 +51,9 @@ public class QuadTree extends Node {
 	// The next level of quad trees
 	protected QuadTree[] child;
 
+	// Children have been requested but are not all loaded
+	private boolean splitPending;
+
 	// Sides of the quad tree that need stitching
 	private boolean leftDirty, rightDirty, bottomDirty, topDirty;
 
@@ -80,7 +86,8 @@ public class QuadTree extends Node {
 	/**
 	 * Constructor
 	 * 
-	 * @param name
+	 * @param key
+	 *            the tile key, the name is the tile path
 	 * @param p
 	 *            Translation point relative to the parent quad tree
 	 * @param pixelWidth
@@ -90,8 +97,9 @@ public class QuadTree extends Node {
 	 * @param level
 	 * @param quadrant
 	 */
-	public QuadTree(String name, ReadOnlyVector3 p, int level, int quadrant, double pixelWidth, double pixelLength, int sizeInBytes) {
-		super(name);
+	public QuadTree(long key, ReadOnlyVector3 p, int level, int quadrant, double pixelWidth, double pixelLength, int sizeInBytes) {
+		super(TileKey.toString(key));
+		this.key = key;
 		camLoc = new Vector3();
 		lookAt = new Vector3();
 		closest = new Vector3();
@@ -107,6 +115,15 @@ public class QuadTree extends Node {
 		setTranslation(p);
 	}
 
+	/**
+	 * Get the packed tile key.
+	 * 
+	 * @return
+	 */
+	public long getKey() {
+		return (key);
+	}
+
 	/**
 	 * Create the test points for this quad tree. They will include the 4
 	 * corners and p. The coordinates are relative to the center of the
@@ -337,16 +354,18 @@ public class QuadTree extends Node {
 		}
 	}
 
-	private void split() {
+	private boolean split(double cellRatio, double distance) {
 		// we are not at the highest resolution
 		if (!highestLevel) {
 			final QuadTree[] qt = new QuadTree[4];
 			QuadTreeFactory factory = Landscape.getInstance().getFactory();
 			// get the children
-			int count = factory.loadQuadTrees(getName(), this, qt, false);
+			int count = factory.loadQuadTrees(key, this, qt, false, cellRatio, distance);
+			splitPending = (count >= 0) && (count < 4);
 			// now at the highest resolution
 			if (count < 0) {
 				highestLevel = true;
+				return (false);
 			} else if (count == 4) {
 				setChildren(qt);
 				for (int i = 0; i < 4; ++i) {
@@ -357,7 +376,9 @@ public class QuadTree extends Node {
 
 				updateGeometricState(0, true);
 			}
+			return (true);
 		}
+		return (false);
 	}
 
 	private synchronized void setChildren(QuadTree[] qt) {
@@ -459,6 +480,8 @@ public class QuadTree extends Node {
 
 	private void merge() {
 		clearChildren();
+		// loads queued for the discarded descendants are no longer needed
+		Landscape.getInstance().getFactory().cancel(key);
 		World.getInstance().getMarble().landscapeChanged(this);
 		World.getInstance().getLandmarks().landscapeChanged(this);
 		World.getInstance().getFeatureSets().landscapeChanged(this);
@@ -477,32 +500,12 @@ public class QuadTree extends Node {
 		
 		boolean isCulled = camera.isCulled(this);
 
-		Vector3[] tPoint = getCornerPoints();
-
-		if (tPoint == null) {
-			return(false);
-		}
-
-		// find test point or camera lookAt point that is closest to the camera
-		double minDist = Double.MAX_VALUE;
-		camLoc.set(camera.getLocation());
-		lookAt.set(camera.getLookAt());
-		if (contains(lookAt.getX(), lookAt.getY())) {
-			minDist = camLoc.distance(lookAt);
-			closest.set(lookAt);
-		}
-		if (camLoc.distance(centerPoint) < minDist)
-			closest.set(centerPoint);
-
-		// get the pixel size at the closest point
-		double pixSize = camera.getPixelSizeAt(closest, true);
+		double pixSize = getCellSize(camera);
 		if (pixSize <= 0)
 			return(false);
-
-		// Mesh cells should be larger than a single pixel.
-		pixSize *= CELL_SIZE;
 		
 		boolean changed = false;
+		double distance = camLoc.distance(closest);
 
 		// greater than the pixel size of this tile, we can go to a coarser
 		// resolution by merging
@@ -512,6 +515,11 @@ public class QuadTree extends Node {
 				merge();
 				changed = true;
 			}
+			// cancel a split that has not completed
+			else if (splitPending) {
+				Landscape.getInstance().getFactory().cancel(key);
+				splitPending = false;
+			}
 		}
 
 		// less than the pixel size of this tile, we need to go to a higher
@@ -519,8 +527,7 @@ public class QuadTree extends Node {
 		else if (pixSize <= pixelWidth / 2) {
 			// only split if we haven't already
 			if (child == null) {
-				split();
-				changed = true;
+				changed = split(pixSize / pixelWidth, distance);
 			} else {
 				for (int i = 0; i < child.length; ++i) {
 					changed |= child[i].update(camera);
@@ -537,6 +544,76 @@ public class QuadTree extends Node {
 		return(changed);
 	}
 
+	/**
+	 * Start loading the QuadTrees that would be needed if the camera were
+	 * moved to the given position. Nothing in the scene is changed.
+	 * 
+	 * @param camera
+	 *            the predicted camera
+	 * @param factory
+	 * @return false if the prefetch queue is full
+	 */
+	public boolean prefetch(final BasicCamera camera, QuadTreeFactory factory) {
+		if (!inUse || highestLevel || (mesh == null)) {
+			return (true);
+		}
+		if (camera.isCulled(this)) {
+			return (true);
+		}
+		double pixSize = getCellSize(camera);
+		if ((pixSize <= 0) || (pixSize >= pixelWidth)) {
+			return (true);
+		}
+		QuadTree[] qt = child;
+		if (qt == null) {
+			if (pixSize <= pixelWidth / 2) {
+				return (factory.prefetchQuadTrees(key, this, pixSize / pixelWidth,
+					camLoc.distance(closest)));
+			}
+			return (true);
+		}
+		for (int i = 0; i < qt.length; ++i) {
+			if (!qt[i].prefetch(camera, factory)) {
+				return (false);
+			}
+		}
+		return (true);
+	}
+
+	/**
+	 * Get the size of a mesh cell that would be needed at the point in this
+	 * QuadTree closest to the camera.
+	 * 
+	 * @param camera
+	 * @return the cell size or -1 if the point is clipped
+	 */
+	private double getCellSize(final BasicCamera camera) {
+		Vector3[] tPoint = getCornerPoints();
+
+		if (tPoint == null) {
+			return(-1);
+		}
+
+		// find test point or camera lookAt point that is closest to the camera
+		double minDist = Double.MAX_VALUE;
+		camLoc.set(camera.getLocation());
+		lookAt.set(camera.getLookAt());
+		if (contains(lookAt.getX(), lookAt.getY())) {
+			minDist = camLoc.distance(lookAt);
+			closest.set(lookAt);
+		}
+		if (camLoc.distance(centerPoint) < minDist)
+			closest.set(centerPoint);
+
+		// get the pixel size at the closest point
+		double pixSize = camera.getPixelSizeAt(closest, true);
+		if (pixSize <= 0)
+			return(-1);
+
+		// Mesh cells should be larger than a single pixel.
+		return(pixSize * CELL_SIZE);
+	}
+
 	private final QuadTree getNeighbor(Side side) {
 		switch (side) {
 		case Left:
@@ -667,11 +744,76 @@ public class QuadTree extends Node {
 				}
 			}
 		} else {
-			return (mesh.getElevationBilinear(x - cornerPoint[0].getX(), y - cornerPoint[0].getY()));
+			QuadTreeMesh mesh = this.mesh;
+			if ((mesh == null) || !mesh.pin()) {
+				return (Float.NaN);
+			}
+			try {
+				return (mesh.getElevationBilinear(x - cornerPoint[0].getX(), y - cornerPoint[0].getY()));
+			} finally {
+				mesh.unpin();
+			}
 		}
 		return (Float.NaN);
 	}
 
+	/**
+	 * Get the elevations at a group of coordinates using bilinear
+	 * interpolation. The points are divided among the children, so each
+	 * QuadTree is only visited once.
+	 *
+	 * @param xy
+	 *            the X,Y coordinates
+	 * @param index
+	 *            indices of the points in xy, reordered by this method
+	 * @param start
+	 *            first entry of index to use
+	 * @param end
+	 *            last entry of index to use (exclusive)
+	 * @param out
+	 *            the elevations, NaN if outside this QuadTree
+	 */
+	public synchronized void getElevations(double[] xy, int[] index, int start, int end, float[] out) {
+		if (child == null) {
+			QuadTreeMesh mesh = this.mesh;
+			if ((mesh == null) || !mesh.pin()) {
+				for (int i = start; i < end; ++i) {
+					out[index[i]] = Float.NaN;
+				}
+				return;
+			}
+			try {
+				double x0 = cornerPoint[0].getX();
+				double y0 = cornerPoint[0].getY();
+				for (int i = start; i < end; ++i) {
+					int p = index[i];
+					out[p] = mesh.getElevationBilinear(xy[2 * p] - x0, xy[2 * p + 1] - y0);
+				}
+			} finally {
+				mesh.unpin();
+			}
+			return;
+		}
+		for (int c = 0; c < child.length; ++c) {
+			// move the points in this child to the front
+			int n = start;
+			for (int i = start; i < end; ++i) {
+				int p = index[i];
+				if (child[c].contains(xy[2 * p], xy[2 * p + 1])) {
+					index[i] = index[n];
+					index[n++] = p;
+				}
+			}
+			if (n > start) {
+				child[c].getElevations(xy, index, start, n, out);
+			}
+			start = n;
+		}
+		for (int i = start; i < end; ++i) {
+			out[index[i]] = Float.NaN;
+		}
+	}
+
 	/**
 	 * Get the elevation using nearest neighbor interpolation.
 	 * 
@@ -687,7 +829,15 @@ public class QuadTree extends Node {
 				}
 			}
 		} else {
-			return (mesh.getElevationNearestNeighbor(x - cornerPoint[0].getX(), y - cornerPoint[0].getY()));
+			QuadTreeMesh mesh = this.mesh;
+			if ((mesh == null) || !mesh.pin()) {
+				return (Float.NaN);
+			}
+			try {
+				return (mesh.getElevationNearestNeighbor(x - cornerPoint[0].getX(), y - cornerPoint[0].getY()));
+			} finally {
+				mesh.unpin();
+			}
 		}
 		return (Float.NaN);
 	}
@@ -708,12 +858,79 @@ public class QuadTree extends Node {
 				}
 			}
 		} else {
-			return (mesh.getNormal((int) Math.floor((x - cornerPoint[0].getX()) / pixelWidth),
-					mesh.getTileLength()-(int)Math.floor((y - cornerPoint[0].getY()) / pixelLength), store));
+			QuadTreeMesh mesh = this.mesh;
+			if ((mesh == null) || !mesh.pin()) {
+				return (false);
+			}
+			try {
+				return (mesh.getNormal((int) Math.floor((x - cornerPoint[0].getX()) / pixelWidth),
+					mesh.getTileLength() - (int) Math.floor((y - cornerPoint[0].getY()) / pixelLength), store));
+			} finally {
+				mesh.unpin();
+			}
 		}
 		return (false);
 	}
 
+	/**
+	 * Intersect a ray with the meshes in use in this QuadTree. Children are
+	 * skipped if the ray misses their footprint or the nearest intersection
+	 * so far is closer, and each mesh is tested with its elevation bounds.
+	 *
+	 * @param ray
+	 *            origin and direction relative to the landscape center (x, y,
+	 *            z, dx, dy, dz)
+	 * @param hit
+	 *            updated if an intersection is found that is nearer than
+	 *            hit.t, the triangle vertices are relative to the landscape
+	 *            center
+	 * @return true if a nearer intersection was found
+	 */
+	public synchronized boolean intersect(double[] ray, HeightBounds.Hit hit) {
+		if (cornerPoint == null) {
+			return (false);
+		}
+		double t = HeightBounds.clip(ray, cornerPoint[0].getX(), cornerPoint[2].getX(), cornerPoint[0].getY(),
+			cornerPoint[2].getY(), -Double.MAX_VALUE, Double.MAX_VALUE, hit.t);
+		if (Double.isNaN(t)) {
+			return (false);
+		}
+		if (child != null) {
+			boolean found = false;
+			for (int i = 0; i < child.length; ++i) {
+				found |= child[i].intersect(ray, hit);
+			}
+			return (found);
+		}
+		QuadTreeMesh mesh = this.mesh;
+		if ((mesh == null) || !mesh.pin()) {
+			return (false);
+		}
+		// the height bounds read the mesh buffers
+		try {
+			HeightBounds bounds = mesh.getHeightBounds();
+			if (bounds == null) {
+				return (false);
+			}
+			// mesh vertices are relative to the center of this QuadTree
+			double[] meshRay = { ray[0] - centerPoint.getX(), ray[1] - centerPoint.getY(), ray[2], ray[3], ray[4],
+				ray[5] };
+			if (!bounds.intersect(meshRay, hit)) {
+				return (false);
+			}
+		} finally {
+			mesh.unpin();
+		}
+		double x = centerPoint.getX();
+		double y = centerPoint.getY();
+		hit.quadTree = this;
+		hit.mesh = mesh;
+		for (int i = 0; i < hit.vertex.length; ++i) {
+			hit.vertex[i].addLocal(x, y, 0);
+		}
+		return (true);
+	}
+
 	private void fillEdge(Side side, QuadTree that, double[] e) {
 		if (mesh == null) {
 			return;
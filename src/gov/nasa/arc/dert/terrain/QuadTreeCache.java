@@ -1,25 +1,46 @@
 package gov.nasa.arc.dert.terrain;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Memory bounded cache of QuadTree tiles. Tiles are kept in one partition per
+ * terrain label. Each partition is split into lock stripes selected by the
+ * hash of the packed tile key (see TileKey) so that loader threads and the
+ * render thread only contend when they touch the same stripe. Each stripe is
+ * an access ordered hash map of long keys so the least recently used tile in
+ * the stripe is always at the head, and a lookup does not allocate. Tiles that
+ * are in use by the scene graph are pinned and never evicted.
+ *
+ */
 public class QuadTreeCache {
 
 	// The maximum amount of memory for the cache (in bytes)
 	public static long MAX_CACHE_MEMORY = 400000000l;
-	public static int MAX_CLEANUP_COUNT = 1000;
-	
+
+	// The number of lock stripes per partition (must be a power of 2)
+	public static int STRIPE_COUNT = 16;
+
 	private static QuadTreeCache INSTANCE;
 
-	// A hash map to keep track of QuadTree tiles
-	protected HashMap<String, QuadTree> quadTreeMap;
+	// Access counter used to order QuadTrees across stripes
+	private static final AtomicLong accessCount = new AtomicLong();
+
+	// Partitions of QuadTree tiles, one per terrain label
+	protected ConcurrentHashMap<String, Partition> partitionMap;
+
+	// The current cache size (in bytes)
+	protected AtomicLong cacheSize;
+
+	// Statistics
+	protected AtomicLong hitCount, missCount, evictionCount;
 
-	// The number of cache cleanups since the last garbage collection
-	protected int cleanupCount;
+	// Lock held by the thread that is evicting tiles
+	private Object evictionLock;
 
-	// The maximum cache size (in bytes)
-	protected long cacheSize;
-	
-	public static QuadTreeCache getInstance() {
+	public static synchronized QuadTreeCache getInstance() {
 		if (INSTANCE == null)
 			INSTANCE = new QuadTreeCache();
 		return(INSTANCE);
@@ -27,125 +48,491 @@ public class QuadTreeCache {
 
 	/**
 	 * Constructor
-	 * 
-	 * @param bytesPerTile
 	 */
 	protected QuadTreeCache() {
-		quadTreeMap = new HashMap<String, QuadTree>();
+		partitionMap = new ConcurrentHashMap<String, Partition>();
+		cacheSize = new AtomicLong();
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+		evictionCount = new AtomicLong();
+		evictionLock = new Object();
 	}
 
 	/**
-	 * Given a key, return the associated QuadTree Update the timestamp.
-	 * 
+	 * Given a label and key, return the associated QuadTree. The QuadTree
+	 * becomes the most recently used in its stripe.
+	 *
+	 * @param label
 	 * @param key
 	 * @return
 	 */
-	public synchronized QuadTree getQuadTree(String key) {
-//		System.err.println("QuadTreeCache.getQuadTree ."+key+".");
-		QuadTree quadTree = quadTreeMap.get(key);
-		if (quadTree != null) {
-			quadTree.timestamp = System.currentTimeMillis();
+	public QuadTree getQuadTree(String label, long key) {
+		Partition partition = partitionMap.get(label);
+		QuadTree quadTree = null;
+		if (partition != null)
+			quadTree = partition.get(key);
+		if (quadTree == null) {
+			missCount.incrementAndGet();
+			return (null);
 		}
+		hitCount.incrementAndGet();
 		return (quadTree);
 	}
 
 	/**
-	 * Place a QuadTree in the cache Update the timestamp
-	 * 
+	 * Place a QuadTree in the cache, replacing any existing QuadTree with the
+	 * same key. Evict least recently used tiles if the cache is full.
+	 *
+	 * @param label
 	 * @param key
 	 * @param quadTree
 	 */
-	public synchronized void putQuadTree(String key, QuadTree quadTree) {
-//		System.err.println("QuadTreeCache.putQuadTree ."+key+".");
-		quadTree.timestamp = System.currentTimeMillis();
-		quadTreeMap.put(key, quadTree);
-		cacheSize += quadTree.getSize();
+	public void putQuadTree(String label, long key, QuadTree quadTree) {
+		QuadTree old = getPartition(label).put(key, quadTree, false);
+		if (old != null)
+			cacheSize.addAndGet(-old.getSize());
+		cacheSize.addAndGet(quadTree.getSize());
 		cleanUpCache();
 	}
-	
-	public synchronized void clear() {
-		quadTreeMap.clear();
-		System.gc();
-		cacheSize = 0;
-		cleanupCount = 0;		
-	}
-	
-	public synchronized void clear(String label) {
-		Object[] key = new Object[quadTreeMap.size()];
-		key = quadTreeMap.keySet().toArray(key);
-		for (int i=0; i<key.length; ++i) {
-			if (((String)key[i]).startsWith(label)) {
-				QuadTree qt = quadTreeMap.remove(key[i]);
-				cacheSize -= qt.getSize();
-			}
+
+	/**
+	 * Place a QuadTree in the cache only if there is no QuadTree with the same
+	 * key. This is used to insert a place holder while the QuadTree contents
+	 * are loaded so that no other thread starts loading the same tile.
+	 *
+	 * @param label
+	 * @param key
+	 * @param quadTree
+	 * @return the QuadTree already in the cache, or null if the given
+	 *         QuadTree was inserted
+	 */
+	public QuadTree putQuadTreeIfAbsent(String label, long key, QuadTree quadTree) {
+		QuadTree old = getPartition(label).put(key, quadTree, true);
+		if (old != null)
+			return (old);
+		cacheSize.addAndGet(quadTree.getSize());
+		cleanUpCache();
+		return (null);
+	}
+
+	/**
+	 * Remove a QuadTree from the cache if it is still the one stored under
+	 * the key. This is used to discard the place holder of a cancelled load.
+	 *
+	 * @param label
+	 * @param key
+	 * @param quadTree
+	 * @return true if the QuadTree was removed
+	 */
+	public boolean removeQuadTree(String label, long key, QuadTree quadTree) {
+		Partition partition = partitionMap.get(label);
+		if ((partition == null) || !partition.remove(key, quadTree))
+			return (false);
+		cacheSize.addAndGet(-quadTree.getSize());
+		return (true);
+	}
+
+	private Partition getPartition(String label) {
+		Partition partition = partitionMap.get(label);
+		if (partition == null) {
+			partition = new Partition();
+			Partition existing = partitionMap.putIfAbsent(label, partition);
+			if (existing != null)
+				partition = existing;
 		}
+		return (partition);
+	}
+
+	/**
+	 * Empty the cache.
+	 */
+	public void clear() {
+		Iterator<String> iterator = partitionMap.keySet().iterator();
+		while (iterator.hasNext())
+			clear(iterator.next());
+	}
+
+	/**
+	 * Remove all QuadTrees for a terrain. The partition stays in the map and
+	 * each stripe is emptied under its own lock, so a QuadTree put by another
+	 * thread at the same time is either removed here or stays in the cache
+	 * and is counted.
+	 *
+	 * @param label
+	 */
+	public void clear(String label) {
+		Partition partition = partitionMap.get(label);
+		if (partition == null)
+			return;
+		cacheSize.addAndGet(-partition.clear());
 	}
 
 	protected void cleanUpCache() {
-		// not full yet
-		if (cacheSize < MAX_CACHE_MEMORY) {
+		if (cacheSize.get() < MAX_CACHE_MEMORY)
 			return;
-		}
-		// get the oldest QuadTree not in use
-		Object[] key = new Object[quadTreeMap.size()];
-		key = quadTreeMap.keySet().toArray(key);
-		Object oldestKey = null;
-		QuadTree oldestItem = null;
-		int k = 1;
-		for (int i=0; i<key.length; ++i) {
-			oldestKey = key[i];
-			oldestItem = quadTreeMap.get(oldestKey);
-			if (!oldestItem.inUse) {
-				k = i+1;
-				break;
-			}
-		}
-		if (oldestItem == null)
-			throw new IllegalStateException("Unable to clean up quad tree cache.  All tiles are in use. Increase maximum cache size.");
-		for (int i = k; i < key.length; ++i) {
-			QuadTree item = quadTreeMap.get(key[i]);
-			if (!item.inUse) {
-				if (item.timestamp < oldestItem.timestamp) {
-					oldestKey = key[i];
-					oldestItem = item;
+		// only one thread evicts at a time, the others carry on
+		synchronized (evictionLock) {
+			while (cacheSize.get() >= MAX_CACHE_MEMORY) {
+				// find the stripe with the least recently used tile that is
+				// not in use
+				Stripe oldestStripe = null;
+				long oldestTime = Long.MAX_VALUE;
+				for (Partition partition : partitionMap.values()) {
+					for (int i = 0; i < partition.stripe.length; ++i) {
+						long time = partition.stripe[i].getEldestUnpinnedTime();
+						if (time < oldestTime) {
+							oldestTime = time;
+							oldestStripe = partition.stripe[i];
+						}
+					}
+				}
+				if (oldestStripe == null)
+					throw new IllegalStateException("Unable to clean up quad tree cache.  All tiles are in use. Increase maximum cache size.");
+				// remove it
+				QuadTree qt = oldestStripe.removeEldestUnpinned();
+				if (qt != null) {
+					cacheSize.addAndGet(-qt.getSize());
+					qt.dispose();
+					evictionCount.incrementAndGet();
 				}
 			}
 		}
-		if (oldestItem.inUse)
-			throw new IllegalStateException("Unable to clean up quad tree cache.  All tiles are in use. Increase maximum cache size.");
-		// remove the oldest item if not in use
-		QuadTree qt = quadTreeMap.remove(oldestKey);
-		cacheSize -= qt.getSize();
-//		System.err.println("QuadTreeCache.cleanUpCache "+cleanupCount+" "+qt+" "+cacheSize+" "+MAX_CACHE_MEMORY+" "+qt.getSize());
-		qt.dispose();
-		qt = null;
-		cleanupCount ++;
-		if (cleanupCount == MAX_CLEANUP_COUNT) {
-			System.gc();
-			cleanupCount = 0;
-		}
 	}
 
 	/**
 	 * Empty the cache
 	 */
-	public synchronized void dispose() {
-		quadTreeMap.clear();
+	public void dispose() {
+		clear();
 	}
 
 	/**
 	 * Update the surface color for all elements in the cache
-	 * 
+	 *
 	 * @param rgba
 	 */
-	public synchronized void updateSurfaceColor(String label, float[] rgba) {
-		Object[] key = new Object[quadTreeMap.size()];
-		key = quadTreeMap.keySet().toArray(key);
-		for (int i = 0; i < key.length; ++i) {
-			if (((String)key[i]).startsWith(label)) {
-				QuadTree item = quadTreeMap.get(key[i]);
-				item.getMesh().updateSurfaceColor(rgba);
+	public void updateSurfaceColor(String label, float[] rgba) {
+		Partition partition = partitionMap.get(label);
+		if (partition == null)
+			return;
+		ArrayList<QuadTree> list = partition.values();
+		for (int i = 0; i < list.size(); ++i) {
+			QuadTreeMesh mesh = list.get(i).getMesh();
+			if (mesh != null)
+				mesh.updateSurfaceColor(rgba);
+		}
+	}
+
+	/**
+	 * Get the current cache size in bytes.
+	 *
+	 * @return
+	 */
+	public long getCacheSize() {
+		return (cacheSize.get());
+	}
+
+	/**
+	 * Get the number of lookups that found a QuadTree.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return (hitCount.get());
+	}
+
+	/**
+	 * Get the number of lookups that did not find a QuadTree.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return (missCount.get());
+	}
+
+	/**
+	 * Get the number of QuadTrees removed to stay within the memory limit.
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return (evictionCount.get());
+	}
+
+	@Override
+	public String toString() {
+		return ("QuadTreeCache size=" + cacheSize.get() + " max=" + MAX_CACHE_MEMORY + " hits=" + hitCount.get()
+			+ " misses=" + missCount.get() + " evictions=" + evictionCount.get());
+	}
+
+	/**
+	 * The QuadTrees for one terrain, split into lock stripes.
+	 */
+	protected static class Partition {
+
+		protected Stripe[] stripe;
+
+		public Partition() {
+			stripe = new Stripe[STRIPE_COUNT];
+			for (int i = 0; i < stripe.length; ++i)
+				stripe[i] = new Stripe();
+		}
+
+		public QuadTree get(long key) {
+			int h = hash(key);
+			return (stripe[h & (stripe.length - 1)].getQuadTree(key, h));
+		}
+
+		public QuadTree put(long key, QuadTree quadTree, boolean ifAbsent) {
+			int h = hash(key);
+			return (stripe[h & (stripe.length - 1)].putQuadTree(key, h, quadTree, ifAbsent));
+		}
+
+		public boolean remove(long key, QuadTree quadTree) {
+			int h = hash(key);
+			return (stripe[h & (stripe.length - 1)].removeQuadTree(key, h, quadTree));
+		}
+
+		/**
+		 * Remove all QuadTrees.
+		 *
+		 * @return the number of bytes removed
+		 */
+		public long clear() {
+			long size = 0;
+			for (int i = 0; i < stripe.length; ++i)
+				size += stripe[i].clearAll();
+			return (size);
+		}
+
+		/**
+		 * Get a snapshot of the QuadTrees in this partition.
+		 *
+		 * @return
+		 */
+		public ArrayList<QuadTree> values() {
+			ArrayList<QuadTree> list = new ArrayList<QuadTree>();
+			for (int i = 0; i < stripe.length; ++i)
+				stripe[i].addValues(list);
+			return (list);
+		}
+	}
+
+	/**
+	 * Mix the bits of a tile key. The stripe is selected with the low bits and
+	 * the bucket within the stripe with the high bits.
+	 *
+	 * @param key
+	 * @return
+	 */
+	protected static int hash(long key) {
+		return ((int) ((key * 0x9e3779b97f4a7c15l) >>> 32));
+	}
+
+	/**
+	 * An entry in a stripe. Entries are chained in their bucket and linked in
+	 * access order.
+	 */
+	protected static class Entry {
+
+		protected long key;
+		protected int hash;
+		protected QuadTree quadTree;
+
+		// Next entry in the bucket
+		protected Entry next;
+
+		// Neighbors in access order
+		protected Entry before, after;
+
+		public Entry(long key, int hash, QuadTree quadTree) {
+			this.key = key;
+			this.hash = hash;
+			this.quadTree = quadTree;
+		}
+	}
+
+	/**
+	 * An access ordered hash map of QuadTrees keyed by tile key, guarded by its
+	 * own monitor. The least recently used entry follows the header.
+	 */
+	protected static class Stripe {
+
+		// Buckets, the length is a power of 2
+		private Entry[] table;
+
+		// Number of high hash bits used to select a bucket
+		private int bits;
+
+		private int size;
+
+		// Sentinel of the access order list
+		private Entry header;
+
+		public Stripe() {
+			bits = 6;
+			table = new Entry[1 << bits];
+			header = new Entry(TileKey.NONE, 0, null);
+			header.before = header;
+			header.after = header;
+		}
+
+		public synchronized QuadTree getQuadTree(long key, int hash) {
+			Entry entry = find(key, hash);
+			if (entry == null)
+				return (null);
+			moveToTail(entry);
+			entry.quadTree.timestamp = accessCount.incrementAndGet();
+			return (entry.quadTree);
+		}
+
+		public synchronized QuadTree putQuadTree(long key, int hash, QuadTree quadTree, boolean ifAbsent) {
+			Entry entry = find(key, hash);
+			if (entry != null) {
+				QuadTree old = entry.quadTree;
+				moveToTail(entry);
+				if (ifAbsent)
+					return (old);
+				quadTree.timestamp = accessCount.incrementAndGet();
+				entry.quadTree = quadTree;
+				return (old);
+			}
+			quadTree.timestamp = accessCount.incrementAndGet();
+			entry = new Entry(key, hash, quadTree);
+			int index = hash >>> (32 - bits);
+			entry.next = table[index];
+			table[index] = entry;
+			linkAtTail(entry);
+			if (++size > table.length * 3 / 4)
+				resize();
+			return (null);
+		}
+
+		public synchronized boolean removeQuadTree(long key, int hash, QuadTree quadTree) {
+			Entry entry = find(key, hash);
+			if ((entry == null) || (entry.quadTree != quadTree))
+				return (false);
+			remove(entry);
+			return (true);
+		}
+
+		public synchronized long clearAll() {
+			long size = 0;
+			for (Entry entry = header.after; entry != header; entry = entry.after)
+				size += entry.quadTree.getSize();
+			for (int i = 0; i < table.length; ++i)
+				table[i] = null;
+			header.before = header;
+			header.after = header;
+			this.size = 0;
+			return (size);
+		}
+
+		public synchronized void addValues(ArrayList<QuadTree> list) {
+			for (Entry entry = header.after; entry != header; entry = entry.after)
+				list.add(entry.quadTree);
+		}
+
+		/**
+		 * Get the timestamp of the least recently used QuadTree that is not in
+		 * use. Pinned QuadTrees found at the head are moved to the tail so
+		 * subsequent calls do not visit them again.
+		 *
+		 * @return Long.MAX_VALUE if all QuadTrees are in use
+		 */
+		public synchronized long getEldestUnpinnedTime() {
+			Entry eldest = getEldestUnpinned();
+			if (eldest == null)
+				return (Long.MAX_VALUE);
+			return (eldest.quadTree.timestamp);
+		}
+
+		/**
+		 * Remove the least recently used QuadTree that is not in use.
+		 *
+		 * @return null if all QuadTrees are in use
+		 */
+		public synchronized QuadTree removeEldestUnpinned() {
+			Entry eldest = getEldestUnpinned();
+			if (eldest == null)
+				return (null);
+			remove(eldest);
+			return (eldest.quadTree);
+		}
+
+		private Entry getEldestUnpinned() {
+			for (int i = 0; i < size; ++i) {
+				Entry eldest = header.after;
+				if (!eldest.quadTree.inUse)
+					return (eldest);
+				// move it to the most recently used end
+				moveToTail(eldest);
 			}
+			return (null);
+		}
+
+		private Entry find(long key, int hash) {
+			Entry entry = table[hash >>> (32 - bits)];
+			while (entry != null) {
+				if (entry.key == key)
+					return (entry);
+				entry = entry.next;
+			}
+			return (null);
+		}
+
+		private void remove(Entry entry) {
+			int index = entry.hash >>> (32 - bits);
+			Entry prev = null;
+			Entry e = table[index];
+			while (e != entry) {
+				prev = e;
+				e = e.next;
+			}
+			if (prev == null)
+				table[index] = entry.next;
+			else
+				prev.next = entry.next;
+			entry.next = null;
+			unlink(entry);
+			size--;
+		}
+
+		private void resize() {
+			bits++;
+			Entry[] newTable = new Entry[1 << bits];
+			for (int i = 0; i < table.length; ++i) {
+				Entry entry = table[i];
+				while (entry != null) {
+					Entry next = entry.next;
+					int index = entry.hash >>> (32 - bits);
+					entry.next = newTable[index];
+					newTable[index] = entry;
+					entry = next;
+				}
+			}
+			table = newTable;
+		}
+
+		private void linkAtTail(Entry entry) {
+			entry.after = header;
+			entry.before = header.before;
+			header.before.after = entry;
+			header.before = entry;
+		}
+
+		private void unlink(Entry entry) {
+			entry.before.after = entry.after;
+			entry.after.before = entry.before;
+			entry.before = null;
+			entry.after = null;
+		}
+
+		private void moveToTail(Entry entry) {
+			if (entry.after == header)
+				return;
+			unlink(entry);
+			linkAtTail(entry);
 		}
 	}
 }
@@ -1,10 +1,13 @@
 package gov.nasa.arc.dert.terrain;
 
+import gov.nasa.arc.dert.io.PackedTileWriter;
 import gov.nasa.arc.dert.io.TileSource;
 import gov.nasa.arc.dert.landscape.DerivativeLayer;
 import gov.nasa.arc.dert.landscape.FieldCameraLayer;
 import gov.nasa.arc.dert.landscape.FieldLayer;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
+import gov.nasa.arc.dert.render.LayerEffects;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.render.SharedTexture2D;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.util.UIUtil;
@@ -12,11 +15,17 @@ import gov.nasa.arc.dert.util.UIUtil;
 import java.awt.Color;
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.image.Image;
@@ -44,6 +53,13 @@ import com.ardor3d.util.geom.BufferUtils;
  */
 public class QuadTreeFactory {
 
+	// Load priorities, lower values are loaded first
+	public static final int VISIBLE_PRIORITY = 0;
+	public static final int PREFETCH_PRIORITY = 1;
+
+	// The maximum number of prefetch loads waiting in the queue
+	public static int MAX_PREFETCH = 16;
+
 	// Fields used for missing vertices
 	private ColorRGBA missingColor = new ColorRGBA(0, 0, 0, 0);
 	private float missingFillValue;
@@ -54,8 +70,20 @@ public class QuadTreeFactory {
 	// The base layer
 	private RasterLayer baseLayer;
 
-	// Threading service
-	private ExecutorService executor;
+	// Threading service, runs queued loads in priority order
+	private ThreadPoolExecutor executor;
+
+	// Loads that have been requested but not finished, keyed by quad tree
+	private ConcurrentHashMap<QuadTree, LoadTask> pendingMap;
+
+	// Number of prefetch loads that have been queued but not started
+	private AtomicInteger prefetchCount;
+
+	// Orders loads of the same priority by request
+	private AtomicLong sequence;
+
+	// Number of loads cancelled before they started
+	private AtomicLong cancelCount;
 
 	// The surface color
 	private float[] rgba;
@@ -82,6 +110,19 @@ public class QuadTreeFactory {
 	
 	private String label;
 
+	// Second level cache of built tiles on disk
+	private TileDiskCache diskCache;
+
+	// Pool of mesh buffers
+	private MeshBufferPool bufferPool;
+
+	// Shared indices for empty tiles
+	private IntBuffer emptyIndexBuffer;
+
+	// Identifies the landscape version each cached payload was built from,
+	// for the base layer (index 0) and the layers in the layer list
+	private long[] cacheStamp;
+
 	/**
 	 * Constructor
 	 * 
@@ -110,7 +151,29 @@ public class QuadTreeFactory {
 			}
 		}
 
-		executor = Executors.newFixedThreadPool(5);
+		bufferPool = MeshBufferPool.getInstance();
+		emptyIndexBuffer = BufferUtils.createIntBuffer(4);
+		emptyIndexBuffer.put(0).put(1).put(3).put(2);
+		emptyIndexBuffer.flip();
+		diskCache = TileDiskCache.getInstance();
+		cacheStamp = new long[layerList.length + 1];
+		cacheStamp[0] = getCacheStamp(baseLayer);
+		cacheStamp[0] = 31 * cacheStamp[0] + Double.doubleToLongBits(pixelScale);
+		cacheStamp[0] = 31 * cacheStamp[0] + Float.floatToIntBits(missingFillValue);
+		for (int i = 0; i < layerList.length; ++i) {
+			if (layerList[i] != null) {
+				cacheStamp[i + 1] = getCacheStamp(layerList[i]);
+			}
+		}
+
+		pendingMap = new ConcurrentHashMap<QuadTree, LoadTask>();
+		prefetchCount = new AtomicInteger();
+		sequence = new AtomicLong();
+		cancelCount = new AtomicLong();
+		// tile loading is mostly decoding and mesh building, one thread per core
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+			new PriorityBlockingQueue<Runnable>());
 	}
 
 	/**
@@ -119,6 +182,7 @@ public class QuadTreeFactory {
 	public void dispose() {
 		executor.shutdown();
 		QuadTreeCache.getInstance().clear(label);
+		bufferPool.clear();
 	}
 
 	/**
@@ -136,34 +200,90 @@ public class QuadTreeFactory {
 	 *            wait for tile source to load the data
 	 * @return
 	 */
-	public QuadTree getQuadTree(String key, QuadTree parent, ReadOnlyVector3 p, double pixelWidth, double pixelLength,
+	public QuadTree getQuadTree(long key, QuadTree parent, ReadOnlyVector3 p, double pixelWidth, double pixelLength,
 		int level, int quadrant, boolean wait) {
-		QuadTree quadTree = QuadTreeCache.getInstance().getQuadTree(label+key);
+		return (getQuadTree(key, parent, p, pixelWidth, pixelLength, level, quadrant, wait, 0, 0));
+	}
+
+	private QuadTree getQuadTree(long key, QuadTree parent, ReadOnlyVector3 p, double pixelWidth,
+		double pixelLength, int level, int quadrant, boolean wait, double cellRatio, double distance) {
+		QuadTree quadTree = QuadTreeCache.getInstance().getQuadTree(label, key);
 		if (quadTree == null) {
-			quadTree = createQuadTree(key, parent, p, pixelWidth, pixelLength, level, quadrant, wait);
+			quadTree = createQuadTree(key, parent, p, pixelWidth, pixelLength, level, quadrant, wait,
+				VISIBLE_PRIORITY, cellRatio, distance);
+		} else if (quadTree.getMesh() == null) {
+			if (wait) {
+				QuadTree loaded = waitForLoad(quadTree);
+				// the load was cancelled, start another one
+				if (loaded == null) {
+					loaded = createQuadTree(key, parent, p, pixelWidth, pixelLength, level, quadrant, wait,
+						VISIBLE_PRIORITY, cellRatio, distance);
+				}
+				quadTree = loaded;
+			} else {
+				// the tile is needed now, reorder it for the current view
+				requeue(quadTree, VISIBLE_PRIORITY, cellRatio, distance);
+			}
 		}
 		return (quadTree);
 	}
 
 	/**
-	 * Given the key, get a QuadTree
+	 * Given the key, get a QuadTree. If the QuadTree is queued for loading,
+	 * wait until its contents are loaded.
 	 * 
 	 * @param key
 	 * @return
 	 */
-	public QuadTree getQuadTree(String key) {
-		QuadTree quadTree = QuadTreeCache.getInstance().getQuadTree(label+key);
+	public QuadTree getQuadTree(long key) {
+		QuadTree quadTree = QuadTreeCache.getInstance().getQuadTree(label, key);
 		if (quadTree != null) {
-			return (quadTree);
+			quadTree = waitForLoad(quadTree);
+			if (quadTree != null) {
+				return (quadTree);
+			}
 		}
 
-		int q = Integer.valueOf(key.substring(key.length() - 1, key.length())) - 1;
+		int q = Math.max(TileKey.getQuadrant(key) - 1, 0);
 		Vector3 p = keyToTileCenter(key);
-		int level = keyToLevel(key);
-		double s = Math.pow(2, level);
+		int level = TileKey.getLevel(key);
+		double s = 1l << level;
 		double pixelWidth = (terrainWidth / tileWidth) / s;
 		double pixelLength = (terrainLength / tileLength) / s;
-		quadTree = createQuadTree(key, null, p, pixelWidth, pixelLength, level, q, true);
+		quadTree = createQuadTree(key, null, p, pixelWidth, pixelLength, level, q, true, VISIBLE_PRIORITY, 0, 0);
+		return (quadTree);
+	}
+
+	/**
+	 * Wait for a QuadTree that is being loaded, synchronously or by the
+	 * executor, to get its mesh.
+	 * 
+	 * @param quadTree
+	 * @return the QuadTree, its mesh is null if the load failed or the thread
+	 *         was interrupted. Null if the load was cancelled.
+	 */
+	private QuadTree waitForLoad(QuadTree quadTree) {
+		LoadTask task = pendingMap.get(quadTree);
+		if (task != null) {
+			// the tile is needed now, move it ahead of the prefetches
+			requeue(quadTree, VISIBLE_PRIORITY, 0, 0);
+			try {
+				task.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return (quadTree);
+			}
+			if (task.cancelled) {
+				return (null);
+			}
+			return (quadTree);
+		}
+		// not pending, a cancelled load is removed from the cache before it
+		// leaves the pending map
+		if ((quadTree.getMesh() == null)
+			&& (QuadTreeCache.getInstance().getQuadTree(label, quadTree.key) != quadTree)) {
+			return (null);
+		}
 		return (quadTree);
 	}
 
@@ -173,28 +293,27 @@ public class QuadTreeFactory {
 	 * @param key
 	 * @return
 	 */
-	private Vector3 keyToTileCenter(String key) {
+	private Vector3 keyToTileCenter(long key) {
 		Vector3 p = new Vector3();
-		String[] token = key.split("/");
-		if (token.length <= 1) {
+		int level = TileKey.getLevel(key);
+		if (level == 0) {
 			return (p);
 		}
-		double n = Math.pow(2, token.length);
+		double n = 1l << (level + 1);
 		double w = terrainWidth / n;
 		double l = terrainLength / n;
-		int q = Integer.valueOf(token[token.length - 1]);
-		switch (q) {
+		switch (TileKey.getQuadrant(key)) {
 		case 1:
-			p.set(p.getX() - w, p.getY() + l, 0);
+			p.set(-w, l, 0);
 			break;
 		case 2:
-			p.set(p.getX() + w, p.getY() + l, 0);
+			p.set(w, l, 0);
 			break;
 		case 3:
-			p.set(p.getX() - w, p.getY() - l, 0);
+			p.set(-w, -l, 0);
 			break;
 		case 4:
-			p.set(p.getX() + w, p.getY() - l, 0);
+			p.set(w, -l, 0);
 			break;
 		}
 		return (p);
@@ -207,62 +326,33 @@ public class QuadTreeFactory {
 	 * @param key
 	 * @return
 	 */
-	private Vector3 keyToTestPointCenter(String key) {
-		Vector3 p = new Vector3();
-		String[] token = key.split("/");
-		if (token.length <= 1) {
-			return (p);
-		}
-		double w = terrainWidth;
-		double l = terrainLength;
-		for (int i = 0; i < token.length; ++i) {
-			w /= 2;
-			l /= 2;
-			if (!token[i].isEmpty()) {
-				int q = Integer.valueOf(token[i]);
-				switch (q) {
-				case 1:
-					p.set(p.getX() - w, p.getY() + l, 0);
-					break;
-				case 2:
-					p.set(p.getX() + w, p.getY() + l, 0);
-					break;
-				case 3:
-					p.set(p.getX() - w, p.getY() - l, 0);
-					break;
-				case 4:
-					p.set(p.getX() + w, p.getY() - l, 0);
-					break;
-				}
-			}
-		}
-		return (p);
-	}
-
-	/**
-	 * Given a key, find the level
-	 * 
-	 * @param key
-	 * @return
-	 */
-	private int keyToLevel(String key) {
-		String[] token = key.split("/");
-		return (token.length - 1);
+	private Vector3 keyToTestPointCenter(long key) {
+		// the tile column and row give the center directly
+		double n = 1l << TileKey.getLevel(key);
+		double x = (TileKey.getColumn(key) + 0.5) * terrainWidth / n - terrainWidth / 2;
+		double y = terrainLength / 2 - (TileKey.getRow(key) + 0.5) * terrainLength / n;
+		return (new Vector3(x, y, 0));
 	}
 
 	/**
 	 * Load the 4 child QuadTrees of the given parent.
 	 * 
-	 * @param name
+	 * @param key
+	 *            the parent key
 	 * @param parent
 	 * @param qt
 	 * @param wait
+	 * @param cellRatio
+	 *            the mesh cell size needed at the parent divided by the parent
+	 *            pixel size, smaller values are loaded first
+	 * @param distance
+	 *            the distance from the camera to the parent
 	 * @return the number of loaded QuadTrees
 	 */
-	public int loadQuadTrees(String name, QuadTree parent, QuadTree[] qt, boolean wait) {
+	public int loadQuadTrees(long key, QuadTree parent, QuadTree[] qt, boolean wait, double cellRatio,
+		double distance) {
 		// no children, we are at the highest level
-		name += File.separator;
-		if (!source.tileExists(name + "1")) {
+		if (!source.tileExists(TileKey.getChild(key, 1))) {
 			return (-1);
 		}
 
@@ -272,23 +362,23 @@ public class QuadTreeFactory {
 		double xCenter = parent.pixelWidth * tileWidth / 4;
 		double yCenter = parent.pixelLength * tileLength / 4;
 		int qtCount = 0;
-		qt[0] = getQuadTree(name + "1", parent, new Vector3(-xCenter, yCenter, 0), pixelWidth, pixelLength,
-			parent.level + 1, 0, wait);
+		qt[0] = getQuadTree(TileKey.getChild(key, 1), parent, new Vector3(-xCenter, yCenter, 0), pixelWidth, pixelLength,
+			parent.level + 1, 0, wait, cellRatio, distance);
 		if (qt[0].getMesh() != null) {
 			qtCount++;
 		}
-		qt[1] = getQuadTree(name + "2", parent, new Vector3(xCenter, yCenter, 0), pixelWidth, pixelLength,
-			parent.level + 1, 1, wait);
+		qt[1] = getQuadTree(TileKey.getChild(key, 2), parent, new Vector3(xCenter, yCenter, 0), pixelWidth, pixelLength,
+			parent.level + 1, 1, wait, cellRatio, distance);
 		if (qt[1].getMesh() != null) {
 			qtCount++;
 		}
-		qt[2] = getQuadTree(name + "3", parent, new Vector3(-xCenter, -yCenter, 0), pixelWidth, pixelLength,
-			parent.level + 1, 2, wait);
+		qt[2] = getQuadTree(TileKey.getChild(key, 3), parent, new Vector3(-xCenter, -yCenter, 0), pixelWidth, pixelLength,
+			parent.level + 1, 2, wait, cellRatio, distance);
 		if (qt[2].getMesh() != null) {
 			qtCount++;
 		}
-		qt[3] = getQuadTree(name + "4", parent, new Vector3(xCenter, -yCenter, 0), pixelWidth, pixelLength,
-			parent.level + 1, 3, wait);
+		qt[3] = getQuadTree(TileKey.getChild(key, 4), parent, new Vector3(xCenter, -yCenter, 0), pixelWidth, pixelLength,
+			parent.level + 1, 3, wait, cellRatio, distance);
 		if (qt[3].getMesh() != null) {
 			qtCount++;
 		}
@@ -304,32 +394,232 @@ public class QuadTreeFactory {
 		return (qtCount);
 	}
 
-	private QuadTree createQuadTree(String key, QuadTree parent, ReadOnlyVector3 p, final double pixelWidth,
-		final double pixelLength, int level, int quadrant, boolean wait) {
+	/**
+	 * Start loading the 4 child QuadTrees of the given parent at low priority
+	 * so they are ready when the parent is split. The children are placed in
+	 * the cache but are not used until loadQuadTrees is called.
+	 * 
+	 * @param key
+	 *            the parent key
+	 * @param parent
+	 * @param cellRatio
+	 *            the mesh cell size needed at the parent divided by the parent
+	 *            pixel size
+	 * @param distance
+	 *            the distance from the camera to the parent
+	 * @return false if the prefetch queue is full
+	 */
+	public boolean prefetchQuadTrees(long key, QuadTree parent, double cellRatio, double distance) {
+		if (prefetchCount.get() >= MAX_PREFETCH) {
+			return (false);
+		}
+		if (!source.tileExists(TileKey.getChild(key, 1))) {
+			return (true);
+		}
+		double pixelWidth = parent.pixelWidth / 2;
+		double pixelLength = parent.pixelLength / 2;
+		double xCenter = parent.pixelWidth * tileWidth / 4;
+		double yCenter = parent.pixelLength * tileLength / 4;
+		double[] x = { -xCenter, xCenter, -xCenter, xCenter };
+		double[] y = { yCenter, yCenter, -yCenter, -yCenter };
+		for (int i = 0; i < 4; ++i) {
+			// does nothing if the QuadTree is already in the cache
+			createQuadTree(TileKey.getChild(key, i + 1), parent, new Vector3(x[i], y[i], 0), pixelWidth, pixelLength,
+				parent.level + 1, i, false, PREFETCH_PRIORITY, cellRatio, distance);
+		}
+		return (true);
+	}
+
+	/**
+	 * Get the number of prefetch loads waiting to start.
+	 * 
+	 * @return
+	 */
+	public int getPrefetchCount() {
+		return (prefetchCount.get());
+	}
+
+	/**
+	 * Get the number of loads cancelled before they started.
+	 * 
+	 * @return
+	 */
+	public long getCancelCount() {
+		return (cancelCount.get());
+	}
+
+	/**
+	 * Cancel the queued loads for all descendants of a QuadTree. Their place
+	 * holders are removed from the cache so they will be requested again if
+	 * needed.
+	 * 
+	 * @param key
+	 */
+	public void cancel(long key) {
+		if (pendingMap.isEmpty()) {
+			return;
+		}
+		for (LoadTask task : pendingMap.values()) {
+			// if it can't be removed it has already started
+			if (TileKey.isDescendant(key, task.qt.key) && executor.getQueue().remove(task)) {
+				if (task.priority == PREFETCH_PRIORITY) {
+					prefetchCount.decrementAndGet();
+				}
+				// remove from the cache first so a thread that finds the task
+				// gone knows it was cancelled
+				task.cancelled = true;
+				QuadTreeCache.getInstance().removeQuadTree(label, task.qt.key, task.qt);
+				task.finish();
+				cancelCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Reorder a queued load for the current camera.
+	 * 
+	 * @param quadTree
+	 * @param priority
+	 * @param cellRatio
+	 * @param distance
+	 */
+	private void requeue(QuadTree quadTree, int priority, double cellRatio, double distance) {
+		LoadTask task = pendingMap.get(quadTree);
+		if ((task == null) || (task.priority < priority)) {
+			return;
+		}
+		if ((task.priority == priority) && (task.cellRatio == cellRatio) && (task.distance == distance)) {
+			return;
+		}
+		// if it can't be removed it has already started
+		if (executor.getQueue().remove(task)) {
+			if (task.priority != priority) {
+				prefetchCount.decrementAndGet();
+			}
+			task.priority = priority;
+			task.cellRatio = cellRatio;
+			task.distance = distance;
+			executor.execute(task);
+		}
+	}
+
+	private QuadTree createQuadTree(long key, QuadTree parent, ReadOnlyVector3 p, final double pixelWidth,
+		final double pixelLength, int level, int quadrant, boolean wait, int priority, double cellRatio,
+		double distance) {
 
 		// create the quad tree tile and put it in the cache as a place holder
 		// while we load the contents
 		// this keeps us from starting another load operation for this tile
 		final QuadTree qt = new QuadTree(key, p, level, quadrant, pixelWidth, pixelLength, bytesPerTile);
 		qt.createCornerPoints(keyToTestPointCenter(key), tileWidth, tileLength);
-		QuadTreeCache.getInstance().putQuadTree(label+key, qt);
+		// register the load before the place holder can be seen by other
+		// threads so they wait for it
+		LoadTask task = new LoadTask(qt, priority, cellRatio, distance, sequence.incrementAndGet());
+		pendingMap.put(qt, task);
+		// another thread beat us to it, use its place holder
+		QuadTree existing = QuadTreeCache.getInstance().putQuadTreeIfAbsent(label, key, qt);
+		if (existing != null) {
+			task.finish();
+			if (!wait) {
+				return (existing);
+			}
+			existing = waitForLoad(existing);
+			if (existing != null) {
+				return (existing);
+			}
+			// the other load was cancelled, try again
+			return (createQuadTree(key, parent, p, pixelWidth, pixelLength, level, quadrant, wait, priority,
+				cellRatio, distance));
+		}
 
 		// load the quad tree mesh contents
-		if (key.equals("") || wait) {
-			loadQuadTreeContents(qt);
+		if ((key == TileKey.ROOT) || wait) {
+			// stays pending until loaded so other threads can wait for it
+			try {
+				loadQuadTreeContents(qt);
+			} finally {
+				task.finish();
+			}
 		} else {
-			Runnable runnable = new Runnable() {
-				@Override
-				public void run() {
-					Thread.yield();
-					loadQuadTreeContents(qt);
-				}
-			};
-			executor.execute(runnable);
+			if (priority == PREFETCH_PRIORITY) {
+				prefetchCount.incrementAndGet();
+			}
+			executor.execute(task);
 		}
 		return (qt);
 	}
 
+	/**
+	 * A queued QuadTree load. Loads are run in order of priority, then screen
+	 * space error (the tile whose cells are largest on screen), then distance
+	 * to the camera, and then in the order they were requested. The ordering
+	 * fields are only changed while the task is out of the queue.
+	 */
+	private class LoadTask implements Runnable, Comparable<LoadTask> {
+
+		private QuadTree qt;
+		private volatile int priority;
+		private double cellRatio, distance;
+		private long sequence;
+
+		// Released when the load finishes or is cancelled
+		private CountDownLatch done;
+		private volatile boolean cancelled;
+
+		public LoadTask(QuadTree qt, int priority, double cellRatio, double distance, long sequence) {
+			this.qt = qt;
+			this.priority = priority;
+			this.cellRatio = cellRatio;
+			this.distance = distance;
+			this.sequence = sequence;
+			done = new CountDownLatch(1);
+		}
+
+		/**
+		 * Remove the load from the pending map and release the threads
+		 * waiting for it.
+		 */
+		public void finish() {
+			pendingMap.remove(qt, this);
+			done.countDown();
+		}
+
+		@Override
+		public void run() {
+			if (priority == PREFETCH_PRIORITY) {
+				prefetchCount.decrementAndGet();
+			}
+			Thread.yield();
+			try {
+				loadQuadTreeContents(qt);
+			} finally {
+				// stays pending until loaded so getQuadTree(key) can wait for it
+				finish();
+				// draw the new tile
+				if (priority == VISIBLE_PRIORITY) {
+					SceneFramework.requestFrame();
+				}
+			}
+		}
+
+		@Override
+		public int compareTo(LoadTask that) {
+			if (this.priority != that.priority) {
+				return (this.priority < that.priority ? -1 : 1);
+			}
+			if (this.cellRatio != that.cellRatio) {
+				return (this.cellRatio < that.cellRatio ? -1 : 1);
+			}
+			if (this.distance != that.distance) {
+				return (this.distance < that.distance ? -1 : 1);
+			}
+			if (this.sequence != that.sequence) {
+				return (this.sequence < that.sequence ? -1 : 1);
+			}
+			return (0);
+		}
+	}
+
 	private void loadQuadTreeContents(QuadTree qt) {
 		// load the mesh
 		QuadTreeMesh mesh = getMesh(qt.getName(), qt.pixelWidth, qt.pixelLength);
@@ -339,6 +629,7 @@ public class QuadTreeFactory {
 
 		// load the image layers as textures
 		TextureState textureState = new TextureState();
+		boolean hasDerivative = false;
 		for (int i = 0; i < layerList.length; ++i) {
 			Texture texture = null;
 			if (layerList[i] != null) {
@@ -347,7 +638,7 @@ public class QuadTreeFactory {
 					texture = getEmptyTexture();
 				} else if (layerList[i] instanceof DerivativeLayer) {
 					texture = ((DerivativeLayer) layerList[i]).getTexture(qt.getName(), null);
-					((DerivativeLayer) layerList[i]).createColorMapTextureCoords(mesh, i);
+					hasDerivative = true;
 				} else if (layerList[i] instanceof FieldLayer) {
 					texture = ((FieldLayer) layerList[i]).getTexture(qt.getName(), null);
 					((FieldLayer) layerList[i]).createColorMapTextureCoords(qt.getName(), mesh, i);
@@ -363,6 +654,10 @@ public class QuadTreeFactory {
 				texture = getEmptyTexture();
 			textureState.setTexture(texture, i);
 		}
+		// derivative layers are computed by the shader from the height map
+		if (hasDerivative && !mesh.isEmpty()) {
+			textureState.setTexture(getHeightMapTexture(qt.getName(), mesh), LayerEffects.HEIGHT_MAP_UNIT);
+		}
 		textureState.setEnabled(layersEnabled);
 		mesh.setRenderState(textureState);
 		qt.setMesh(mesh);
@@ -395,11 +690,41 @@ public class QuadTreeFactory {
 		return (emptyTexture);
 	}
 
+	private Texture getHeightMapTexture(String key, QuadTreeMesh mesh) {
+		// the mesh elevations, one texel per vertex
+		FloatBuffer vertexBuffer = mesh.getMeshData().getVertexBuffer();
+		int n = vertexBuffer.limit() / 3;
+		ByteBuffer byteBuffer = BufferUtils.createByteBuffer(n * 4);
+		for (int i = 0; i < n; ++i) {
+			byteBuffer.putFloat(vertexBuffer.get(i * 3 + 2));
+		}
+		byteBuffer.flip();
+		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+		list.add(byteBuffer);
+		Image image = new Image(ImageDataFormat.Luminance, PixelDataType.Float, tileWidth + 1, tileLength + 1, list,
+			null);
+		Texture texture = new SharedTexture2D();
+		TextureKey tKey = TextureKey.getKey(null, false, TextureStoreFormat.Luminance32F, label + "_heightmap" + key,
+			Texture.MinificationFilter.BilinearNoMipMaps);
+		texture.setTextureKey(tKey);
+		texture.setImage(image);
+		texture.setTextureStoreFormat(TextureStoreFormat.Luminance32F);
+		texture.setMinificationFilter(Texture.MinificationFilter.BilinearNoMipMaps);
+		texture.setMagnificationFilter(Texture.MagnificationFilter.Bilinear);
+		texture.setWrap(Texture.WrapMode.EdgeClamp);
+		texture.setHasBorder(false);
+		return (texture);
+	}
+
 	private Texture getTexture(String key, int tUnit, Texture texture) {
 		if (layerList[tUnit] == null) {
 			return (null);
 		}
-		texture = layerList[tUnit].getTexture(key, texture);
+		if (layerList[tUnit] instanceof RasterLayer) {
+			texture = getRasterTexture((RasterLayer) layerList[tUnit], key, tUnit);
+		} else {
+			texture = layerList[tUnit].getTexture(key, texture);
+		}
 		if (texture == null) {
 			return (null);
 		}
@@ -411,6 +736,71 @@ public class QuadTreeFactory {
 		return (texture);
 	}
 
+	private Texture getRasterTexture(RasterLayer layer, String key, int tUnit) {
+		// image from the disk cache
+		ByteBuffer payload = diskCache.get(source.getPath(), layer.getLayerName(), key, cacheStamp[tUnit + 1]);
+		if (payload != null) {
+			Image image = getCachedImage(payload);
+			if (image != null) {
+				return (layer.createTexture(key, image));
+			}
+		}
+		Image image = layer.getTextureImage(key);
+		if (image == null) {
+			return (null);
+		}
+		if (diskCache.isEnabled()) {
+			putCachedImage(layer, key, tUnit, image);
+		}
+		return (layer.createTexture(key, image));
+	}
+
+	private Image getCachedImage(ByteBuffer payload) {
+		// width, length, data format, pixel type, pixels
+		if (payload.limit() < 16) {
+			return (null);
+		}
+		int width = payload.getInt(0);
+		int length = payload.getInt(4);
+		int format = payload.getInt(8);
+		int type = payload.getInt(12);
+		if ((format < 0) || (format >= ImageDataFormat.values().length) || (type < 0)
+			|| (type >= PixelDataType.values().length)) {
+			return (null);
+		}
+		payload.position(16);
+		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+		list.add(payload.slice());
+		return (new Image(ImageDataFormat.values()[format], PixelDataType.values()[type], width, length, list, null));
+	}
+
+	private void putCachedImage(RasterLayer layer, String key, int tUnit, Image image) {
+		ByteBuffer data = image.getData(0).duplicate();
+		data.rewind();
+		ByteBuffer payload = ByteBuffer.allocate(16 + data.remaining()).order(ByteOrder.nativeOrder());
+		payload.putInt(image.getWidth()).putInt(image.getHeight());
+		payload.putInt(image.getDataFormat().ordinal()).putInt(image.getDataType().ordinal());
+		payload.put(data);
+		payload.flip();
+		diskCache.put(source.getPath(), layer.getLayerName(), key, cacheStamp[tUnit + 1], payload);
+	}
+
+	private long getCacheStamp(Layer layer) {
+		// the pyramid builder rewrites the layer properties and, for packed
+		// layers, the tile file each time the layer is built
+		File dir = new File(source.getPath(), layer.getLayerName());
+		long stamp = getFileStamp(new File(dir, "layer.properties"));
+		stamp = 31 * stamp + getFileStamp(new File(dir, PackedTileWriter.FILE_NAME));
+		stamp = 31 * stamp + tileWidth;
+		stamp = 31 * stamp + tileLength;
+		return (stamp);
+	}
+
+	private long getFileStamp(File file) {
+		// zero for a missing file
+		return (31 * file.lastModified() + file.length());
+	}
+
 	/**
 	 * Create a mesh to act as a light block when the sun is below the horizon.
 	 * 
@@ -500,7 +890,7 @@ public class QuadTreeFactory {
 
 	private QuadTreeMesh getEmptyMesh(String key, FloatBuffer vertices, double pixelWidth, double pixelLength) {
 		// vertices
-		FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(4 * 3);
+		FloatBuffer vertexBuffer = bufferPool.getFloatBuffer(4 * 3);
 		vertexBuffer.put(vertices.get(0)).put(vertices.get(1)).put(vertices.get(2));
 		int i = tileLength * (tileWidth + 1) * 3;
 		vertexBuffer.put(vertices.get(i)).put(vertices.get(i + 1)).put(vertices.get(i + 2));
@@ -511,49 +901,38 @@ public class QuadTreeFactory {
 		vertexBuffer.flip();
 
 		// normals
-		FloatBuffer normalBuffer = BufferUtils.createFloatBuffer(4 * 3);
+		FloatBuffer normalBuffer = bufferPool.getFloatBuffer(4 * 3);
 		for (int j = 0; j < 4; ++j) {
 			normalBuffer.put(0).put(0).put(1);
 		}
 		normalBuffer.flip();
 
 		// colors
-		FloatBuffer colorBuffer = BufferUtils.createFloatBuffer(4 * 4);
+		FloatBuffer colorBuffer = bufferPool.getFloatBuffer(4 * 4);
 		for (int j = 0; j < 4; ++j) {
 			colorBuffer.put(missingColor.getRed()).put(missingColor.getGreen()).put(missingColor.getBlue())
 				.put(missingColor.getAlpha());
 		}
 		colorBuffer.flip();
 
-		// indices
-		IntBuffer indexBuffer = BufferUtils.createIntBuffer(4);
-		indexBuffer.put(0).put(1).put(3).put(2);
-		int[] indexLengths = { 4 };
-
 		// texture coordinates
-		FloatBuffer texCoordBuffer = BufferUtils.createFloatBuffer(4 * 2);
+		FloatBuffer texCoordBuffer = bufferPool.getFloatBuffer(4 * 2);
 		texCoordBuffer.put(0).put(1);
 		texCoordBuffer.put(0).put(0);
 		texCoordBuffer.put(1).put(0);
 		texCoordBuffer.put(1).put(1);
 		texCoordBuffer.flip();
 
-		QuadTreeMesh mesh = new QuadTreeMesh("_mesh_"+key, tileWidth, tileLength, pixelWidth, pixelLength);
-		mesh.empty = true;
-		mesh.setMeshData(createTileMeshData(vertexBuffer, texCoordBuffer, colorBuffer, indexBuffer, indexLengths,
-			normalBuffer, IndexMode.TriangleStrip));
-
-		mesh.getSceneHints().setNormalsMode(NormalsMode.NormalizeIfScaled);
-		CullState cullState = new CullState();
-		cullState.setCullFace(CullState.Face.Back);
-		cullState.setEnabled(true);
-		mesh.setRenderState(cullState);
-		mesh.setModelBound(new BoundingBox());
-		mesh.updateModelBound();
-		return (mesh);
+		return (createMesh(key, vertexBuffer, texCoordBuffer, colorBuffer, normalBuffer, true, pixelWidth, pixelLength));
 	}
 
 	private QuadTreeMesh getMesh(String key, double pixelWidth, double pixelLength) {
+		// built tile from the disk cache
+		QuadTreeMesh mesh = getCachedMesh(key, pixelWidth, pixelLength);
+		if (mesh != null) {
+			return (mesh);
+		}
+
 		// vertices, normals, and colors
 		Object[] result = getVertices(key, pixelWidth * tileWidth, pixelWidth, pixelLength * tileLength, pixelLength);
 		if (result == null) {
@@ -566,16 +945,32 @@ public class QuadTreeFactory {
 
 		// all NaNs
 		if (empty) {
-			return (getEmptyMesh(key, vertexBuffer, pixelWidth, pixelLength));
+			mesh = getEmptyMesh(key, vertexBuffer, pixelWidth, pixelLength);
+		} else {
+			mesh = createMesh(key, vertexBuffer, getTexCoords(key), colorBuffer, normalBuffer, false, pixelWidth,
+				pixelLength);
+		}
+		if (diskCache.isEnabled()) {
+			putCachedMesh(key, mesh);
 		}
+		return (mesh);
+	}
 
-		// vertex indices
-		result = getIndices(vertexBuffer);
-		IntBuffer indexBuffer = (IntBuffer) result[0];
-		int[] indexLengths = (int[]) result[1];
-		FloatBuffer texCoordBuffer = getTexCoords(key);
+	private QuadTreeMesh createMesh(String key, FloatBuffer vertexBuffer, FloatBuffer texCoordBuffer,
+		FloatBuffer colorBuffer, FloatBuffer normalBuffer, boolean empty, double pixelWidth, double pixelLength) {
+		// vertex indices are the same for all tiles
+		IntBuffer indexBuffer;
+		int[] indexLengths;
+		if (empty) {
+			indexBuffer = emptyIndexBuffer.duplicate();
+			indexLengths = new int[] { 4 };
+		} else {
+			indexBuffer = bufferPool.getStripIndices(tileWidth, tileLength);
+			indexLengths = bufferPool.getStripLengths(tileWidth, tileLength);
+		}
 
 		QuadTreeMesh mesh = new QuadTreeMesh("_mesh_"+key, tileWidth, tileLength, pixelWidth, pixelLength);
+		mesh.empty = empty;
 		mesh.setMeshData(createTileMeshData(vertexBuffer, texCoordBuffer, colorBuffer, indexBuffer, indexLengths,
 			normalBuffer, IndexMode.TriangleStrip));
 
@@ -586,11 +981,74 @@ public class QuadTreeFactory {
 		mesh.setRenderState(cullState);
 		mesh.setModelBound(new BoundingBox());
 		mesh.updateModelBound();
-		mesh.cacheEdges();
+		if (!empty) {
+			mesh.cacheEdges();
+		}
 		return (mesh);
 	}
+
+	private QuadTreeMesh getCachedMesh(String key, double pixelWidth, double pixelLength) {
+		ByteBuffer payload = diskCache.get(source.getPath(), baseLayer.getLayerName(), key, cacheStamp[0]);
+		if (payload == null) {
+			return (null);
+		}
+		// empty flag, vertex count, vertices, normals, colors, texture
+		// coordinates
+		boolean empty = (payload.getInt(0) != 0);
+		int n = payload.getInt(4);
+		if ((n <= 0) || (payload.limit() != 8 + n * 12 * 4)) {
+			return (null);
+		}
+		// copy to pooled buffers so the file is unmapped when the payload is
+		// collected
+		payload.position(8);
+		FloatBuffer floats = payload.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+		FloatBuffer vertexBuffer = copySlice(floats, 0, n * 3);
+		FloatBuffer normalBuffer = copySlice(floats, n * 3, n * 3);
+		FloatBuffer colorBuffer = copySlice(floats, n * 6, n * 4);
+		FloatBuffer texCoordBuffer = copySlice(floats, n * 10, n * 2);
+
+		// the surface color may have changed since the tile was cached
+		for (int i = 0; i < n * 4; i += 4) {
+			if (colorBuffer.get(i + 3) != 0) {
+				colorBuffer.put(i, rgba[0]).put(i + 1, rgba[1]).put(i + 2, rgba[2]).put(i + 3, rgba[3]);
+			}
+		}
+		return (createMesh(key, vertexBuffer, texCoordBuffer, colorBuffer, normalBuffer, empty, pixelWidth,
+			pixelLength));
+	}
+
+	private void putCachedMesh(String key, QuadTreeMesh mesh) {
+		MeshData meshData = mesh.getMeshData();
+		int n = meshData.getVertexBuffer().limit() / 3;
+		ByteBuffer payload = ByteBuffer.allocate(8 + n * 12 * 4).order(ByteOrder.nativeOrder());
+		payload.putInt(mesh.isEmpty() ? 1 : 0).putInt(n);
+		FloatBuffer floats = payload.asFloatBuffer();
+		putAll(floats, meshData.getVertexBuffer());
+		putAll(floats, meshData.getNormalBuffer());
+		putAll(floats, meshData.getColorBuffer());
+		putAll(floats, meshData.getTextureBuffer(0));
+		payload.rewind();
+		diskCache.put(source.getPath(), baseLayer.getLayerName(), key, cacheStamp[0], payload);
+	}
+
+	private FloatBuffer copySlice(FloatBuffer buffer, int offset, int length) {
+		FloatBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.limit(offset + length);
+		FloatBuffer copy = bufferPool.getFloatBuffer(length);
+		copy.put(slice);
+		copy.flip();
+		return (copy);
+	}
+
+	private void putAll(FloatBuffer dest, FloatBuffer src) {
+		FloatBuffer data = src.duplicate();
+		data.rewind();
+		dest.put(data);
+	}
 	
-	private synchronized TileMeshData createTileMeshData(FloatBuffer vertexBuffer, FloatBuffer texCoordBuffer, FloatBuffer colorBuffer, IntBuffer indexBuffer, int[] indexLengths,
+	private TileMeshData createTileMeshData(FloatBuffer vertexBuffer, FloatBuffer texCoordBuffer, FloatBuffer colorBuffer, IntBuffer indexBuffer, int[] indexLengths,
 			FloatBuffer normalBuffer, IndexMode indexMode) {
 		return(new TileMeshData(vertexBuffer, texCoordBuffer, colorBuffer, indexBuffer, indexLengths,
 				normalBuffer, indexMode));
@@ -600,7 +1058,7 @@ public class QuadTreeFactory {
 		int tWidth = tileWidth + 1;
 		int tLength = tileLength + 1;
 		int size = tWidth * tLength * 2;
-		FloatBuffer texCoords = BufferUtils.createFloatBuffer(size);
+		FloatBuffer texCoords = bufferPool.getFloatBuffer(size);
 		int i = 0;
 		for (int r = 0; r < tLength; ++r) {
 			for (int c = 0; c < tWidth; ++c) {
@@ -614,27 +1072,6 @@ public class QuadTreeFactory {
 		return (texCoords);
 	}
 
-	private Object[] getIndices(FloatBuffer vertices) {
-		int tWidth = tileWidth + 1;
-		int[] indexLengths = new int[tileLength];
-		IntBuffer indices = BufferUtils.createIntBuffer(tileLength * tWidth * 2);
-		int i = 0;
-		// System.err.println("RasterTile.createIndexes "+tSize+" "+tSize1+" "+newLevel+" "+vertices.limit());
-		for (int r = 0; r < tileLength; ++r) {
-			for (int c = 0; c < tWidth; ++c) {
-				indices.put(i);
-				indices.put(i + tWidth);
-				i++;
-			}
-			indexLengths[r] = tWidth * 2;
-		}
-		indices.flip();
-		Object[] result = new Object[2];
-		result[0] = indices;
-		result[1] = indexLengths;
-		return (result);
-	}
-
 	private Object[] getVertices(String key, double width, double pixelWidth, double height, double pixelLength) {
 
 		// Get the base layer tile data
@@ -643,11 +1080,13 @@ public class QuadTreeFactory {
 			return (null);
 		}
 		int dataSize = tile.width * tile.length;
+		// for packed layers this is a view of the memory mapped tile file,
+		// the elevations are read straight into the vertex buffer
 		FloatBuffer data = tile.raster.asFloatBuffer();
 
 		// create vertex and color buffers
-		FloatBuffer vertex = BufferUtils.createFloatBuffer(dataSize * 3);
-		FloatBuffer colors = BufferUtils.createFloatBuffer(dataSize * 4);
+		FloatBuffer vertex = bufferPool.getFloatBuffer(dataSize * 3);
+		FloatBuffer colors = bufferPool.getFloatBuffer(dataSize * 4);
 
 		// fill buffers
 		int cb = 0;
@@ -693,9 +1132,14 @@ public class QuadTreeFactory {
 	}
 
 	private FloatBuffer createNormals(FloatBuffer vertex, int rows, int cols, int dataSize) {
-		// compute normal for each face
+		// accumulate face normals directly in the direct buffer handed to the
+		// mesh rather than in a heap array that must be copied
+		FloatBuffer nrml = bufferPool.getFloatBuffer(dataSize * 3);
+		// a pooled buffer may hold the normals of another tile
+		for (int i = 0; i < dataSize * 3; ++i) {
+			nrml.put(i, 0);
+		}
 		float[] face = new float[3];
-		float[] nrml = new float[dataSize * 3];
 		byte[] cnt = new byte[dataSize];
 		Vector3 norm = new Vector3();
 		Vector3 v0 = new Vector3();
@@ -733,24 +1177,20 @@ public class QuadTreeFactory {
 			}
 		}
 		// normal for vertex is average of surrounding faces
-		for (int r = 0; r < rows; ++r) {
-			for (int c = 0; c < cols; ++c) {
-				k = r * cols + c;
-				i = k * 3;
-				for (int j = 0; j < 3; ++j) {
-					nrml[i + j] /= cnt[k];
-				}
+		for (k = 0; k < dataSize; ++k) {
+			i = k * 3;
+			for (int j = 0; j < 3; ++j) {
+				nrml.put(i + j, nrml.get(i + j) / cnt[k]);
 			}
 		}
-		FloatBuffer normal = BufferUtils.createFloatBuffer(nrml);
-		return (normal);
+		return (nrml);
 	}
 
-	private void addFace(int index, float[] nrml, float[] face, byte[] cnt) {
+	private void addFace(int index, FloatBuffer nrml, float[] face, byte[] cnt) {
 		int i = index * 3;
-		nrml[i] += face[0];
-		nrml[i + 1] += face[1];
-		nrml[i + 2] += face[2];
+		nrml.put(i, nrml.get(i) + face[0]);
+		nrml.put(i + 1, nrml.get(i + 1) + face[1]);
+		nrml.put(i + 2, nrml.get(i + 2) + face[2]);
 		cnt[index]++;
 	}
 
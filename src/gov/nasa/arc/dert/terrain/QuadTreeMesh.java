@@ -1,5 +1,7 @@
 package gov.nasa.arc.dert.terrain;
 
+import gov.nasa.arc.dert.render.LayerEffects;
+
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.List;
@@ -10,6 +12,7 @@ import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
 import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
 import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.util.TextureKey;
 import com.ardor3d.util.TextureManager;
@@ -36,6 +39,9 @@ public class QuadTreeMesh extends Mesh {
 	// Copy of edge normals for stitching
 	private Vector3[][] nrml;
 
+	// Elevation bounds for ray casting, created when first needed
+	private volatile HeightBounds heightBounds;
+
 	/**
 	 * Constructor
 	 * 
@@ -75,6 +81,55 @@ public class QuadTreeMesh extends Mesh {
 		return (empty);
 	}
 
+	/**
+	 * Get the elevation bounds of this mesh for ray casting. They are created
+	 * on the first call and again after the elevations are changed by
+	 * stitching.
+	 * 
+	 * @return null if the mesh is empty
+	 */
+	public HeightBounds getHeightBounds() {
+		if (empty) {
+			return (null);
+		}
+		HeightBounds bounds = heightBounds;
+		if (bounds == null) {
+			synchronized (this) {
+				bounds = heightBounds;
+				if (bounds == null) {
+					bounds = new HeightBounds(this);
+					heightBounds = bounds;
+				}
+			}
+		}
+		return (bounds);
+	}
+
+	/**
+	 * Keep the buffers of this mesh from being returned to the pool while
+	 * they are read outside of the render thread. Each successful call must be
+	 * matched by a call to unpin.
+	 * 
+	 * @return false if the mesh has been disposed
+	 */
+	public boolean pin() {
+		MeshData meshData = getMeshData();
+		if (meshData instanceof TileMeshData) {
+			return (((TileMeshData) meshData).acquire());
+		}
+		return (true);
+	}
+
+	/**
+	 * Release the buffers of this mesh after reading them.
+	 */
+	public void unpin() {
+		MeshData meshData = getMeshData();
+		if (meshData instanceof TileMeshData) {
+			((TileMeshData) meshData).release();
+		}
+	}
+
 	/**
 	 * Given a column and row in the mesh, return the vertex
 	 * 
@@ -207,6 +262,7 @@ public class QuadTreeMesh extends Mesh {
 				+ ", Index = " + (i * 3 + 2) + ", Limit = " + vertexBuffer.limit());
 		}
 		vertexBuffer.put(i * 3 + 2, el);
+		heightBounds = null;
 	}
 
 	/**
@@ -274,6 +330,7 @@ public class QuadTreeMesh extends Mesh {
 			int i = r * tWidth + c;
 			vertexBuffer.put(i * 3 + 2, el[r]);
 		}
+		heightBounds = null;
 	}
 
 	/**
@@ -314,6 +371,7 @@ public class QuadTreeMesh extends Mesh {
 			int i = r * tWidth + c;
 			vertexBuffer.put(i * 3 + 2, el[c]);
 		}
+		heightBounds = null;
 	}
 
 	/**
@@ -357,6 +415,13 @@ public class QuadTreeMesh extends Mesh {
 				data.clear();
 			}
 		}
+		// the height map belongs to this mesh only
+		Texture heightMap = ts.getTexture(LayerEffects.HEIGHT_MAP_UNIT);
+		if (heightMap != null) {
+			TextureManager.removeFromCache(heightMap.getTextureKey());
+			heightMap.getImage().getData().clear();
+		}
+		heightBounds = null;
 		TileMeshData tmd = (TileMeshData)getMeshData();
 		tmd.dispose();
 	}
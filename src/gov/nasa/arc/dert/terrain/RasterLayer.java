@@ -249,7 +249,13 @@ public class RasterLayer extends Layer {
 		return (dataSource.getProperties(layerName));
 	}
 
-	protected Image getTextureImage(String key) {
+	/**
+	 * Get a tile as an image
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public Image getTextureImage(String key) {
 		QuadTreeTile t = getTile(key);
 		if (t == null) {
 			return (null);
@@ -278,6 +284,17 @@ public class RasterLayer extends Layer {
 //				}
 //			}
 //		}
+		return (createTexture(key, image));
+	}
+
+	/**
+	 * Create a texture for this layer from a tile image
+	 * 
+	 * @param key
+	 * @param image
+	 * @return
+	 */
+	public Texture createTexture(String key, Image image) {
 		Texture texture = new SharedTexture2D();
 		texture.setTextureKey(TextureKey.getKey(null, false, TextureStoreFormat.GuessNoCompressedFormat, layerName
 			+ key, Texture.MinificationFilter.BilinearNoMipMaps));
@@ -53,6 +53,9 @@ public abstract class Terrain extends Node {
 	// factory to create quad trees (tiles)
 	protected QuadTreeFactory factory;
 
+	// loads tiles ahead of the camera
+	protected TilePrefetcher prefetcher;
+
 	// the terrain vertical exaggeration
 	protected double vertExaggeration = 1;
 
@@ -135,6 +138,15 @@ public abstract class Terrain extends Node {
 		return (factory);
 	}
 
+	/**
+	 * Get the tile prefetcher
+	 * 
+	 * @return
+	 */
+	public TilePrefetcher getPrefetcher() {
+		return (prefetcher);
+	}
+
 	/**
 	 * Get the landscape texture state
 	 * 
@@ -171,6 +183,37 @@ public abstract class Terrain extends Node {
 		return (pixelLength);
 	}
 
+	/**
+	 * Get the physical width of the terrain
+	 * 
+	 * @return
+	 */
+	public double getTerrainWidth() {
+		return (terrainWidth);
+	}
+
+	/**
+	 * Get the physical length of the terrain
+	 * 
+	 * @return
+	 */
+	public double getTerrainLength() {
+		return (terrainLength);
+	}
+
+	/**
+	 * Get the cell size for indexing map element footprints. About 64 cells
+	 * span the terrain.
+	 * 
+	 * @return
+	 */
+	public double getFootprintCellSize() {
+		double size = Math.max(terrainWidth, terrainLength) / 64;
+		if (!(size > 0))
+			size = 1;
+		return (size);
+	}
+
 	/**
 	 * User changed the landscape layers. Reinitialize the landscape contents.
 	 */
@@ -179,6 +222,7 @@ public abstract class Terrain extends Node {
 		detachChild(contents);
 		contents = null;
 		quadTree = null;
+		prefetcher = null;
 		factory.dispose();
 		factory = null;
 		System.gc();
@@ -197,9 +241,10 @@ public abstract class Terrain extends Node {
 		factory = new QuadTreeFactory(getName(), source, baseLayer, layerList, pixelScale);
 		factory.setSurfaceColor(surfaceColor);
 //		factory.enableLayers(layerManager.layersEnabled);
+		prefetcher = new TilePrefetcher(factory);
 
 		// create the top level quad tree tile
-		quadTree = factory.getQuadTree("", null, new Vector3(0, 0, 0), terrainWidth / tileWidth,
+		quadTree = factory.getQuadTree(TileKey.ROOT, null, new Vector3(0, 0, 0), terrainWidth / tileWidth,
 				terrainLength / tileLength, 0, -1, false);
 		if (quadTree == null)
 			throw new IllegalStateException("Root quadTree for "+getName()+" is empty or invalid.");
@@ -254,6 +299,7 @@ public abstract class Terrain extends Node {
 	 */
 	public void dispose() {
 		quadTree = null;
+		prefetcher = null;
 		factory.dispose();
 		for (int i = 0; i < layerList.length; ++i) {
 			if (layerList[i] != null) {
@@ -357,6 +403,8 @@ public abstract class Terrain extends Node {
 				for (int i = 0; i <= baseMapLevel; ++i) {
 					quadTree.stitch(i);
 				}
+			if (prefetcher != null)
+				prefetcher.update(camera, quadTree);
 		}
 		return(qtChanged);
 	}
@@ -0,0 +1,350 @@
+package gov.nasa.arc.dert.terrain;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded second level cache of built tile payloads on disk. Tiles
+ * evicted from the QuadTreeCache can be rebuilt from here without decoding the
+ * tile files or building normals again.
+ *
+ * Each payload is one file in the cache directory, under a sub-directory for
+ * the landscape and one for the layer, named with the packed tile key (see
+ * TileKey). The file is a small header followed by the payload in native byte
+ * order, so it can be memory mapped and read without parsing. Payloads are
+ * mapped copy-on-write, so nothing written to the returned buffer reaches the
+ * file. The QuadTreeFactory copies mesh payloads into MeshBufferPool buffers,
+ * which stitching then edits, so the mapping is dropped as soon as the tile is
+ * built. Image payloads are handed to the texture image as mapped.
+ *
+ * Files are evicted in least recently used order when the total size goes over
+ * MAX_DISK_SIZE. The order survives restarts through the file modification
+ * time. The cache is disabled when MAX_DISK_SIZE is 0 or there is no
+ * directory.
+ *
+ */
+public class TileDiskCache {
+
+	// The maximum amount of disk space for the cache (in bytes), 0 disables it
+	public static long MAX_DISK_SIZE = 0;
+
+	// The cache directory
+	public static File CACHE_DIRECTORY;
+
+	// File identifier, reads back differently if the byte order changes
+	public static final int MAGIC = 0x44544331;
+
+	// File format version
+	public static final int VERSION = 1;
+
+	// Size of the file header
+	public static final int HEADER_SIZE = 16;
+
+	// File name extension
+	public static final String EXTENSION = ".tile";
+
+	private static TileDiskCache INSTANCE;
+
+	// Cache files in access order, with their sizes
+	private LinkedHashMap<File, Long> fileMap;
+
+	// The current cache size (in bytes)
+	private long cacheSize;
+
+	// The cache directory that was scanned for existing files
+	private File scannedDirectory;
+
+	// Statistics
+	private AtomicLong hitCount, missCount;
+
+	public static synchronized TileDiskCache getInstance() {
+		if (INSTANCE == null)
+			INSTANCE = new TileDiskCache();
+		return (INSTANCE);
+	}
+
+	/**
+	 * Constructor
+	 */
+	protected TileDiskCache() {
+		fileMap = new LinkedHashMap<File, Long>(256, 0.75f, true);
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+	}
+
+	/**
+	 * Determine if the cache is in use.
+	 *
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return ((MAX_DISK_SIZE > 0) && (CACHE_DIRECTORY != null));
+	}
+
+	/**
+	 * Get a payload.
+	 *
+	 * @param landscape
+	 *            the landscape path
+	 * @param layer
+	 *            the layer name
+	 * @param id
+	 *            the tile id
+	 * @param stamp
+	 *            identifies the version of the landscape the payload was built
+	 *            from
+	 * @return the payload in native byte order, or null if it is not in the
+	 *         cache
+	 */
+	public ByteBuffer get(String landscape, String layer, String id, long stamp) {
+		if (!isEnabled()) {
+			return (null);
+		}
+		File file = getFile(landscape, layer, id);
+		synchronized (this) {
+			scan();
+			if (fileMap.get(file) == null) {
+				missCount.incrementAndGet();
+				return (null);
+			}
+		}
+		ByteBuffer buffer = null;
+		try {
+			// copy-on-write mapping needs a channel open for writing
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				if (raf.length() >= HEADER_SIZE) {
+					buffer = raf.getChannel().map(FileChannel.MapMode.PRIVATE, 0, raf.length());
+				}
+			} finally {
+				raf.close();
+			}
+			if (buffer != null) {
+				buffer.order(ByteOrder.nativeOrder());
+				if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION) || (buffer.getLong(8) != stamp)) {
+					buffer = null;
+				}
+			}
+		} catch (IOException e) {
+			buffer = null;
+		}
+		if (buffer == null) {
+			// stale or unreadable, build it again
+			remove(file);
+			missCount.incrementAndGet();
+			return (null);
+		}
+		file.setLastModified(System.currentTimeMillis());
+		hitCount.incrementAndGet();
+		buffer.position(HEADER_SIZE);
+		return (buffer.slice().order(ByteOrder.nativeOrder()));
+	}
+
+	/**
+	 * Place a payload in the cache. Evict least recently used payloads if the
+	 * cache is full.
+	 *
+	 * @param landscape
+	 *            the landscape path
+	 * @param layer
+	 *            the layer name
+	 * @param id
+	 *            the tile id
+	 * @param stamp
+	 *            identifies the version of the landscape the payload was built
+	 *            from
+	 * @param payload
+	 *            the payload, from position to limit, in native byte order
+	 */
+	public void put(String landscape, String layer, String id, long stamp, ByteBuffer payload) {
+		if (!isEnabled()) {
+			return;
+		}
+		File file = getFile(landscape, layer, id);
+		long size = HEADER_SIZE + payload.remaining();
+		if (size > MAX_DISK_SIZE) {
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+		header.putInt(MAGIC).putInt(VERSION).putLong(stamp);
+		header.flip();
+		// write to a temporary file and rename so a reader never sees a partial
+		// file
+		File tmpFile = new File(file.getParentFile(), file.getName() + "." + Thread.currentThread().getId());
+		try {
+			file.getParentFile().mkdirs();
+			FileOutputStream outStream = new FileOutputStream(tmpFile);
+			try {
+				FileChannel channel = outStream.getChannel();
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				ByteBuffer data = payload.duplicate();
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			} finally {
+				outStream.close();
+			}
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+				return;
+			}
+		} catch (IOException e) {
+			System.out.println("Unable to write tile cache file " + file + ", see log.");
+			e.printStackTrace();
+			tmpFile.delete();
+			return;
+		}
+		synchronized (this) {
+			scan();
+			Long old = fileMap.put(file, size);
+			if (old != null) {
+				cacheSize -= old;
+			}
+			cacheSize += size;
+			cleanUpCache();
+		}
+	}
+
+	/**
+	 * Remove all payloads for a landscape.
+	 *
+	 * @param landscape
+	 */
+	public synchronized void clear(String landscape) {
+		if (CACHE_DIRECTORY == null) {
+			return;
+		}
+		scan();
+		File dir = getLandscapeDirectory(landscape);
+		Iterator<Map.Entry<File, Long>> iterator = fileMap.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<File, Long> entry = iterator.next();
+			if (dir.equals(entry.getKey().getParentFile().getParentFile())) {
+				entry.getKey().delete();
+				cacheSize -= entry.getValue();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Get the current cache size in bytes.
+	 *
+	 * @return
+	 */
+	public synchronized long getCacheSize() {
+		scan();
+		return (cacheSize);
+	}
+
+	/**
+	 * Get the number of lookups that found a payload.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return (hitCount.get());
+	}
+
+	/**
+	 * Get the number of lookups that did not find a payload.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return (missCount.get());
+	}
+
+	private synchronized void remove(File file) {
+		Long size = fileMap.remove(file);
+		if (size != null) {
+			cacheSize -= size;
+		}
+		file.delete();
+	}
+
+	private void cleanUpCache() {
+		Iterator<Map.Entry<File, Long>> iterator = fileMap.entrySet().iterator();
+		while ((cacheSize > MAX_DISK_SIZE) && iterator.hasNext()) {
+			Map.Entry<File, Long> entry = iterator.next();
+			entry.getKey().delete();
+			cacheSize -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	private void scan() {
+		if ((CACHE_DIRECTORY == null) || CACHE_DIRECTORY.equals(scannedDirectory)) {
+			return;
+		}
+		// the directory changed, forget the files in the old one
+		scannedDirectory = CACHE_DIRECTORY;
+		fileMap.clear();
+		cacheSize = 0;
+		ArrayList<File> list = new ArrayList<File>();
+		File[] landscapeDir = CACHE_DIRECTORY.listFiles();
+		if (landscapeDir != null) {
+			for (int i = 0; i < landscapeDir.length; ++i) {
+				File[] layerDir = landscapeDir[i].listFiles();
+				if (layerDir == null) {
+					continue;
+				}
+				for (int j = 0; j < layerDir.length; ++j) {
+					File[] file = layerDir[j].listFiles();
+					if (file == null) {
+						continue;
+					}
+					for (int k = 0; k < file.length; ++k) {
+						if (file[k].getName().endsWith(EXTENSION)) {
+							list.add(file[k]);
+						} else {
+							// left over from an interrupted write
+							file[k].delete();
+						}
+					}
+				}
+			}
+		}
+		// oldest first
+		Collections.sort(list, new Comparator<File>() {
+			@Override
+			public int compare(File f0, File f1) {
+				long t0 = f0.lastModified();
+				long t1 = f1.lastModified();
+				return (t0 < t1 ? -1 : (t0 > t1 ? 1 : 0));
+			}
+		});
+		for (int i = 0; i < list.size(); ++i) {
+			long size = list.get(i).length();
+			fileMap.put(list.get(i), size);
+			cacheSize += size;
+		}
+		cleanUpCache();
+	}
+
+	private File getLandscapeDirectory(String landscape) {
+		String name = new File(landscape).getName().replaceAll("[^A-Za-z0-9_\\-]", "_");
+		return (new File(CACHE_DIRECTORY, name + "_" + Integer.toHexString(landscape.hashCode())));
+	}
+
+	private File getFile(String landscape, String layer, String id) {
+		File dir = new File(getLandscapeDirectory(landscape), layer);
+		return (new File(dir, Long.toHexString(TileKey.parse(id)) + EXTENSION));
+	}
+
+}
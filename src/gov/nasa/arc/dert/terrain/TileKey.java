@@ -0,0 +1,227 @@
+package gov.nasa.arc.dert.terrain;
+
+/**
+ * Static methods for packed landscape tile keys. A key is a long with the
+ * pyramid level in the upper bits and the Morton code of the tile below. Each
+ * level adds 2 bits to the code, the quadrant of the tile in its parent minus
+ * 1, so bit 0 of each pair is the column and bit 1 is the row (counted from the
+ * top). The root tile is level 0 with an empty code.
+ *
+ * Quadrants are numbered 1 (upper left), 2 (upper right), 3 (lower left) and
+ * 4 (lower right) as in the tile paths of the file system ("/1/3/2").
+ * Conversion to and from the path is only needed when reading files.
+ *
+ */
+public class TileKey {
+
+	// The key of the root tile
+	public static final long ROOT = 0;
+
+	// Returned when there is no tile
+	public static final long NONE = -1;
+
+	// The highest level that can be encoded
+	public static final int MAX_LEVEL = 29;
+
+	// Position of the level bits
+	private static final int LEVEL_SHIFT = 58;
+
+	// Mask for the Morton code bits
+	private static final long CODE_MASK = (1l << LEVEL_SHIFT) - 1;
+
+	private TileKey() {
+		// static methods only
+	}
+
+	/**
+	 * Get the pyramid level of a key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static int getLevel(long key) {
+		return ((int) (key >>> LEVEL_SHIFT));
+	}
+
+	/**
+	 * Get the Morton code of a key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static long getCode(long key) {
+		return (key & CODE_MASK);
+	}
+
+	/**
+	 * Get the key for a level and Morton code.
+	 *
+	 * @param level
+	 * @param code
+	 * @return
+	 */
+	public static long getKey(int level, long code) {
+		return (((long) level << LEVEL_SHIFT) | code);
+	}
+
+	/**
+	 * Get the key of a child tile.
+	 *
+	 * @param key
+	 * @param quadrant
+	 *            1 to 4
+	 * @return
+	 */
+	public static long getChild(long key, int quadrant) {
+		return (getKey(getLevel(key) + 1, (getCode(key) << 2) | (quadrant - 1)));
+	}
+
+	/**
+	 * Get the key of the parent tile.
+	 *
+	 * @param key
+	 * @return NONE for the root
+	 */
+	public static long getParent(long key) {
+		int level = getLevel(key);
+		if (level == 0) {
+			return (NONE);
+		}
+		return (getKey(level - 1, getCode(key) >>> 2));
+	}
+
+	/**
+	 * Get the quadrant of a tile in its parent.
+	 *
+	 * @param key
+	 * @return 1 to 4, 0 for the root
+	 */
+	public static int getQuadrant(long key) {
+		if (getLevel(key) == 0) {
+			return (0);
+		}
+		return ((int) (key & 3) + 1);
+	}
+
+	/**
+	 * Get the quadrant of the ancestor of a tile at the given level in its
+	 * parent.
+	 *
+	 * @param key
+	 * @param level
+	 *            1 to the level of the key
+	 * @return 1 to 4
+	 */
+	public static int getQuadrant(long key, int level) {
+		return ((int) (key >>> (2 * (getLevel(key) - level))) & 3) + 1;
+	}
+
+	/**
+	 * Get the column of a tile in the grid of tiles at its level.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static int getColumn(long key) {
+		return (compact(getCode(key)));
+	}
+
+	/**
+	 * Get the row of a tile in the grid of tiles at its level. Row 0 is at the
+	 * top.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static int getRow(long key) {
+		return (compact(getCode(key) >>> 1));
+	}
+
+	/**
+	 * Get the key for a column and row in the grid of tiles at a level.
+	 *
+	 * @param level
+	 * @param column
+	 * @param row
+	 * @return
+	 */
+	public static long fromColumnRow(int level, int column, int row) {
+		return (getKey(level, spread(column) | (spread(row) << 1)));
+	}
+
+	/**
+	 * Determine if a tile is a descendant of another.
+	 *
+	 * @param ancestor
+	 * @param key
+	 * @return true if key is below ancestor in the pyramid
+	 */
+	public static boolean isDescendant(long ancestor, long key) {
+		int d = getLevel(key) - getLevel(ancestor);
+		if (d <= 0) {
+			return (false);
+		}
+		return ((getCode(key) >>> (2 * d)) == getCode(ancestor));
+	}
+
+	/**
+	 * Convert a file system tile path ("/1/3/2") to a key.
+	 *
+	 * @param id
+	 * @return NONE if the path is not valid
+	 */
+	public static long parse(String id) {
+		int level = 0;
+		long code = 0;
+		int n = id.length();
+		for (int i = 0; i < n; ++i) {
+			char c = id.charAt(i);
+			if ((c == '/') || (c == '\\')) {
+				continue;
+			}
+			if ((c < '1') || (c > '4') || (level == MAX_LEVEL)) {
+				return (NONE);
+			}
+			code = (code << 2) | (c - '1');
+			level++;
+		}
+		return (getKey(level, code));
+	}
+
+	/**
+	 * Convert a key to a file system tile path ("/1/3/2").
+	 *
+	 * @param key
+	 * @return the empty string for the root
+	 */
+	public static String toString(long key) {
+		int level = getLevel(key);
+		char[] path = new char[2 * level];
+		for (int i = 1; i <= level; ++i) {
+			path[2 * i - 2] = '/';
+			path[2 * i - 1] = (char) ('0' + getQuadrant(key, i));
+		}
+		return (new String(path));
+	}
+
+	private static int compact(long bits) {
+		bits &= 0x5555555555555555l;
+		bits = (bits | (bits >>> 1)) & 0x3333333333333333l;
+		bits = (bits | (bits >>> 2)) & 0x0f0f0f0f0f0f0f0fl;
+		bits = (bits | (bits >>> 4)) & 0x00ff00ff00ff00ffl;
+		bits = (bits | (bits >>> 8)) & 0x0000ffff0000ffffl;
+		bits = (bits | (bits >>> 16)) & 0x00000000ffffffffl;
+		return ((int) bits);
+	}
+
+	private static long spread(int value) {
+		long bits = value & 0x00000000ffffffffl;
+		bits = (bits | (bits << 16)) & 0x0000ffff0000ffffl;
+		bits = (bits | (bits << 8)) & 0x00ff00ff00ff00ffl;
+		bits = (bits | (bits << 4)) & 0x0f0f0f0f0f0f0f0fl;
+		bits = (bits | (bits << 2)) & 0x3333333333333333l;
+		bits = (bits | (bits << 1)) & 0x5555555555555555l;
+		return (bits);
+	}
+
+}
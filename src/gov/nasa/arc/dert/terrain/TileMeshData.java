@@ -2,6 +2,8 @@ package gov.nasa.arc.dert.terrain;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ardor3d.renderer.IndexMode;
 import com.ardor3d.scenegraph.FloatBufferData;
@@ -12,9 +14,20 @@ import com.ardor3d.scenegraph.MeshData;
  * Extension of Ardor3D MeshData class that allows setting all of the buffers in
  * the constructor.
  *
+ * The buffers come from the MeshBufferPool and are returned to it when the
+ * tile is disposed. Threads that read the buffers outside of the render thread
+ * acquire the data first, and the buffers are not returned until the last of
+ * them releases it.
+ *
  */
 public class TileMeshData extends MeshData {
 
+	// References to the buffers, one for the mesh and one for each reader
+	private AtomicInteger refCount = new AtomicInteger(1);
+
+	// The mesh reference has been dropped
+	private AtomicBoolean disposed = new AtomicBoolean();
+
 	/**
 	 * Constructor
 	 * 
@@ -71,18 +84,73 @@ public class TileMeshData extends MeshData {
 		}
 	}
 	
+	/**
+	 * Keep the buffers from being returned to the pool while reading them.
+	 * Each successful call must be matched by a call to release.
+	 * 
+	 * @return false if the mesh has been disposed and the buffers must not be
+	 *         read
+	 */
+	public boolean acquire() {
+		while (true) {
+			int count = refCount.get();
+			if (count == 0) {
+				return (false);
+			}
+			if (refCount.compareAndSet(count, count + 1)) {
+				return (true);
+			}
+		}
+	}
+
+	/**
+	 * Release a reference to the buffers. The buffers are returned to the
+	 * MeshBufferPool when the last reference is released.
+	 */
+	public void release() {
+		if (refCount.decrementAndGet() == 0) {
+			releaseBuffers();
+		}
+	}
+
+	/**
+	 * Drop the reference of the mesh. The float buffers are returned to the
+	 * MeshBufferPool once all readers have released them.
+	 */
 	public void dispose() {
-		if (_vertexCoords != null)
+		if (disposed.compareAndSet(false, true)) {
+			release();
+		}
+	}
+
+	/**
+	 * Return the float buffers to the MeshBufferPool. The indices are shared
+	 * and are only dropped.
+	 */
+	private void releaseBuffers() {
+		MeshBufferPool pool = MeshBufferPool.getInstance();
+		if (_vertexCoords != null) {
+			pool.release(_vertexCoords.getBuffer());
 			_vertexCoords.setBuffer(null);
-		if (_normalCoords != null)
+		}
+		if (_normalCoords != null) {
+			pool.release(_normalCoords.getBuffer());
 			_normalCoords.setBuffer(null);
-		if (_colorCoords != null)
+		}
+		if (_colorCoords != null) {
+			pool.release(_colorCoords.getBuffer());
 			_colorCoords.setBuffer(null);
+		}
 		if (_indexBuffer != null)
 			_indexBuffer.setBuffer(null);
 		if (_textureCoords != null)
-			for (int i=0; i<_textureCoords.size(); ++i)
-				_textureCoords.get(i).setBuffer(null);
+			for (int i=0; i<_textureCoords.size(); ++i) {
+				FloatBufferData tcb = _textureCoords.get(i);
+				if (tcb != null) {
+					pool.release(tcb.getBuffer());
+					tcb.setBuffer(null);
+				}
+			}
 	}	
 
 }
@@ -0,0 +1,181 @@
+package gov.nasa.arc.dert.terrain;
+
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+import gov.nasa.arc.dert.viewpoint.ViewpointStore;
+
+import java.util.List;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Starts loading the QuadTree tiles the camera is about to need so they are
+ * ready when the QuadTree splits. Each frame the camera position is either
+ * taken from the upcoming viewpoints of a fly through (see expect) or
+ * extrapolated from the recent camera motion. The QuadTree is then tested
+ * against the predicted camera and the children of tiles that would split
+ * are queued in the QuadTreeFactory at prefetch priority. Tiles needed for
+ * the current view are always loaded first.
+ *
+ */
+public class TilePrefetcher {
+
+	// How far ahead to extrapolate the camera motion (in seconds)
+	public static double LOOK_AHEAD = 1.0;
+
+	// Number of upcoming fly through viewpoints to prefetch
+	public static int LOOK_AHEAD_FRAMES = 3;
+
+	// Frames further apart than this are not used to estimate camera motion
+	// (in seconds)
+	private static final double MAX_FRAME_INTERVAL = 0.5;
+
+	// The QuadTree factory
+	private QuadTreeFactory factory;
+
+	// Camera placed at the predicted position
+	private BasicCamera predicted;
+
+	// Camera state from the previous frame
+	private Vector3 lastLocation, lastLookAt;
+	private long lastTime;
+
+	// Smoothed camera velocity
+	private Vector3 velocity, lookAtVelocity;
+
+	// Work vectors
+	private Vector3 location, look, left, up;
+
+	// Upcoming viewpoints from a fly through
+	private List<ViewpointStore> flyList;
+	private int flyIndex;
+	private boolean flyLoop;
+
+	/**
+	 * Constructor
+	 *
+	 * @param factory
+	 */
+	public TilePrefetcher(QuadTreeFactory factory) {
+		this.factory = factory;
+		lastLocation = new Vector3();
+		lastLookAt = new Vector3();
+		velocity = new Vector3();
+		lookAtVelocity = new Vector3();
+		location = new Vector3();
+		look = new Vector3();
+		left = new Vector3();
+		up = new Vector3();
+	}
+
+	/**
+	 * Tell the prefetcher which viewpoints a fly through will show next.
+	 *
+	 * @param flyList
+	 *            the fly through viewpoints
+	 * @param flyIndex
+	 *            the index of the next viewpoint
+	 * @param flyLoop
+	 *            the fly through repeats
+	 */
+	public synchronized void expect(List<ViewpointStore> flyList, int flyIndex, boolean flyLoop) {
+		this.flyList = flyList;
+		this.flyIndex = flyIndex;
+		this.flyLoop = flyLoop;
+	}
+
+	/**
+	 * Queue the tiles for the predicted camera positions. Called each frame
+	 * after the QuadTree has been updated for the current camera.
+	 *
+	 * @param camera
+	 *            the current camera
+	 * @param quadTree
+	 *            the root QuadTree
+	 */
+	public void update(BasicCamera camera, QuadTree quadTree) {
+		if (quadTree == null) {
+			return;
+		}
+		if (predicted == null) {
+			predicted = new BasicCamera(camera);
+		}
+
+		List<ViewpointStore> list = null;
+		int index = 0;
+		boolean loop = false;
+		synchronized (this) {
+			list = flyList;
+			index = flyIndex;
+			loop = flyLoop;
+			flyList = null;
+		}
+
+		long time = System.nanoTime();
+		double dt = (time - lastTime) / 1000000000.0;
+		boolean moving = updateVelocity(camera, dt);
+		lastLocation.set(camera.getLocation());
+		lastLookAt.set(camera.getLookAt());
+		lastTime = time;
+
+		// fly through viewpoints are known
+		if (list != null) {
+			for (int i = 0; i < LOOK_AHEAD_FRAMES; ++i, ++index) {
+				if (index >= list.size()) {
+					if (!loop || list.isEmpty()) {
+						break;
+					}
+					index = 0;
+				}
+				setPredicted(camera, list.get(index));
+				if (!quadTree.prefetch(predicted, factory)) {
+					break;
+				}
+			}
+			return;
+		}
+
+		// otherwise extrapolate the camera motion
+		if (!moving) {
+			return;
+		}
+		predicted.set(camera);
+		location.set(velocity).multiplyLocal(LOOK_AHEAD).addLocal(camera.getLocation());
+		look.set(lookAtVelocity).multiplyLocal(LOOK_AHEAD).addLocal(camera.getLookAt());
+		predicted.setLocation(location);
+		predicted.setLookAt(look);
+		quadTree.prefetch(predicted, factory);
+	}
+
+	private boolean updateVelocity(BasicCamera camera, double dt) {
+		if ((lastTime == 0) || (dt <= 0) || (dt > MAX_FRAME_INTERVAL)) {
+			velocity.zero();
+			lookAtVelocity.zero();
+			return (false);
+		}
+		// average with the previous estimate to smooth out jitter
+		location.set(camera.getLocation()).subtractLocal(lastLocation).divideLocal(dt);
+		velocity.addLocal(location).multiplyLocal(0.5);
+		look.set(camera.getLookAt()).subtractLocal(lastLookAt).divideLocal(dt);
+		lookAtVelocity.addLocal(look).multiplyLocal(0.5);
+		return ((velocity.lengthSquared() > 0) || (lookAtVelocity.lengthSquared() > 0));
+	}
+
+	private void setPredicted(BasicCamera camera, ViewpointStore vps) {
+		predicted.set(camera);
+		predicted.setMagnification(vps.magIndex);
+		predicted.setFrustum(vps.frustumNear, vps.frustumFar, vps.frustumLeft, vps.frustumRight, vps.frustumTop,
+			vps.frustumBottom);
+		predicted.setLookAt(vps.lookAt);
+		// orient the camera along the viewpoint direction, keeping it upright
+		up.set(camera.getUp());
+		up.cross(vps.direction, left);
+		if (left.lengthSquared() < 1e-12) {
+			left.set(camera.getLeft());
+		}
+		left.normalizeLocal();
+		vps.direction.cross(left, up);
+		up.normalizeLocal();
+		predicted.setFrame(vps.location, left, up, vps.direction);
+	}
+
+}
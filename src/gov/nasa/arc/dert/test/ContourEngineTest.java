@@ -0,0 +1,210 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.landscape.ContourEngine;
+import gov.nasa.arc.dert.landscape.ContourEngine.Contour;
+import gov.nasa.arc.dert.terrain.TileKey;
+
+import java.util.List;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Provided for testing contour extraction on synthetic tiles.
+ *
+ */
+public class ContourEngineTest {
+
+	// 2x2 tiles at level 1
+	private int level = 1;
+	private int tileWidth = 16, tileLength = 16;
+	private double pixelWidth = 1, pixelLength = 1;
+	private int n = 1 << level;
+	private double halfWidth = n * tileWidth * pixelWidth / 2;
+	private double halfLength = n * tileLength * pixelLength / 2;
+
+	// surface center, off the vertices so no vertex is on a contour level
+	private double xC = 0.37, yC = -0.21;
+
+	public boolean testContourEngine() {
+		System.err.println("Testing contour engine . . .");
+		boolean result = true;
+		if (!testCone()) {
+			System.err.println("Test of ContourEngine with a cone failed.");
+			result = false;
+		}
+		else if (!testSaddle()) {
+			System.err.println("Test of ContourEngine with a saddle failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private double cone(double x, double y) {
+		return(10-Math.sqrt((x-xC)*(x-xC)+(y-yC)*(y-yC)));
+	}
+
+	private double saddle(double x, double y) {
+		return((x-xC)*(y-yC)/10);
+	}
+
+	private double getZ(boolean isCone, double x, double y) {
+		return(isCone ? cone(x, y) : saddle(x, y));
+	}
+
+	private List<Contour> getContours(boolean isCone, double interval) {
+		long[] key = new long[n*n];
+		float[][] z = new float[n*n][];
+		for (int row=0; row<n; ++row) {
+			for (int col=0; col<n; ++col) {
+				int t = row*n+col;
+				key[t] = TileKey.fromColumnRow(level, col, row);
+				double x0 = -halfWidth+col*tileWidth*pixelWidth;
+				double y0 = halfLength-row*tileLength*pixelLength;
+				z[t] = new float[(tileWidth+1)*(tileLength+1)];
+				for (int r=0; r<=tileLength; ++r)
+					for (int c=0; c<=tileWidth; ++c)
+						z[t][r*(tileWidth+1)+c] = (float)getZ(isCone, x0+c*pixelWidth, y0-r*pixelLength);
+			}
+		}
+		// polygon around the whole grid and the plane z = 0
+		double w = halfWidth+0.5;
+		double l = halfLength+0.5;
+		ReadOnlyVector3[] vertex = {new Vector3(-w, l, 0), new Vector3(w, l, 0), new Vector3(w, -l, 0),
+			new Vector3(-w, -l, 0), new Vector3(-w, l, 0)};
+		ContourEngine engine = new ContourEngine(null);
+		if (!engine.setRegion(vertex, new double[] {0, 0, 1, 0}, level, key, z, tileWidth, tileLength, pixelWidth,
+			pixelLength))
+			return(null);
+		return(engine.getContours(interval));
+	}
+
+	private boolean testCone() {
+		List<Contour> contourList = getContours(true, 1);
+		if ((contourList == null) || contourList.isEmpty())
+			return(false);
+		for (int k=-5; k<=9; ++k) {
+			// circles that fit in the grid are one closed loop across the
+			// 4 tiles
+			int count = 0;
+			for (Contour contour : contourList) {
+				if (contour.value != k)
+					continue;
+				count++;
+				if (!contour.closed)
+					return(false);
+				for (int i=0; i<contour.count; ++i) {
+					double d = Math.hypot(contour.xy[2*i]-xC, contour.xy[2*i+1]-yC);
+					if (Math.abs(d-(10-k)) > 0.1) {
+						System.err.println("Cone contour "+k+" point at distance "+d);
+						return(false);
+					}
+				}
+			}
+			if (count != 1) {
+				System.err.println("Cone contour "+k+" is in "+count+" lines");
+				return(false);
+			}
+		}
+		return(checkLeft(true, contourList) && checkCrossings(true, contourList));
+	}
+
+	private boolean testSaddle() {
+		List<Contour> contourList = getContours(false, 2);
+		if ((contourList == null) || contourList.isEmpty())
+			return(false);
+		// the lines run across the tiles from one side of the grid to another
+		for (Contour contour : contourList) {
+			if (contour.closed)
+				return(false);
+			if (!onBorder(contour.xy[0], contour.xy[1])
+				|| !onBorder(contour.xy[2*contour.count-2], contour.xy[2*contour.count-1])) {
+				System.err.println("Saddle contour "+contour.value+" ends inside the grid");
+				return(false);
+			}
+		}
+		return(checkLeft(false, contourList) && checkCrossings(false, contourList));
+	}
+
+	private boolean onBorder(double x, double y) {
+		double eps = 1e-6;
+		return((Math.abs(Math.abs(x)-halfWidth) < eps) || (Math.abs(Math.abs(y)-halfLength) < eps));
+	}
+
+	/**
+	 * The higher ground is on the left of each segment.
+	 */
+	private boolean checkLeft(boolean isCone, List<Contour> contourList) {
+		double offset = 0.1;
+		for (Contour contour : contourList) {
+			for (int i=0; i<contour.count-1; ++i) {
+				double x0 = contour.xy[2*i];
+				double y0 = contour.xy[2*i+1];
+				double dx = contour.xy[2*i+2]-x0;
+				double dy = contour.xy[2*i+3]-y0;
+				double len = Math.hypot(dx, dy);
+				double xm = x0+dx/2;
+				double ym = y0+dy/2;
+				// the segments in the cell at the saddle only follow the
+				// surface roughly
+				if (!isCone && (Math.hypot(xm-xC, ym-yC) < 2))
+					continue;
+				double nx = -dy/len*offset;
+				double ny = dx/len*offset;
+				if (getZ(isCone, xm+nx, ym+ny) <= getZ(isCone, xm-nx, ym-ny)) {
+					System.err.println("Contour "+contour.value+" has lower ground on the left at "+xm+","+ym);
+					return(false);
+				}
+			}
+		}
+		return(true);
+	}
+
+	/**
+	 * Each grid edge that a contour level crosses gives exactly one point in
+	 * the lines of that level.
+	 */
+	private boolean checkCrossings(boolean isCone, List<Contour> contourList) {
+		int columns = n*tileWidth+1;
+		int rows = n*tileLength+1;
+		double[] levels = new double[contourList.size()];
+		int levelCount = 0;
+		for (Contour contour : contourList) {
+			boolean found = false;
+			for (int i=0; i<levelCount; ++i)
+				found |= (levels[i] == contour.value);
+			if (!found)
+				levels[levelCount++] = contour.value;
+		}
+		for (int k=0; k<levelCount; ++k) {
+			double value = levels[k];
+			int edgeCount = 0;
+			for (int r=0; r<rows; ++r) {
+				for (int c=0; c<columns; ++c) {
+					double x = -halfWidth+c*pixelWidth;
+					double y = halfLength-r*pixelLength;
+					boolean above = getZ(isCone, x, y) >= value;
+					if ((c < columns-1) && (above != (getZ(isCone, x+pixelWidth, y) >= value)))
+						edgeCount++;
+					if ((r < rows-1) && (above != (getZ(isCone, x, y-pixelLength) >= value)))
+						edgeCount++;
+				}
+			}
+			int pointCount = 0;
+			for (Contour contour : contourList) {
+				if (contour.value != value)
+					continue;
+				// the last point of a loop is the first
+				pointCount += contour.closed ? contour.count-1 : contour.count;
+			}
+			if (pointCount != edgeCount) {
+				System.err.println("Contour "+value+" has "+pointCount+" points for "+edgeCount+" crossed edges");
+				return(false);
+			}
+		}
+		return(true);
+	}
+
+}
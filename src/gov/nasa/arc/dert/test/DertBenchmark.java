@@ -0,0 +1,555 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.io.geojson.json.JsonReader;
+import gov.nasa.arc.dert.landscape.factory.RasterPyramidLayerFactory;
+import gov.nasa.arc.dert.raster.Raster;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.raster.geotiff.GTIF;
+import gov.nasa.arc.dert.terrain.HeightBounds;
+import gov.nasa.arc.dert.terrain.LayerInfo.LayerType;
+import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.terrain.QuadTreeCache;
+import gov.nasa.arc.dert.terrain.QuadTreeMesh;
+import gov.nasa.arc.dert.terrain.TileKey;
+import gov.nasa.arc.dert.util.MathUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Performance benchmarks for terrain, raster and geometry code paths, using
+ * synthetic data from TestDemFactory. Run with "ant -f build_linux.xml
+ * benchmark".
+ *
+ * Each benchmark is warmed up and then timed for a number of fixed length
+ * iterations. The mean time per operation is reported. Results can be saved
+ * with -save=file and later runs compared with -baseline=file, which fails
+ * if any benchmark is slower than the baseline by more than TOLERANCE.
+ * Use -filter=text to run only benchmarks whose names contain the text.
+ *
+ */
+public class DertBenchmark {
+
+	// Number of warm up and measured iterations
+	public static int WARMUP_ITERATIONS = 5;
+	public static int MEASURED_ITERATIONS = 10;
+
+	// Length of an iteration (in milliseconds)
+	public static long ITERATION_TIME = 500;
+
+	// Allowed slow down against the baseline
+	public static double TOLERANCE = 0.2;
+
+	// Number of sample coordinates
+	private static final int NUM_SAMPLES = 4096;
+
+	// Consumes results so the work is not optimized away
+	private static volatile double sink;
+
+	private TestDemFactory demFactory;
+	private String testLoc;
+	private double[] sampleX, sampleY;
+
+	/**
+	 * An operation to be timed.
+	 */
+	protected static abstract class Operation {
+
+		protected String name;
+
+		// Number of operations between clock reads
+		protected int batchSize = 64;
+
+		public Operation(String name) {
+			this.name = name;
+		}
+
+		public void setUp() throws Exception {
+		}
+
+		/**
+		 * Perform the operation once.
+		 *
+		 * @param i
+		 *            the invocation count
+		 * @return a result to be consumed
+		 */
+		public abstract double run(int i) throws Exception;
+
+		public void tearDown() {
+		}
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 *            [-save=file] [-baseline=file] [-filter=text]
+	 */
+	public static void main(String[] args) {
+		String savePath = null;
+		String baselinePath = null;
+		String filter = null;
+		for (int i=0; i<args.length; ++i) {
+			if (args[i].startsWith("-save="))
+				savePath = args[i].substring(6);
+			else if (args[i].startsWith("-baseline="))
+				baselinePath = args[i].substring(10);
+			else if (args[i].startsWith("-filter="))
+				filter = args[i].substring(8);
+		}
+
+		DertBenchmark benchmark = new DertBenchmark(DertTest.testLoc);
+		try {
+			Properties results = benchmark.runBenchmarks(filter);
+			if (savePath != null) {
+				FileOutputStream outStream = new FileOutputStream(savePath);
+				results.store(outStream, "DERT benchmark results in nanoseconds per operation");
+				outStream.close();
+			}
+			if (baselinePath != null) {
+				Properties baseline = new Properties();
+				FileInputStream inStream = new FileInputStream(baselinePath);
+				baseline.load(inStream);
+				inStream.close();
+				if (!compare(results, baseline))
+					System.exit(1);
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			System.exit(2);
+		}
+		System.exit(0);
+	}
+
+	public DertBenchmark(String testLoc) {
+		this.testLoc = testLoc;
+		Random random = new Random(1);
+		sampleX = new double[NUM_SAMPLES];
+		sampleY = new double[NUM_SAMPLES];
+		for (int i=0; i<NUM_SAMPLES; ++i) {
+			sampleX[i] = random.nextDouble();
+			sampleY[i] = random.nextDouble();
+		}
+	}
+
+	/**
+	 * Run all benchmarks.
+	 *
+	 * @param filter
+	 *            run only benchmarks with names containing this (null for all)
+	 * @return the mean nanoseconds per operation keyed by benchmark name
+	 * @throws Exception
+	 */
+	public Properties runBenchmarks(String filter) throws Exception {
+		demFactory = new TestDemFactory(1024);
+		if (!demFactory.createLandscape(testLoc))
+			throw new IllegalStateException("Unable to create test landscape in "+testLoc);
+
+		ArrayList<Operation> opList = new ArrayList<Operation>();
+		opList.add(createBilinearOperation());
+		opList.add(createHeightBoundsOperation());
+		opList.add(createGetKeyOperation());
+		opList.add(createCacheOperation());
+		opList.add(createRasterGetOperation());
+		opList.add(createRasterSetAsFloatOperation());
+		opList.add(createInsidePolygonOperation());
+		opList.add(createJsonOperation());
+		opList.add(createWriteTileOperation());
+
+		Properties results = new Properties();
+		System.err.println();
+		System.err.println(String.format("%-40s %14s %12s", "Benchmark", "ns/op", "error"));
+		for (int i=0; i<opList.size(); ++i) {
+			Operation op = opList.get(i);
+			if ((filter != null) && !op.name.contains(filter))
+				continue;
+			double[] result = measure(op);
+			System.err.println(String.format("%-40s %14.1f %12.1f", op.name, result[0], result[1]));
+			results.setProperty(op.name, Double.toString(result[0]));
+		}
+		return(results);
+	}
+
+	/**
+	 * Time an operation.
+	 *
+	 * @param op
+	 * @return the mean and standard deviation of nanoseconds per operation
+	 * @throws Exception
+	 */
+	protected double[] measure(Operation op) throws Exception {
+		op.setUp();
+		try {
+			int count = 0;
+			for (int i=0; i<WARMUP_ITERATIONS; ++i)
+				count = iterate(op, count, null);
+			double[] nsPerOp = new double[MEASURED_ITERATIONS];
+			for (int i=0; i<MEASURED_ITERATIONS; ++i)
+				count = iterate(op, count, nsPerOp, i);
+			double mean = 0;
+			for (int i=0; i<nsPerOp.length; ++i)
+				mean += nsPerOp[i];
+			mean /= nsPerOp.length;
+			double var = 0;
+			for (int i=0; i<nsPerOp.length; ++i)
+				var += (nsPerOp[i]-mean)*(nsPerOp[i]-mean);
+			return(new double[] {mean, Math.sqrt(var/nsPerOp.length)});
+		}
+		finally {
+			op.tearDown();
+		}
+	}
+
+	private int iterate(Operation op, int count, double[] nsPerOp) throws Exception {
+		return(iterate(op, count, nsPerOp, 0));
+	}
+
+	private int iterate(Operation op, int count, double[] nsPerOp, int index) throws Exception {
+		double s = 0;
+		long n = 0;
+		long start = System.nanoTime();
+		long end = start+ITERATION_TIME*1000000;
+		long t = start;
+		do {
+			for (int j=0; j<op.batchSize; ++j)
+				s += op.run(count++);
+			n += op.batchSize;
+			t = System.nanoTime();
+		} while (t < end);
+		sink += s;
+		if (nsPerOp != null)
+			nsPerOp[index] = (double)(t-start)/n;
+		return(count);
+	}
+
+	/**
+	 * Compare results to a baseline.
+	 *
+	 * @param results
+	 * @param baseline
+	 * @return false if any benchmark regressed
+	 */
+	public static boolean compare(Properties results, Properties baseline) {
+		boolean passed = true;
+		for (String name : results.stringPropertyNames()) {
+			String str = baseline.getProperty(name);
+			if (str == null)
+				continue;
+			double base = Double.parseDouble(str);
+			double current = Double.parseDouble(results.getProperty(name));
+			if (current > base*(1+TOLERANCE)) {
+				System.err.println("Regression in "+name+": "+current+" ns/op, baseline "+base+" ns/op.");
+				passed = false;
+			}
+		}
+		if (passed)
+			System.err.println("No regressions against baseline.");
+		return(passed);
+	}
+
+	private Operation createBilinearOperation() {
+		return(new Operation("QuadTreeMesh.getElevationBilinear") {
+			private QuadTreeMesh mesh;
+			private int tileSize = 128;
+			@Override
+			public void setUp() {
+				mesh = new QuadTreeMesh(name, tileSize, tileSize, 1, 1);
+				FloatBuffer vertexBuffer = BufferUtils.createVector3Buffer((tileSize+1)*(tileSize+1));
+				for (int r=0; r<=tileSize; ++r)
+					for (int c=0; c<=tileSize; ++c) {
+						vertexBuffer.put(c-tileSize/2);
+						vertexBuffer.put(tileSize/2-r);
+						vertexBuffer.put(demFactory.getZ(c-tileSize/2, tileSize/2-r));
+					}
+				vertexBuffer.rewind();
+				mesh.getMeshData().setVertexBuffer(vertexBuffer);
+			}
+			@Override
+			public double run(int i) {
+				int k = i&(NUM_SAMPLES-1);
+				return(mesh.getElevationBilinear(sampleX[k]*tileSize, sampleY[k]*tileSize));
+			}
+		});
+	}
+
+	private Operation createHeightBoundsOperation() {
+		return(new Operation("HeightBounds.intersect") {
+			private HeightBounds bounds;
+			private int tileSize = 128;
+			@Override
+			public void setUp() {
+				QuadTreeMesh mesh = new QuadTreeMesh(name, tileSize, tileSize, 1, 1);
+				FloatBuffer vertexBuffer = BufferUtils.createVector3Buffer((tileSize+1)*(tileSize+1));
+				for (int r=0; r<=tileSize; ++r)
+					for (int c=0; c<=tileSize; ++c) {
+						vertexBuffer.put(c-tileSize/2);
+						vertexBuffer.put(tileSize/2-r);
+						vertexBuffer.put(demFactory.getZ(c-tileSize/2, tileSize/2-r));
+					}
+				vertexBuffer.rewind();
+				mesh.getMeshData().setVertexBuffer(vertexBuffer);
+				bounds = mesh.getHeightBounds();
+			}
+			@Override
+			public double run(int i) {
+				// oblique ray from above one side of the tile to a point on it
+				int k = i&(NUM_SAMPLES-1);
+				double x = (sampleX[k]-0.5)*tileSize;
+				double y = (sampleY[k]-0.5)*tileSize;
+				Vector3 direction = new Vector3(x+tileSize, y, demFactory.getZ(x, y)-1000).normalizeLocal();
+				HeightBounds.Hit hit = new HeightBounds.Hit();
+				bounds.intersect(new double[] {-tileSize, 0, 1000, direction.getX(), direction.getY(), direction.getZ()}, hit);
+				return(hit.t);
+			}
+		});
+	}
+
+	private Operation createGetKeyOperation() {
+		return(new Operation("FileSystemTileSource.getKey") {
+			private FileSystemTileSource tileSource;
+			@Override
+			public void setUp() {
+				tileSource = new FileSystemTileSource();
+				tileSource.connect(testLoc, null, null);
+				tileSource.getLayerInfo();
+			}
+			@Override
+			public double run(int i) {
+				int k = i&(NUM_SAMPLES-1);
+				return(tileSource.getKey(sampleX[k]*1024-512, sampleY[k]*1024-512, 1024, 1024));
+			}
+		});
+	}
+
+	private Operation createCacheOperation() {
+		return(new Operation("QuadTreeCache.put/get/evict") {
+			private String label = "DertBenchmark";
+			private long maxMemory;
+			private long[] key;
+			private QuadTree[] quadTree;
+			@Override
+			public void setUp() {
+				maxMemory = QuadTreeCache.MAX_CACHE_MEMORY;
+				QuadTreeCache cache = QuadTreeCache.getInstance();
+				cache.clear(label);
+				// room for a quarter of the tiles so lookups miss and evict
+				QuadTreeCache.MAX_CACHE_MEMORY = cache.getCacheSize()+256*100;
+				key = new long[1024];
+				quadTree = new QuadTree[key.length];
+				for (int i=0; i<key.length; ++i) {
+					key[i] = TileKey.getKey(5, i);
+					quadTree[i] = new QuadTree(key[i], Vector3.ZERO, 5, i%4, 1, 1, 100);
+				}
+			}
+			@Override
+			public double run(int i) {
+				QuadTreeCache cache = QuadTreeCache.getInstance();
+				// favor a quarter of the keys so there are hits
+				int k = (i%3 == 0) ? (i*7)&(key.length-1) : (i*7)&(key.length/4-1);
+				QuadTree qt = cache.getQuadTree(label, key[k]);
+				if (qt == null) {
+					cache.putQuadTree(label, key[k], quadTree[k]);
+					return(0);
+				}
+				return(1);
+			}
+			@Override
+			public void tearDown() {
+				QuadTreeCache.getInstance().clear(label);
+				QuadTreeCache.MAX_CACHE_MEMORY = maxMemory;
+			}
+		});
+	}
+
+	private Operation createRasterGetOperation() {
+		return(new Operation("Raster.get") {
+			private Raster raster;
+			private ByteBuffer bBuf;
+			@Override
+			public void setUp() throws IOException {
+				raster = createRaster();
+				bBuf = ByteBuffer.allocate(129*129*4);
+				batchSize = 1;
+			}
+			@Override
+			public double run(int i) {
+				int k = i&(NUM_SAMPLES-1);
+				int left = (int)(sampleX[k]*(1024-129));
+				int top = (int)(sampleY[k]*(1024-129));
+				raster.get(top, left, 129, 129, bBuf, 0, 0, 129, 1);
+				return(bBuf.getFloat(0));
+			}
+			@Override
+			public void tearDown() {
+				raster.dispose();
+			}
+		});
+	}
+
+	private Operation createRasterSetAsFloatOperation() {
+		return(new Operation("Raster.setAsFloat") {
+			private Raster raster;
+			private ByteBuffer bBuf;
+			private double[] min = {-Float.MAX_VALUE}, max = {Float.MAX_VALUE};
+			@Override
+			public void setUp() throws IOException {
+				raster = new Raster(1024, 1024, 4, DataType.Float, tmpPath());
+				bBuf = ByteBuffer.allocate(1024*16*4);
+				FloatBuffer fBuf = bBuf.asFloatBuffer();
+				for (int r=0; r<16; ++r)
+					for (int c=0; c<1024; ++c)
+						fBuf.put(demFactory.getZ(c-512, 512-r));
+				batchSize = 1;
+			}
+			@Override
+			public double run(int i) {
+				bBuf.rewind();
+				raster.setAsFloat((i%64)*16, 0, 1024, 16, bBuf, DataType.Float, 1, min, max, Float.NaN);
+				return(1);
+			}
+			@Override
+			public void tearDown() {
+				raster.dispose();
+			}
+		});
+	}
+
+	private Operation createInsidePolygonOperation() {
+		return(new Operation("MathUtil.isInsidePolygon") {
+			private ReadOnlyVector3[] vertex;
+			private Vector3 point = new Vector3();
+			@Override
+			public void setUp() {
+				// closed 64 sided star
+				vertex = new ReadOnlyVector3[65];
+				for (int i=0; i<64; ++i) {
+					double a = 2*Math.PI*i/64;
+					double r = (i%2 == 0) ? 1 : 0.5;
+					vertex[i] = new Vector3(r*Math.cos(a), r*Math.sin(a), 0);
+				}
+				vertex[64] = vertex[0];
+			}
+			@Override
+			public double run(int i) {
+				int k = i&(NUM_SAMPLES-1);
+				point.set(sampleX[k]*2-1, sampleY[k]*2-1, 0);
+				return(MathUtil.isInsidePolygon(point, vertex) ? 1 : 0);
+			}
+		});
+	}
+
+	private Operation createJsonOperation() {
+		return(new Operation("JsonReader.readObject") {
+			private String json;
+			@Override
+			public void setUp() {
+				StringBuilder sb = new StringBuilder("{\"type\": \"FeatureCollection\", \"features\": [");
+				for (int i=0; i<1000; ++i) {
+					if (i > 0)
+						sb.append(",");
+					double x = sampleX[i]*1024-512;
+					double y = sampleY[i]*1024-512;
+					sb.append("{\"type\": \"Feature\", \"properties\": {\"name\": \"p"+i+"\", \"elevation\": "+demFactory.getZ(x, y)+"}, ");
+					sb.append("\"geometry\": {\"type\": \"Point\", \"coordinates\": ["+x+", "+y+"]}}");
+				}
+				sb.append("]}");
+				json = sb.toString();
+				batchSize = 1;
+			}
+			@Override
+			public double run(int i) {
+				JsonReader reader = new JsonReader(new StringReader(json));
+				Object obj = reader.readObject();
+				reader.close();
+				return(obj == null ? 0 : 1);
+			}
+		});
+	}
+
+	private Operation createWriteTileOperation() {
+		return(new Operation("RasterPyramidLayerFactory.writeTile") {
+			private TileWriter tileWriter;
+			private byte[] bytes;
+			private String dirPath;
+			@Override
+			public void setUp() {
+				tileWriter = new TileWriter(testLoc+"/testdem.tif");
+				ByteBuffer bBuf = ByteBuffer.allocate(129*129*4);
+				for (int r=0; r<129; ++r)
+					for (int c=0; c<129; ++c)
+						bBuf.putFloat(demFactory.getZ(c-64, 64-r));
+				bytes = bBuf.array();
+				dirPath = new File(tmpPath(), "benchmarktiles").getAbsolutePath();
+				batchSize = 1;
+			}
+			@Override
+			public double run(int i) throws IOException {
+				tileWriter.write("/"+(i%4+1), dirPath, bytes);
+				return(1);
+			}
+			@Override
+			public void tearDown() {
+				deleteDir(new File(dirPath));
+			}
+		});
+	}
+
+	private Raster createRaster() throws IOException {
+		Raster raster = new Raster(1024, 1024, 4, DataType.Float, tmpPath());
+		byte[] row = new byte[1024*4];
+		ByteBuffer bBuf = ByteBuffer.wrap(row);
+		for (int r=0; r<1024; ++r) {
+			for (int c=0; c<1024; ++c)
+				bBuf.putFloat(c*4, demFactory.getZ(c-512, 512-r));
+			raster.set(r, 0, 1024, 1, row);
+		}
+		return(raster);
+	}
+
+	private String tmpPath() {
+		return(new File(testLoc, "benchmark").getAbsolutePath());
+	}
+
+	private static void deleteDir(File dir) {
+		File[] file = dir.listFiles();
+		if (file != null)
+			for (int i=0; i<file.length; ++i) {
+				if (file[i].isDirectory())
+					deleteDir(file[i]);
+				else
+					file[i].delete();
+			}
+		dir.delete();
+	}
+
+	/**
+	 * Exposes tile writing of the pyramid factory.
+	 */
+	private static class TileWriter extends RasterPyramidLayerFactory {
+
+		public TileWriter(String demPath) {
+			super(new GTIF(demPath, new Properties()), null);
+			layerType = LayerType.elevation;
+		}
+
+		public void write(String tileId, String dirPath, byte[] bytes) throws IOException {
+			writeTile(tileId, dirPath, bytes, 129, 129, LayerType.elevation);
+		}
+	}
+
+}
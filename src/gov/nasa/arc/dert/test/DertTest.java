@@ -195,6 +195,66 @@ public class DertTest {
 		if (!demFactory.createLandscape(testLoc))
 			System.exit(1);
 		
+		System.err.println("\nTile Key Tests\n");
+		TileKeyTest tkt = new TileKeyTest();
+		if (!tkt.testTileKey())
+			System.exit(7);
+
+		System.err.println("\nTile Index Tests\n");
+		TileIndexTest tit = new TileIndexTest();
+		if (!tit.testTileIndex(testLoc))
+			System.exit(8);
+
+		System.err.println("\nQuadTree Cache Tests\n");
+		QuadTreeCacheTest qtct = new QuadTreeCacheTest();
+		if (!qtct.testQuadTreeCache())
+			System.exit(5);
+
+		System.err.println("\nTile Disk Cache Tests\n");
+		TileDiskCacheTest tdct = new TileDiskCacheTest();
+		if (!tdct.testTileDiskCache(testLoc))
+			System.exit(9);
+
+		System.err.println("\nMesh Buffer Pool Tests\n");
+		MeshBufferPoolTest mbpt = new MeshBufferPoolTest();
+		if (!mbpt.testMeshBufferPool())
+			System.exit(10);
+
+		System.err.println("\nGeoJSON Stream Reader Tests\n");
+		GeoJsonStreamReaderTest gjsrt = new GeoJsonStreamReaderTest();
+		if (!gjsrt.testGeoJsonStreamReader())
+			System.exit(11);
+
+		System.err.println("\nGrid Index Tests\n");
+		GridIndexTest git = new GridIndexTest();
+		if (!git.testGridIndex())
+			System.exit(12);
+
+		System.err.println("\nFrame Recorder Tests\n");
+		FrameRecorderTest frt = new FrameRecorderTest();
+		if (!frt.testFrameRecorder(testLoc))
+			System.exit(13);
+
+		System.err.println("\nHeight Bounds Tests\n");
+		HeightBoundsTest hbt = new HeightBoundsTest();
+		if (!hbt.testHeightBounds())
+			System.exit(14);
+
+		System.err.println("\nLayer Effects Tests\n");
+		LayerEffectsTest let = new LayerEffectsTest();
+		if (!let.testLayerEffects())
+			System.exit(15);
+
+		System.err.println("\nContour Engine Tests\n");
+		ContourEngineTest cet = new ContourEngineTest();
+		if (!cet.testContourEngine())
+			System.exit(16);
+		
+		System.err.println("\nPacked Tile Tests\n");
+		PackedTileTest ptt = new PackedTileTest();
+		if (!ptt.testPackedTiles(testLoc))
+			System.exit(6);
+		
 		new Dert(new String[] {"-debug", "-config", testLoc});
 		
 		// Wait for drawing surface to realize.
@@ -0,0 +1,306 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.render.FrameEncoder;
+import gov.nasa.arc.dert.render.FrameEncoder.Codec;
+import gov.nasa.arc.dert.render.FrameRecorder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Provided for testing the image sequence encoders and recorder.
+ *
+ */
+public class FrameRecorderTest {
+
+	private static final int WIDTH = 37, HEIGHT = 23;
+
+	public boolean testFrameRecorder(String testLoc) {
+		System.err.println("Testing frame recorder . . .");
+		boolean result = true;
+		try {
+			byte[] frame = createFrame(1);
+			if (!testPng(frame)) {
+				System.err.println("Test of FrameEncoder PNG failed.");
+				result = false;
+			}
+			else if (!testRaw(frame)) {
+				System.err.println("Test of FrameEncoder RAW failed.");
+				result = false;
+			}
+			else if (!testQoi(frame)) {
+				System.err.println("Test of FrameEncoder QOI failed.");
+				result = false;
+			}
+			else if (!testChannelOrder(testLoc)) {
+				System.err.println("Test of FrameRecorder channel order failed.");
+				result = false;
+			}
+			else if (!testRecorder(testLoc)) {
+				System.err.println("Test of FrameRecorder failed.");
+				result = false;
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private byte[] createFrame(int seed) {
+		// smooth gradients, flat runs, and noise to exercise each QOI operation
+		Random random = new Random(seed);
+		byte[] frame = new byte[WIDTH*HEIGHT*3];
+		for (int r=0; r<HEIGHT; ++r)
+			for (int c=0; c<WIDTH; ++c) {
+				int i = (r*WIDTH+c)*3;
+				if (r < 5) {
+					frame[i] = (byte)(c*2);
+					frame[i+1] = (byte)(c*3+r);
+					frame[i+2] = (byte)(200-c);
+				}
+				else if (r < 12) {
+					frame[i] = 10;
+					frame[i+1] = 20;
+					frame[i+2] = (byte)((c/8)*30);
+				}
+				else {
+					frame[i] = (byte)random.nextInt(256);
+					frame[i+1] = (byte)random.nextInt(256);
+					frame[i+2] = (byte)random.nextInt(256);
+				}
+			}
+		return(frame);
+	}
+
+	// pixel at column c of image row r (row 0 is the top, the last frame row)
+	private int getPixel(byte[] frame, int c, int r) {
+		int i = ((HEIGHT-1-r)*WIDTH+c)*3;
+		return(((frame[i]&0xff) << 16) | ((frame[i+1]&0xff) << 8) | (frame[i+2]&0xff));
+	}
+
+	private boolean testPng(byte[] frame) throws Exception {
+		for (int level=0; level<=9; level+=9) {
+			byte[] data = new FrameEncoder(Codec.PNG, level).encode(frame, WIDTH, HEIGHT);
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+			if ((image.getWidth() != WIDTH) || (image.getHeight() != HEIGHT))
+				return(false);
+			for (int r=0; r<HEIGHT; ++r)
+				for (int c=0; c<WIDTH; ++c)
+					if ((image.getRGB(c, r) & 0xffffff) != getPixel(frame, c, r))
+						return(false);
+		}
+		return(true);
+	}
+
+	private boolean testRaw(byte[] frame) throws Exception {
+		byte[] data = new FrameEncoder(Codec.RAW, 0).encode(frame, WIDTH, HEIGHT);
+		byte[] header = ("P6\n"+WIDTH+" "+HEIGHT+"\n255\n").getBytes("US-ASCII");
+		if (data.length != header.length+frame.length)
+			return(false);
+		for (int i=0; i<header.length; ++i)
+			if (data[i] != header[i])
+				return(false);
+		for (int r=0; r<HEIGHT; ++r)
+			for (int c=0; c<WIDTH; ++c) {
+				int i = header.length+(r*WIDTH+c)*3;
+				int p = ((data[i]&0xff) << 16) | ((data[i+1]&0xff) << 8) | (data[i+2]&0xff);
+				if (p != getPixel(frame, c, r))
+					return(false);
+			}
+		return(true);
+	}
+
+	private boolean testQoi(byte[] frame) throws Exception {
+		byte[] data = new FrameEncoder(Codec.QOI, 0).encode(frame, WIDTH, HEIGHT);
+		int[] pixel = decodeQoi(data);
+		if (pixel == null)
+			return(false);
+		for (int r=0; r<HEIGHT; ++r)
+			for (int c=0; c<WIDTH; ++c)
+				if (pixel[r*WIDTH+c] != getPixel(frame, c, r))
+					return(false);
+		// compresses the flat rows
+		return(data.length < frame.length);
+	}
+
+	// reference decoder from the QOI specification
+	private int[] decodeQoi(byte[] data) {
+		if ((data[0] != 'q') || (data[1] != 'o') || (data[2] != 'i') || (data[3] != 'f'))
+			return(null);
+		int width = getInt(data, 4);
+		int height = getInt(data, 8);
+		if ((width != WIDTH) || (height != HEIGHT) || (data[12] != 3))
+			return(null);
+		int[] pixel = new int[width*height];
+		int[] index = new int[64];
+		int r = 0, g = 0, b = 0;
+		int k = 14;
+		int n = 0;
+		while (n < pixel.length) {
+			int op = data[k++] & 0xff;
+			int run = 1;
+			if (op == 0xfe) {
+				r = data[k++] & 0xff;
+				g = data[k++] & 0xff;
+				b = data[k++] & 0xff;
+			}
+			else if ((op & 0xc0) == 0x00) {
+				int p = index[op];
+				r = (p >> 16) & 0xff;
+				g = (p >> 8) & 0xff;
+				b = p & 0xff;
+			}
+			else if ((op & 0xc0) == 0x40) {
+				r = (r+((op >> 4) & 3)-2) & 0xff;
+				g = (g+((op >> 2) & 3)-2) & 0xff;
+				b = (b+(op & 3)-2) & 0xff;
+			}
+			else if ((op & 0xc0) == 0x80) {
+				int b2 = data[k++] & 0xff;
+				int vg = (op & 0x3f)-32;
+				r = (r+vg-8+((b2 >> 4) & 0xf)) & 0xff;
+				g = (g+vg) & 0xff;
+				b = (b+vg-8+(b2 & 0xf)) & 0xff;
+			}
+			else {
+				run = (op & 0x3f)+1;
+			}
+			int p = (r << 16) | (g << 8) | b;
+			index[(r*3+g*5+b*7+255*11)%64] = p;
+			for (int i=0; i<run; ++i)
+				pixel[n++] = p;
+		}
+		// end marker
+		for (int i=0; i<7; ++i)
+			if (data[k+i] != 0)
+				return(null);
+		if ((data[k+7] != 1) || (k+8 != data.length))
+			return(null);
+		return(pixel);
+	}
+
+	private int getInt(byte[] b, int offset) {
+		return(((b[offset]&0xff) << 24) | ((b[offset+1]&0xff) << 16) | ((b[offset+2]&0xff) << 8) | (b[offset+3]&0xff));
+	}
+
+	/**
+	 * A frame read from OpenGL as GL_RGB is written with red, green, and blue
+	 * in that order by the recorder, whatever the codec.
+	 */
+	private boolean testChannelOrder(String testLoc) throws Exception {
+		// pure red, green, and blue pixels across the bottom frame row
+		byte[] rgb = new byte[WIDTH*HEIGHT*3];
+		for (int c=0; c<3; ++c)
+			rgb[c*3+c] = (byte)255;
+		int bottom = HEIGHT-1;
+		Codec[] codec = Codec.values();
+		Codec saved = FrameRecorder.CODEC;
+		File dir = new File(testLoc, "framerecorder");
+		try {
+			for (int k=0; k<codec.length; ++k) {
+				FrameRecorder.CODEC = codec[k];
+				FrameRecorder recorder = new FrameRecorder(dir, WIDTH, HEIGHT);
+				byte[] frame = recorder.acquire();
+				System.arraycopy(rgb, 0, frame, 0, frame.length);
+				recorder.submit(frame);
+				if (!recorder.waitForCompletion(60000) || (recorder.getError() != null))
+					return(false);
+				File file = new File(dir, "frame0000000."+codec[k].extension);
+				byte[] data = new byte[(int)file.length()];
+				FileInputStream fis = new FileInputStream(file);
+				int len = 0;
+				while (len < data.length)
+					len += fis.read(data, len, data.length-len);
+				fis.close();
+				file.delete();
+				int[] pixel = new int[3];
+				if (codec[k] == Codec.PNG) {
+					BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+					for (int c=0; c<3; ++c)
+						pixel[c] = image.getRGB(c, bottom) & 0xffffff;
+				}
+				else if (codec[k] == Codec.RAW) {
+					int header = data.length-rgb.length;
+					for (int c=0; c<3; ++c) {
+						int i = header+(bottom*WIDTH+c)*3;
+						pixel[c] = ((data[i]&0xff) << 16) | ((data[i+1]&0xff) << 8) | (data[i+2]&0xff);
+					}
+				}
+				else {
+					int[] decoded = decodeQoi(data);
+					if (decoded == null)
+						return(false);
+					for (int c=0; c<3; ++c)
+						pixel[c] = decoded[bottom*WIDTH+c];
+				}
+				if ((pixel[0] != 0xff0000) || (pixel[1] != 0x00ff00) || (pixel[2] != 0x0000ff)) {
+					System.err.println(codec[k]+" pixels are "+Integer.toHexString(pixel[0])+" "
+						+Integer.toHexString(pixel[1])+" "+Integer.toHexString(pixel[2]));
+					return(false);
+				}
+			}
+			return(true);
+		}
+		finally {
+			FrameRecorder.CODEC = saved;
+			dir.delete();
+		}
+	}
+
+	private boolean testRecorder(String testLoc) throws Exception {
+		File dir = new File(testLoc, "framerecorder");
+		Codec codec = FrameRecorder.CODEC;
+		int ringSize = FrameRecorder.RING_SIZE;
+		int threads = FrameRecorder.THREADS;
+		try {
+			FrameRecorder.CODEC = Codec.RAW;
+			FrameRecorder.RING_SIZE = 2;
+			FrameRecorder.THREADS = 3;
+			FrameRecorder recorder = new FrameRecorder(dir, WIDTH, HEIGHT);
+			int n = 20;
+			for (int i=0; i<n; ++i) {
+				byte[] frame = recorder.acquire();
+				System.arraycopy(createFrame(i), 0, frame, 0, frame.length);
+				recorder.submit(frame);
+			}
+			if (!recorder.waitForCompletion(60000) || (recorder.getWriteCount() != n) || (recorder.getError() != null))
+				return(false);
+			// every file has the frame with its number
+			FrameEncoder encoder = new FrameEncoder(Codec.RAW, 0);
+			for (int i=0; i<n; ++i) {
+				File file = new File(dir, "frame"+String.format("%07d", i)+".ppm");
+				byte[] expected = encoder.encode(createFrame(i), WIDTH, HEIGHT);
+				byte[] data = new byte[(int)file.length()];
+				FileInputStream fis = new FileInputStream(file);
+				int len = 0;
+				while (len < data.length)
+					len += fis.read(data, len, data.length-len);
+				fis.close();
+				if (!Arrays.equals(expected, data))
+					return(false);
+			}
+			return(true);
+		}
+		finally {
+			FrameRecorder.CODEC = codec;
+			FrameRecorder.RING_SIZE = ringSize;
+			FrameRecorder.THREADS = threads;
+			File[] files = dir.listFiles();
+			if (files != null)
+				for (int i=0; i<files.length; ++i)
+					files[i].delete();
+			dir.delete();
+		}
+	}
+
+}
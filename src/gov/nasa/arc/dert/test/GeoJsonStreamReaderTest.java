@@ -0,0 +1,197 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.geojson.json.GeoJsonFeature;
+import gov.nasa.arc.dert.io.geojson.json.GeoJsonFeatureHandler;
+import gov.nasa.arc.dert.io.geojson.json.GeoJsonStreamReader;
+import gov.nasa.arc.dert.io.geojson.json.Geometry;
+import gov.nasa.arc.dert.io.geojson.json.GeometryCollection;
+import gov.nasa.arc.dert.io.geojson.json.LineString;
+import gov.nasa.arc.dert.io.geojson.json.MultiPolygon;
+import gov.nasa.arc.dert.io.geojson.json.Point;
+import gov.nasa.arc.dert.io.geojson.json.Polygon;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Provided for testing the streaming GeoJSON reader.
+ *
+ */
+public class GeoJsonStreamReaderTest {
+
+	private static final String COLLECTION =
+		  "\uFEFF{ \"type\": \"FeatureCollection\", \"bbox\": [0, 0, 10, 10],\n"
+		+ "  \"crs\": { \"type\": \"name\", \"properties\": { \"name\": \"EPSG:4326\" } },\n"
+		+ "  \"features\": [\n"
+		+ "    { \"geometry\": { \"coordinates\": [1.5, -2.25, 3e2], \"type\": \"Point\" },\n"
+		+ "      \"type\": \"Feature\", \"id\": 7,\n"
+		+ "      \"properties\": { \"name\": \"caf\\u00e9 \\\"A\\\"\", \"count\": 12, \"big\": 12345678901,\n"
+		+ "        \"elev\": -1.25E-1, \"ok\": true, \"none\": null, \"list\": [1, 2], \"obj\": { \"a\": [] } } },\n"
+		+ "    { \"type\": \"Feature\", \"properties\": null, \"geometry\": null },\n"
+		+ "    { \"type\": \"Feature\", \"id\": \"line\", \"geometry\": { \"type\": \"LineString\",\n"
+		+ "      \"coordinates\": [[0, 0], [1, 1], [2, 0.5]] } },\n"
+		+ "    { \"type\": \"Other\" },\n"
+		+ "    { \"type\": \"Feature\", \"geometry\": { \"type\": \"Polygon\", \"coordinates\": [] } },\n"
+		+ "    { \"type\": \"Feature\", \"geometry\": { \"type\": \"MultiPolygon\",\n"
+		+ "      \"coordinates\": [[[[0, 0], [1, 0], [1, 1], [0, 0]]], [[[5, 5], [6, 5], [6, 6], [5, 5]], [[5.5, 5.5]]]] } },\n"
+		+ "    { \"type\": \"Feature\", \"geometry\": { \"type\": \"GeometryCollection\", \"geometries\": [\n"
+		+ "      { \"type\": \"Point\", \"coordinates\": [4, 4] },\n"
+		+ "      { \"type\": \"LineString\", \"coordinates\": [[4, 4], [5, 5]] } ] } }\n"
+		+ "  ]\n"
+		+ "}\n";
+
+	public boolean testGeoJsonStreamReader() {
+		System.err.println("Testing streaming GeoJSON reader . . .");
+		int bufferSize = GeoJsonStreamReader.BUFFER_SIZE;
+		boolean result = true;
+		try {
+			if (!testCollection()) {
+				System.err.println("Test of GeoJsonStreamReader feature collection failed.");
+				result = false;
+			}
+			else {
+				// tokens span the buffer boundaries
+				GeoJsonStreamReader.BUFFER_SIZE = 7;
+				if (!testCollection()) {
+					System.err.println("Test of GeoJsonStreamReader with small buffer failed.");
+					result = false;
+				}
+				else if (!testNumbers()) {
+					System.err.println("Test of GeoJsonStreamReader numbers failed.");
+					result = false;
+				}
+				else if (!testError()) {
+					System.err.println("Test of GeoJsonStreamReader error handling failed.");
+					result = false;
+				}
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			result = false;
+		}
+		finally {
+			GeoJsonStreamReader.BUFFER_SIZE = bufferSize;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testCollection() throws Exception {
+		ArrayList<GeoJsonFeature> list = read(COLLECTION);
+		if (list.size() != 6)
+			return(false);
+
+		GeoJsonFeature feature = list.get(0);
+		if (!"7".equals(feature.getId()))
+			return(false);
+		if (!"caf\u00e9 \"A\"".equals(feature.getProperties().get("name")))
+			return(false);
+		if (!new Integer(12).equals(feature.getProperties().get("count")))
+			return(false);
+		if (!new Long(12345678901l).equals(feature.getProperties().get("big")))
+			return(false);
+		if (!new Double(-0.125).equals(feature.getProperties().get("elev")))
+			return(false);
+		if (!Boolean.TRUE.equals(feature.getProperties().get("ok")))
+			return(false);
+		if (!feature.getProperties().containsKey("none") || feature.getProperties().containsKey("list"))
+			return(false);
+		double[] pCoord = ((Point)feature.getGeometry()).getCoordinates();
+		if ((pCoord.length != 3) || (pCoord[0] != 1.5) || (pCoord[1] != -2.25) || (pCoord[2] != 300))
+			return(false);
+
+		feature = list.get(1);
+		if ((feature.getGeometry() != null) || (feature.getProperties() == null))
+			return(false);
+
+		feature = list.get(2);
+		double[][] lsCoord = ((LineString)feature.getGeometry()).getCoordinates();
+		if ((lsCoord.length != 3) || (lsCoord[2][0] != 2) || (lsCoord[2][1] != 0.5))
+			return(false);
+
+		feature = list.get(3);
+		if (((Polygon)feature.getGeometry()).getCoordinates().length != 0)
+			return(false);
+
+		feature = list.get(4);
+		double[][][][] mplyCoord = ((MultiPolygon)feature.getGeometry()).getCoordinates();
+		if ((mplyCoord.length != 2) || (mplyCoord[1].length != 2) || (mplyCoord[1][0].length != 4) || (mplyCoord[1][1][0][1] != 5.5))
+			return(false);
+
+		feature = list.get(5);
+		ArrayList<Geometry> geometryList = ((GeometryCollection)feature.getGeometry()).getGeometryList();
+		if ((geometryList.size() != 2) || !(geometryList.get(0) instanceof Point) || !(geometryList.get(1) instanceof LineString))
+			return(false);
+		return(true);
+	}
+
+	private boolean testNumbers() throws Exception {
+		// compare with the JDK parser
+		Random random = new Random(42);
+		int n = 2000;
+		double[] value = new double[n];
+		StringBuilder sb = new StringBuilder("{ \"type\": \"Feature\", \"geometry\": { \"type\": \"LineString\", \"coordinates\": [");
+		for (int i=0; i<n; ++i) {
+			String str = null;
+			switch (i%4) {
+			case 0:
+				str = Double.toString((random.nextDouble()-0.5)*360);
+				break;
+			case 1:
+				str = Double.toString(Math.rint(random.nextDouble()*1e9)/1e6);
+				break;
+			case 2:
+				str = Double.toString(random.nextGaussian()*Math.pow(10, random.nextInt(40)-20));
+				break;
+			default:
+				str = Long.toString(random.nextLong());
+				break;
+			}
+			value[i] = Double.parseDouble(str);
+			if (i > 0)
+				sb.append(",");
+			sb.append("[").append(str).append(",0]");
+		}
+		sb.append("] } }");
+		ArrayList<GeoJsonFeature> list = read(sb.toString());
+		if (list.size() != 1)
+			return(false);
+		double[][] coord = ((LineString)list.get(0).getGeometry()).getCoordinates();
+		if (coord.length != n)
+			return(false);
+		for (int i=0; i<n; ++i)
+			if (coord[i][0] != value[i])
+				return(false);
+		return(true);
+	}
+
+	private boolean testError() {
+		try {
+			read("{ \"type\": \"FeatureCollection\", \"features\": [ { \"type\": \"Feature\" ");
+			return(false);
+		}
+		catch (Exception e) {
+			return(true);
+		}
+	}
+
+	private ArrayList<GeoJsonFeature> read(String str) throws Exception {
+		final ArrayList<GeoJsonFeature> list = new ArrayList<GeoJsonFeature>();
+		GeoJsonStreamReader reader = new GeoJsonStreamReader(new StringReader(str));
+		int count = reader.read(new GeoJsonFeatureHandler() {
+			@Override
+			public boolean feature(GeoJsonFeature feature) {
+				list.add(feature);
+				return(true);
+			}
+		});
+		reader.close();
+		if (count != list.size())
+			throw new IllegalStateException("Feature count "+count+" does not match "+list.size());
+		return(list);
+	}
+
+}
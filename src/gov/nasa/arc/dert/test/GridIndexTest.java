@@ -0,0 +1,92 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.util.GridIndex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Provided for testing the footprint grid index.
+ *
+ */
+public class GridIndexTest {
+
+	public boolean testGridIndex() {
+		System.err.println("Testing footprint grid index . . .");
+		boolean result = true;
+		if (!testQuery()) {
+			System.err.println("Test of GridIndex query failed.");
+			result = false;
+		}
+		else if (!testMoveAndRemove()) {
+			System.err.println("Test of GridIndex move and remove failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testQuery() {
+		// compare with a scan of all the footprints
+		Random random = new Random(7);
+		GridIndex<Integer> index = new GridIndex<Integer>(10);
+		int n = 2000;
+		double[][] bounds = new double[n][];
+		for (int i=0; i<n; ++i) {
+			double x = random.nextDouble()*1000-500;
+			double y = random.nextDouble()*1000-500;
+			// a few footprints are large enough to skip the cells
+			double w = (i%100 == 0) ? 400 : random.nextDouble()*30;
+			double h = (i%100 == 0) ? 400 : random.nextDouble()*30;
+			bounds[i] = new double[] {x, y, x+w, y+h};
+			index.put(i, x, y, x+w, y+h);
+		}
+		if (index.size() != n)
+			return(false);
+		for (int k=0; k<200; ++k) {
+			double x = random.nextDouble()*1200-600;
+			double y = random.nextDouble()*1200-600;
+			double s = (k%50 == 0) ? 5000 : random.nextDouble()*60;
+			ArrayList<Integer> list = new ArrayList<Integer>();
+			index.query(x, y, x+s, y+s, list);
+			HashSet<Integer> found = new HashSet<Integer>(list);
+			if (found.size() != list.size())
+				return(false);
+			for (int i=0; i<n; ++i) {
+				boolean overlaps = (bounds[i][0] <= x+s) && (bounds[i][2] >= x) && (bounds[i][1] <= y+s) && (bounds[i][3] >= y);
+				if (overlaps && !found.contains(i))
+					return(false);
+			}
+		}
+		return(true);
+	}
+
+	private boolean testMoveAndRemove() {
+		GridIndex<String> index = new GridIndex<String>(1);
+		index.put("a", 0.5, 0.5, 0.5, 0.5);
+		index.put("b", 5.5, 5.5, 6.5, 6.5);
+		ArrayList<String> list = new ArrayList<String>();
+		index.query(0, 0, 1, 1, list);
+		if ((list.size() != 1) || !list.get(0).equals("a"))
+			return(false);
+		// move a to the cell of b
+		index.put("a", 6.2, 6.2, 6.2, 6.2);
+		list.clear();
+		index.query(0, 0, 1, 1, list);
+		if (!list.isEmpty())
+			return(false);
+		index.query(6, 6, 6.5, 6.5, list);
+		if (list.size() != 2)
+			return(false);
+		if (!index.remove("b") || index.remove("b") || (index.size() != 1))
+			return(false);
+		list.clear();
+		index.query(6, 6, 6.5, 6.5, list);
+		if ((list.size() != 1) || !list.get(0).equals("a"))
+			return(false);
+		return(true);
+	}
+
+}
@@ -0,0 +1,148 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.terrain.HeightBounds;
+import gov.nasa.arc.dert.terrain.QuadTreeMesh;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Provided for testing ray casting with the elevation bounds of a tile mesh.
+ *
+ */
+public class HeightBoundsTest {
+
+	private int tileWidth = 37, tileLength = 29;
+	private double pixelWidth = 2, pixelLength = 3;
+
+	public boolean testHeightBounds() {
+		System.err.println("Testing height field ray casting . . .");
+		boolean result = true;
+		QuadTreeMesh mesh = createMesh();
+		if (!testBounds(mesh)) {
+			System.err.println("Test of HeightBounds elevation range failed.");
+			result = false;
+		}
+		else if (!testIntersect(mesh)) {
+			System.err.println("Test of HeightBounds intersection failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private QuadTreeMesh createMesh() {
+		int tWidth = tileWidth+1;
+		int tLength = tileLength+1;
+		FloatBuffer vertex = BufferUtils.createFloatBuffer(tWidth*tLength*3);
+		FloatBuffer color = BufferUtils.createFloatBuffer(tWidth*tLength*4);
+		for (int r=0; r<tLength; ++r) {
+			for (int c=0; c<tWidth; ++c) {
+				float x = (float)(-pixelWidth*tileWidth/2+c*pixelWidth);
+				float y = (float)(pixelLength*tileLength/2-r*pixelLength);
+				float z = (float)(20*Math.sin(c*0.3)*Math.cos(r*0.2)+r*0.5);
+				vertex.put(x).put(y).put(z);
+				// a missing block of vertices
+				boolean missing = (c >= 5) && (c < 9) && (r >= 10) && (r < 13);
+				color.put(1).put(1).put(1).put(missing ? 0 : 1);
+			}
+		}
+		vertex.flip();
+		color.flip();
+		QuadTreeMesh mesh = new QuadTreeMesh("_test", tileWidth, tileLength, pixelWidth, pixelLength);
+		MeshData meshData = new MeshData();
+		meshData.setVertexBuffer(vertex);
+		meshData.setColorBuffer(color);
+		mesh.setMeshData(meshData);
+		return(mesh);
+	}
+
+	private boolean testBounds(QuadTreeMesh mesh) {
+		HeightBounds bounds = mesh.getHeightBounds();
+		float zMin = Float.MAX_VALUE;
+		float zMax = -Float.MAX_VALUE;
+		for (int r=0; r<=tileLength; ++r) {
+			for (int c=0; c<=tileWidth; ++c) {
+				if (!isMissing(mesh, c, r)) {
+					zMin = Math.min(zMin, mesh.getElevation(c, r));
+					zMax = Math.max(zMax, mesh.getElevation(c, r));
+				}
+			}
+		}
+		if ((bounds.getMinimumElevation() != zMin) || (bounds.getMaximumElevation() != zMax))
+			return(false);
+		// changing an elevation creates new bounds
+		mesh.setElevation(0, 0, zMax+100);
+		if (mesh.getHeightBounds() == bounds)
+			return(false);
+		if (mesh.getHeightBounds().getMaximumElevation() != zMax+100)
+			return(false);
+		mesh.setElevation(0, 0, zMin);
+		return(true);
+	}
+
+	private boolean testIntersect(QuadTreeMesh mesh) {
+		// compare with a test of every triangle
+		Random random = new Random(11);
+		double width = pixelWidth*tileWidth;
+		double length = pixelLength*tileLength;
+		int hits = 0;
+		for (int k=0; k<500; ++k) {
+			Vector3 origin = new Vector3((random.nextDouble()-0.5)*width*1.5, (random.nextDouble()-0.5)*length*1.5, 80);
+			Vector3 target = new Vector3((random.nextDouble()-0.5)*width, (random.nextDouble()-0.5)*length, -40);
+			// some rays straight down
+			if (k%10 == 0)
+				target.set(origin.getX(), origin.getY(), -40);
+			Vector3 direction = target.subtract(origin, null).normalizeLocal();
+			double expected = intersectAll(mesh, new Ray3(origin, direction));
+			HeightBounds.Hit hit = new HeightBounds.Hit();
+			boolean found = mesh.getHeightBounds().intersect(new double[] {origin.getX(), origin.getY(), origin.getZ(),
+				direction.getX(), direction.getY(), direction.getZ()}, hit);
+			if (found != !Double.isNaN(expected))
+				return(false);
+			if (found) {
+				if (Math.abs(hit.t-expected) > 1e-3)
+					return(false);
+				hits++;
+			}
+		}
+		// make sure the test exercised both cases
+		return((hits > 50) && (hits < 500));
+	}
+
+	private double intersectAll(QuadTreeMesh mesh, Ray3 ray) {
+		double t = Double.NaN;
+		Vector3 store = new Vector3();
+		for (int r=0; r<tileLength; ++r) {
+			for (int c=0; c<tileWidth; ++c) {
+				if (isMissing(mesh, c, r) || isMissing(mesh, c+1, r) || isMissing(mesh, c, r+1) || isMissing(mesh, c+1, r+1))
+					continue;
+				Vector3 ul = mesh.getVertex(c, r, null);
+				Vector3 ur = mesh.getVertex(c+1, r, null);
+				Vector3 ll = mesh.getVertex(c, r+1, null);
+				Vector3 lr = mesh.getVertex(c+1, r+1, null);
+				if (ray.intersectsTriangle(ul, ll, ur, store)) {
+					double d = store.distance(ray.getOrigin());
+					if (Double.isNaN(t) || (d < t))
+						t = d;
+				}
+				if (ray.intersectsTriangle(ll, lr, ur, store)) {
+					double d = store.distance(ray.getOrigin());
+					if (Double.isNaN(t) || (d < t))
+						t = d;
+				}
+			}
+		}
+		return(t);
+	}
+
+	private boolean isMissing(QuadTreeMesh mesh, int c, int r) {
+		return(mesh.getMeshData().getColorBuffer().get((r*(tileWidth+1)+c)*4+3) == 0);
+	}
+}
@@ -29,6 +29,11 @@ public class LandscapeTest {
 			return(false);
 		}
 		
+		if (!testGetElevations(landscape)) {
+			System.err.println("Test of Landscape.getElevations failed.");
+			return(false);
+		}
+		
 		Vector3 coord = new Vector3(10, 10, 0);
 		System.err.println("LandscapeTest Coordinate Tests for "+coord);		
 		landscape.localToWorldCoordinate(coord);
@@ -109,6 +114,27 @@ public class LandscapeTest {
 		return(false);
 	}
 	
+	private boolean testGetElevations(Landscape landscape) {
+		// scattered points, some outside the landscape
+		int n = 1000;
+		double[] xy = new double[2*n];
+		for (int i=0; i<n; ++i) {
+			xy[2*i] = ((i*7919)%1100)-550.5;
+			xy[2*i+1] = ((i*104729)%1100)-550.5;
+		}
+		float[] elev = new float[n];
+		landscape.getElevations(xy, elev);
+		for (int i=0; i<n; ++i) {
+			double z = landscape.getElevationAtHighestLevel(xy[2*i], xy[2*i+1]);
+			if (Double.isNaN(z) != Float.isNaN(elev[i]))
+				return(false);
+			if (!Double.isNaN(z) && (Math.abs(z-elev[i]) > 0.0001))
+				return(false);
+		}
+		System.err.println("LandscapeTest.testGetElevations: "+n+" points match getElevationAtHighestLevel");
+		return(true);
+	}
+	
 	private boolean testGetSampledMeanElevationOfRegion(Landscape landscape) {
 		Vector3[] vertex = new Vector3[] {new Vector3(0,0,0), new Vector3(10,0, 0), new Vector3(10,10,0), new Vector3(0,10,0), new Vector3(0,0,0)};
 		Vector3 lowerBound = new Vector3(0,0,0);
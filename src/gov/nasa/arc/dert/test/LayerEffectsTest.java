@@ -0,0 +1,61 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.render.LayerEffects;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provided for testing the height map derivatives of the layer shader.
+ *
+ */
+public class LayerEffectsTest {
+
+	private int width = 9, length = 7;
+	private double pixelWidth = 2, pixelLength = 3;
+
+	public boolean testLayerEffects() {
+		System.err.println("Testing layer effects height map normal . . .");
+		boolean result = true;
+		if (!testTiltedPlane()) {
+			System.err.println("Test of LayerEffects height map normal at the tile border failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testTiltedPlane() {
+		// z = a*x + b*y, rows go from north to south
+		double a = 0.75;
+		double b = -1.5;
+		float[] height = new float[width*length];
+		for (int r=0; r<length; ++r)
+			for (int c=0; c<width; ++c)
+				height[r*width+c] = (float)(a*c*pixelWidth-b*r*pixelLength);
+		Vector3 expected = new Vector3(-a, -b, 1).normalizeLocal();
+		Vector3 interior = LayerEffects.getHeightMapNormal(height, width, length, 0.5, 0.5, pixelWidth, pixelLength,
+			new Vector3());
+		if (!close(interior, expected))
+			return(false);
+		// the borders, corners, and half a texel in from them have the same
+		// slope as the interior
+		double hs = 0.5/(width-1);
+		double ht = 0.5/(length-1);
+		double[] st = {0, 0.5, 1, 0.5, 0.5, 0, 0.5, 1, 0, 0, 1, 1, hs, 0.5, 1-hs, 0.5, 0.5, ht, 0.5, 1-ht};
+		Vector3 normal = new Vector3();
+		for (int i=0; i<st.length; i+=2) {
+			LayerEffects.getHeightMapNormal(height, width, length, st[i], st[i+1], pixelWidth, pixelLength, normal);
+			if (!close(normal, interior)) {
+				System.err.println("Normal at "+st[i]+","+st[i+1]+" is "+normal+", interior is "+interior);
+				return(false);
+			}
+		}
+		return(true);
+	}
+
+	private boolean close(Vector3 v0, Vector3 v1) {
+		return(v0.distance(v1) < 1e-6);
+	}
+
+}
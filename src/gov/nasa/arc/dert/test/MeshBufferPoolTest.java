@@ -0,0 +1,155 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.terrain.MeshBufferPool;
+import gov.nasa.arc.dert.terrain.TileMeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ardor3d.renderer.IndexMode;
+
+/**
+ * Provided for testing the mesh buffer pool.
+ *
+ */
+public class MeshBufferPoolTest {
+
+	public boolean testMeshBufferPool() {
+		System.err.println("Testing mesh buffer pool . . .");
+		MeshBufferPool pool = MeshBufferPool.getInstance();
+		boolean result = true;
+		if (!testReuse(pool)) {
+			System.err.println("Test of MeshBufferPool reuse failed.");
+			result = false;
+		}
+		else if (!testStripIndices(pool)) {
+			System.err.println("Test of MeshBufferPool strip indices failed.");
+			result = false;
+		}
+		else if (!testPinnedRelease(pool)) {
+			System.err.println("Test of TileMeshData release while pinned failed.");
+			result = false;
+		}
+		pool.clear();
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testReuse(MeshBufferPool pool) {
+		pool.clear();
+		FloatBuffer buffer = pool.getFloatBuffer(1234);
+		if ((buffer.capacity() != 1234) || (buffer.limit() != 1234) || !buffer.isDirect())
+			return(false);
+		buffer.position(10);
+		buffer.limit(20);
+		pool.release(buffer);
+		if (pool.getPoolSize() != 1234*4)
+			return(false);
+		// a different size is a new buffer
+		if (pool.getFloatBuffer(1000) == buffer)
+			return(false);
+		long reuse = pool.getReuseCount();
+		FloatBuffer next = pool.getFloatBuffer(1234);
+		if ((next != buffer) || (pool.getReuseCount() != reuse+1))
+			return(false);
+		if ((next.position() != 0) || (next.limit() != 1234) || (pool.getPoolSize() != 0))
+			return(false);
+		return(true);
+	}
+
+	private boolean testStripIndices(MeshBufferPool pool) {
+		IntBuffer i0 = pool.getStripIndices(4, 2);
+		IntBuffer i1 = pool.getStripIndices(4, 2);
+		if ((i0 == i1) || (i0.limit() != 2*5*2))
+			return(false);
+		// first strip pairs each vertex with the one below it
+		int[] expect = {0, 5, 1, 6, 2, 7, 3, 8, 4, 9, 5, 10};
+		for (int i=0; i<expect.length; ++i)
+			if ((i0.get(i) != expect[i]) || (i1.get(i) != expect[i]))
+				return(false);
+		// positions are independent
+		i0.position(4);
+		if (i1.position() != 0)
+			return(false);
+		int[] length = pool.getStripLengths(4, 2);
+		if ((length.length != 2) || (length[0] != 10) || (length[1] != 10))
+			return(false);
+		return(true);
+	}
+
+	private boolean testPinnedRelease(MeshBufferPool pool) {
+		pool.clear();
+		final int width = 4;
+		final int length = 2;
+		final int n = (width + 1) * (length + 1);
+		FloatBuffer vertex = pool.getFloatBuffer(n * 3);
+		for (int i = 0; i < n * 3; ++i)
+			vertex.put(i, 7);
+		final TileMeshData meshData = new TileMeshData(vertex, pool.getFloatBuffer(n * 2), pool.getFloatBuffer(n * 4),
+			pool.getStripIndices(width, length), pool.getStripLengths(width, length), pool.getFloatBuffer(n * 3),
+			IndexMode.TriangleStrip);
+
+		// readers check the vertices while another tile recycles buffers
+		// from the pool and overwrites them
+		final AtomicBoolean failed = new AtomicBoolean();
+		final AtomicBoolean done = new AtomicBoolean();
+		final long deadline = System.currentTimeMillis() + 5000;
+		Thread[] reader = new Thread[4];
+		for (int t = 0; t < reader.length; ++t) {
+			reader[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!failed.get() && (System.currentTimeMillis() < deadline) && meshData.acquire()) {
+						try {
+							FloatBuffer buffer = meshData.getVertexBuffer();
+							for (int i = 0; i < n * 3; ++i)
+								if (buffer.get(i) != 7)
+									failed.set(true);
+						} catch (Exception e) {
+							failed.set(true);
+						} finally {
+							meshData.release();
+						}
+					}
+				}
+			});
+			reader[t].start();
+		}
+		Thread recycler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!done.get()) {
+					FloatBuffer buffer = pool.getFloatBuffer(n * 3);
+					for (int i = 0; i < n * 3; ++i)
+						buffer.put(i, -1);
+					pool.release(buffer);
+				}
+			}
+		});
+		recycler.start();
+		try {
+			Thread.sleep(200);
+			meshData.dispose();
+			for (int t = 0; t < reader.length; ++t)
+				reader[t].join();
+			done.set(true);
+			recycler.join();
+		} catch (InterruptedException e) {
+			return(false);
+		}
+		if (failed.get() || (System.currentTimeMillis() >= deadline))
+			return(false);
+		// the buffers went back to the pool after the last reader
+		if ((meshData.getVertexBuffer() != null) || meshData.acquire())
+			return(false);
+		// disposing again must not release them twice
+		long poolSize = pool.getPoolSize();
+		meshData.dispose();
+		if (pool.getPoolSize() != poolSize)
+			return(false);
+		return(true);
+	}
+
+}
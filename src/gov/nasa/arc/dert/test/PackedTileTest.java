@@ -0,0 +1,100 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.io.PackedTileSource;
+import gov.nasa.arc.dert.io.PackedTileWriter;
+import gov.nasa.arc.dert.landscape.factory.PackedPyramidConverter;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.terrain.QuadTreeTile;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * Provided for testing the packed tile file.
+ *
+ */
+public class PackedTileTest {
+
+	private int tileCount;
+
+	public boolean testPackedTiles(String testLoc) {
+		System.err.println("Testing packed tiles . . .");
+		File layerDir = new File(testLoc, "elevation");
+		File propFile = new File(layerDir, "layer.properties");
+		File packFile = new File(layerDir, PackedTileWriter.FILE_NAME);
+		boolean result = true;
+		byte[] properties = null;
+		try {
+			properties = Files.readAllBytes(propFile.toPath());
+			PackedPyramidConverter converter = new PackedPyramidConverter(testLoc);
+			int n = converter.convertLayer("elevation");
+
+			FileSystemTileSource pngSource = new FileSystemTileSource();
+			pngSource.connect(testLoc, null, null);
+			PackedTileSource packedSource = new PackedTileSource();
+			packedSource.connect(testLoc, null, null);
+			tileCount = 0;
+			if (!compareTiles(pngSource, packedSource, layerDir, "")) {
+				System.err.println("Test of packed tile contents failed.");
+				result = false;
+			}
+			else if (tileCount != n) {
+				System.err.println("Test of packed tile count failed.");
+				result = false;
+			}
+			else if (packedSource.getTile("elevation", "/5", DataType.Float) != null) {
+				System.err.println("Test of missing packed tile failed.");
+				result = false;
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			result = false;
+		}
+		finally {
+			// leave the test landscape with PNG tiles
+			packFile.delete();
+			try {
+				if (properties != null)
+					Files.write(propFile.toPath(), properties);
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+				result = false;
+			}
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean compareTiles(FileSystemTileSource pngSource, PackedTileSource packedSource, File dir, String id) {
+		File file = new File(dir, "0.png");
+		if (file.exists()) {
+			tileCount ++;
+			QuadTreeTile pngTile = file.length() == 0 ? null : pngSource.getTilePng("elevation", id, DataType.Float);
+			QuadTreeTile packedTile = packedSource.getTile("elevation", id, DataType.Float);
+			if ((pngTile == null) != (packedTile == null))
+				return(false);
+			if (pngTile != null) {
+				if ((pngTile.width != packedTile.width) || (pngTile.length != packedTile.length))
+					return(false);
+				ByteBuffer pngBuf = pngTile.raster.duplicate();
+				ByteBuffer packedBuf = packedTile.raster.duplicate();
+				pngBuf.rewind();
+				packedBuf.rewind();
+				if (!pngBuf.equals(packedBuf))
+					return(false);
+			}
+		}
+		for (int i = 1; i <= 4; ++i) {
+			File child = new File(dir, Integer.toString(i));
+			if (child.isDirectory() && !compareTiles(pngSource, packedSource, child, id + "/" + i))
+				return(false);
+		}
+		return(true);
+	}
+
+}
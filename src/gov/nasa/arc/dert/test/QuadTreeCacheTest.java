@@ -0,0 +1,150 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.terrain.QuadTree;
+import gov.nasa.arc.dert.terrain.QuadTreeCache;
+import gov.nasa.arc.dert.terrain.TileKey;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provided for testing the QuadTree cache.
+ *
+ */
+public class QuadTreeCacheTest {
+	
+	private static final String LABEL = "_QuadTreeCacheTest";
+	
+	public boolean testQuadTreeCache() {
+		System.err.println("Testing quad tree cache . . .");
+		long maxMemory = QuadTreeCache.MAX_CACHE_MEMORY;
+		QuadTreeCache cache = QuadTreeCache.getInstance();
+		boolean result = true;
+		try {
+			if (!testEviction(cache)) {
+				System.err.println("Test of QuadTreeCache eviction failed.");
+				result = false;
+			}
+			else if (!testPlaceHolder(cache)) {
+				System.err.println("Test of QuadTreeCache.putQuadTreeIfAbsent failed.");
+				result = false;
+			}
+			else if (!testRemove(cache)) {
+				System.err.println("Test of QuadTreeCache.removeQuadTree failed.");
+				result = false;
+			}
+			else if (!testConcurrentClear(cache)) {
+				System.err.println("Test of QuadTreeCache.clear with concurrent puts failed.");
+				result = false;
+			}
+		}
+		finally {
+			cache.clear(LABEL);
+			QuadTreeCache.MAX_CACHE_MEMORY = maxMemory;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+	
+	private boolean testEviction(QuadTreeCache cache) {
+		cache.clear(LABEL);
+		long evictions = cache.getEvictionCount();
+		long hits = cache.getHitCount();
+		long misses = cache.getMissCount();
+		QuadTreeCache.MAX_CACHE_MEMORY = cache.getCacheSize()+350;
+		
+		// fill with 3 tiles of 100 bytes
+		cache.putQuadTree(LABEL, key("/1"), createQuadTree("/1"));
+		cache.putQuadTree(LABEL, key("/2"), createQuadTree("/2"));
+		cache.putQuadTree(LABEL, key("/3"), createQuadTree("/3"));
+		
+		// touch the oldest tile so /2 becomes least recently used
+		if (cache.getQuadTree(LABEL, key("/1")) == null)
+			return(false);
+		
+		// a fourth tile must evict /2
+		cache.putQuadTree(LABEL, key("/4"), createQuadTree("/4"));
+		System.err.println(cache);
+		if (cache.getQuadTree(LABEL, key("/2")) != null)
+			return(false);
+		if ((cache.getQuadTree(LABEL, key("/1")) == null) || (cache.getQuadTree(LABEL, key("/3")) == null) || (cache.getQuadTree(LABEL, key("/4")) == null))
+			return(false);
+		if (cache.getEvictionCount()-evictions != 1)
+			return(false);
+		if (cache.getHitCount()-hits != 4)
+			return(false);
+		if (cache.getMissCount()-misses != 1)
+			return(false);
+		return(true);
+	}
+	
+	private boolean testPlaceHolder(QuadTreeCache cache) {
+		cache.clear(LABEL);
+		QuadTree qt = createQuadTree("/1/1");
+		if (cache.putQuadTreeIfAbsent(LABEL, key("/1/1"), qt) != null)
+			return(false);
+		// a second load of the same tile must get the first place holder
+		if (cache.putQuadTreeIfAbsent(LABEL, key("/1/1"), createQuadTree("/1/1")) != qt)
+			return(false);
+		return(cache.getQuadTree(LABEL, key("/1/1")) == qt);
+	}
+	
+	private boolean testRemove(QuadTreeCache cache) {
+		cache.clear(LABEL);
+		long size = cache.getCacheSize();
+		QuadTree qt = createQuadTree("/1/2");
+		cache.putQuadTreeIfAbsent(LABEL, key("/1/2"), qt);
+		// only the place holder that was cancelled may be removed
+		if (cache.removeQuadTree(LABEL, key("/1/2"), createQuadTree("/1/2")))
+			return(false);
+		if (!cache.removeQuadTree(LABEL, key("/1/2"), qt))
+			return(false);
+		if (cache.getQuadTree(LABEL, key("/1/2")) != null)
+			return(false);
+		return(cache.getCacheSize() == size);
+	}
+	
+	private boolean testConcurrentClear(QuadTreeCache cache) {
+		cache.clear(LABEL);
+		final QuadTreeCache c = cache;
+		final long size = cache.getCacheSize();
+		Thread[] thread = new Thread[4];
+		for (int i = 0; i < thread.length; ++i) {
+			final int q = i+1;
+			thread[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 20000; ++j) {
+						String id = "/"+q+"/"+(j%4+1);
+						c.putQuadTreeIfAbsent(LABEL, key(id), createQuadTree(id));
+					}
+				}
+			};
+			thread[i].start();
+		}
+		// clear while the puts are landing
+		try {
+			for (int i = 0; i < thread.length; ++i) {
+				while (thread[i].isAlive())
+					cache.clear(LABEL);
+				thread[i].join();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return(false);
+		}
+		// every put either was cleared or is still in the cache
+		cache.clear(LABEL);
+		return(cache.getCacheSize() == size);
+	}
+	
+	private QuadTree createQuadTree(String key) {
+		return(new QuadTree(key(key), Vector3.ZERO, key.length()/2, 0, 1, 1, 100));
+	}
+	
+	private long key(String id) {
+		return(TileKey.parse(id));
+	}
+
+}
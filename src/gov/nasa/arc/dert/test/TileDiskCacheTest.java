@@ -0,0 +1,105 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.terrain.TileDiskCache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Provided for testing the tile disk cache.
+ *
+ */
+public class TileDiskCacheTest {
+
+	private static final String LANDSCAPE = "/_TileDiskCacheTest";
+
+	public boolean testTileDiskCache(String testLoc) {
+		System.err.println("Testing tile disk cache . . .");
+		long maxSize = TileDiskCache.MAX_DISK_SIZE;
+		File directory = TileDiskCache.CACHE_DIRECTORY;
+		TileDiskCache.CACHE_DIRECTORY = new File(testLoc, "tilecache.test");
+		TileDiskCache cache = TileDiskCache.getInstance();
+		boolean result = true;
+		try {
+			TileDiskCache.MAX_DISK_SIZE = 1000000;
+			cache.clear(LANDSCAPE);
+			if (!testPayload(cache)) {
+				System.err.println("Test of TileDiskCache payload failed.");
+				result = false;
+			}
+			else if (!testEviction(cache)) {
+				System.err.println("Test of TileDiskCache eviction failed.");
+				result = false;
+			}
+		}
+		finally {
+			cache.clear(LANDSCAPE);
+			TileDiskCache.MAX_DISK_SIZE = maxSize;
+			TileDiskCache.CACHE_DIRECTORY = directory;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testPayload(TileDiskCache cache) {
+		cache.put(LANDSCAPE, "elevation", "/1/2", 42, createPayload(100, 1.5f));
+		ByteBuffer payload = cache.get(LANDSCAPE, "elevation", "/1/2", 42);
+		if ((payload == null) || (payload.limit() != 400))
+			return(false);
+		for (int i=0; i<100; ++i)
+			if (payload.getFloat(i*4) != 1.5f)
+				return(false);
+		// changes are not written to the file
+		payload.putFloat(0, 0);
+		payload = cache.get(LANDSCAPE, "elevation", "/1/2", 42);
+		if (payload.getFloat(0) != 1.5f)
+			return(false);
+		if (cache.get(LANDSCAPE, "image", "/1/2", 42) != null)
+			return(false);
+		// a different stamp means the landscape changed
+		if (cache.get(LANDSCAPE, "elevation", "/1/2", 43) != null)
+			return(false);
+		if (cache.get(LANDSCAPE, "elevation", "/1/2", 42) != null)
+			return(false);
+		return(true);
+	}
+
+	private boolean testEviction(TileDiskCache cache) {
+		cache.clear(LANDSCAPE);
+		long fileSize = TileDiskCache.HEADER_SIZE+400;
+		TileDiskCache.MAX_DISK_SIZE = cache.getCacheSize()+3*fileSize+fileSize/2;
+
+		// fill with 3 payloads
+		cache.put(LANDSCAPE, "elevation", "/1", 0, createPayload(100, 1));
+		cache.put(LANDSCAPE, "elevation", "/2", 0, createPayload(100, 2));
+		cache.put(LANDSCAPE, "elevation", "/3", 0, createPayload(100, 3));
+
+		// touch the oldest payload so /2 becomes least recently used
+		if (cache.get(LANDSCAPE, "elevation", "/1", 0) == null)
+			return(false);
+
+		// a fourth payload evicts /2
+		cache.put(LANDSCAPE, "elevation", "/4", 0, createPayload(100, 4));
+		if (cache.get(LANDSCAPE, "elevation", "/2", 0) != null)
+			return(false);
+		String[] id = {"/1", "/3", "/4"};
+		float[] value = {1, 3, 4};
+		for (int i=0; i<id.length; ++i) {
+			ByteBuffer payload = cache.get(LANDSCAPE, "elevation", id[i], 0);
+			if ((payload == null) || (payload.getFloat(0) != value[i]))
+				return(false);
+		}
+		return(true);
+	}
+
+	private ByteBuffer createPayload(int n, float value) {
+		ByteBuffer payload = ByteBuffer.allocate(n*4).order(ByteOrder.nativeOrder());
+		for (int i=0; i<n; ++i)
+			payload.putFloat(value);
+		payload.flip();
+		return(payload);
+	}
+
+}
@@ -0,0 +1,115 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.DepthTree;
+import gov.nasa.arc.dert.io.TileIndex;
+import gov.nasa.arc.dert.terrain.TileKey;
+
+import java.io.File;
+
+/**
+ * Provided for testing the tile index.
+ *
+ */
+public class TileIndexTest {
+
+	public boolean testTileIndex(String testLoc) {
+		System.err.println("Testing tile index . . .");
+		boolean result = true;
+		if (!testComplete()) {
+			System.err.println("Test of complete TileIndex failed.");
+			result = false;
+		}
+		else if (!testDepthTree()) {
+			System.err.println("Test of TileIndex from depth tree failed.");
+			result = false;
+		}
+		else if (!testFile(testLoc)) {
+			System.err.println("Test of TileIndex file failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testComplete() {
+		TileIndex index = TileIndex.createComplete(4);
+		if (index.getNodeCount() != 1+4+16+64)
+			return(false);
+		for (int level=0; level<=4; ++level) {
+			int n = 1 << level;
+			for (int column=0; column<n; ++column) {
+				for (int row=0; row<n; ++row) {
+					long key = TileKey.fromColumnRow(level, column, row);
+					if (index.contains(key) != (level < 4))
+						return(false);
+				}
+			}
+		}
+		if (index.getMaxLevel(TileKey.parse("/1/2/3/4/1/2")) != TileKey.parse("/1/2/3"))
+			return(false);
+		return(true);
+	}
+
+	private boolean testDepthTree() {
+		// only /2 and /2/3 have children
+		DepthTree root = createTree(TileKey.ROOT);
+		DepthTree dTree = root.find(TileKey.parse("/2"));
+		addChildren(dTree);
+		addChildren(dTree.child[2]);
+		TileIndex index = TileIndex.create(root);
+		if (index.getNodeCount() != 13)
+			return(false);
+		String[] exists = {"", "/1", "/2", "/3", "/4", "/2/1", "/2/3", "/2/3/4"};
+		for (int i=0; i<exists.length; ++i)
+			if (!index.contains(TileKey.parse(exists[i])))
+				return(false);
+		String[] missing = {"/1/1", "/2/2/1", "/2/3/4/1", "/4/4"};
+		for (int i=0; i<missing.length; ++i)
+			if (index.contains(TileKey.parse(missing[i])))
+				return(false);
+		if (index.getMaxLevel(TileKey.parse("/2/3/1/1")) != TileKey.parse("/2/3/1"))
+			return(false);
+		return(true);
+	}
+
+	private boolean testFile(String testLoc) {
+		try {
+			File file = new File(testLoc, "tileindex.test");
+			TileIndex index = TileIndex.createComplete(6);
+			index.write(file);
+			TileIndex copy = TileIndex.read(file);
+			file.delete();
+			if (copy.getNodeCount() != index.getNodeCount())
+				return(false);
+			for (int node=0; node<index.getNodeCount(); ++node)
+				if (copy.hasChildren(node) != index.hasChildren(node))
+					return(false);
+			// written when the test landscape was built
+			copy = TileIndex.read(new File(testLoc, "dert/"+TileIndex.FILE_NAME));
+			if (!copy.contains(TileKey.ROOT))
+				return(false);
+			return(true);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			return(false);
+		}
+	}
+
+	private DepthTree createTree(long key) {
+		DepthTree dTree = new DepthTree();
+		dTree.key = key;
+		addChildren(dTree);
+		return(dTree);
+	}
+
+	private void addChildren(DepthTree dTree) {
+		dTree.child = new DepthTree[4];
+		for (int i=0; i<4; ++i) {
+			dTree.child[i] = new DepthTree();
+			dTree.child[i].key = TileKey.getChild(dTree.key, i+1);
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.terrain.TileKey;
+
+/**
+ * Provided for testing the packed tile keys.
+ *
+ */
+public class TileKeyTest {
+
+	public boolean testTileKey() {
+		System.err.println("Testing tile keys . . .");
+		boolean result = true;
+		if (!testPath()) {
+			System.err.println("Test of TileKey path conversion failed.");
+			result = false;
+		}
+		else if (!testHierarchy()) {
+			System.err.println("Test of TileKey parent and child failed.");
+			result = false;
+		}
+		else if (!testColumnRow()) {
+			System.err.println("Test of TileKey column and row failed.");
+			result = false;
+		}
+		if (result)
+			System.err.println(". . . complete.");
+		return(result);
+	}
+
+	private boolean testPath() {
+		String[] id = {"", "/1", "/4", "/1/3/2/4", "/2/2/2/2/2/2/2/2/2/2/2/2"};
+		for (int i=0; i<id.length; ++i) {
+			long key = TileKey.parse(id[i]);
+			if (!TileKey.toString(key).equals(id[i]))
+				return(false);
+			if (TileKey.getLevel(key) != id[i].length()/2)
+				return(false);
+		}
+		if (TileKey.parse("") != TileKey.ROOT)
+			return(false);
+		if (TileKey.parse("/5") != TileKey.NONE)
+			return(false);
+		return(true);
+	}
+
+	private boolean testHierarchy() {
+		long key = TileKey.parse("/1/3/2");
+		if (TileKey.getChild(key, 4) != TileKey.parse("/1/3/2/4"))
+			return(false);
+		if (TileKey.getParent(key) != TileKey.parse("/1/3"))
+			return(false);
+		if (TileKey.getParent(TileKey.ROOT) != TileKey.NONE)
+			return(false);
+		if ((TileKey.getQuadrant(key) != 2) || (TileKey.getQuadrant(key, 1) != 1) || (TileKey.getQuadrant(key, 2) != 3))
+			return(false);
+		if (!TileKey.isDescendant(TileKey.parse("/1"), key) || !TileKey.isDescendant(TileKey.ROOT, key))
+			return(false);
+		if (TileKey.isDescendant(key, key) || TileKey.isDescendant(TileKey.parse("/2"), key))
+			return(false);
+		return(true);
+	}
+
+	private boolean testColumnRow() {
+		// lower right tile of the lower left quadrant at level 2
+		long key = TileKey.parse("/3/4");
+		if ((TileKey.getColumn(key) != 1) || (TileKey.getRow(key) != 3))
+			return(false);
+		for (int level=1; level<=10; ++level) {
+			int n = 1 << level;
+			for (int i=0; i<50; ++i) {
+				int column = (i*7919)%n;
+				int row = (i*104729)%n;
+				key = TileKey.fromColumnRow(level, column, row);
+				if ((TileKey.getLevel(key) != level) || (TileKey.getColumn(key) != column) || (TileKey.getRow(key) != row))
+					return(false);
+			}
+		}
+		return(true);
+	}
+
+}
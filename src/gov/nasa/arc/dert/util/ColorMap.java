@@ -17,11 +17,9 @@ import com.ardor3d.image.Image;
 import com.ardor3d.image.ImageDataFormat;
 import com.ardor3d.image.PixelDataType;
 import com.ardor3d.image.Texture;
-import com.ardor3d.image.Texture2D;
+import com.ardor3d.image.Texture1D;
 import com.ardor3d.image.TextureStoreFormat;
 import com.ardor3d.math.ColorRGBA;
-import com.ardor3d.math.Matrix4;
-import com.ardor3d.math.Vector2;
 import com.ardor3d.math.type.ReadOnlyColorRGBA;
 import com.ardor3d.util.TextureKey;
 import com.ardor3d.util.geom.BufferUtils;
@@ -43,6 +41,10 @@ import com.ardor3d.util.geom.BufferUtils;
  * 
  * See the colormap directory for examples.
  * 
+ * The color map texture is a 1D lookup of the colors across the current range.
+ * Its contents do not depend on the range, so a range change only requires the
+ * shader to map values with the new minimum and maximum.
+ * 
  */
 public class ColorMap {
 
@@ -109,11 +111,8 @@ public class ColorMap {
 	// Percent value corresponding to color
 	private double[] percent;
 
-	// Matrix used to map colors to vertices
-	private Matrix4 textureMatrix = new Matrix4();
-
 	// Texture holding color map
-	private Texture2D texture;
+	private Texture1D texture;
 
 	// Listeners for color map range changes
 	private ArrayList<ColorMapListener> listeners;
@@ -309,14 +308,6 @@ public class ColorMap {
 		minimum = min;
 		maximum = max;
 		range = r;
-
-		// set the texture coordinate matrix
-		textureMatrix.setIdentity();
-		textureMatrix.setM11(baseRange / range);
-		textureMatrix.setM31(-(min - baseMinimum) / range);
-		if (texture != null) {
-			texture.setTextureMatrix(textureMatrix);
-		}
 		for (int i = 0; i < percent.length; ++i) {
 			value[i] = range * percent[i] + minimum;
 		}
@@ -461,38 +452,20 @@ public class ColorMap {
 	}
 
 	/**
-	 * Given a value, return a texture coordinate
+	 * Get the color map texture. The texture coordinate is (value - minimum) /
+	 * (maximum - minimum), values outside of the range are transparent.
 	 * 
-	 * @param val
-	 * @param result
 	 * @return
 	 */
-	public Vector2 getTextureCoordinate(double val, Vector2 result) {
-		if (result == null) {
-			result = new Vector2();
-		}
-		if (Double.isNaN(val)) {
-			result.set(0, -1);
-			return (result);
-		}
-		result.set(0, (val - baseMinimum) / baseRange);
-		return (result);
-	}
-
-	/**
-	 * Get the color map texture
-	 * 
-	 * @return
-	 */
-	public Texture2D getTexture() {
+	public Texture1D getTexture() {
 		if (texture == null) {
-			texture = new Texture2D();
+			texture = new Texture1D();
 			texture.setWrap(Texture.WrapMode.BorderClamp);
 			texture.setTextureStoreFormat(TextureStoreFormat.RGBA8);
 			texture.setMinificationFilter(Texture.MinificationFilter.NearestNeighborNoMipMaps);
 			texture.setMagnificationFilter(Texture.MagnificationFilter.NearestNeighbor);
 			texture.setTextureKey(TextureKey.getRTTKey(Texture.MinificationFilter.NearestNeighborNoMipMaps));
-			texture.setApply(Texture2D.ApplyMode.Modulate);
+			texture.setApply(Texture.ApplyMode.Modulate);
 			texture.setBorderColor(ColorRGBA.BLACK_NO_ALPHA);
 			if (value == null) {
 				loadFromFile();
@@ -553,21 +526,15 @@ public class ColorMap {
 
 	private void fillColorMapTexture() {
 		int[] color = getColorMapAsIntArray(textureSize);
-		int width = 4; // 4 is minimum dimension
-		int height = color.length;
-		ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+		ByteBuffer buffer = BufferUtils.createByteBuffer(color.length * 4);
 		for (int i = 0; i < color.length; ++i) {
-			for (int j = 0; j < width; ++j) {
-				buffer.putInt(color[i]);
-			}
+			buffer.putInt(color[i]);
 		}
-		buffer.limit(width * height * 4);
 		buffer.rewind();
 		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
 		list.add(buffer);
-		image = new Image(ImageDataFormat.RGBA, PixelDataType.UnsignedByte, width, height, list, null);
+		image = new Image(ImageDataFormat.RGBA, PixelDataType.UnsignedByte, color.length, 1, list, null);
 		texture.setImage(image);
-		texture.setTextureMatrix(textureMatrix);
 	}
 
 	private int colorRGBAToInt(ColorRGBA col) {
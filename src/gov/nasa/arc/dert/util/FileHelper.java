@@ -138,6 +138,36 @@ public class FileHelper {
 		return (null);
 	}
 
+	/**
+	 * Get a file path for saving to a GeoJSON file.
+	 * 
+	 * @return
+	 */
+	public static String getGeoJsonFile() {
+		JFileChooser chooser = new JFileChooser(new File(lastPath));
+		chooser.setDialogTitle("Save to GeoJSON File");
+		FileNameExtensionFilter filter = new FileNameExtensionFilter("*.json", "json", "geojson");
+		chooser.setFileFilter(filter);
+		int state = chooser.showSaveDialog(null);
+		File file = chooser.getSelectedFile();
+		if ((file != null) && (state == JFileChooser.APPROVE_OPTION)) {
+			lastPath = chooser.getCurrentDirectory().getAbsolutePath();
+			if (file.exists()) {
+				int answer = OptionDialog.showConfirmDialog((Window)chooser.getTopLevelAncestor(), file.getName()
+					+ " exists. Would you like to replace it?", JOptionPane.OK_CANCEL_OPTION);
+				if (answer == JOptionPane.CANCEL_OPTION) {
+					return (null);
+				}
+			}
+			String path = file.getAbsolutePath();
+			if (!(path.endsWith(".json") || path.endsWith(".geojson"))) {
+				path += ".json";
+			}
+			return (path);
+		}
+		return (null);
+	}
+
 	/**
 	 * Copy a file.
 	 * 
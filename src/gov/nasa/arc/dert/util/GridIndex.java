@@ -0,0 +1,212 @@
+package gov.nasa.arc.dert.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Provides a uniform grid index over the X,Y footprints of objects. Used to
+ * find the objects that may overlap a region, such as a newly loaded terrain
+ * tile, without visiting every object.
+ *
+ * Cells are kept in a hash map so the grid has no fixed extent. Objects that
+ * would cover more than MAX_CELLS cells are kept in a separate list that is
+ * returned by every query.
+ *
+ */
+public class GridIndex<T> {
+
+	// Maximum number of cells an object may be stored in
+	public static int MAX_CELLS = 256;
+
+	// Width of a grid cell
+	private double cellSize;
+
+	// Objects in each cell
+	private HashMap<Long, ArrayList<T>> cellMap;
+
+	// Cell range (minimum column, minimum row, maximum column, maximum row) of
+	// each object, null for large objects
+	private IdentityHashMap<T, int[]> footprintMap;
+
+	// Objects that cover too many cells
+	private ArrayList<T> largeList;
+
+	/**
+	 * Constructor
+	 *
+	 * @param cellSize
+	 *            width of a grid cell
+	 */
+	public GridIndex(double cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("Cell size must be positive.");
+		}
+		this.cellSize = cellSize;
+		cellMap = new HashMap<Long, ArrayList<T>>();
+		footprintMap = new IdentityHashMap<T, int[]>();
+		largeList = new ArrayList<T>();
+	}
+
+	/**
+	 * Add an object or move it to a new footprint.
+	 *
+	 * @param obj
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	public synchronized void put(T obj, double minX, double minY, double maxX, double maxY) {
+		remove(obj);
+		int[] range = new int[] { cell(minX), cell(minY), cell(maxX), cell(maxY) };
+		if (((long) range[2] - range[0] + 1) * ((long) range[3] - range[1] + 1) > MAX_CELLS) {
+			largeList.add(obj);
+			footprintMap.put(obj, null);
+			return;
+		}
+		for (int r = range[1]; r <= range[3]; ++r) {
+			for (int c = range[0]; c <= range[2]; ++c) {
+				Long key = key(c, r);
+				ArrayList<T> list = cellMap.get(key);
+				if (list == null) {
+					list = new ArrayList<T>(4);
+					cellMap.put(key, list);
+				}
+				list.add(obj);
+			}
+		}
+		footprintMap.put(obj, range);
+	}
+
+	/**
+	 * Remove an object.
+	 *
+	 * @param obj
+	 * @return true if the object was in the index
+	 */
+	public synchronized boolean remove(T obj) {
+		if (!footprintMap.containsKey(obj)) {
+			return (false);
+		}
+		int[] range = footprintMap.remove(obj);
+		if (range == null) {
+			largeList.remove(obj);
+			return (true);
+		}
+		for (int r = range[1]; r <= range[3]; ++r) {
+			for (int c = range[0]; c <= range[2]; ++c) {
+				Long key = key(c, r);
+				ArrayList<T> list = cellMap.get(key);
+				for (int i = 0; i < list.size(); ++i) {
+					if (list.get(i) == obj) {
+						list.remove(i);
+						break;
+					}
+				}
+				if (list.isEmpty()) {
+					cellMap.remove(key);
+				}
+			}
+		}
+		return (true);
+	}
+
+	/**
+	 * Find out if an object is in the index.
+	 *
+	 * @param obj
+	 * @return
+	 */
+	public synchronized boolean contains(T obj) {
+		return (footprintMap.containsKey(obj));
+	}
+
+	/**
+	 * Get the number of objects.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return (footprintMap.size());
+	}
+
+	/**
+	 * Remove all objects.
+	 */
+	public synchronized void clear() {
+		cellMap.clear();
+		footprintMap.clear();
+		largeList.clear();
+	}
+
+	/**
+	 * Get the objects whose footprint may overlap a region. Each object is
+	 * returned once. The result is based on grid cells, so callers must still
+	 * test for an actual overlap.
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param result
+	 *            collection to add the objects to
+	 * @return the number of objects added
+	 */
+	public synchronized int query(double minX, double minY, double maxX, double maxY, Collection<T> result) {
+		IdentityHashMap<T, T> found = new IdentityHashMap<T, T>();
+		for (int i = 0; i < largeList.size(); ++i) {
+			T obj = largeList.get(i);
+			found.put(obj, obj);
+			result.add(obj);
+		}
+		int c0 = cell(minX);
+		int r0 = cell(minY);
+		int c1 = cell(maxX);
+		int r1 = cell(maxY);
+		if (((long) c1 - c0 + 1) * ((long) r1 - r0 + 1) > cellMap.size()) {
+			// region is larger than the populated part of the grid
+			for (T obj : footprintMap.keySet()) {
+				int[] range = footprintMap.get(obj);
+				if ((range != null) && (range[0] <= c1) && (range[2] >= c0) && (range[1] <= r1) && (range[3] >= r0)) {
+					found.put(obj, obj);
+					result.add(obj);
+				}
+			}
+			return (found.size());
+		}
+		for (int r = r0; r <= r1; ++r) {
+			for (int c = c0; c <= c1; ++c) {
+				ArrayList<T> list = cellMap.get(key(c, r));
+				if (list == null) {
+					continue;
+				}
+				for (int i = 0; i < list.size(); ++i) {
+					T obj = list.get(i);
+					if (!found.containsKey(obj)) {
+						found.put(obj, obj);
+						result.add(obj);
+					}
+				}
+			}
+		}
+		return (found.size());
+	}
+
+	private int cell(double v) {
+		double c = Math.floor(v / cellSize);
+		if (c > Integer.MAX_VALUE / 2) {
+			return (Integer.MAX_VALUE / 2);
+		}
+		if (c < Integer.MIN_VALUE / 2) {
+			return (Integer.MIN_VALUE / 2);
+		}
+		return ((int) c);
+	}
+
+	private static Long key(int column, int row) {
+		return (Long.valueOf(((long) column << 32) | (row & 0xffffffffL)));
+	}
+
+}
@@ -1,19 +1,28 @@
 package gov.nasa.arc.dert.view.contour;
 
+import gov.nasa.arc.dert.io.geojson.GeojsonWriter;
+import gov.nasa.arc.dert.landscape.ContourEngine;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.render.BasicScene;
 import gov.nasa.arc.dert.render.ColorTableEffects;
 import gov.nasa.arc.dert.scene.tool.Plane;
+import gov.nasa.arc.dert.scenegraph.ContourLine;
 import gov.nasa.arc.dert.scenegraph.GroupNode;
+import gov.nasa.arc.dert.scenegraph.LineStrip;
 import gov.nasa.arc.dert.state.PlaneState;
 import gov.nasa.arc.dert.util.ColorMap;
 import gov.nasa.arc.dert.util.ColorMapListener;
 import gov.nasa.arc.dert.util.ImageUtil;
+import gov.nasa.arc.dert.util.MathUtil;
+import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.viewpoint.BasicCamera;
 
+import java.awt.Color;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.framework.CanvasRenderer;
@@ -35,8 +44,12 @@ import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.renderer.Camera.ProjectionMode;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.hint.LightCombineMode;
+import com.ardor3d.scenegraph.hint.PickingHint;
 import com.ardor3d.scenegraph.shape.Quad;
 import com.ardor3d.util.TextureKey;
+import com.ardor3d.util.geom.BufferUtils;
 
 /**
  * Ardor3D scene for contour display.
@@ -44,6 +57,9 @@ import com.ardor3d.util.TextureKey;
  */
 public class ContourScene extends BasicScene implements ColorMapListener {
 
+	// Color of the contour lines
+	public static Color lineColor = Color.black;
+
 	// Plane generating the difference map
 	private Plane plane;
 
@@ -77,6 +93,18 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 	private Image textureImage, colorTableImage;
 	private float[][] diff;
 
+	// Extracts contour lines from the landscape tiles
+	private ContourEngine contourEngine;
+
+	// Interval between contour lines, NaN for automatic, 0 for none
+	private double contourInterval;
+
+	// Contour lines and the plane they were measured from, and the lines
+	// waiting to replace them in the scene
+	private List<ContourEngine.Contour> contourList;
+	private double[] contourPlaneEq;
+	private Node lineNode, newLineNode;
+
 	/**
 	 * Constructor
 	 * 
@@ -90,6 +118,8 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 		colorMap = new ColorMap(state.colorMapName, plane.getName(), minMaxElev[0], minMaxElev[1], state.minimum,
 			state.maximum, state.gradient);
 		colorMap.addListener(this);
+		contourEngine = new ContourEngine(Landscape.getInstance());
+		contourInterval = state.contourInterval;
 	}
 
 	/**
@@ -149,6 +179,10 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 		colorTableEffects.setEnabled(true);
 		quad.setRenderState(colorTableEffects);
 		rootNode.attachChild(quad);
+
+		// Node for the contour lines, in front of the texture
+		lineNode = createLineNode();
+		rootNode.attachChild(lineNode);
 		rootNode.updateGeometricState(0);
 	}
 
@@ -218,10 +252,182 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 		colorMap.setBaseMinimum(min);
 		colorMap.setBaseMaximum(max);
 		colorMap.setRange(min, max);
+
+		// extract the contour lines from the same region
+		if (plane.setContourRegion(contourEngine, imageSize)) {
+			updateContourLines();
+		}
+	}
+
+	/**
+	 * Extract the contour lines at the current interval. The engine keeps the
+	 * tiles and elevation differences from the last call to updateContour, so
+	 * only the lines are traced again.
+	 */
+	public void updateContourLines() {
+		float[] range = contourEngine.getDifferenceRange();
+		double interval = contourInterval;
+		if (Double.isNaN(interval)) {
+			interval = getAutomaticInterval(range);
+		}
+		List<ContourEngine.Contour> list = null;
+		double[] planeEq = null;
+		try {
+			// the plane the lines were traced from, it may change afterwards
+			synchronized (contourEngine) {
+				list = contourEngine.getContours(interval);
+				planeEq = contourEngine.getPlaneEquation();
+			}
+		} catch (IllegalArgumentException e) {
+			Console.println(e.getMessage());
+			list = new ArrayList<ContourEngine.Contour>();
+		}
+		// interrupted
+		if (list == null) {
+			return;
+		}
+
+		// create the lines in the texture frame
+		Node node = createLineNode();
+		ReadOnlyVector3 lowerBound = plane.getLowerBound();
+		ReadOnlyVector3 upperBound = plane.getUpperBound();
+		double sx = columns / (upperBound.getX() - lowerBound.getX());
+		double sy = rows / (upperBound.getY() - lowerBound.getY());
+		for (int i = 0; i < list.size(); ++i) {
+			ContourEngine.Contour contour = list.get(i);
+			FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(3 * contour.count);
+			for (int j = 0; j < contour.count; ++j) {
+				double x = (contour.xy[2 * j] - lowerBound.getX()) * sx + offX - imageSize / 2;
+				double y = (contour.xy[2 * j + 1] - lowerBound.getY()) * sy + offY - imageSize / 2;
+				vertexBuffer.put((float) x).put((float) y).put(-0.5f);
+			}
+			vertexBuffer.flip();
+			LineStrip lineStrip = new LineStrip("_contour" + i, vertexBuffer, null, null, null);
+			lineStrip.setModelBound(new BoundingBox());
+			lineStrip.updateModelBound();
+			lineStrip.setColor(lineColor);
+			lineStrip.getSceneHints().setLightCombineMode(LightCombineMode.Off);
+			node.attachChild(new ContourLine(lineStrip, contour.value, lineColor));
+		}
+		synchronized (this) {
+			contourList = list;
+			contourPlaneEq = planeEq;
+			newLineNode = node;
+		}
+		requestRender();
+	}
+
+	/**
+	 * Set the interval between contour lines.
+	 * 
+	 * @param interval
+	 *            NaN for automatic, 0 for no lines
+	 */
+	public void setContourInterval(double interval) {
+		contourInterval = interval;
+	}
+
+	/**
+	 * Get the interval between contour lines.
+	 * 
+	 * @return NaN for automatic, 0 for no lines
+	 */
+	public double getContourInterval() {
+		return (contourInterval);
+	}
+
+	/**
+	 * Save the contour lines to a GeoJSON file. Coordinates are in the world
+	 * (projected) frame and each line has its elevation difference.
+	 * 
+	 * @param filename
+	 */
+	public void saveAsGeoJson(String filename) {
+		List<ContourEngine.Contour> list = null;
+		double[] planeEq = null;
+		synchronized (this) {
+			list = contourList;
+			planeEq = contourPlaneEq;
+		}
+		if (list == null) {
+			Console.println("No contour lines to save.");
+			return;
+		}
+		GeojsonWriter geojsonWriter = null;
+		try {
+			geojsonWriter = new GeojsonWriter(filename);
+			geojsonWriter.open();
+			Landscape landscape = Landscape.getInstance();
+			Vector3 coord = new Vector3();
+			double[] xyz = new double[0];
+			for (int i = 0; i < list.size(); ++i) {
+				ContourEngine.Contour contour = list.get(i);
+				if (xyz.length < 3 * contour.count) {
+					xyz = new double[3 * contour.count];
+				}
+				for (int j = 0; j < contour.count; ++j) {
+					double x = contour.xy[2 * j];
+					double y = contour.xy[2 * j + 1];
+					coord.set(x, y, MathUtil.getPlaneZ(x, y, planeEq) + contour.value);
+					landscape.localToWorldCoordinate(coord);
+					xyz[3 * j] = coord.getX();
+					xyz[3 * j + 1] = coord.getY();
+					xyz[3 * j + 2] = coord.getZ();
+				}
+				geojsonWriter.writeLineString(xyz, contour.count, "ElevationDifference", contour.value);
+			}
+			geojsonWriter.close();
+			Console.println(list.size() + " contour lines saved to " + filename);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Console.println("Error saving contour lines to " + filename + ".  See log.");
+			if (geojsonWriter != null) {
+				try {
+					geojsonWriter.close();
+				} catch (Exception e2) {
+					// already reported
+				}
+			}
+		}
+	}
+
+	private Node createLineNode() {
+		Node node = new Node("_contours");
+		node.getSceneHints().setPickingHint(PickingHint.Pickable, false);
+		return (node);
+	}
+
+	/**
+	 * Choose an interval of 1, 2, or 5 times a power of 10 that gives about 10
+	 * contour lines.
+	 */
+	private static double getAutomaticInterval(float[] range) {
+		double d = range[1] - range[0];
+		if (!(d > 0)) {
+			return (0);
+		}
+		double interval = Math.pow(10, Math.floor(Math.log10(d / 10)));
+		if (d / interval > 50) {
+			interval *= 5;
+		} else if (d / interval > 20) {
+			interval *= 2;
+		}
+		return (interval);
 	}
 
 	@Override
 	public void render(Renderer renderer) {
+		Node node = null;
+		synchronized (this) {
+			node = newLineNode;
+			newLineNode = null;
+		}
+		if (node != null) {
+			rootNode.detachChild(lineNode);
+			lineNode = node;
+			rootNode.attachChild(lineNode);
+			rootNode.updateGeometricState(0);
+		}
 //		camera.update();
 //		camera.apply(renderer);
 //		renderer.clearBuffers(Renderer.BUFFER_COLOR_AND_DEPTH);
@@ -235,7 +441,7 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 	public void mapChanged(ColorMap cMap) {
 		cMap.getColorTable(lutSize, table);
 		colorTable.setImage(colorTableImage);
-		sceneChanged.set(true);
+		requestRender();
 	}
 
 	/**
@@ -245,7 +451,7 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 	public void rangeChanged(ColorMap cMap) {
 		cMap.getColorTable(lutSize, table);
 		colorTable.setImage(colorTableImage);
-		sceneChanged.set(true);
+		requestRender();
 	}
 
 	/**
@@ -4,13 +4,16 @@ import gov.nasa.arc.dert.action.edit.CoordAction;
 import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.render.SceneCanvasPanel;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scene.tool.Plane;
 import gov.nasa.arc.dert.state.PlaneState;
 import gov.nasa.arc.dert.state.State;
 import gov.nasa.arc.dert.ui.ColorBar;
 import gov.nasa.arc.dert.ui.CoordTextField;
+import gov.nasa.arc.dert.ui.DoubleTextField;
 import gov.nasa.arc.dert.util.ColorMap;
+import gov.nasa.arc.dert.util.FileHelper;
 import gov.nasa.arc.dert.util.StringUtil;
 
 import java.awt.BorderLayout;
@@ -53,9 +56,15 @@ public class ContourScenePanel extends SceneCanvasPanel {
 	// Display color map
 	private ColorBar colorBar;
 
+	// Interval between contour lines, empty for automatic
+	private DoubleTextField intervalText;
+
 	// Flag to recalculate diff map
 	private boolean drawDiff;
 
+	// Flag to trace the contour lines again
+	private boolean drawLines;
+
 	/**
 	 * Constructor
 	 * 
@@ -82,10 +91,46 @@ public class ContourScenePanel extends SceneCanvasPanel {
 		refreshButton.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent event) {
-				drawDiff = true;
+				setDraw(true);
 			}
 		});
 		topPanel.add(refreshButton);
+		topPanel.add(new JLabel("Interval:"));
+		intervalText = new DoubleTextField(6, 0, false, Landscape.format) {
+			@Override
+			protected void handleChange(double value) {
+				contourScene.setContourInterval(Math.max(value, 0));
+				drawLines = true;
+				SceneFramework.requestFrame();
+			}
+		};
+		intervalText.setToolTipText("interval between contour lines, 0 for none, empty for automatic");
+		// an empty field is automatic
+		intervalText.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				if (intervalText.getText().trim().isEmpty()) {
+					contourScene.setContourInterval(Double.NaN);
+					drawLines = true;
+					SceneFramework.requestFrame();
+				}
+			}
+		});
+		setIntervalText(contourScene.getContourInterval());
+		topPanel.add(intervalText);
+		JButton saveButton = new JButton("To GeoJSON");
+		saveButton.setToolTipText("save contour lines to a GeoJSON file");
+		saveButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				String fileName = FileHelper.getGeoJsonFile();
+				if (fileName == null) {
+					return;
+				}
+				contourScene.saveAsGeoJson(fileName);
+			}
+		});
+		topPanel.add(saveButton);
 		messageLabel = new JLabel("        ");
 		topPanel.add(messageLabel);
 		add(topPanel, BorderLayout.NORTH);
@@ -108,10 +153,13 @@ public class ContourScenePanel extends SceneCanvasPanel {
 	public void update(ReadOnlyTimer timer) {
 		if (drawDiff) {
 			messageLabel.setText("Calculating . . .");
-			drawDiff = false;
 			if (updateThread != null) {
+				// try again when the current update is done
+				SceneFramework.requestFrame(SceneFramework.millisBetweenFrames);
 				return;
 			}
+			drawDiff = false;
+			drawLines = false;
 			updateThread = new Thread(new Runnable() {
 				@Override
 				public void run() {
@@ -138,6 +186,28 @@ public class ContourScenePanel extends SceneCanvasPanel {
 				}
 			});
 			updateThread.start();
+		} else if (drawLines) {
+			if (updateThread != null) {
+				SceneFramework.requestFrame(SceneFramework.millisBetweenFrames);
+				return;
+			}
+			drawLines = false;
+			updateThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					contourScene.updateContourLines();
+					updateThread = null;
+				}
+			});
+			updateThread.start();
+		}
+	}
+
+	private void setIntervalText(double interval) {
+		if (Double.isNaN(interval)) {
+			intervalText.setText("");
+		} else {
+			intervalText.setValue(interval);
 		}
 	}
 
@@ -177,7 +247,7 @@ public class ContourScenePanel extends SceneCanvasPanel {
 	 * The viewpoint changed, redraw the scene.
 	 */
 	public void viewpointChanged() {
-		contourScene.sceneChanged.set(true);
+		contourScene.requestRender();
 	}
 
 	/**
@@ -187,6 +257,19 @@ public class ContourScenePanel extends SceneCanvasPanel {
 	 */
 	public void setDraw(boolean draw) {
 		drawDiff = draw;
+		// frames are only run on request
+		if (draw) {
+			SceneFramework.requestFrame();
+		}
+	}
+
+	/**
+	 * Get the interval between contour lines
+	 * 
+	 * @return NaN for automatic
+	 */
+	public double getContourInterval() {
+		return (contourScene.getContourInterval());
 	}
 
 	/**
@@ -153,7 +153,7 @@ public class FieldCameraScenePanel extends SceneCanvasPanel {
 					az -= 360;
 				azSpinner.setValue(az);
 				tiltSpinner.setValue(Math.toDegrees(angle.getY()));	
-				scene.sceneChanged.set(true);
+				scene.requestRender();
 			}
 		};
 		panel.add(seekText);
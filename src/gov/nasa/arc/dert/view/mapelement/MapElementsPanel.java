@@ -227,8 +227,8 @@ public class MapElementsPanel extends JPanel implements DirtyEventListener {
 		else if (mapElement instanceof FeatureSet) {
 			DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(mapElement, true);
 			FeatureSet fSet = (FeatureSet)mapElement;
-			for (int j = 0; j < fSet.getNumberOfChildren(); ++j) {
-				treeNode.add(new DefaultMutableTreeNode(fSet.getChild(j), false));
+			for (int j = 0; j < fSet.getFeatures().size(); ++j) {
+				treeNode.add(new DefaultMutableTreeNode(fSet.getFeatures().get(j), false));
 			}
 			featureSetsNode.add(treeNode);
 			treeModel.nodeStructureChanged(featureSetsNode);
@@ -368,7 +368,7 @@ public class MapElementsPanel extends JPanel implements DirtyEventListener {
 			if (treeNode != null)
 				treePath = new TreePath(new Object[] { rootNode, featureSetsNode, treeNode });
 		} else if (mapElement instanceof Feature) {
-			FeatureSet fs = (FeatureSet)((Feature)mapElement).getParent();
+			FeatureSet fs = ((Feature)mapElement).getFeatureSet();
 			int n = featureSetsNode.getChildCount();
 			DefaultMutableTreeNode fstnode = null;
 			for (int i = 0; i < n; ++i) {
@@ -449,7 +449,7 @@ public class MapElementsPanel extends JPanel implements DirtyEventListener {
 			}
 		} else if (mapElement instanceof Feature) {
 			Feature feature = (Feature) mapElement;
-			FeatureSet featureSet = (FeatureSet)feature.getParent();
+			FeatureSet featureSet = feature.getFeatureSet();
 			int n = featureSetsNode.getChildCount();
 			for (int i = 0; i < n; ++i) {
 				DefaultMutableTreeNode fsNode = (DefaultMutableTreeNode) featureSetsNode.getChildAt(i);
@@ -597,8 +597,8 @@ public class MapElementsPanel extends JPanel implements DirtyEventListener {
 			FeatureSet vg = (FeatureSet) featureSets.getChild(i);
 			DefaultMutableTreeNode featureSetNode = new DefaultMutableTreeNode(vg, true);
 			featureSetsNode.add(featureSetNode);
-			for (int j = 0; j < vg.getNumberOfChildren(); ++j)
-				featureSetNode.add(new DefaultMutableTreeNode(vg.getChild(j), false));
+			for (int j = 0; j < vg.getFeatures().size(); ++j)
+				featureSetNode.add(new DefaultMutableTreeNode(vg.getFeatures().get(j), false));
 		}
 
 		treeModel = new DefaultTreeModel(rootNode);
@@ -2,6 +2,7 @@ package gov.nasa.arc.dert.view.mapelement;
 
 import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.landscape.RegionStatistics;
 import gov.nasa.arc.dert.scene.tool.Path;
 import gov.nasa.arc.dert.state.MapElementState;
 import gov.nasa.arc.dert.state.State;
@@ -161,26 +162,11 @@ public class PathView extends JPanelView {
 				
 				Vector3[] vertex = path.getPolygonVertices();
 				if (vertex != null) {
-					messageLabel.setText("Calculating mean elevation ...");
-					Thread.yield();
-					String str = getMeanElevation(vertex);
-					if (str == null) {
-						doCancel();
-						return;
-					}
-					textArea.append(str);
 					if (vertex.length > 3) {
-						messageLabel.setText("Calculating surface area ...");
-						Thread.yield();
-						str = getSurfaceArea(vertex);
-						if (str == null) {
-							doCancel();
-							return;
-						}
-						textArea.append(str);
-						messageLabel.setText("Calculating mean slope ...");
+						// mean elevation, surface area, and slope in one pass
+						messageLabel.setText("Calculating mean elevation, surface area, and mean slope ...");
 						Thread.yield();
-						str = getMeanSlope(vertex);
+						String str = getRegionStatistics(vertex);
 						if (str == null) {
 							doCancel();
 							return;
@@ -202,6 +188,14 @@ public class PathView extends JPanelView {
 						}
 					}
 					else {
+						messageLabel.setText("Calculating mean elevation ...");
+						Thread.yield();
+						String str = getMeanElevation(vertex);
+						if (str == null) {
+							doCancel();
+							return;
+						}
+						textArea.append(str);
 						str = "Surface Area: N/A\n";
 						str += "Mean Slope: N/A\n";
 						if (noMethod.isSelected())
@@ -253,11 +247,24 @@ public class PathView extends JPanelView {
 		return(str);
 	}
 	
-	private String getSurfaceArea(Vector3[] vertex) {
-		double sampledVal = Landscape.getInstance().getSampledSurfaceAreaOfRegion(vertex, lowerBound, upperBound);
+	private String getRegionStatistics(Vector3[] vertex) {
+		RegionStatistics stats = new RegionStatistics(Landscape.getInstance(), vertex, lowerBound, upperBound,
+			RegionStatistics.MEAN_ELEVATION | RegionStatistics.SURFACE_AREA | RegionStatistics.MEAN_SLOPE);
+		if (!stats.compute())
+			return(null);
+		double sampledVal = stats.getMeanElevation();
+		if (Double.isNaN(sampledVal))
+			return(null);
+		String str = "Mean Elevation: "+String.format(Landscape.stringFormat, sampledVal)+"\n";
+		sampledVal = stats.getSurfaceArea();
+		if (Double.isNaN(sampledVal))
+			return(null);
+		str += "Surface Area: "+String.format(Landscape.stringFormat, sampledVal)+"\n";
+		sampledVal = stats.getMeanSlope();
 		if (Double.isNaN(sampledVal))
 			return(null);
-		return("Surface Area: "+String.format(Landscape.stringFormat, sampledVal)+"\n");
+		str += "Mean Slope: "+String.format(Landscape.stringFormat, sampledVal)+"\n";
+		return(str);
 	}
 	
 	private String getMeanElevation(Vector3[] vertex) {
@@ -279,13 +286,6 @@ public class PathView extends JPanelView {
 		return(str);
 	}
 	
-	private String getMeanSlope(Vector3[] vertex) {
-		double sampledVal = Landscape.getInstance().getSampledMeanSlopeOfRegion(vertex, lowerBound, upperBound);
-		if (Double.isNaN(sampledVal))
-			return(null);
-		return("Mean Slope: "+String.format(Landscape.stringFormat, sampledVal)+"\n");
-	}
-	
 	private String getVolume(double volElev, Path path) {
 		String str = null;
 		double[] vol = path.getVolume(volElev);
@@ -4,6 +4,7 @@ import gov.nasa.arc.dert.action.edit.CoordAction;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.lighting.Lighting;
 import gov.nasa.arc.dert.render.BasicScene;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.state.WorldState;
 import gov.nasa.arc.dert.viewpoint.AnaglyphCamera;
@@ -107,8 +108,9 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	@Override
 	public void update(ReadOnlyTimer timer) {
-		// update the landscape quad tree
-		Landscape.getInstance().update(viewpoint.getCamera());
+		// update the landscape quad tree, check again while tiles are loading
+		if (Landscape.getInstance().update(viewpoint.getCamera()))
+			SceneFramework.requestFrame(SceneFramework.millisBetweenFrames);
 		// has the viewpoint changed?
 		boolean viewpointChanged = viewpoint.changed.getAndSet(false);
 		// if the viewpoint changed, update the other view dependent objects
@@ -275,7 +277,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowCrosshair(boolean show) {
 		showCrosshair = show;
-		sceneChanged.set(true);
+		requestRender();
 	}
 
 	/**
@@ -294,7 +296,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowTextOverlay(boolean show) {
 		showTextOverlay = show;
-		sceneChanged.set(true);
+		requestRender();
 	}
 
 	/**
@@ -313,7 +315,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowCenterScale(boolean show) {
 		showCenterScale = show;
-		sceneChanged.set(true);
+		requestRender();
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.view.world;
 
 import gov.nasa.arc.dert.render.SceneCanvasPanel;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.state.State;
 import gov.nasa.arc.dert.state.WorldState;
 import gov.nasa.arc.dert.viewpoint.AnaglyphCamera;
@@ -71,6 +72,9 @@ public class WorldScenePanel extends SceneCanvasPanel {
 		if (controller.getViewpoint() != null) {
 			super.update(timer);
 			controller.update();
+			// the viewpoint changed after the scene was updated
+			if (controller.isMoving() || worldScene.getViewpoint().changed.get())
+				SceneFramework.requestFrame();
 		}
 	}
 
@@ -117,7 +121,7 @@ public class WorldScenePanel extends SceneCanvasPanel {
 				canvasRenderer.setCamera(bc);
 			}
 		}
-		worldScene.sceneChanged.set(true);
+		worldScene.requestRender();
 	}
 
 	/**
@@ -1,8 +1,12 @@
 package gov.nasa.arc.dert.viewpoint;
 
 import gov.nasa.arc.dert.Dert;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.BatchRenderer;
 import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.tool.Path;
+import gov.nasa.arc.dert.terrain.TilePrefetcher;
+import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.view.viewpoint.AnimationPanel;
 import gov.nasa.arc.dert.viewpoint.Viewpoint.ViewpointMode;
 
@@ -14,6 +18,7 @@ import java.util.Vector;
 import javax.swing.JLabel;
 import javax.swing.Timer;
 
+import com.ardor3d.bounding.BoundingSphere;
 import com.ardor3d.math.Vector3;
 
 /**
@@ -102,14 +107,27 @@ public class Animator {
 			animationPanel.enableParameters(false);
 			// Pause the rendering framework so it won't interfere.
 			SceneFramework.getInstance().suspend(true);
-			// make time step at least 1 second if we are grabbing frames
-			final int millis = (flyParams.grab && (flyParams.millisPerFrame < 1000)) ? 1000 : flyParams.millisPerFrame;
+			// grabbed frames wait for their tiles, so the time step is not padded
+			final int millis = flyParams.millisPerFrame;
 			flyIndex = 0;
 			oldViewpoint = viewpoint.get(oldViewpoint);
 			flyThroughTimer = new Timer(millis, new ActionListener() {
 				@Override
 				public void actionPerformed(ActionEvent event) {
 					viewpoint.set(flyList.get(flyIndex), false);
+					// start loading tiles for the next frames
+					TilePrefetcher prefetcher = Landscape.getInstance().getPrefetcher();
+					if (prefetcher != null)
+						prefetcher.expect(flyList, flyIndex + 1, flyParams.loop);
+					// don't grab a frame until its tiles are loaded
+					if (flyParams.grab) {
+						try {
+							if (!BatchRenderer.waitForTiles(viewpoint.getCamera()))
+								Console.println("Timed out waiting for tiles for frame " + flyIndex + ".");
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
 					SceneFramework.getInstance().getFrameHandler().updateFrame();
 					double t = (flyIndex * millis) / 1000.0;
 					int hr = (int) (t / 3600);
@@ -147,9 +165,7 @@ public class Animator {
 		if (viewpointList.size() < 2)
 			return("Too few viewpoints to animate.");
 
-		flyList = new Vector<ViewpointStore>();
-		
-		fillFlyList(viewpointList, flyList, flyParams.numFrames);
+		flyList = createFlyList(viewpointList, flyParams.numFrames);
 		
 		return(null);
     }
@@ -167,12 +183,28 @@ public class Animator {
 		if (path.getNumberOfPoints() < 2)
 			return("Too few waypoints to animate.");
 		
+		flyList = createPathFlyList(path, flyParams, (BasicCamera)viewpoint.getCamera(), viewpoint.getSceneBounds());
+		return(null);
+	}
+	
+	/**
+	 * Create the viewpoints for a fly through path. Used by the animation
+	 * panel and by batch rendering.
+	 * 
+	 * @param path the Path mapElement
+	 * @param flyParams animation parameters
+	 * @param camera the camera whose projection is used for each viewpoint
+	 * @param sceneBounds bounds of the scene for the clipping planes
+	 * @return the list of viewpoints, one per frame
+	 */
+	public static Vector<ViewpointStore> createPathFlyList(Path path, FlyThroughParameters flyParams, BasicCamera camera, BoundingSphere sceneBounds) {
+		
 		// create an interpolated curve from the path
 		Vector3[] curve = path.getCurve(10);
 
 		// create a list of viewpoints from the curve
 		Vector<ViewpointStore> vpList = new Vector<ViewpointStore>();
-		BasicCamera cam = new BasicCamera((BasicCamera)viewpoint.getCamera());
+		BasicCamera cam = new BasicCamera(camera);
 		Vector3 loc = null;
 		Vector3 look = null;
 		ViewpointStore vps = null;
@@ -190,25 +222,34 @@ public class Animator {
 				continue;
 			
 			// set frustum and clipping planes
-			cam.setClippingPlanes(viewpoint.getSceneBounds(), false);
+			cam.setClippingPlanes(sceneBounds, false);
 			vps = new ViewpointStore(Integer.toString(i), cam);
 			vpList.add(vps);
 		}
 		loc = look;
 		look.addLocal(vps.direction);
 		angle = cam.setFrameAndLookAt(loc, look, Math.PI/2-Math.PI/20);
-		cam.setClippingPlanes(viewpoint.getSceneBounds(), false);
+		cam.setClippingPlanes(sceneBounds, false);
 		vps = new ViewpointStore(Integer.toString(curve.length-1), cam);
 		vpList.add(vps);
-		flyList = new Vector<ViewpointStore>();
-		fillFlyList(vpList, flyList, flyParams.numFrames);
+		Vector<ViewpointStore> flyList = createFlyList(vpList, flyParams.numFrames);
 		// set hike mode to true so we will use the viewpoint location as CoR
 		for (int i=0; i<flyList.size(); ++i)
 			flyList.get(i).mode = ViewpointMode.Hike.toString();
-		return(null);
+		return(flyList);
 	}
 	
-	private void fillFlyList(Vector<ViewpointStore> vpList, Vector<ViewpointStore> flyList, int numFrames) {
+	/**
+	 * Create a list of viewpoints equally spaced along a list of key
+	 * viewpoints.
+	 * 
+	 * @param vpList the key viewpoints
+	 * @param numFrames the number of frames
+	 * @return the list of viewpoints, one per frame
+	 */
+	public static Vector<ViewpointStore> createFlyList(Vector<ViewpointStore> vpList, int numFrames) {
+		
+		Vector<ViewpointStore> flyList = new Vector<ViewpointStore>();
 		
 		// get the total distance along the viewpoint list
 		double dist = 0;
@@ -244,5 +285,6 @@ public class Animator {
 			}
 		}
 		flyList.add(vpList.get(vpList.size() - 1));
+		return(flyList);
 	}
 }
@@ -3,6 +3,7 @@ package gov.nasa.arc.dert.viewpoint;
 import gov.nasa.arc.dert.Dert;
 import gov.nasa.arc.dert.action.edit.CoordListener;
 import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.Marker;
@@ -107,7 +108,7 @@ public class Viewpoint
 		if (camera != null) {
 			updateFromCamera();
 			camera.setClippingPlanes(sceneBounds, true);
-			changed.set(true);
+			setChanged();
 		}
 	}
 	
@@ -171,7 +172,7 @@ public class Viewpoint
 		camera.setClippingPlanes(sceneBounds, false);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	/**
@@ -240,7 +241,7 @@ public class Viewpoint
 	
 	public void coordDisplayChanged() {
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	private void updateOverlay() {
@@ -327,7 +328,7 @@ public class Viewpoint
 		camera.setClippingPlanes(sceneBounds, false);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -338,7 +339,7 @@ public class Viewpoint
 		sceneBounds.setRadius(bounds.getRadius());
 		sceneBounds.setCenter(bounds.getCenter());
 		closestDistance = 0.0001 * sceneBounds.getRadius();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -362,7 +363,7 @@ public class Viewpoint
 		updateCrosshair();
 		centerScale.setTranslation(camera.getWidth()/2.0, camera.getHeight()/2.0, 0);
 		centerScale.updateGeometricState(0);
-		changed.set(true);
+		setChanged();
 	}
 	
 	public int getCenterX() {
@@ -399,7 +400,7 @@ public class Viewpoint
 		updateCrosshair();
 		Dert.getMainWindow().getToolPanel().updateCompass(azimuth);
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 //		System.err.println("ViewpointNode.reset B: sceneBounds="+sceneBounds+" closestDistance="+closestDistance+" hikeMode="+hikeMode);
 //		System.err.println("ViewpointNode.reset B: rotate="+rotate+" azimuth="+azimuth+" elevation="+elevation);
 //		System.err.println("ViewpointNode.reset B: lookAt="+lookAt+" location="+location+" magnification="+camera.getMagnification());
@@ -451,7 +452,7 @@ public class Viewpoint
 			camera.setClippingPlanes(sceneBounds, false);
 			updateCrosshair();
 			updateOverlay();
-			changed.set(true);
+			setChanged();
 		}
 	}
 
@@ -510,7 +511,7 @@ public class Viewpoint
 		updateFromCamera();
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	/**
@@ -599,7 +600,7 @@ public class Viewpoint
 		updateFromCamera();
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 		Dert.getMainWindow().getToolPanel().updateCompass(azimuth);
 	}
 
@@ -622,7 +623,7 @@ public class Viewpoint
 		updateFromCamera();
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 		Dert.getMainWindow().getToolPanel().updateCompass(azimuth);
 	}
 
@@ -643,7 +644,7 @@ public class Viewpoint
 		camera.setClippingPlanes(sceneBounds, false);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 		return (true);
 	}
 	
@@ -668,7 +669,7 @@ public class Viewpoint
 		updateFromCamera();
 		camera.setClippingPlanes(sceneBounds, false);
 		updateCrosshair();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -689,7 +690,7 @@ public class Viewpoint
 		updateFromCamera();
 		camera.setClippingPlanes(sceneBounds, false);
 		updateCrosshair();
-		changed.set(true);
+		setChanged();
 		return (true);
 	}
 
@@ -753,7 +754,7 @@ public class Viewpoint
 	public void changeMagnification(double val) {
 		camera.magnify(val);
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -765,7 +766,7 @@ public class Viewpoint
 		camera.magnify(delta);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -788,7 +789,7 @@ public class Viewpoint
 			centerScale.showText(true);
 		}
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -840,7 +841,7 @@ public class Viewpoint
 			camera.setClippingPlanes(sceneBounds, true);
 			updateCrosshair();
 			updateOverlay();
-			changed.set(true);			
+			setChanged();
 		}
 		else {
 			camera.setMaxNearPlane(Float.MAX_VALUE);
@@ -848,11 +849,19 @@ public class Viewpoint
 				set(oldVP, false);
 			this.mode = mode;
 		}
-		changed.set(true);
+		setChanged();
 		return(true);
 	}
 	
 	public ViewpointMode getMode() {
 		return(mode);
 	}
+	
+	/**
+	 * Flag the change for the WorldScene and ask for a frame.
+	 */
+	private void setChanged() {
+		changed.set(true);
+		SceneFramework.notifyDirty();
+	}
 }
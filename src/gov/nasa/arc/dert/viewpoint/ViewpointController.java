@@ -1,6 +1,8 @@
 package gov.nasa.arc.dert.viewpoint;
 
 import gov.nasa.arc.dert.Dert;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.BatchRenderer;
 import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scene.World;
@@ -9,6 +11,8 @@ import gov.nasa.arc.dert.scenegraph.Ray3WithLine;
 import gov.nasa.arc.dert.state.ConfigurationManager;
 import gov.nasa.arc.dert.state.PathState;
 import gov.nasa.arc.dert.state.ViewpointState;
+import gov.nasa.arc.dert.terrain.TilePrefetcher;
+import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.viewpoint.Viewpoint.ViewpointMode;
 
 import java.awt.EventQueue;
@@ -228,6 +232,8 @@ public class ViewpointController {
 			double length = Math.sqrt(lastDx * lastDx + lastDy * lastDy);
 			lastDx /= length;
 			lastDy /= length;
+			// start coasting
+			SceneFramework.requestFrame();
 		} else {
 			amplitude = 0;
 			updateCoR();
@@ -267,6 +273,15 @@ public class ViewpointController {
 		}
 	}
 
+	/**
+	 * Find out if kinetic scrolling is still moving the viewpoint
+	 * 
+	 * @return
+	 */
+	public boolean isMoving() {
+		return (amplitude > 0);
+	}
+
 	/**
 	 * Left arrow key
 	 */
@@ -452,14 +467,27 @@ public class ViewpointController {
 			}
 			// Pause the rendering framework so it won't interfere.
 			SceneFramework.getInstance().suspend(true);
-			// make time step at least 1 second if we are grabbing frames
-			final int millis = (flyParams.grab && (flyParams.millisPerFrame < 1000)) ? 1000 : flyParams.millisPerFrame;
+			// grabbed frames wait for their tiles, so the time step is not padded
+			final int millis = flyParams.millisPerFrame;
 			flyIndex = 0;
 			oldViewpoint = viewpoint.get(oldViewpoint);
 			flyThroughTimer = new Timer(millis, new ActionListener() {
 				@Override
 				public void actionPerformed(ActionEvent event) {
 					viewpoint.set(flyList.get(flyIndex), false);
+					// start loading tiles for the next frames
+					TilePrefetcher prefetcher = Landscape.getInstance().getPrefetcher();
+					if (prefetcher != null)
+						prefetcher.expect(flyList, flyIndex + 1, flyParams.loop);
+					// don't grab a frame until its tiles are loaded
+					if (flyParams.grab) {
+						try {
+							if (!BatchRenderer.waitForTiles(viewpoint.getCamera()))
+								Console.println("Timed out waiting for tiles for frame " + flyIndex + ".");
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
 					SceneFramework.getInstance().getFrameHandler().updateFrame();
 					double t = (flyIndex * millis) / 1000.0;
 					int hr = (int) (t / 3600);